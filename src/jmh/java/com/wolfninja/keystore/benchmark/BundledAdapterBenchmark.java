@@ -0,0 +1,56 @@
+package com.wolfninja.keystore.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Param;
+
+import com.wolfninja.keystore.api.KeyValueStoreAdapter;
+import com.wolfninja.keystore.file.FileAdapter;
+import com.wolfninja.keystore.memory.MemoryAdapter;
+import com.wolfninja.keystore.offheap.OffHeapAdapter;
+
+/**
+ * {@link KeyspaceBenchmark} of the adapters bundled with this library
+ * <p>
+ * Select adapters with {@code -p adapter=memory,file}.
+ */
+public class BundledAdapterBenchmark extends KeyspaceBenchmark {
+
+	/**
+	 * Adapter to benchmark
+	 */
+	@Param({ "memory", "offheap", "file" })
+	public String adapter;
+
+	private Path directory;
+
+	@Override
+	protected KeyValueStoreAdapter createAdapter() throws IOException {
+		switch (adapter) {
+		case "memory":
+			return MemoryAdapter.create();
+		case "offheap":
+			return OffHeapAdapter.create(256L << 20, OffHeapAdapter.FullPolicy.EVICT);
+		case "file":
+			directory = Files.createTempDirectory("keystore-benchmark");
+			return FileAdapter.open(directory);
+		default:
+			throw new IllegalArgumentException("Unknown adapter: " + adapter);
+		}
+	}
+
+	@Override
+	protected void destroyAdapter(final KeyValueStoreAdapter adapter) throws Exception {
+		super.destroyAdapter(adapter);
+		if (directory == null)
+			return;
+		try (final Stream<Path> files = Files.walk(directory)) {
+			files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+		}
+		directory = null;
+	}
+}
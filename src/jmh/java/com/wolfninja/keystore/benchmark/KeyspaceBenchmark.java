@@ -0,0 +1,262 @@
+package com.wolfninja.keystore.benchmark;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.wolfninja.keystore.api.KeyValue;
+import com.wolfninja.keystore.api.KeyValueHolder;
+import com.wolfninja.keystore.api.KeyValueStoreAdapter;
+import com.wolfninja.keystore.api.Keyspace;
+
+/**
+ * JMH benchmarks of the {@link Keyspace} operations, for any {@link KeyValueStoreAdapter}
+ * <p>
+ * Subclasses supply the adapter through {@link #createAdapter()}, the same way subclasses of {@code BaseKeyspaceTest}
+ * supply the keyspace under test, and inherit every benchmark. Before each trial {@code keyCount} keys are stored;
+ * reads and writes then pick keys uniformly at random, and misses use keys that are never stored.
+ * <p>
+ * Key and value sizes, the number of keys, the read ratio of {@link #mixed()} and the number of keys contended by
+ * {@link #checkAndSetContended(Cursor)} are parameters, which can be changed with {@code -p}, for example
+ * {@code -p valueSize=100,10000}. The thread count is set with {@code -t}; all threads share the keyspace.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public abstract class KeyspaceBenchmark {
+
+	/**
+	 * Per-thread random number generator, keys only used by one thread and holder to read into
+	 */
+	@State(Scope.Thread)
+	public static class Cursor {
+		private final KeyValueHolder holder = new KeyValueHolder();
+		private int seed = ThreadLocalRandom.current().nextInt() | 1;
+		private String[] ownKeys;
+		private int ownNext;
+
+		int next(final int bound) {
+			// xorshift, cheaper than any shared or thread-local generator
+			seed ^= seed << 13;
+			seed ^= seed >>> 17;
+			seed ^= seed << 5;
+			return (seed & Integer.MAX_VALUE) % bound;
+		}
+
+		String nextOwnKey(final KeyspaceBenchmark benchmark) {
+			if (ownKeys == null) {
+				final String prefix = "t" + Thread.currentThread().getId() + "-";
+				ownKeys = new String[benchmark.keyCount];
+				for (int i = 0; i < ownKeys.length; i++)
+					ownKeys[i] = pad(prefix + i, benchmark.keySize);
+			}
+			final String key = ownKeys[ownNext];
+			ownNext = ownNext + 1 == ownKeys.length ? 0 : ownNext + 1;
+			return key;
+		}
+	}
+
+	private static final int VALUE_VARIANTS = 16;
+
+	/**
+	 * Length of each key in characters
+	 */
+	@Param({ "16", "128" })
+	public int keySize;
+
+	/**
+	 * Length of each value in characters
+	 */
+	@Param({ "32", "1024" })
+	public int valueSize;
+
+	/**
+	 * Number of keys stored before each trial
+	 */
+	@Param({ "10000" })
+	public int keyCount;
+
+	/**
+	 * Fraction of {@link #mixed()} operations that are reads, the rest are writes
+	 */
+	@Param({ "0.9" })
+	public double readRatio;
+
+	/**
+	 * Number of keys shared by all threads in {@link #checkAndSetContended(Cursor)}
+	 */
+	@Param({ "1" })
+	public int hotKeys;
+
+	private KeyValueStoreAdapter adapter;
+	private Keyspace keyspace;
+	private String[] keys;
+	private String[] missingKeys;
+	private String[] values;
+
+	/**
+	 * Create the adapter to benchmark, called once per trial
+	 *
+	 * @return new {@link KeyValueStoreAdapter}, not null
+	 * @throws Exception
+	 *             if the adapter cannot be created
+	 */
+	protected abstract KeyValueStoreAdapter createAdapter() throws Exception;
+
+	/**
+	 * Release the adapter after a trial; closes it by default
+	 *
+	 * @param adapter
+	 *            {@link KeyValueStoreAdapter} created by {@link #createAdapter()}
+	 * @throws Exception
+	 *             if the adapter cannot be released
+	 */
+	protected void destroyAdapter(final KeyValueStoreAdapter adapter) throws Exception {
+		adapter.close();
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		adapter = createAdapter();
+		keyspace = adapter.getKeyspace("benchmark");
+		values = new String[VALUE_VARIANTS];
+		for (int i = 0; i < values.length; i++)
+			values[i] = pad("v" + i, valueSize);
+		keys = new String[keyCount];
+		missingKeys = new String[keyCount];
+		for (int i = 0; i < keyCount; i++) {
+			keys[i] = pad("k" + i, keySize);
+			missingKeys[i] = pad("m" + i, keySize);
+			keyspace.set(keys[i], values[i % values.length]);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		destroyAdapter(adapter);
+	}
+
+	/**
+	 * Add a key only this thread uses, then delete it again; reported per operation
+	 */
+	@Benchmark
+	@OperationsPerInvocation(2)
+	public boolean addAndDelete(final Cursor cursor) {
+		final String key = cursor.nextOwnKey(this);
+		return keyspace.add(key, values[0]) & keyspace.delete(key);
+	}
+
+	@Benchmark
+	public boolean addPresent(final Cursor cursor) {
+		return keyspace.add(keys[cursor.next(keyCount)], values[0]);
+	}
+
+	/**
+	 * Read and conditionally update one of {@link #hotKeys} keys shared by all threads; run with several threads
+	 * to measure the cost of contention, failed updates are included in the score
+	 */
+	@Benchmark
+	@Threads(4)
+	public boolean checkAndSetContended(final Cursor cursor) {
+		final String key = keys[cursor.next(hotKeys)];
+		final Optional<KeyValue> current = keyspace.gets(key);
+		return current.isPresent()
+				&& keyspace.checkAndSet(key, values[cursor.next(VALUE_VARIANTS)], current.get().getVersion());
+	}
+
+	@Benchmark
+	public boolean checkAndSetUncontended(final Cursor cursor) {
+		final String key = keys[cursor.next(keyCount)];
+		final Optional<KeyValue> current = keyspace.gets(key);
+		return current.isPresent()
+				&& keyspace.checkAndSet(key, values[cursor.next(VALUE_VARIANTS)], current.get().getVersion());
+	}
+
+	@Benchmark
+	public boolean deleteMissing(final Cursor cursor) {
+		return keyspace.delete(missingKeys[cursor.next(keyCount)]);
+	}
+
+	@Benchmark
+	public boolean exists(final Cursor cursor) {
+		return keyspace.exists(keys[cursor.next(keyCount)]);
+	}
+
+	@Benchmark
+	public boolean existsMissing(final Cursor cursor) {
+		return keyspace.exists(missingKeys[cursor.next(keyCount)]);
+	}
+
+	@Benchmark
+	public Optional<String> get(final Cursor cursor) {
+		return keyspace.get(keys[cursor.next(keyCount)]);
+	}
+
+	@Benchmark
+	public Optional<String> getMissing(final Cursor cursor) {
+		return keyspace.get(missingKeys[cursor.next(keyCount)]);
+	}
+
+	@Benchmark
+	public Optional<KeyValue> gets(final Cursor cursor) {
+		return keyspace.gets(keys[cursor.next(keyCount)]);
+	}
+
+	/**
+	 * Read into a reused holder; run with {@code -prof gc} to check that nothing is allocated
+	 */
+	@Benchmark
+	public long getsInto(final Cursor cursor) {
+		return keyspace.gets(keys[cursor.next(keyCount)], cursor.holder) ? cursor.holder.getVersion() : 0L;
+	}
+
+	/**
+	 * Random reads and writes of the stored keys, in the proportion given by {@link #readRatio}
+	 */
+	@Benchmark
+	public Object mixed(final Cursor cursor) {
+		final String key = keys[cursor.next(keyCount)];
+		if (cursor.next(1 << 20) < readRatio * (1 << 20))
+			return keyspace.get(key);
+		return keyspace.set(key, values[cursor.next(VALUE_VARIANTS)]);
+	}
+
+	@Benchmark
+	public boolean set(final Cursor cursor) {
+		return keyspace.set(keys[cursor.next(keyCount)], values[cursor.next(VALUE_VARIANTS)]);
+	}
+
+	@Benchmark
+	public OptionalLong version(final Cursor cursor) {
+		return keyspace.version(keys[cursor.next(keyCount)]);
+	}
+
+	static String pad(final String prefix, final int length) {
+		if (prefix.length() >= length)
+			return prefix;
+		final char[] padding = new char[length - prefix.length()];
+		Arrays.fill(padding, 'x');
+		return prefix + new String(padding);
+	}
+}
@@ -0,0 +1,74 @@
+package com.wolfninja.keystore.api;
+
+import java.lang.reflect.Method;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Factory methods for {@link java.util.concurrent.Executor Executors} suited to running blocking {@link Keyspace}
+ * calls behind an {@link AsyncKeyspace}
+ *
+ * @since 0.2
+ */
+public final class AsyncExecutors {
+
+	private AsyncExecutors() {
+	}
+
+	/**
+	 * Create an executor which starts a new virtual thread for each task
+	 * <p>
+	 * Virtual threads are only available on Java 21 and later. On older runtimes this falls back to
+	 * {@link #cachedDaemonThreads(String)}, which gives the same one-thread-per-blocking-call behavior using platform
+	 * threads.
+	 *
+	 * @return new {@link ExecutorService}, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	public static ExecutorService virtualThreadPerTask() {
+		try {
+			final Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) factory.invoke(null);
+		} catch (final ReflectiveOperationException e) {
+			return cachedDaemonThreads("keystore-async");
+		}
+	}
+
+	/**
+	 * Create an unbounded executor which reuses idle daemon threads and creates new ones as needed
+	 *
+	 * @param namePrefix
+	 *            String prefix for thread names, not null
+	 * @return new {@link ExecutorService}, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	public static ExecutorService cachedDaemonThreads(@Nonnull final String namePrefix) {
+		return Executors.newCachedThreadPool(daemonThreadFactory(namePrefix));
+	}
+
+	/**
+	 * Create a {@link ThreadFactory} producing named daemon threads
+	 *
+	 * @param namePrefix
+	 *            String prefix for thread names, not null
+	 * @return new {@link ThreadFactory}, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	public static ThreadFactory daemonThreadFactory(@Nonnull final String namePrefix) {
+		Objects.requireNonNull(namePrefix, "Name prefix must not be null");
+		final AtomicInteger counter = new AtomicInteger();
+		return runnable -> {
+			final Thread thread = new Thread(runnable, namePrefix + "-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+}
@@ -0,0 +1,209 @@
+package com.wolfninja.keystore.api;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import javax.annotation.Nonnull;
+
+import aQute.bnd.annotation.ProviderType;
+
+/**
+ * Non-blocking counterpart of {@link Keyspace}
+ * <p>
+ * Each operation has the same semantics as its {@link Keyspace} equivalent, but returns immediately with a
+ * {@link CompletableFuture} which is completed once the backend has answered. Null arguments are rejected eagerly by
+ * throwing {@link NullPointerException} rather than returning a failed future.
+ *
+ * @since 0.2
+ */
+@ProviderType
+public interface AsyncKeyspace extends AutoCloseable {
+
+	/**
+	 * Add value("Store data only if key does NOT exist")
+	 *
+	 * @param key
+	 *            String key, not null
+	 * @param value
+	 *            String value, not null
+	 * @return future completed with true if value added, false otherwise
+	 * @see Keyspace#add(String, String)
+	 * @since 0.2
+	 */
+	@Nonnull
+	public CompletableFuture<Boolean> add(@Nonnull final String key, @Nonnull final String value);
+
+	/**
+	 * Check and Set value( "Store data only if nobody else has changed it since I last fetched it")
+	 *
+	 * @param key
+	 *            String key, not null
+	 * @param value
+	 *            String value, not null
+	 * @param version
+	 *            long version of value
+	 * @return future completed with true if value set, false otherwise
+	 * @see Keyspace#checkAndSet(String, String, long)
+	 * @since 0.2
+	 */
+	@Nonnull
+	public CompletableFuture<Boolean> checkAndSet(@Nonnull final String key, @Nonnull final String value,
+			final long version);
+
+	/**
+	 * Release the resources held by this asynchronous keyspace
+	 * <p>
+	 * The default does nothing. Keyspaces obtained from a {@link KeyValueStore} are closed by
+	 * {@link KeyValueStore#close()}; views over a {@link Keyspace} leave closing it to its owner. Decorators close
+	 * the keyspace they decorate.
+	 *
+	 * @since 0.2
+	 */
+	@Override
+	public default void close() {
+	}
+
+	/**
+	 * Delete value for a given key
+	 *
+	 * @param key
+	 *            String key, not null
+	 * @return future completed with true if key deleted, false otherwise
+	 * @see Keyspace#delete(String)
+	 * @since 0.2
+	 */
+	@Nonnull
+	public CompletableFuture<Boolean> delete(@Nonnull final String key);
+
+	/**
+	 * Delete values for multiple keys
+	 *
+	 * @param keys
+	 *            {@link Collection} of String keys, not null and not containing null
+	 * @return future completed with the number of keys deleted
+	 * @see Keyspace#deleteAll(Collection)
+	 * @since 0.2
+	 */
+	@Nonnull
+	public CompletableFuture<Integer> deleteAll(@Nonnull final Collection<String> keys);
+
+	/**
+	 * Check and Delete value for a given key
+	 *
+	 * @param key
+	 *            String key, not null
+	 * @param version
+	 *            long version of value
+	 * @return future completed with true if key deleted, false otherwise
+	 * @see Keyspace#deletes(String, long)
+	 * @since 0.2
+	 */
+	@Nonnull
+	public CompletableFuture<Boolean> deletes(@Nonnull final String key, final long version);
+
+	/**
+	 * Check if key exists
+	 *
+	 * @param key
+	 *            String key, not null
+	 * @return future completed with true if key exists, false otherwise
+	 * @see Keyspace#exists(String)
+	 * @since 0.2
+	 */
+	@Nonnull
+	public CompletableFuture<Boolean> exists(@Nonnull final String key);
+
+	/**
+	 * Get value for a key
+	 *
+	 * @param key
+	 *            String key, not null
+	 * @return future completed with the value wrapped in {@link Optional}, {@link Optional#empty()} if no value for
+	 *         key
+	 * @see Keyspace#get(String)
+	 * @since 0.2
+	 */
+	@Nonnull
+	public CompletableFuture<Optional<String>> get(@Nonnull final String key);
+
+	/**
+	 * Get values for multiple keys
+	 *
+	 * @param keys
+	 *            {@link Collection} of String keys, not null and not containing null
+	 * @return future completed with a {@link Map} of key to value, containing only the keys that have a value
+	 * @see Keyspace#getAll(Collection)
+	 * @since 0.2
+	 */
+	@Nonnull
+	public CompletableFuture<Map<String, String>> getAll(@Nonnull final Collection<String> keys);
+
+	/**
+	 * Get value for a key with version info
+	 *
+	 * @param key
+	 *            String key, not null
+	 * @return future completed with the {@link KeyValue} wrapped in {@link Optional}, {@link Optional#empty()} if no
+	 *         value for key
+	 * @see Keyspace#gets(String)
+	 * @since 0.2
+	 */
+	@Nonnull
+	public CompletableFuture<Optional<KeyValue>> gets(@Nonnull final String key);
+
+	/**
+	 * Get values with version info for multiple keys
+	 *
+	 * @param keys
+	 *            {@link Collection} of String keys, not null and not containing null
+	 * @return future completed with a {@link Map} of key to {@link KeyValue}, containing only the keys that have a
+	 *         value
+	 * @see Keyspace#getsAll(Collection)
+	 * @since 0.2
+	 */
+	@Nonnull
+	public CompletableFuture<Map<String, KeyValue>> getsAll(@Nonnull final Collection<String> keys);
+
+	/**
+	 * Replace value("Store data only if key exists already")
+	 *
+	 * @param key
+	 *            String key, not null
+	 * @param value
+	 *            String value, not null
+	 * @return future completed with true if value replaced, false otherwise
+	 * @see Keyspace#replace(String, String)
+	 * @since 0.2
+	 */
+	@Nonnull
+	public CompletableFuture<Boolean> replace(@Nonnull final String key, @Nonnull final String value);
+
+	/**
+	 * Set value ("Store the data")
+	 *
+	 * @param key
+	 *            String key, not null
+	 * @param value
+	 *            String value, not null
+	 * @return future completed with true if value set, false otherwise
+	 * @see Keyspace#set(String, String)
+	 * @since 0.2
+	 */
+	@Nonnull
+	public CompletableFuture<Boolean> set(@Nonnull final String key, @Nonnull final String value);
+
+	/**
+	 * Set multiple values ("Store the data")
+	 *
+	 * @param values
+	 *            {@link Map} of String key to String value, not null and not containing null keys or values
+	 * @return future completed with true if all values set, false otherwise
+	 * @see Keyspace#setAll(Map)
+	 * @since 0.2
+	 */
+	@Nonnull
+	public CompletableFuture<Boolean> setAll(@Nonnull final Map<String, String> values);
+
+}
@@ -0,0 +1,116 @@
+package com.wolfninja.keystore.api;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.Optional;
+
+import javax.annotation.Nonnull;
+
+/**
+ * String {@link Keyspace} stored through a {@link BinaryKeyspace}
+ * <p>
+ * Lets natively binary adapters offer the String API as a thin encoding layer. Versions are those of the underlying
+ * keyspace.
+ *
+ * @since 0.2
+ */
+public final class BinaryBackedKeyspace implements Keyspace {
+
+	/**
+	 * Create a new {@code BinaryBackedKeyspace} storing UTF-8 encoded values in the given keyspace
+	 *
+	 * @param keyspace
+	 *            {@link BinaryKeyspace} to store values in, not null
+	 * @return new {@link BinaryBackedKeyspace} instance, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	public static BinaryBackedKeyspace create(@Nonnull final BinaryKeyspace keyspace) {
+		return create(keyspace, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Create a new {@code BinaryBackedKeyspace} storing values in the given keyspace using the given charset
+	 *
+	 * @param keyspace
+	 *            {@link BinaryKeyspace} to store values in, not null
+	 * @param charset
+	 *            {@link Charset} used to encode values, not null
+	 * @return new {@link BinaryBackedKeyspace} instance, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	public static BinaryBackedKeyspace create(@Nonnull final BinaryKeyspace keyspace,
+			@Nonnull final Charset charset) {
+		return new BinaryBackedKeyspace(keyspace, charset);
+	}
+
+	private final BinaryKeyspace keyspace;
+	private final Charset charset;
+
+	private BinaryBackedKeyspace(@Nonnull final BinaryKeyspace keyspace, @Nonnull final Charset charset) {
+		Objects.requireNonNull(keyspace, "Keyspace must not be null");
+		Objects.requireNonNull(charset, "Charset must not be null");
+		this.keyspace = keyspace;
+		this.charset = charset;
+	}
+
+	@Override
+	public boolean add(final String key, final String value) {
+		return keyspace.add(key, encode(value));
+	}
+
+	@Override
+	public boolean checkAndSet(final String key, final String value, final long version) {
+		return keyspace.checkAndSet(key, encode(value), version);
+	}
+
+	@Override
+	public boolean delete(final String key) {
+		return keyspace.delete(key);
+	}
+
+	@Override
+	public boolean deletes(final String key, final long version) {
+		return keyspace.deletes(key, version);
+	}
+
+	@Override
+	public boolean exists(final String key) {
+		return keyspace.exists(key);
+	}
+
+	@Override
+	public Optional<String> get(final String key) {
+		return keyspace.get(key).map(this::decode);
+	}
+
+	@Override
+	public Optional<KeyValue> gets(final String key) {
+		return keyspace.gets(key)
+				.map(keyValue -> KeyValue.create(key, decode(keyValue.getValue()), keyValue.getVersion()));
+	}
+
+	@Override
+	public boolean replace(final String key, final String value) {
+		return keyspace.replace(key, encode(value));
+	}
+
+	@Override
+	public boolean set(final String key, final String value) {
+		return keyspace.set(key, encode(value));
+	}
+
+	private String decode(final ByteBuffer value) {
+		if (value.hasArray())
+			return new String(value.array(), value.arrayOffset() + value.position(), value.remaining(), charset);
+		return charset.decode(value).toString();
+	}
+
+	private byte[] encode(final String value) {
+		Objects.requireNonNull(value, "Value must not be null");
+		return value.getBytes(charset);
+	}
+}
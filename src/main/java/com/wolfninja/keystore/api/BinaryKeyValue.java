@@ -0,0 +1,148 @@
+package com.wolfninja.keystore.api;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+import javax.annotation.Nonnull;
+
+import aQute.bnd.annotation.ProviderType;
+
+/**
+ * Binary counterpart of {@link KeyValue}
+ * <p>
+ * The value is held as a read-only view of the buffer or array it was created from, without copying. Callers hand
+ * over ownership of that data and must not modify it afterwards.
+ *
+ * @since 0.2
+ */
+@ProviderType
+public class BinaryKeyValue {
+
+	/**
+	 * Create new {@code BinaryKeyValue} instance
+	 *
+	 * @param key
+	 *            String key, not null
+	 * @param value
+	 *            {@link ByteBuffer} value, the bytes between its position and limit, not null
+	 * @param version
+	 *            long version
+	 * @return new {@link BinaryKeyValue} instance
+	 * @since 0.2
+	 */
+	@Nonnull
+	public static BinaryKeyValue create(@Nonnull final String key, @Nonnull final ByteBuffer value,
+			final long version) {
+		return new BinaryKeyValue(key, value, version);
+	}
+
+	/**
+	 * Create new {@code BinaryKeyValue} instance
+	 *
+	 * @param key
+	 *            String key, not null
+	 * @param value
+	 *            byte array value, not null
+	 * @param version
+	 *            long version
+	 * @return new {@link BinaryKeyValue} instance
+	 * @since 0.2
+	 */
+	@Nonnull
+	public static BinaryKeyValue create(@Nonnull final String key, @Nonnull final byte[] value, final long version) {
+		Objects.requireNonNull(value, "Value must not be null");
+		return new BinaryKeyValue(key, ByteBuffer.wrap(value), version);
+	}
+
+	private final String key;
+	private final ByteBuffer value;
+	private final long version;
+
+	/**
+	 * Create new {@link BinaryKeyValue}
+	 *
+	 * @param key
+	 *            String key
+	 * @param value
+	 *            {@link ByteBuffer} value
+	 * @param version
+	 *            long version
+	 * @since 0.2
+	 */
+	protected BinaryKeyValue(final String key, final ByteBuffer value, final long version) {
+		Objects.requireNonNull(key, "Key must not be null");
+		Objects.requireNonNull(value, "Value must not be null");
+
+		this.key = key;
+		this.value = value.slice().asReadOnlyBuffer();
+		this.version = version;
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof BinaryKeyValue))
+			return false;
+		final BinaryKeyValue other = (BinaryKeyValue) obj;
+		return version == other.version && key.equals(other.key) && value.equals(other.value);
+	}
+
+	/**
+	 * Get key
+	 *
+	 * @return String key
+	 * @since 0.2
+	 */
+	public String getKey() {
+		return key;
+	}
+
+	/**
+	 * Get value
+	 *
+	 * @return new read-only {@link ByteBuffer} view of the value, positioned at its start
+	 * @since 0.2
+	 */
+	public ByteBuffer getValue() {
+		return value.duplicate();
+	}
+
+	/**
+	 * Get a copy of the value
+	 *
+	 * @return new byte array holding the value
+	 * @since 0.2
+	 */
+	public byte[] getValueBytes() {
+		final byte[] bytes = new byte[value.remaining()];
+		value.duplicate().get(bytes);
+		return bytes;
+	}
+
+	/**
+	 * Get length of the value
+	 *
+	 * @return int number of value bytes
+	 * @since 0.2
+	 */
+	public int getValueLength() {
+		return value.remaining();
+	}
+
+	/**
+	 * Get version
+	 *
+	 * @return long version
+	 * @since 0.2
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * (31 * key.hashCode() + value.hashCode()) + Long.hashCode(version);
+	}
+
+}
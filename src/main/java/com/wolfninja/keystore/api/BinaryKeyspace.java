@@ -0,0 +1,222 @@
+package com.wolfninja.keystore.api;
+
+import java.nio.ByteBuffer;
+import java.util.Optional;
+
+import javax.annotation.Nonnull;
+
+import aQute.bnd.annotation.ProviderType;
+
+/**
+ * Binary counterpart of {@link Keyspace}, storing {@code byte[]} or {@link ByteBuffer} values
+ * <p>
+ * Each operation has the same semantics as its {@link Keyspace} equivalent. A {@link ByteBuffer} argument supplies
+ * the bytes between its position and limit; implementations read it without changing its position, and must not
+ * keep a reference to it after the call returns. Returned buffers are read-only and owned by the caller.
+ *
+ * @since 0.2
+ */
+@ProviderType
+public interface BinaryKeyspace extends AutoCloseable {
+
+	/**
+	 * Add value("Store data only if key does NOT exist")
+	 *
+	 * @param key
+	 *            String key, not null
+	 * @param value
+	 *            {@link ByteBuffer} value, not null
+	 * @return true if value added, false otherwise
+	 * @see Keyspace#add(String, String)
+	 * @since 0.2
+	 */
+	@Nonnull
+	public boolean add(@Nonnull final String key, @Nonnull final ByteBuffer value);
+
+	/**
+	 * Add value("Store data only if key does NOT exist")
+	 *
+	 * @param key
+	 *            String key, not null
+	 * @param value
+	 *            byte array value, not null
+	 * @return true if value added, false otherwise
+	 * @see Keyspace#add(String, String)
+	 * @since 0.2
+	 */
+	@Nonnull
+	public default boolean add(@Nonnull final String key, @Nonnull final byte[] value) {
+		return add(key, ByteBuffer.wrap(value));
+	}
+
+	/**
+	 * Check and Set value( "Store data only if nobody else has changed it since I last fetched it")
+	 *
+	 * @param key
+	 *            String key, not null
+	 * @param value
+	 *            {@link ByteBuffer} value, not null
+	 * @param version
+	 *            long version of value
+	 * @return true if value set, false otherwise
+	 * @see Keyspace#checkAndSet(String, String, long)
+	 * @since 0.2
+	 */
+	@Nonnull
+	public boolean checkAndSet(@Nonnull final String key, @Nonnull final ByteBuffer value, final long version);
+
+	/**
+	 * Check and Set value( "Store data only if nobody else has changed it since I last fetched it")
+	 *
+	 * @param key
+	 *            String key, not null
+	 * @param value
+	 *            byte array value, not null
+	 * @param version
+	 *            long version of value
+	 * @return true if value set, false otherwise
+	 * @see Keyspace#checkAndSet(String, String, long)
+	 * @since 0.2
+	 */
+	@Nonnull
+	public default boolean checkAndSet(@Nonnull final String key, @Nonnull final byte[] value, final long version) {
+		return checkAndSet(key, ByteBuffer.wrap(value), version);
+	}
+
+	/**
+	 * Release the resources held by this binary keyspace
+	 * <p>
+	 * The default does nothing. Keyspaces obtained from a {@link KeyValueStore} are closed by
+	 * {@link KeyValueStore#close()}; views over a {@link Keyspace} leave closing it to its owner. Decorators close
+	 * the keyspace they decorate.
+	 *
+	 * @since 0.2
+	 */
+	@Override
+	public default void close() {
+	}
+
+	/**
+	 * Delete value for a given key
+	 *
+	 * @param key
+	 *            String key, not null
+	 * @return true if key deleted, false otherwise
+	 * @see Keyspace#delete(String)
+	 * @since 0.2
+	 */
+	@Nonnull
+	public boolean delete(@Nonnull final String key);
+
+	/**
+	 * Check and Delete value for a given key
+	 *
+	 * @param key
+	 *            String key, not null
+	 * @param version
+	 *            long version of value
+	 * @return true if key deleted, false otherwise
+	 * @see Keyspace#deletes(String, long)
+	 * @since 0.2
+	 */
+	@Nonnull
+	public boolean deletes(@Nonnull final String key, final long version);
+
+	/**
+	 * Check if key exists
+	 *
+	 * @param key
+	 *            String key, not null
+	 * @return true if key exists, false otherwise
+	 * @see Keyspace#exists(String)
+	 * @since 0.2
+	 */
+	@Nonnull
+	public boolean exists(@Nonnull final String key);
+
+	/**
+	 * Get value for a key
+	 *
+	 * @param key
+	 *            String key, not null
+	 * @return read-only {@link ByteBuffer} value wrapped in {@link Optional}. {@link Optional#empty()} if no value for
+	 *         key.
+	 * @see Keyspace#get(String)
+	 * @since 0.2
+	 */
+	@Nonnull
+	public Optional<ByteBuffer> get(@Nonnull final String key);
+
+	/**
+	 * Get value for a key with version info
+	 *
+	 * @param key
+	 *            String key, not null
+	 * @return {@link BinaryKeyValue} value wrapped in {@link Optional}. {@link Optional#empty()} if no value for key.
+	 * @see Keyspace#gets(String)
+	 * @since 0.2
+	 */
+	@Nonnull
+	public Optional<BinaryKeyValue> gets(@Nonnull final String key);
+
+	/**
+	 * Replace value("Store data only if key exists already")
+	 *
+	 * @param key
+	 *            String key, not null
+	 * @param value
+	 *            {@link ByteBuffer} value, not null
+	 * @return true if value replaced, false otherwise
+	 * @see Keyspace#replace(String, String)
+	 * @since 0.2
+	 */
+	@Nonnull
+	public boolean replace(@Nonnull final String key, @Nonnull final ByteBuffer value);
+
+	/**
+	 * Replace value("Store data only if key exists already")
+	 *
+	 * @param key
+	 *            String key, not null
+	 * @param value
+	 *            byte array value, not null
+	 * @return true if value replaced, false otherwise
+	 * @see Keyspace#replace(String, String)
+	 * @since 0.2
+	 */
+	@Nonnull
+	public default boolean replace(@Nonnull final String key, @Nonnull final byte[] value) {
+		return replace(key, ByteBuffer.wrap(value));
+	}
+
+	/**
+	 * Set value ("Store the data")
+	 *
+	 * @param key
+	 *            String key, not null
+	 * @param value
+	 *            {@link ByteBuffer} value, not null
+	 * @return true if value set, false otherwise
+	 * @see Keyspace#set(String, String)
+	 * @since 0.2
+	 */
+	@Nonnull
+	public boolean set(@Nonnull final String key, @Nonnull final ByteBuffer value);
+
+	/**
+	 * Set value ("Store the data")
+	 *
+	 * @param key
+	 *            String key, not null
+	 * @param value
+	 *            byte array value, not null
+	 * @return true if value set, false otherwise
+	 * @see Keyspace#set(String, String)
+	 * @since 0.2
+	 */
+	@Nonnull
+	public default boolean set(@Nonnull final String key, @Nonnull final byte[] value) {
+		return set(key, ByteBuffer.wrap(value));
+	}
+
+}
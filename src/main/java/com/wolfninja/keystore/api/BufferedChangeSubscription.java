@@ -0,0 +1,221 @@
+package com.wolfninja.keystore.api;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * {@link ChangeSubscription} buffering offered changes until its subscriber requests them
+ * <p>
+ * Offering only appends to the buffer under its monitor and schedules a drain, so publishers never call into the
+ * subscriber. The drain runs on the executor, one at a time per subscription: a work counter lets only the caller
+ * raising it from zero schedule it, and the drain loops until it has accounted for every increment. Terminal signals
+ * are delivered once the changes buffered before them have been, except for failures, which skip the buffer. The
+ * release hook runs once when the subscription ends, whether cancelled, failed or completed, so the publisher can
+ * forget it.
+ */
+final class BufferedChangeSubscription implements ChangeSubscription, Runnable {
+
+	private final ChangeSubscriber subscriber;
+	private final Watch watch;
+	private final Executor executor;
+	private final Consumer<BufferedChangeSubscription> onRelease;
+	private final AtomicLong demand = new AtomicLong();
+	private final AtomicInteger work = new AtomicInteger();
+	private final AtomicBoolean released = new AtomicBoolean();
+
+	// Guarded by this
+	private final ArrayDeque<ChangeEvent> queue;
+	private final LinkedHashMap<String, ChangeEvent> pending;
+	private Throwable failure;
+	private boolean completed;
+
+	// Set once no more signals may reach the subscriber
+	private volatile boolean done;
+
+	BufferedChangeSubscription(final ChangeSubscriber subscriber, final Watch watch, final Executor executor,
+			final Consumer<BufferedChangeSubscription> onRelease) {
+		this.subscriber = subscriber;
+		this.watch = watch;
+		this.executor = executor;
+		this.onRelease = onRelease;
+		this.queue = watch.isCoalescing() ? null : new ArrayDeque<>();
+		this.pending = watch.isCoalescing() ? new LinkedHashMap<>() : null;
+	}
+
+	@Override
+	public void cancel() {
+		done = true;
+		synchronized (this) {
+			completed = true;
+			clear();
+		}
+		release();
+	}
+
+	@Override
+	public void request(final long n) {
+		if (n <= 0L) {
+			fail(new IllegalArgumentException("Requested changes must be greater than zero"));
+			return;
+		}
+		demand.accumulateAndGet(n, (current, added) -> current + added < 0L ? Long.MAX_VALUE : current + added);
+		drain();
+	}
+
+	@Override
+	public void run() {
+		int missed = 1;
+		while (true) {
+			drainBuffer();
+			missed = work.addAndGet(-missed);
+			if (missed == 0)
+				return;
+		}
+	}
+
+	/**
+	 * Deliver the buffered changes, then complete
+	 */
+	void complete() {
+		synchronized (this) {
+			completed = true;
+		}
+		drain();
+	}
+
+	/**
+	 * Fail the subscription, discarding the buffered changes
+	 */
+	void fail(final Throwable cause) {
+		synchronized (this) {
+			if (failure != null || completed && isEmpty())
+				return;
+			failure = cause;
+			clear();
+		}
+		release();
+		drain();
+	}
+
+	/**
+	 * Check whether the subscription has ended, so its publisher may forget it
+	 */
+	boolean isReleased() {
+		return released.get();
+	}
+
+	/**
+	 * Check whether changes of a key are watched
+	 */
+	boolean matches(final String key) {
+		return watch.matches(key);
+	}
+
+	/**
+	 * Buffer a change, failing the subscription if the buffer is full
+	 */
+	void offer(final ChangeEvent event) {
+		final boolean buffered;
+		synchronized (this) {
+			if (failure != null || completed)
+				return;
+			if (pending != null) {
+				// Replacing keeps the key's place in line, so a busy key does not starve the others
+				buffered = pending.containsKey(event.getKey()) || pending.size() < watch.getBufferSize();
+				if (buffered)
+					pending.put(event.getKey(), event);
+			} else {
+				buffered = queue.size() < watch.getBufferSize();
+				if (buffered)
+					queue.add(event);
+			}
+		}
+		if (buffered)
+			drain();
+		else
+			fail(new IllegalStateException(
+					"Subscriber fell more than " + watch.getBufferSize() + " changes behind, the latest being "
+							+ event.getType() + " of key " + event.getKey()));
+	}
+
+	private void clear() {
+		if (pending != null)
+			pending.clear();
+		else
+			queue.clear();
+	}
+
+	private void drain() {
+		if (work.getAndIncrement() != 0)
+			return;
+		try {
+			executor.execute(this);
+		} catch (final RejectedExecutionException e) {
+			run();
+		}
+	}
+
+	private void drainBuffer() {
+		while (!done) {
+			final ChangeEvent next;
+			final Throwable cause;
+			synchronized (this) {
+				cause = failure;
+				if (cause != null)
+					next = null;
+				else if (!isEmpty()) {
+					if (demand.get() == 0L)
+						return;
+					next = poll();
+				} else if (completed)
+					next = null;
+				else
+					return;
+			}
+			if (next == null) {
+				done = true;
+				release();
+				if (cause != null)
+					subscriber.onError(cause);
+				else
+					subscriber.onComplete();
+				return;
+			}
+			demand.getAndUpdate(current -> current == Long.MAX_VALUE ? current : current - 1L);
+			try {
+				subscriber.onNext(next);
+			} catch (final RuntimeException e) {
+				// The subscriber broke its contract, so stop talking to it
+				cancel();
+			}
+		}
+	}
+
+	private boolean isEmpty() {
+		return pending != null ? pending.isEmpty() : queue.isEmpty();
+	}
+
+	private ChangeEvent poll() {
+		if (pending == null)
+			return queue.poll();
+		final Iterator<ChangeEvent> oldest = pending.values().iterator();
+		final ChangeEvent event = oldest.next();
+		oldest.remove();
+		return event;
+	}
+
+	/**
+	 * Run the release hook once, however the subscription ended
+	 */
+	private void release() {
+		if (released.compareAndSet(false, true))
+			onRelease.accept(this);
+	}
+}
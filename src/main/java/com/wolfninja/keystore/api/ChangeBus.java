@@ -0,0 +1,196 @@
+package com.wolfninja.keystore.api;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+
+/**
+ * In-process event bus implementing {@link Keyspace#watch(Watch)} for keyspaces that see all of their writes
+ * <p>
+ * The keyspace calls {@link #publish(ChangeEvent.Type, String, String, long)} after each successful write, in the
+ * order the writes of a key took effect, typically while still holding the lock that ordered them. Publishing checks
+ * a subscriber count first, so it costs a single volatile read while nothing is watched. Otherwise it looks up the
+ * subscribers of the key in a concurrent map, checks those of prefixes one by one, and buffers the change for each
+ * match; delivery happens on the executor, so a slow subscriber never delays a writer. Subscribers are kept in
+ * copy-on-write lists, as they change far less often than keys do.
+ *
+ * @since 0.2
+ */
+public final class ChangeBus implements AutoCloseable {
+
+	/**
+	 * Create a new {@code ChangeBus} delivering changes on the common pool
+	 *
+	 * @return new {@link ChangeBus} instance, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	public static ChangeBus create() {
+		return create(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Create a new {@code ChangeBus} delivering changes on the given executor
+	 *
+	 * @param executor
+	 *            {@link Executor} running subscriber callbacks, not null
+	 * @return new {@link ChangeBus} instance, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	public static ChangeBus create(@Nonnull final Executor executor) {
+		return new ChangeBus(executor);
+	}
+
+	private final Executor executor;
+	private final ConcurrentHashMap<String, CopyOnWriteArrayList<BufferedChangeSubscription>> keys =
+			new ConcurrentHashMap<>();
+	private final CopyOnWriteArrayList<BufferedChangeSubscription> prefixes = new CopyOnWriteArrayList<>();
+	private final AtomicInteger subscribers = new AtomicInteger();
+	private volatile boolean closed;
+
+	private ChangeBus(@Nonnull final Executor executor) {
+		this.executor = Objects.requireNonNull(executor, "Executor must not be null");
+	}
+
+	/**
+	 * Complete every subscriber once it has received the changes buffered for it; later subscribers complete right
+	 * away and later changes are dropped
+	 *
+	 * @since 0.2
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		for (final List<BufferedChangeSubscription> subscriptions : keys.values())
+			subscriptions.forEach(BufferedChangeSubscription::complete);
+		prefixes.forEach(BufferedChangeSubscription::complete);
+	}
+
+	/**
+	 * Check whether anything is subscribed
+	 *
+	 * @return true if at least one subscriber is registered
+	 * @since 0.2
+	 */
+	public boolean hasSubscribers() {
+		return subscribers.get() > 0;
+	}
+
+	/**
+	 * Check whether changes of a key are watched, such as to skip decoding a value nobody will see
+	 *
+	 * @param key
+	 *            String key, not null
+	 * @return true if at least one subscriber watches the key
+	 * @since 0.2
+	 */
+	public boolean isWatched(@Nonnull final String key) {
+		if (subscribers.get() == 0)
+			return false;
+		if (keys.containsKey(key))
+			return true;
+		for (final BufferedChangeSubscription subscription : prefixes)
+			if (subscription.matches(key))
+				return true;
+		return false;
+	}
+
+	/**
+	 * Publish a change to the subscribers watching its key
+	 *
+	 * @param event
+	 *            {@link ChangeEvent}, not null
+	 * @since 0.2
+	 */
+	public void publish(@Nonnull final ChangeEvent event) {
+		Objects.requireNonNull(event, "Event must not be null");
+		if (subscribers.get() == 0 || closed)
+			return;
+		final List<BufferedChangeSubscription> exact = keys.get(event.getKey());
+		if (exact != null)
+			for (final BufferedChangeSubscription subscription : exact)
+				subscription.offer(event);
+		for (final BufferedChangeSubscription subscription : prefixes)
+			if (subscription.matches(event.getKey()))
+				subscription.offer(event);
+	}
+
+	/**
+	 * Publish a change to the subscribers watching its key, creating the event only if there are any
+	 *
+	 * @param type
+	 *            {@link ChangeEvent.Type} of change, not null
+	 * @param key
+	 *            String key, not null
+	 * @param value
+	 *            String value written, null for {@link ChangeEvent.Type#DELETE} and not null otherwise
+	 * @param version
+	 *            long version written, or the version deleted for {@link ChangeEvent.Type#DELETE}
+	 * @since 0.2
+	 */
+	public void publish(@Nonnull final ChangeEvent.Type type, @Nonnull final String key, final String value,
+			final long version) {
+		if (isWatched(key))
+			publish(ChangeEvent.create(type, key, value, version));
+	}
+
+	/**
+	 * Get a publisher of the changes matching a watch
+	 *
+	 * @param watch
+	 *            {@link Watch} selecting the keys and configuring the buffer of each subscriber, not null
+	 * @return {@link ChangePublisher} instance, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	public ChangePublisher publisher(@Nonnull final Watch watch) {
+		Objects.requireNonNull(watch, "Watch must not be null");
+		return subscriber -> subscribe(subscriber, watch);
+	}
+
+	private void register(final BufferedChangeSubscription subscription, final Watch watch) {
+		subscribers.incrementAndGet();
+		if (watch.isExact())
+			keys.compute(watch.getKey(), (key, subscriptions) -> {
+				final CopyOnWriteArrayList<BufferedChangeSubscription> list = subscriptions == null
+						? new CopyOnWriteArrayList<>() : subscriptions;
+				list.add(subscription);
+				return list;
+			});
+		else
+			prefixes.add(subscription);
+	}
+
+	private void subscribe(final ChangeSubscriber subscriber, final Watch watch) {
+		Objects.requireNonNull(subscriber, "Subscriber must not be null");
+		final BufferedChangeSubscription subscription = new BufferedChangeSubscription(subscriber, watch, executor,
+				released -> unregister(released, watch));
+		subscriber.onSubscribe(subscription);
+		register(subscription, watch);
+		// Cancelled from onSubscribe, or raced with close
+		if (subscription.isReleased())
+			unregister(subscription, watch);
+		if (closed)
+			subscription.complete();
+	}
+
+	private void unregister(final BufferedChangeSubscription subscription, final Watch watch) {
+		final boolean[] removed = new boolean[1];
+		if (watch.isExact())
+			keys.computeIfPresent(watch.getKey(), (key, subscriptions) -> {
+				removed[0] = subscriptions.remove(subscription);
+				return subscriptions.isEmpty() ? null : subscriptions;
+			});
+		else
+			removed[0] = prefixes.remove(subscription);
+		if (removed[0])
+			subscribers.decrementAndGet();
+	}
+}
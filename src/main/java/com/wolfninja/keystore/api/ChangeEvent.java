@@ -0,0 +1,156 @@
+package com.wolfninja.keystore.api;
+
+import java.util.Objects;
+import java.util.Optional;
+
+import javax.annotation.Nonnull;
+
+import aQute.bnd.annotation.ProviderType;
+
+/**
+ * Change of one key, delivered to subscribers of {@link Keyspace#watch(Watch)}
+ *
+ * @since 0.2
+ */
+@ProviderType
+public final class ChangeEvent {
+
+	/**
+	 * Operation that changed the key
+	 *
+	 * @since 0.2
+	 */
+	public enum Type {
+		/**
+		 * Value added by {@link Keyspace#add(String, String)}
+		 */
+		ADD,
+		/**
+		 * Value written by {@link Keyspace#checkAndSet(String, String, long)}
+		 */
+		CHECK_AND_SET,
+		/**
+		 * Counter updated by {@link Keyspace#addAndGet(String, long)} and the operations built on it
+		 */
+		COUNTER,
+		/**
+		 * Key deleted by {@link Keyspace#delete(String)} or {@link Keyspace#deletes(String, long)}
+		 */
+		DELETE,
+		/**
+		 * Value replaced by {@link Keyspace#replace(String, String)}
+		 */
+		REPLACE,
+		/**
+		 * Value written by {@link Keyspace#set(String, String)}
+		 */
+		SET
+	}
+
+	/**
+	 * Create new {@code ChangeEvent} instance
+	 *
+	 * @param type
+	 *            {@link Type} of change, not null
+	 * @param key
+	 *            String key, not null
+	 * @param value
+	 *            String value written, null for {@link Type#DELETE} and not null otherwise
+	 * @param version
+	 *            long version written, or the version deleted for {@link Type#DELETE}
+	 * @return new {@link ChangeEvent} instance
+	 * @since 0.2
+	 */
+	@Nonnull
+	public static ChangeEvent create(@Nonnull final Type type, @Nonnull final String key, final String value,
+			final long version) {
+		return new ChangeEvent(type, key, value, version);
+	}
+
+	private final Type type;
+	private final String key;
+	private final String value;
+	private final long version;
+
+	private ChangeEvent(final Type type, final String key, final String value, final long version) {
+		Objects.requireNonNull(type, "Type must not be null");
+		Objects.requireNonNull(key, "Key must not be null");
+		if ((type == Type.DELETE) != (value == null))
+			throw new IllegalArgumentException("Value must be null exactly for deletes");
+
+		this.type = type;
+		this.key = key;
+		this.value = value;
+		this.version = version;
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof ChangeEvent))
+			return false;
+		final ChangeEvent other = (ChangeEvent) obj;
+		return version == other.version && type == other.type && key.equals(other.key)
+				&& Objects.equals(value, other.value);
+	}
+
+	/**
+	 * Get key
+	 *
+	 * @return String key
+	 * @since 0.2
+	 */
+	@Nonnull
+	public String getKey() {
+		return key;
+	}
+
+	/**
+	 * Get the entry written, as {@link Keyspace#gets(String)} would have returned it right after the change
+	 *
+	 * @return {@link KeyValue} wrapped in {@link Optional}. {@link Optional#empty()} for deletes.
+	 * @since 0.2
+	 */
+	@Nonnull
+	public Optional<KeyValue> getKeyValue() {
+		return value == null ? Optional.empty() : Optional.of(KeyValue.create(key, value, version));
+	}
+
+	/**
+	 * Get type
+	 *
+	 * @return {@link Type} of change
+	 * @since 0.2
+	 */
+	@Nonnull
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * Get the value written
+	 *
+	 * @return String value wrapped in {@link Optional}. {@link Optional#empty()} for deletes.
+	 * @since 0.2
+	 */
+	@Nonnull
+	public Optional<String> getValue() {
+		return Optional.ofNullable(value);
+	}
+
+	/**
+	 * Get the version written, or the version of the entry deleted
+	 *
+	 * @return long version
+	 * @since 0.2
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * (31 * (31 * type.ordinal() + key.hashCode()) + Objects.hashCode(value)) + Long.hashCode(version);
+	}
+}
@@ -0,0 +1,50 @@
+package com.wolfninja.keystore.api;
+
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Source of {@link ChangeEvent changes} with demand-based backpressure, returned by {@link Keyspace#watch(Watch)}
+ * <p>
+ * Same contract as {@code java.util.concurrent.Flow.Publisher}, so either adapts to the other with a method
+ * reference. Each subscriber gets its own {@link ChangeSubscription} and buffer, sized and coalesced as configured by
+ * the {@link Watch}; a subscriber falling further behind than its buffer allows fails with an
+ * {@link IllegalStateException}.
+ *
+ * @since 0.2
+ */
+@FunctionalInterface
+public interface ChangePublisher {
+
+	/**
+	 * Merge the changes of several publishers into one, such as those of the shards of a keyspace
+	 * <p>
+	 * Each subscriber of the merged publisher subscribes to every source with unbounded demand, and buffers and
+	 * coalesces what they deliver as configured by the {@link Watch}. It completes once all sources have completed,
+	 * and fails as soon as one of them fails. Cancelling cancels the subscriptions to the sources.
+	 *
+	 * @param sources
+	 *            {@link List} of {@link ChangePublisher} to merge, not null and not containing null
+	 * @param watch
+	 *            {@link Watch} configuring the buffer of each subscriber, not null
+	 * @return new {@link ChangePublisher} instance, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	static ChangePublisher merge(@Nonnull final List<? extends ChangePublisher> sources, @Nonnull final Watch watch) {
+		return new MergedChangePublisher(sources, watch);
+	}
+
+	/**
+	 * Subscribe to the changes published from now on
+	 * <p>
+	 * {@link ChangeSubscriber#onSubscribe(ChangeSubscription)} is called before this method returns. Changes made
+	 * concurrently with subscribing may or may not be delivered.
+	 *
+	 * @param subscriber
+	 *            {@link ChangeSubscriber}, not null
+	 * @since 0.2
+	 */
+	void subscribe(@Nonnull ChangeSubscriber subscriber);
+}
@@ -0,0 +1,53 @@
+package com.wolfninja.keystore.api;
+
+import javax.annotation.Nonnull;
+
+import aQute.bnd.annotation.ConsumerType;
+
+/**
+ * Receiver of the changes published by a {@link ChangePublisher}
+ * <p>
+ * Same contract as {@code java.util.concurrent.Flow.Subscriber}: {@link #onSubscribe(ChangeSubscription)} is called
+ * first, then {@link #onNext(ChangeEvent)} at most as many times as requested through the subscription, and finally
+ * at most one of {@link #onError(Throwable)} and {@link #onComplete()}. Calls are made one at a time, but not
+ * necessarily from the same thread.
+ *
+ * @since 0.2
+ */
+@ConsumerType
+public interface ChangeSubscriber {
+
+	/**
+	 * Called when the publisher completes, such as when its keyspace is closed
+	 *
+	 * @since 0.2
+	 */
+	void onComplete();
+
+	/**
+	 * Called when the subscription fails, after which no more changes are delivered
+	 *
+	 * @param failure
+	 *            {@link Throwable} cause, not null
+	 * @since 0.2
+	 */
+	void onError(@Nonnull Throwable failure);
+
+	/**
+	 * Called for each change, in the order the changes of a key were made
+	 *
+	 * @param event
+	 *            {@link ChangeEvent}, not null
+	 * @since 0.2
+	 */
+	void onNext(@Nonnull ChangeEvent event);
+
+	/**
+	 * Called before any other method, with the subscription to request changes through
+	 *
+	 * @param subscription
+	 *            {@link ChangeSubscription}, not null
+	 * @since 0.2
+	 */
+	void onSubscribe(@Nonnull ChangeSubscription subscription);
+}
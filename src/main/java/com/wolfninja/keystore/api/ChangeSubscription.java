@@ -0,0 +1,35 @@
+package com.wolfninja.keystore.api;
+
+import aQute.bnd.annotation.ProviderType;
+
+/**
+ * Link between a {@link ChangePublisher} and one {@link ChangeSubscriber}, through which the subscriber signals
+ * demand
+ * <p>
+ * Same contract as {@code java.util.concurrent.Flow.Subscription}. Both methods are thread safe and may be called
+ * from within the subscriber's callbacks.
+ *
+ * @since 0.2
+ */
+@ProviderType
+public interface ChangeSubscription {
+
+	/**
+	 * Stop delivering changes and release the subscription; changes already buffered are discarded
+	 *
+	 * @since 0.2
+	 */
+	void cancel();
+
+	/**
+	 * Request up to {@code n} more changes
+	 * <p>
+	 * Demand adds up, {@link Long#MAX_VALUE} in total meaning unbounded. A non-positive {@code n} fails the
+	 * subscription with an {@link IllegalArgumentException}.
+	 *
+	 * @param n
+	 *            long number of changes, greater than zero
+	 * @since 0.2
+	 */
+	void request(long n);
+}
@@ -0,0 +1,166 @@
+package com.wolfninja.keystore.api;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * {@link KeyValueCodec} writing a varint version and varint length-prefixed UTF-8 key and value
+ */
+final class CompactKeyValueCodec implements KeyValueCodec {
+
+	static final CompactKeyValueCodec INSTANCE = new CompactKeyValueCodec();
+
+	private static final int MAX_VARINT_BYTES = 10;
+
+	private CompactKeyValueCodec() {
+	}
+
+	@Override
+	public KeyValue decode(final ByteBuffer source) {
+		Objects.requireNonNull(source, "Source must not be null");
+		final int start = source.position();
+		try {
+			final long zigzag = readVarint(source);
+			final long version = (zigzag >>> 1) ^ -(zigzag & 1L);
+			final String key = readString(source);
+			final String value = readString(source);
+			return KeyValue.create(key, value, version);
+		} catch (final IllegalArgumentException e) {
+			source.position(start);
+			throw e;
+		}
+	}
+
+	@Override
+	public void encode(final KeyValue keyValue, final ByteBuffer target) {
+		Objects.requireNonNull(keyValue, "Key value must not be null");
+		Objects.requireNonNull(target, "Target must not be null");
+		final long zigzag = zigzag(keyValue.getVersion());
+		final int keyLength = utf8Length(keyValue.getKey());
+		final int valueLength = utf8Length(keyValue.getValue());
+		if (target.remaining() < varintLength(zigzag) + varintLength(keyLength) + keyLength
+				+ varintLength(valueLength) + valueLength)
+			throw new BufferOverflowException();
+		writeVarint(target, zigzag);
+		writeVarint(target, keyLength);
+		writeUtf8(target, keyValue.getKey());
+		writeVarint(target, valueLength);
+		writeUtf8(target, keyValue.getValue());
+	}
+
+	@Override
+	public int encodedLength(final KeyValue keyValue) {
+		Objects.requireNonNull(keyValue, "Key value must not be null");
+		final long zigzag = zigzag(keyValue.getVersion());
+		final int keyLength = utf8Length(keyValue.getKey());
+		final int valueLength = utf8Length(keyValue.getValue());
+		return varintLength(zigzag) + varintLength(keyLength) + keyLength + varintLength(valueLength) + valueLength;
+	}
+
+	private static String readString(final ByteBuffer source) {
+		final long length = readVarint(source);
+		// A ten byte varint can set the sign bit
+		if (length < 0L)
+			throw new IllegalArgumentException("Malformed length");
+		if (length > source.remaining())
+			throw new IllegalArgumentException("Truncated entry");
+		final int bytes = (int) length;
+		final String string;
+		if (source.hasArray())
+			string = new String(source.array(), source.arrayOffset() + source.position(), bytes,
+					StandardCharsets.UTF_8);
+		else {
+			final byte[] copy = new byte[bytes];
+			source.duplicate().get(copy);
+			string = new String(copy, StandardCharsets.UTF_8);
+		}
+		source.position(source.position() + bytes);
+		return string;
+	}
+
+	private static long readVarint(final ByteBuffer source) {
+		long result = 0L;
+		for (int i = 0; i < MAX_VARINT_BYTES; i++) {
+			if (!source.hasRemaining())
+				throw new IllegalArgumentException("Truncated entry");
+			final byte b = source.get();
+			result |= (long) (b & 0x7F) << (7 * i);
+			if (b >= 0)
+				return result;
+		}
+		throw new IllegalArgumentException("Malformed varint");
+	}
+
+	/**
+	 * Count the UTF-8 bytes of a String without encoding it
+	 */
+	static int utf8Length(final String string) {
+		final int length = string.length();
+		int bytes = length;
+		for (int i = 0; i < length; i++) {
+			final char c = string.charAt(i);
+			if (c < 0x80)
+				continue;
+			if (c < 0x800)
+				bytes += 1;
+			else if (!Character.isSurrogate(c))
+				bytes += 2;
+			else if (Character.isHighSurrogate(c) && i + 1 < length
+					&& Character.isLowSurrogate(string.charAt(i + 1))) {
+				// Four bytes for the two chars of the pair
+				bytes += 2;
+				i++;
+			}
+			// An unpaired surrogate is a single '?'
+		}
+		return bytes;
+	}
+
+	private static int varintLength(final long value) {
+		// One byte per started group of seven bits, at least one
+		return Math.max(1, (Long.SIZE - Long.numberOfLeadingZeros(value) + 6) / 7);
+	}
+
+	static void writeUtf8(final ByteBuffer target, final String string) {
+		final int length = string.length();
+		for (int i = 0; i < length; i++) {
+			final char c = string.charAt(i);
+			if (c < 0x80)
+				target.put((byte) c);
+			else if (c < 0x800) {
+				target.put((byte) (0xC0 | c >>> 6));
+				target.put((byte) (0x80 | c & 0x3F));
+			} else if (!Character.isSurrogate(c)) {
+				target.put((byte) (0xE0 | c >>> 12));
+				target.put((byte) (0x80 | c >>> 6 & 0x3F));
+				target.put((byte) (0x80 | c & 0x3F));
+			} else if (Character.isHighSurrogate(c) && i + 1 < length
+					&& Character.isLowSurrogate(string.charAt(i + 1))) {
+				final int codePoint = Character.toCodePoint(c, string.charAt(++i));
+				target.put((byte) (0xF0 | codePoint >>> 18));
+				target.put((byte) (0x80 | codePoint >>> 12 & 0x3F));
+				target.put((byte) (0x80 | codePoint >>> 6 & 0x3F));
+				target.put((byte) (0x80 | codePoint & 0x3F));
+			} else
+				target.put((byte) '?');
+		}
+	}
+
+	private static void writeVarint(final ByteBuffer target, final long value) {
+		long remaining = value;
+		while ((remaining & ~0x7FL) != 0L) {
+			target.put((byte) (remaining & 0x7F | 0x80));
+			remaining >>>= 7;
+		}
+		target.put((byte) remaining);
+	}
+
+	/**
+	 * Map signed to unsigned so small negative versions stay short
+	 */
+	private static long zigzag(final long value) {
+		return value << 1 ^ value >> 63;
+	}
+}
@@ -0,0 +1,133 @@
+package com.wolfninja.keystore.api;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+import javax.annotation.Nonnull;
+
+/**
+ * {@link AsyncKeyspace} bridge which runs the blocking operations of a {@link Keyspace} on an {@link Executor}
+ * <p>
+ * This is the fallback used by {@link KeyValueStore#getAsyncKeyspace(String)} for adapters without a native
+ * asynchronous client. Use {@link AsyncExecutors} for ready-made executors suited to blocking I/O.
+ *
+ * @since 0.2
+ */
+public final class ExecutorAsyncKeyspace implements AsyncKeyspace {
+
+	/**
+	 * Create a new {@code ExecutorAsyncKeyspace} running operations against the given keyspace on the given executor
+	 *
+	 * @param keyspace
+	 *            {@link Keyspace} to delegate to, not null
+	 * @param executor
+	 *            {@link Executor} to run blocking calls on, not null
+	 * @return new {@link ExecutorAsyncKeyspace} instance, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	public static ExecutorAsyncKeyspace create(@Nonnull final Keyspace keyspace, @Nonnull final Executor executor) {
+		return new ExecutorAsyncKeyspace(keyspace, executor);
+	}
+
+	private final Keyspace keyspace;
+	private final Executor executor;
+
+	private ExecutorAsyncKeyspace(@Nonnull final Keyspace keyspace, @Nonnull final Executor executor) {
+		Objects.requireNonNull(keyspace, "Keyspace must not be null");
+		Objects.requireNonNull(executor, "Executor must not be null");
+		this.keyspace = keyspace;
+		this.executor = executor;
+	}
+
+	@Override
+	public CompletableFuture<Boolean> add(final String key, final String value) {
+		Objects.requireNonNull(key, "Key must not be null");
+		Objects.requireNonNull(value, "Value must not be null");
+		return supply(() -> keyspace.add(key, value));
+	}
+
+	@Override
+	public CompletableFuture<Boolean> checkAndSet(final String key, final String value, final long version) {
+		Objects.requireNonNull(key, "Key must not be null");
+		Objects.requireNonNull(value, "Value must not be null");
+		return supply(() -> keyspace.checkAndSet(key, value, version));
+	}
+
+	@Override
+	public CompletableFuture<Boolean> delete(final String key) {
+		Objects.requireNonNull(key, "Key must not be null");
+		return supply(() -> keyspace.delete(key));
+	}
+
+	@Override
+	public CompletableFuture<Integer> deleteAll(final Collection<String> keys) {
+		Objects.requireNonNull(keys, "Keys must not be null");
+		return supply(() -> keyspace.deleteAll(keys));
+	}
+
+	@Override
+	public CompletableFuture<Boolean> deletes(final String key, final long version) {
+		Objects.requireNonNull(key, "Key must not be null");
+		return supply(() -> keyspace.deletes(key, version));
+	}
+
+	@Override
+	public CompletableFuture<Boolean> exists(final String key) {
+		Objects.requireNonNull(key, "Key must not be null");
+		return supply(() -> keyspace.exists(key));
+	}
+
+	@Override
+	public CompletableFuture<Optional<String>> get(final String key) {
+		Objects.requireNonNull(key, "Key must not be null");
+		return supply(() -> keyspace.get(key));
+	}
+
+	@Override
+	public CompletableFuture<Map<String, String>> getAll(final Collection<String> keys) {
+		Objects.requireNonNull(keys, "Keys must not be null");
+		return supply(() -> keyspace.getAll(keys));
+	}
+
+	@Override
+	public CompletableFuture<Optional<KeyValue>> gets(final String key) {
+		Objects.requireNonNull(key, "Key must not be null");
+		return supply(() -> keyspace.gets(key));
+	}
+
+	@Override
+	public CompletableFuture<Map<String, KeyValue>> getsAll(final Collection<String> keys) {
+		Objects.requireNonNull(keys, "Keys must not be null");
+		return supply(() -> keyspace.getsAll(keys));
+	}
+
+	@Override
+	public CompletableFuture<Boolean> replace(final String key, final String value) {
+		Objects.requireNonNull(key, "Key must not be null");
+		Objects.requireNonNull(value, "Value must not be null");
+		return supply(() -> keyspace.replace(key, value));
+	}
+
+	@Override
+	public CompletableFuture<Boolean> set(final String key, final String value) {
+		Objects.requireNonNull(key, "Key must not be null");
+		Objects.requireNonNull(value, "Value must not be null");
+		return supply(() -> keyspace.set(key, value));
+	}
+
+	@Override
+	public CompletableFuture<Boolean> setAll(final Map<String, String> values) {
+		Objects.requireNonNull(values, "Values must not be null");
+		return supply(() -> keyspace.setAll(values));
+	}
+
+	private <T> CompletableFuture<T> supply(final Supplier<T> operation) {
+		return CompletableFuture.supplyAsync(operation, executor);
+	}
+}
@@ -0,0 +1,45 @@
+package com.wolfninja.keystore.api;
+
+import java.util.Objects;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Hash functions for placing keys, such as on a hash ring or in a Bloom filter
+ *
+ * @since 0.2
+ */
+public final class KeyHashes {
+
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private KeyHashes() {
+	}
+
+	/**
+	 * 64 bit FNV-1a hash of the characters, finished with the MurmurHash3 mix
+	 * <p>
+	 * The mix spreads nearby keys over the whole range, so both halves of the hash are usable on their own. The hash
+	 * only depends on the characters, so it is the same in every process and release.
+	 *
+	 * @param key
+	 *            String key, not null
+	 * @return long hash of the key
+	 * @since 0.2
+	 */
+	public static long hash(@Nonnull final String key) {
+		Objects.requireNonNull(key, "Key must not be null");
+		long hash = FNV_OFFSET;
+		for (int i = 0; i < key.length(); i++) {
+			hash ^= key.charAt(i);
+			hash *= FNV_PRIME;
+		}
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+}
@@ -68,8 +68,7 @@ public class KeyValue implements Serializable {
 		if (!(obj instanceof KeyValue))
 			return false;
 		final KeyValue other = (KeyValue) obj;
-		return Objects.equals(key, other.key) && Objects.equals(value, other.value)
-				&& Objects.equals(version, other.version);
+		return version == other.version && Objects.equals(key, other.key) && Objects.equals(value, other.value);
 	}
 
 	/**
@@ -104,7 +103,20 @@ public class KeyValue implements Serializable {
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(key, value, version);
+		// Same result as Objects.hash(key, value, version), without boxing the version into a varargs array
+		int result = 31 + Objects.hashCode(key);
+		result = 31 * result + Objects.hashCode(value);
+		return 31 * result + Long.hashCode(version);
 	}
 
+	/**
+	 * Serialize as the {@link KeyValueCodec#compact()} encoding of key, value and version instead of the default
+	 * form, for subclasses too; deserializing yields a plain {@link KeyValue}
+	 * 
+	 * @return Object serialized in place of this instance
+	 * @since 0.2
+	 */
+	protected Object writeReplace() {
+		return new SerializedKeyValue(this);
+	}
 }
@@ -0,0 +1,73 @@
+package com.wolfninja.keystore.api;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+import javax.annotation.Nonnull;
+
+import aQute.bnd.annotation.ConsumerType;
+
+/**
+ * Binary encoding of {@link KeyValue} entries into caller-supplied buffers
+ * <p>
+ * Adapters and decorators shipping or persisting entries use a codec instead of Java serialization, sizing the
+ * buffer with {@link #encodedLength(KeyValue)} and reusing it across entries. {@link #compact()} is the built-in
+ * format, which {@link KeyValue} also uses for its serialized form.
+ *
+ * @since 0.2
+ */
+@ConsumerType
+public interface KeyValueCodec {
+
+	/**
+	 * Get the built-in compact codec
+	 * <p>
+	 * An entry is encoded as its version, zigzag and varint encoded, followed by the key and the value, each as a
+	 * varint byte length and UTF-8 bytes. Unpaired surrogates are encoded as {@code '?'}, as by
+	 * {@link String#getBytes(java.nio.charset.Charset)}. Encoding allocates nothing; decoding allocates only the two
+	 * Strings, plus a copy of their bytes when reading from a direct buffer.
+	 *
+	 * @return shared, thread safe {@link KeyValueCodec} instance, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	static KeyValueCodec compact() {
+		return CompactKeyValueCodec.INSTANCE;
+	}
+
+	/**
+	 * Read an entry at the position of a buffer, advancing the position past it
+	 *
+	 * @param source
+	 *            {@link ByteBuffer} to read from, not null
+	 * @return decoded {@link KeyValue}, not null
+	 * @throws IllegalArgumentException
+	 *             if the bytes are not a valid or complete entry
+	 * @since 0.2
+	 */
+	@Nonnull
+	KeyValue decode(@Nonnull ByteBuffer source);
+
+	/**
+	 * Write an entry at the position of a buffer, advancing the position past it
+	 *
+	 * @param keyValue
+	 *            {@link KeyValue} to write, not null
+	 * @param target
+	 *            {@link ByteBuffer} to write to, not null
+	 * @throws BufferOverflowException
+	 *             if fewer than {@link #encodedLength(KeyValue)} bytes remain, in which case nothing is written
+	 * @since 0.2
+	 */
+	void encode(@Nonnull KeyValue keyValue, @Nonnull ByteBuffer target);
+
+	/**
+	 * Get the number of bytes {@link #encode(KeyValue, ByteBuffer)} writes for an entry
+	 *
+	 * @param keyValue
+	 *            {@link KeyValue} to measure, not null
+	 * @return int number of bytes
+	 * @since 0.2
+	 */
+	int encodedLength(@Nonnull KeyValue keyValue);
+}
@@ -0,0 +1,32 @@
+package com.wolfninja.keystore.api;
+
+import java.util.Collection;
+
+import javax.annotation.Nonnull;
+
+import aQute.bnd.annotation.ConsumerType;
+
+/**
+ * Receiver of entries read by {@link Keyspace#gets(String, KeyValueConsumer)} and
+ * {@link Keyspace#getsAll(Collection, KeyValueConsumer)}, taking the key, value and version apart so no
+ * {@link KeyValue} needs to be allocated
+ *
+ * @since 0.2
+ */
+@ConsumerType
+@FunctionalInterface
+public interface KeyValueConsumer {
+
+	/**
+	 * Receive an entry
+	 *
+	 * @param key
+	 *            String key, not null
+	 * @param value
+	 *            String value, not null
+	 * @param version
+	 *            long version
+	 * @since 0.2
+	 */
+	void accept(@Nonnull String key, @Nonnull String value, long version);
+}
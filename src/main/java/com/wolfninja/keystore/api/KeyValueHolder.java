@@ -0,0 +1,93 @@
+package com.wolfninja.keystore.api;
+
+import java.util.Objects;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Mutable, reusable {@link KeyValueConsumer} keeping the last entry it received
+ * <p>
+ * Read into one holder over and over to read entries without allocating, for example in a loop over many keys:
+ * {@code if (keyspace.gets(key, holder)) use(holder.getValue(), holder.getVersion());}. Not thread safe, so use one
+ * holder per thread.
+ *
+ * @since 0.2
+ */
+public final class KeyValueHolder implements KeyValueConsumer {
+	private String key;
+	private String value;
+	private long version;
+
+	@Override
+	public void accept(final String key, final String value, final long version) {
+		this.key = Objects.requireNonNull(key, "Key must not be null");
+		this.value = Objects.requireNonNull(value, "Value must not be null");
+		this.version = version;
+	}
+
+	/**
+	 * Forget the held entry
+	 *
+	 * @since 0.2
+	 */
+	public void clear() {
+		key = null;
+		value = null;
+		version = 0L;
+	}
+
+	/**
+	 * Get key of the held entry
+	 *
+	 * @return String key, null if no entry is held
+	 * @since 0.2
+	 */
+	public String getKey() {
+		return key;
+	}
+
+	/**
+	 * Get value of the held entry
+	 *
+	 * @return String value, null if no entry is held
+	 * @since 0.2
+	 */
+	public String getValue() {
+		return value;
+	}
+
+	/**
+	 * Get version of the held entry
+	 *
+	 * @return long version, zero if no entry is held
+	 * @since 0.2
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Check if an entry is held
+	 *
+	 * @return true if an entry was received since creation or the last {@link #clear()}
+	 * @since 0.2
+	 */
+	public boolean isPresent() {
+		return key != null;
+	}
+
+	/**
+	 * Copy the held entry to an immutable {@link KeyValue}
+	 *
+	 * @return new {@link KeyValue} instance, not null
+	 * @throws IllegalStateException
+	 *             if no entry is held
+	 * @since 0.2
+	 */
+	@Nonnull
+	public KeyValue toKeyValue() {
+		if (key == null)
+			throw new IllegalStateException("No entry held");
+		return KeyValue.create(key, value, version);
+	}
+}
@@ -1,13 +1,26 @@
 package com.wolfninja.keystore.api;
 
+import java.util.Collection;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
 
 import javax.annotation.Nonnull;
 
 /**
+ * Entry point to the keyspaces of a {@link KeyValueStoreAdapter}
+ * <p>
+ * Keyspaces are created by the adapter the first time they are asked for and kept, so every later call returns the
+ * same instance from a concurrent map without locking or calling the adapter. {@link #warmUp(Collection)} creates
+ * keyspaces ahead of their first use. {@link #close()} closes the keyspaces created so far and then the adapter.
+ * 
  * @since 0.1
  */
-public final class KeyValueStore {
+public final class KeyValueStore implements AutoCloseable {
 
 	/**
 	 * Create a new instance of {@code KeyValueStore} for the given {@code KeyValueStoreAdapter}
@@ -19,28 +32,220 @@ public final class KeyValueStore {
 	 */
 	@Nonnull
 	public static KeyValueStore create(@Nonnull final KeyValueStoreAdapter adapter) {
-		Objects.requireNonNull("Adapter must not be null");
-		return new KeyValueStore(adapter);
+		return create(adapter, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Create a new instance of {@code KeyValueStore} for the given {@code KeyValueStoreAdapter}, running blocking
+	 * operations of asynchronous keyspaces on the given executor
+	 * <p>
+	 * The executor is only used for adapters without native asynchronous support, see
+	 * {@link KeyValueStoreAdapter#getAsyncKeyspace(String)}. Backends doing blocking I/O should be given a dedicated
+	 * executor such as {@link AsyncExecutors#virtualThreadPerTask()} rather than the shared common pool.
+	 * 
+	 * @param adapter
+	 *            {@link KeyValueStoreAdapter} adapter instance, not null
+	 * @param asyncExecutor
+	 *            {@link Executor} for asynchronous keyspace operations, not null
+	 * @return {@link KeyValueStore} backed by the provided adapter, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	public static KeyValueStore create(@Nonnull final KeyValueStoreAdapter adapter,
+			@Nonnull final Executor asyncExecutor) {
+		return new KeyValueStore(adapter, asyncExecutor);
 	}
 
 	private final KeyValueStoreAdapter adapter;
+	private final Executor asyncExecutor;
+	private final ConcurrentHashMap<String, Keyspace> keyspaces = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, AsyncKeyspace> asyncKeyspaces = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, BinaryKeyspace> binaryKeyspaces = new ConcurrentHashMap<>();
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	private volatile boolean closed;
 
-	private KeyValueStore(@Nonnull final KeyValueStoreAdapter adapter) {
+	private KeyValueStore(@Nonnull final KeyValueStoreAdapter adapter, @Nonnull final Executor asyncExecutor) {
 		Objects.requireNonNull(adapter, "Adapter must not be null");
+		Objects.requireNonNull(asyncExecutor, "Executor must not be null");
 		this.adapter = adapter;
+		this.asyncExecutor = asyncExecutor;
+	}
+
+	/**
+	 * Close all keyspaces created by this store, then the adapter
+	 * <p>
+	 * Keyspaces not created before cannot be created afterwards; a keyspace created while this call is running is
+	 * either closed by it or not created at all. Every keyspace and the adapter are closed even if one of them fails,
+	 * in which case the first failure is thrown with the others suppressed. Closing again does nothing.
+	 * 
+	 * @since 0.2
+	 */
+	@Override
+	public void close() {
+		lock.writeLock().lock();
+		try {
+			if (closed)
+				return;
+			closed = true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+		RuntimeException failure = null;
+		// Views first, since the fallback async and binary keyspaces are built over the String keyspaces
+		for (final AsyncKeyspace keyspace : asyncKeyspaces.values())
+			failure = run(keyspace::close, failure);
+		for (final BinaryKeyspace keyspace : binaryKeyspaces.values())
+			failure = run(keyspace::close, failure);
+		for (final Keyspace keyspace : keyspaces.values())
+			failure = run(keyspace::close, failure);
+		failure = run(adapter::close, failure);
+		if (failure != null)
+			throw failure;
+	}
+
+	/**
+	 * Flush all keyspaces created by this store, then the adapter
+	 * <p>
+	 * Every keyspace and the adapter are flushed even if one of them fails, in which case the first failure is thrown
+	 * with the others suppressed.
+	 * 
+	 * @since 0.2
+	 */
+	public void flush() {
+		RuntimeException failure = null;
+		for (final Keyspace keyspace : keyspaces.values())
+			failure = run(keyspace::flush, failure);
+		failure = run(adapter::flush, failure);
+		if (failure != null)
+			throw failure;
+	}
+
+	/**
+	 * Get the given {@code AsyncKeyspace} by name
+	 * <p>
+	 * Uses the adapter's native asynchronous keyspace when it has one, otherwise runs the blocking keyspace on this
+	 * store's executor
+	 * 
+	 * @param keyspaceName
+	 *            String name of keyspace, not null
+	 * @return {@link AsyncKeyspace} instance, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	public AsyncKeyspace getAsyncKeyspace(@Nonnull final String keyspaceName) {
+		return handle(asyncKeyspaces, keyspaceName, name -> adapter.getAsyncKeyspace(name)
+				.orElseGet(() -> ExecutorAsyncKeyspace.create(getKeyspace(name), asyncExecutor)));
+	}
+
+	/**
+	 * Get the given {@code BinaryKeyspace} by name
+	 * <p>
+	 * Uses the adapter's native binary keyspace when it has one, otherwise stores binary values through the String
+	 * keyspace of the same name
+	 * 
+	 * @param keyspaceName
+	 *            String name of keyspace, not null
+	 * @return {@link BinaryKeyspace} instance, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	public BinaryKeyspace getBinaryKeyspace(@Nonnull final String keyspaceName) {
+		return handle(binaryKeyspaces, keyspaceName, name -> adapter.getBinaryKeyspace(name)
+				.orElseGet(() -> StringBackedBinaryKeyspace.create(getKeyspace(name))));
 	}
 
 	/**
 	 * Get the given {@code Keyspace} by name
+	 * <p>
+	 * The keyspace is created by the adapter on the first call for its name; later calls return the same instance
 	 * 
 	 * @param keyspaceName
 	 *            String name of keyspace, not null
 	 * @return {@link Keyspace} instance, not null
+	 * @throws IllegalStateException
+	 *             if the keyspace was not created before this store was closed
 	 * @since 0.1
 	 */
 	@Nonnull
 	public Keyspace getKeyspace(@Nonnull final String keyspaceName) {
+		return handle(keyspaces, keyspaceName, adapter::getKeyspace);
+	}
+
+	/**
+	 * Get the scan capabilities of the adapter's keyspaces
+	 * 
+	 * @return {@link Set} of supported {@link ScanFeature}, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	public Set<ScanFeature> getScanFeatures() {
+		return adapter.getScanFeatures();
+	}
+
+	/**
+	 * Get a typed view of the given keyspace, storing values through the given codec
+	 * <p>
+	 * The view is a thin layer over {@link #getBinaryKeyspace(String)} and is created on every call; views of the same
+	 * keyspace with different codecs share its entries.
+	 * 
+	 * @param keyspaceName
+	 *            String name of keyspace, not null
+	 * @param codec
+	 *            {@link ValueCodec} to encode and decode values, not null
+	 * @param <T>
+	 *            value type
+	 * @return {@link TypedKeyspace} instance, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	public <T> TypedKeyspace<T> getTypedKeyspace(@Nonnull final String keyspaceName,
+			@Nonnull final ValueCodec<T> codec) {
+		Objects.requireNonNull(codec, "Codec must not be null");
+		return TypedKeyspace.create(getBinaryKeyspace(keyspaceName), codec);
+	}
+
+	/**
+	 * Create the given keyspaces now rather than on first use
+	 * <p>
+	 * Useful at startup for adapters doing expensive work when creating a keyspace, such as opening connections or
+	 * creating tables, so the first requests do not pay for it.
+	 * 
+	 * @param keyspaceNames
+	 *            {@link Collection} of String keyspace names, not null and not containing null
+	 * @since 0.2
+	 */
+	public void warmUp(@Nonnull final Collection<String> keyspaceNames) {
+		Objects.requireNonNull(keyspaceNames, "Keyspace names must not be null");
+		keyspaceNames.forEach(this::getKeyspace);
+	}
+
+	private <K> K handle(final ConcurrentHashMap<String, K> handles, final String keyspaceName,
+			final Function<String, K> factory) {
 		Objects.requireNonNull(keyspaceName, "Keyspace name must not be null");
-		return adapter.getKeyspace(keyspaceName);
+		// Plain get first, since computeIfAbsent locks the bin even when the key is present
+		final K existing = handles.get(keyspaceName);
+		if (existing != null)
+			return existing;
+		// Created under the read lock so close() either sees the new handle or this call sees the store closed
+		lock.readLock().lock();
+		try {
+			if (closed)
+				throw new IllegalStateException("Store is closed");
+			return handles.computeIfAbsent(keyspaceName, factory);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private static RuntimeException run(final Runnable action, final RuntimeException failure) {
+		try {
+			action.run();
+			return failure;
+		} catch (final RuntimeException e) {
+			if (failure == null)
+				return e;
+			failure.addSuppressed(e);
+			return failure;
+		}
 	}
 }
@@ -1,5 +1,9 @@
 package com.wolfninja.keystore.api;
 
+import java.util.Collections;
+import java.util.Optional;
+import java.util.Set;
+
 import javax.annotation.Nonnull;
 
 import aQute.bnd.annotation.ProviderType;
@@ -8,7 +12,29 @@ import aQute.bnd.annotation.ProviderType;
  * @since 0.1
  */
 @ProviderType
-public interface KeyValueStoreAdapter {
+public interface KeyValueStoreAdapter extends AutoCloseable {
+
+	/**
+	 * Release the resources held by this adapter, such as connections, buffers and threads
+	 * <p>
+	 * Called by {@link KeyValueStore#close()} after closing its keyspaces. Keyspaces of this adapter may reject
+	 * operations afterwards. The default does nothing.
+	 * 
+	 * @since 0.2
+	 */
+	@Override
+	default void close() {
+	}
+
+	/**
+	 * Write changes buffered by this adapter through to the backend
+	 * <p>
+	 * Called by {@link KeyValueStore#flush()} after flushing its keyspaces. The default does nothing.
+	 * 
+	 * @since 0.2
+	 */
+	default void flush() {
+	}
 
 	/**
 	 * Get a keyspace instance for the given keyspace name
@@ -21,4 +47,54 @@ public interface KeyValueStoreAdapter {
 	@Nonnull
 	Keyspace getKeyspace(@Nonnull String keyspaceName);
 
+	/**
+	 * Get a native asynchronous keyspace instance for the given keyspace name
+	 * <p>
+	 * Adapters backed by a client with its own non-blocking API should override this to avoid handing every call to
+	 * another thread. The default returns {@link Optional#empty()}, in which case {@link KeyValueStore} runs the
+	 * blocking {@link #getKeyspace(String)} instance on its executor.
+	 * 
+	 * @param keyspaceName
+	 *            String keyspace name, not null
+	 * @return {@link AsyncKeyspace} instance for the given namespace wrapped in {@link Optional}, or
+	 *         {@link Optional#empty()} if the adapter has no native asynchronous support
+	 * @since 0.2
+	 */
+	@Nonnull
+	default Optional<AsyncKeyspace> getAsyncKeyspace(@Nonnull final String keyspaceName) {
+		return Optional.empty();
+	}
+
+	/**
+	 * Get a native binary keyspace instance for the given keyspace name
+	 * <p>
+	 * Adapters whose backend stores bytes should override this so binary values pass through without being encoded
+	 * as Strings. The default returns {@link Optional#empty()}, in which case {@link KeyValueStore} stores binary
+	 * values through {@link #getKeyspace(String)} using {@link StringBackedBinaryKeyspace}.
+	 * 
+	 * @param keyspaceName
+	 *            String keyspace name, not null
+	 * @return {@link BinaryKeyspace} instance for the given namespace wrapped in {@link Optional}, or
+	 *         {@link Optional#empty()} if the adapter has no native binary support
+	 * @since 0.2
+	 */
+	@Nonnull
+	default Optional<BinaryKeyspace> getBinaryKeyspace(@Nonnull final String keyspaceName) {
+		return Optional.empty();
+	}
+
+	/**
+	 * Get the scan capabilities of this adapter's keyspaces
+	 * <p>
+	 * Adapters overriding {@link Keyspace#scan(String)} should advertise at least {@link ScanFeature#SCAN}. The
+	 * default returns an empty set, meaning keyspaces cannot be enumerated.
+	 * 
+	 * @return {@link Set} of supported {@link ScanFeature}, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	default Set<ScanFeature> getScanFeatures() {
+		return Collections.emptySet();
+	}
+
 }
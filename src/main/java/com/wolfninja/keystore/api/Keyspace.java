@@ -1,6 +1,15 @@
 package com.wolfninja.keystore.api;
 
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 import javax.annotation.Nonnull;
 
@@ -11,7 +20,14 @@ import aQute.bnd.annotation.ProviderType;
  *
  */
 @ProviderType
-public interface Keyspace {
+public interface Keyspace extends AutoCloseable {
+	/**
+	 * Remaining time to live returned by {@link #ttl(String)} for a key that never expires
+	 *
+	 * @since 0.2
+	 */
+	public static final Duration NO_EXPIRY = ChronoUnit.FOREVER.getDuration();
+
 	/**
 	 * Add value("Store data only if key does NOT exist")
 	 * <p>
@@ -27,6 +43,72 @@ public interface Keyspace {
 	@Nonnull
 	public boolean add(@Nonnull final String key, @Nonnull final String value);
 
+	/**
+	 * Add value expiring after a time to live ("Store data only if key does NOT exist")
+	 * <p>
+	 * Store value only if key has no value, or only an expired one. Entries written by this and the other time to
+	 * live variants are removed once their time to live has passed; writes without a time to live store values that
+	 * never expire. Default implementation throws {@link UnsupportedOperationException}; adapters map this to the
+	 * native expiry of their backend
+	 * 
+	 * @param key
+	 *            String key, not null
+	 * @param value
+	 *            String value, not null
+	 * @param ttl
+	 *            long time to live, greater than zero
+	 * @param unit
+	 *            {@link TimeUnit} of the time to live, not null
+	 * @return true if value added, false otherwise
+	 * @throws UnsupportedOperationException
+	 *             if the keyspace does not support expiry
+	 * @since 0.2
+	 */
+	@Nonnull
+	public default boolean add(@Nonnull final String key, @Nonnull final String value, final long ttl,
+			@Nonnull final TimeUnit unit) {
+		throw new UnsupportedOperationException("Keyspace does not support expiry");
+	}
+
+	/**
+	 * Add to counter ("Atomically add to the number stored at key")
+	 * <p>
+	 * The value is stored as a decimal String, so it can be read with {@link #get(String)} like any other value; a key
+	 * without a value counts as zero. Every update is a write and so changes the version. Default implementation
+	 * retries {@link #gets(String)} and {@link #checkAndSet(String, String, long)} until it wins; adapters should
+	 * override this with a native counter where the backend has one
+	 * 
+	 * @param key
+	 *            String key, not null
+	 * @param delta
+	 *            long amount to add, may be negative
+	 * @return long value after adding
+	 * @throws IllegalStateException
+	 *             if the current value is not a decimal long
+	 * @throws ArithmeticException
+	 *             if the result overflows a long
+	 * @since 0.2
+	 */
+	public default long addAndGet(@Nonnull final String key, final long delta) {
+		Objects.requireNonNull(key, "Key must not be null");
+		while (true) {
+			final Optional<KeyValue> current = gets(key);
+			if (!current.isPresent()) {
+				if (add(key, Long.toString(delta)))
+					return delta;
+				continue;
+			}
+			final long value;
+			try {
+				value = Math.addExact(Long.parseLong(current.get().getValue()), delta);
+			} catch (final NumberFormatException e) {
+				throw new IllegalStateException("Value is not an integer", e);
+			}
+			if (checkAndSet(key, Long.toString(value), current.get().getVersion()))
+				return value;
+		}
+	}
+
 	/**
 	 * Check and Set value( "Store data only if nobody else has changed it since I last fetched it")
 	 * <p>
@@ -44,6 +126,64 @@ public interface Keyspace {
 	@Nonnull
 	public boolean checkAndSet(@Nonnull final String key, @Nonnull final String value, final long version);
 
+	/**
+	 * Check and Set value expiring after a time to live
+	 * <p>
+	 * Store value only if provided version matches the stored version, see {@link #add(String, String, long, TimeUnit)}
+	 * for expiry
+	 * 
+	 * @param key
+	 *            String key, not null
+	 * @param value
+	 *            String value, not null
+	 * @param version
+	 *            long version of value
+	 * @param ttl
+	 *            long time to live, greater than zero
+	 * @param unit
+	 *            {@link TimeUnit} of the time to live, not null
+	 * @return true if value set, false otherwise
+	 * @throws UnsupportedOperationException
+	 *             if the keyspace does not support expiry
+	 * @since 0.2
+	 */
+	@Nonnull
+	public default boolean checkAndSet(@Nonnull final String key, @Nonnull final String value, final long version,
+			final long ttl, @Nonnull final TimeUnit unit) {
+		throw new UnsupportedOperationException("Keyspace does not support expiry");
+	}
+
+	/**
+	 * Flush and release the resources held by this keyspace
+	 * <p>
+	 * The default does nothing. Keyspaces obtained from a {@link KeyValueStore} are closed by
+	 * {@link KeyValueStore#close()}; resources shared by all keyspaces of an adapter are released by
+	 * {@link KeyValueStoreAdapter#close()}. Decorators close the keyspace they decorate.
+	 * 
+	 * @since 0.2
+	 */
+	@Override
+	public default void close() {
+	}
+
+	/**
+	 * Decrement counter ("Atomically subtract one from the number stored at key")
+	 * <p>
+	 * Same as {@link #addAndGet(String, long)} with a delta of minus one
+	 * 
+	 * @param key
+	 *            String key, not null
+	 * @return long value after decrementing
+	 * @throws IllegalStateException
+	 *             if the current value is not a decimal long
+	 * @throws ArithmeticException
+	 *             if the result overflows a long
+	 * @since 0.2
+	 */
+	public default long decrement(@Nonnull final String key) {
+		return addAndGet(key, -1L);
+	}
+
 	/**
 	 * Delete value for a given key
 	 * 
@@ -68,6 +208,27 @@ public interface Keyspace {
 	@Nonnull
 	public boolean deletes(@Nonnull final String key, final long version);
 
+	/**
+	 * Delete values for multiple keys
+	 * <p>
+	 * Default implementation calls {@link #delete(String)} for each key; adapters should override this with a native
+	 * multi-key delete where the backend supports one
+	 * 
+	 * @param keys
+	 *            {@link Collection} of String keys, not null and not containing null
+	 * @return number of keys deleted
+	 * @since 0.2
+	 */
+	@Nonnull
+	public default int deleteAll(@Nonnull final Collection<String> keys) {
+		Objects.requireNonNull(keys, "Keys must not be null");
+		int deleted = 0;
+		for (final String key : keys)
+			if (delete(key))
+				deleted++;
+		return deleted;
+	}
+
 	/**
 	 * Check if key exists
 	 * 
@@ -79,6 +240,17 @@ public interface Keyspace {
 	@Nonnull
 	public boolean exists(@Nonnull final String key);
 
+	/**
+	 * Write changes buffered by this keyspace through to the backend
+	 * <p>
+	 * The default does nothing, for keyspaces writing every change as it is made. Decorators flush the keyspace they
+	 * decorate.
+	 * 
+	 * @since 0.2
+	 */
+	public default void flush() {
+	}
+
 	/**
 	 * Get value for a key
 	 * 
@@ -90,6 +262,26 @@ public interface Keyspace {
 	@Nonnull
 	public Optional<String> get(@Nonnull final String key);
 
+	/**
+	 * Get values for multiple keys
+	 * <p>
+	 * Default implementation calls {@link #get(String)} for each key; adapters should override this with a native
+	 * multi-key fetch where the backend supports one
+	 * 
+	 * @param keys
+	 *            {@link Collection} of String keys, not null and not containing null
+	 * @return {@link Map} of key to value, containing only the keys that have a value, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	public default Map<String, String> getAll(@Nonnull final Collection<String> keys) {
+		Objects.requireNonNull(keys, "Keys must not be null");
+		final Map<String, String> values = new HashMap<>();
+		for (final String key : keys)
+			get(key).ifPresent(value -> values.put(key, value));
+		return values;
+	}
+
 	/**
 	 * Get value for a key with version info
 	 * 
@@ -101,6 +293,86 @@ public interface Keyspace {
 	@Nonnull
 	public Optional<KeyValue> gets(@Nonnull final String key);
 
+	/**
+	 * Get value for a key with version info, handing it to a consumer instead of returning it
+	 * <p>
+	 * Default implementation calls {@link #gets(String)}; adapters should override this to pass their stored entry
+	 * apart, so that reading allocates nothing
+	 * 
+	 * @param key
+	 *            String key, not null
+	 * @param consumer
+	 *            {@link KeyValueConsumer} called once with the entry if there is one, not null
+	 * @return true if the key has a value, false otherwise
+	 * @since 0.2
+	 */
+	public default boolean gets(@Nonnull final String key, @Nonnull final KeyValueConsumer consumer) {
+		Objects.requireNonNull(consumer, "Consumer must not be null");
+		final Optional<KeyValue> current = gets(key);
+		current.ifPresent(keyValue -> consumer.accept(keyValue.getKey(), keyValue.getValue(), keyValue.getVersion()));
+		return current.isPresent();
+	}
+
+	/**
+	 * Get values with version info for multiple keys
+	 * <p>
+	 * Default implementation calls {@link #gets(String)} for each key; adapters should override this with a native
+	 * multi-key fetch where the backend supports one
+	 * 
+	 * @param keys
+	 *            {@link Collection} of String keys, not null and not containing null
+	 * @return {@link Map} of key to {@link KeyValue}, containing only the keys that have a value, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	public default Map<String, KeyValue> getsAll(@Nonnull final Collection<String> keys) {
+		Objects.requireNonNull(keys, "Keys must not be null");
+		final Map<String, KeyValue> values = new HashMap<>();
+		for (final String key : keys)
+			gets(key).ifPresent(value -> values.put(key, value));
+		return values;
+	}
+
+	/**
+	 * Get values with version info for multiple keys, handing them to a consumer instead of collecting them
+	 * <p>
+	 * Default implementation calls {@link #gets(String, KeyValueConsumer)} for each key
+	 * 
+	 * @param keys
+	 *            {@link Collection} of String keys, not null and not containing null
+	 * @param consumer
+	 *            {@link KeyValueConsumer} called once for each key that has a value, not null
+	 * @return int number of keys that have a value
+	 * @since 0.2
+	 */
+	public default int getsAll(@Nonnull final Collection<String> keys, @Nonnull final KeyValueConsumer consumer) {
+		Objects.requireNonNull(keys, "Keys must not be null");
+		Objects.requireNonNull(consumer, "Consumer must not be null");
+		int found = 0;
+		for (final String key : keys)
+			if (gets(key, consumer))
+				found++;
+		return found;
+	}
+
+	/**
+	 * Increment counter ("Atomically add one to the number stored at key")
+	 * <p>
+	 * Same as {@link #addAndGet(String, long)} with a delta of one
+	 * 
+	 * @param key
+	 *            String key, not null
+	 * @return long value after incrementing
+	 * @throws IllegalStateException
+	 *             if the current value is not a decimal long
+	 * @throws ArithmeticException
+	 *             if the result overflows a long
+	 * @since 0.2
+	 */
+	public default long increment(@Nonnull final String key) {
+		return addAndGet(key, 1L);
+	}
+
 	/**
 	 * Replace value("Store data only if key exists already")
 	 * <p>
@@ -116,6 +388,54 @@ public interface Keyspace {
 	@Nonnull
 	public boolean replace(@Nonnull final String key, @Nonnull final String value);
 
+	/**
+	 * Replace value expiring after a time to live ("Store data only if key exists already")
+	 * <p>
+	 * Store value only if key exists, see {@link #add(String, String, long, TimeUnit)} for expiry
+	 * 
+	 * @param key
+	 *            String key, not null
+	 * @param value
+	 *            String value, not null
+	 * @param ttl
+	 *            long time to live, greater than zero
+	 * @param unit
+	 *            {@link TimeUnit} of the time to live, not null
+	 * @return true if value replaced, false otherwise
+	 * @throws UnsupportedOperationException
+	 *             if the keyspace does not support expiry
+	 * @since 0.2
+	 */
+	@Nonnull
+	public default boolean replace(@Nonnull final String key, @Nonnull final String value, final long ttl,
+			@Nonnull final TimeUnit unit) {
+		throw new UnsupportedOperationException("Keyspace does not support expiry");
+	}
+
+	/**
+	 * Scan the entries whose key starts with a prefix
+	 * <p>
+	 * The returned stream is lazy: entries are fetched from the backend in pages as it is consumed, and a
+	 * {@link Stream#parallel() parallel} stream scans the partitions of the backend concurrently. The scan is weakly
+	 * consistent: every entry present for the whole scan is returned, entries written or deleted during the scan may
+	 * or may not be, and some backends may return an entry twice if they reorganize while scanning. Check
+	 * {@link KeyValueStoreAdapter#getScanFeatures()} for whether scans are supported and ordered. Default
+	 * implementation throws {@link UnsupportedOperationException}; adapters implement it with a native scan, see
+	 * {@link ScanSpliterator}
+	 * 
+	 * @param prefix
+	 *            String key prefix, not null, empty for all keys
+	 * @return {@link Stream} of matching {@link KeyValue}, not null
+	 * @throws UnsupportedOperationException
+	 *             if the keyspace cannot be enumerated
+	 * @since 0.2
+	 */
+	@Nonnull
+	public default Stream<KeyValue> scan(@Nonnull final String prefix) {
+		Objects.requireNonNull(prefix, "Prefix must not be null");
+		throw new UnsupportedOperationException("Keyspace does not support scans");
+	}
+
 	/**
 	 * Set value ("Store the data")
 	 * <p>
@@ -131,4 +451,118 @@ public interface Keyspace {
 	@Nonnull
 	public boolean set(@Nonnull final String key, @Nonnull final String value);
 
+	/**
+	 * Set value expiring after a time to live ("Store the data")
+	 * <p>
+	 * Store value regardless if key already exists, see {@link #add(String, String, long, TimeUnit)} for expiry
+	 * 
+	 * @param key
+	 *            String key, not null
+	 * @param value
+	 *            String value, not null
+	 * @param ttl
+	 *            long time to live, greater than zero
+	 * @param unit
+	 *            {@link TimeUnit} of the time to live, not null
+	 * @return true if value set, false otherwise
+	 * @throws UnsupportedOperationException
+	 *             if the keyspace does not support expiry
+	 * @since 0.2
+	 */
+	@Nonnull
+	public default boolean set(@Nonnull final String key, @Nonnull final String value, final long ttl,
+			@Nonnull final TimeUnit unit) {
+		throw new UnsupportedOperationException("Keyspace does not support expiry");
+	}
+
+	/**
+	 * Set multiple values ("Store the data")
+	 * <p>
+	 * Store each value regardless if its key already exists. Default implementation calls
+	 * {@link #set(String, String)} for each entry; adapters should override this with a native pipelined or batched
+	 * write where the backend supports one
+	 * 
+	 * @param values
+	 *            {@link Map} of String key to String value, not null and not containing null keys or values
+	 * @return true if all values set, false otherwise
+	 * @since 0.2
+	 */
+	@Nonnull
+	public default boolean setAll(@Nonnull final Map<String, String> values) {
+		Objects.requireNonNull(values, "Values must not be null");
+		boolean allSet = true;
+		for (final Map.Entry<String, String> entry : values.entrySet())
+			allSet &= set(entry.getKey(), entry.getValue());
+		return allSet;
+	}
+
+	/**
+	 * Stream all entries
+	 * <p>
+	 * Same as {@link #scan(String)} with an empty prefix
+	 * 
+	 * @return {@link Stream} of all {@link KeyValue}, not null
+	 * @throws UnsupportedOperationException
+	 *             if the keyspace cannot be enumerated
+	 * @since 0.2
+	 */
+	@Nonnull
+	public default Stream<KeyValue> stream() {
+		return scan("");
+	}
+
+	/**
+	 * Get the remaining time to live of a key
+	 * 
+	 * @param key
+	 *            String key, not null
+	 * @return remaining {@link Duration} wrapped in {@link Optional}, {@link #NO_EXPIRY} if the value never expires.
+	 *         {@link Optional#empty()} if no value for key.
+	 * @throws UnsupportedOperationException
+	 *             if the keyspace does not support expiry
+	 * @since 0.2
+	 */
+	@Nonnull
+	public default Optional<Duration> ttl(@Nonnull final String key) {
+		throw new UnsupportedOperationException("Keyspace does not support expiry");
+	}
+
+	/**
+	 * Get the version of a key without its value, such as to prepare a {@link #checkAndSet(String, String, long)}
+	 * <p>
+	 * Default implementation calls {@link #gets(String)}; adapters should override this to skip reading the value
+	 * 
+	 * @param key
+	 *            String key, not null
+	 * @return long version wrapped in {@link OptionalLong}. {@link OptionalLong#empty()} if no value for key.
+	 * @since 0.2
+	 */
+	@Nonnull
+	public default OptionalLong version(@Nonnull final String key) {
+		final Optional<KeyValue> current = gets(key);
+		return current.isPresent() ? OptionalLong.of(current.get().getVersion()) : OptionalLong.empty();
+	}
+
+	/**
+	 * Watch the changes of a key, of the keys starting with a prefix or of the whole keyspace
+	 * <p>
+	 * Each subscriber of the returned publisher receives the {@link ChangeEvent changes} made from the time it
+	 * subscribed, as many as it requests, in the order they were made to each key. Changes waiting for demand are
+	 * buffered and optionally coalesced as configured by the {@link Watch}. Adapters deliver the writes made through
+	 * their own keyspaces, using native notifications where the backend has them; entries expiring or evicted are not
+	 * reported. Default implementation throws {@link UnsupportedOperationException}; the bundled adapters implement it
+	 * with a {@link ChangeBus}
+	 * 
+	 * @param watch
+	 *            {@link Watch} selecting the keys, not null
+	 * @return {@link ChangePublisher} of the changes, not null
+	 * @throws UnsupportedOperationException
+	 *             if the keyspace cannot be watched
+	 * @since 0.2
+	 */
+	@Nonnull
+	public default ChangePublisher watch(@Nonnull final Watch watch) {
+		Objects.requireNonNull(watch, "Watch must not be null");
+		throw new UnsupportedOperationException("Keyspace does not support watching");
+	}
 }
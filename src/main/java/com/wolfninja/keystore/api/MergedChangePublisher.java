@@ -0,0 +1,90 @@
+package com.wolfninja.keystore.api;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link ChangePublisher} relaying the changes of several sources into one buffer per subscriber
+ * <p>
+ * Sources are asked for everything, since their changes only move from one buffer to another here; backpressure is
+ * applied by the merged buffer, which fails the subscriber if it falls behind.
+ */
+final class MergedChangePublisher implements ChangePublisher {
+
+	/**
+	 * Subscriber to one source, relaying its signals to the merged subscription
+	 */
+	private static final class Relay implements ChangeSubscriber {
+		private final BufferedChangeSubscription merged;
+		private final AtomicInteger remaining;
+		private volatile ChangeSubscription source;
+		private volatile boolean cancelled;
+
+		private Relay(final BufferedChangeSubscription merged, final AtomicInteger remaining) {
+			this.merged = merged;
+			this.remaining = remaining;
+		}
+
+		@Override
+		public void onComplete() {
+			if (remaining.decrementAndGet() == 0)
+				merged.complete();
+		}
+
+		@Override
+		public void onError(final Throwable failure) {
+			merged.fail(failure);
+		}
+
+		@Override
+		public void onNext(final ChangeEvent event) {
+			merged.offer(event);
+		}
+
+		@Override
+		public void onSubscribe(final ChangeSubscription subscription) {
+			source = subscription;
+			if (cancelled)
+				subscription.cancel();
+			else
+				subscription.request(Long.MAX_VALUE);
+		}
+
+		private void cancel() {
+			cancelled = true;
+			final ChangeSubscription subscription = source;
+			if (subscription != null)
+				subscription.cancel();
+		}
+	}
+
+	private final List<ChangePublisher> sources;
+	private final Watch watch;
+
+	MergedChangePublisher(final List<? extends ChangePublisher> sources, final Watch watch) {
+		Objects.requireNonNull(sources, "Sources must not be null");
+		Objects.requireNonNull(watch, "Watch must not be null");
+		this.sources = new ArrayList<>(sources);
+		this.sources.forEach(source -> Objects.requireNonNull(source, "Source must not be null"));
+		this.watch = watch;
+	}
+
+	@Override
+	public void subscribe(final ChangeSubscriber subscriber) {
+		Objects.requireNonNull(subscriber, "Subscriber must not be null");
+		final List<Relay> relays = new ArrayList<>(sources.size());
+		final BufferedChangeSubscription merged = new BufferedChangeSubscription(subscriber, watch,
+				ForkJoinPool.commonPool(), released -> relays.forEach(Relay::cancel));
+		final AtomicInteger remaining = new AtomicInteger(sources.size());
+		for (int i = 0; i < sources.size(); i++)
+			relays.add(new Relay(merged, remaining));
+		subscriber.onSubscribe(merged);
+		if (sources.isEmpty())
+			merged.complete();
+		for (int i = 0; i < sources.size() && !merged.isReleased(); i++)
+			sources.get(i).subscribe(relays.get(i));
+	}
+}
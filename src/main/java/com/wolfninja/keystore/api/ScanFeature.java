@@ -0,0 +1,28 @@
+package com.wolfninja.keystore.api;
+
+/**
+ * Scan capability advertised by an adapter through {@link KeyValueStoreAdapter#getScanFeatures()}
+ *
+ * @since 0.2
+ */
+public enum ScanFeature {
+	/**
+	 * Keyspaces can be enumerated with {@link Keyspace#scan(String)} and {@link Keyspace#stream()}
+	 *
+	 * @since 0.2
+	 */
+	SCAN,
+	/**
+	 * Prefix scans are served from an index by the backend, so their cost follows the number of matching keys
+	 * rather than the size of the keyspace
+	 *
+	 * @since 0.2
+	 */
+	PREFIX,
+	/**
+	 * Scans return entries in ascending key order
+	 *
+	 * @since 0.2
+	 */
+	ORDERED
+}
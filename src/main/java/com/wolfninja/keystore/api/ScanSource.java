@@ -0,0 +1,52 @@
+package com.wolfninja.keystore.api;
+
+import java.util.function.Consumer;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import aQute.bnd.annotation.ConsumerType;
+
+/**
+ * Backend side of a paged keyspace scan, turned into a stream by {@link ScanSpliterator}
+ * <p>
+ * The keyspace is divided into partitions, such as the segments of a local store or the nodes of a cluster, which
+ * can be scanned independently and so in parallel. Each partition is read one page at a time, resuming from an
+ * opaque cursor returned by the previous page, so neither side holds more than a page of entries.
+ * <p>
+ * Every entry present for the whole scan must be returned; entries written or deleted during the scan may or may
+ * not be. A partition reorganized during a scan may return an entry more than once.
+ *
+ * @since 0.2
+ */
+@ConsumerType
+public interface ScanSource {
+
+	/**
+	 * Get the number of independently scannable partitions
+	 *
+	 * @return int partition count, at least one
+	 * @since 0.2
+	 */
+	int partitions();
+
+	/**
+	 * Read the next page of a partition
+	 *
+	 * @param partition
+	 *            int partition, from zero to {@link #partitions()} exclusive
+	 * @param cursor
+	 *            String cursor returned by the previous page of this partition, or null to start
+	 * @param prefix
+	 *            String prefix all returned keys start with, not null, empty for all keys
+	 * @param limit
+	 *            int maximum number of entries to return, at least one
+	 * @param action
+	 *            {@link Consumer} receiving each {@link KeyValue} of the page, not null
+	 * @return String cursor to continue from, or null if the partition has no more entries
+	 * @since 0.2
+	 */
+	@Nullable
+	String scan(int partition, @Nullable String cursor, @Nonnull String prefix, int limit,
+			@Nonnull Consumer<? super KeyValue> action);
+}
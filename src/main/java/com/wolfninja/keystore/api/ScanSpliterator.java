@@ -0,0 +1,140 @@
+package com.wolfninja.keystore.api;
+
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import javax.annotation.Nonnull;
+
+/**
+ * {@link Spliterator} lazily paging through the partitions of a {@link ScanSource}
+ * <p>
+ * Pages are only fetched as the stream is consumed. Splitting hands half of the remaining partitions to a new
+ * spliterator, so a parallel stream scans partitions on separate threads; a partition itself is never split.
+ * Adapters implement {@link Keyspace#scan(String)} with {@link #stream(ScanSource, String)}.
+ *
+ * @since 0.2
+ */
+public final class ScanSpliterator implements Spliterator<KeyValue> {
+
+	/**
+	 * Number of entries fetched per page by {@link #stream(ScanSource, String)}
+	 *
+	 * @since 0.2
+	 */
+	public static final int DEFAULT_PAGE_SIZE = 256;
+
+	/**
+	 * Create a new {@code ScanSpliterator} over all partitions of the given source
+	 *
+	 * @param source
+	 *            {@link ScanSource} to page through, not null
+	 * @param prefix
+	 *            String prefix of the keys to return, not null, empty for all keys
+	 * @param pageSize
+	 *            int maximum number of entries fetched per page, at least one
+	 * @return new {@link ScanSpliterator} instance, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	public static ScanSpliterator create(@Nonnull final ScanSource source, @Nonnull final String prefix,
+			final int pageSize) {
+		Objects.requireNonNull(source, "Source must not be null");
+		Objects.requireNonNull(prefix, "Prefix must not be null");
+		if (pageSize < 1)
+			throw new IllegalArgumentException("Page size must be at least 1");
+		return new ScanSpliterator(source, prefix, pageSize, 0, source.partitions());
+	}
+
+	/**
+	 * Create a lazy, parallelizable {@link Stream} over all partitions of the given source
+	 *
+	 * @param source
+	 *            {@link ScanSource} to page through, not null
+	 * @param prefix
+	 *            String prefix of the keys to return, not null, empty for all keys
+	 * @return new {@link Stream} of {@link KeyValue}, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	public static Stream<KeyValue> stream(@Nonnull final ScanSource source, @Nonnull final String prefix) {
+		return StreamSupport.stream(create(source, prefix, DEFAULT_PAGE_SIZE), false);
+	}
+
+	private final ScanSource source;
+	private final String prefix;
+	private final int pageSize;
+	private final ArrayDeque<KeyValue> page = new ArrayDeque<>();
+	private int partition;
+	private int fence;
+	private String cursor;
+	private boolean started;
+
+	private ScanSpliterator(final ScanSource source, final String prefix, final int pageSize, final int partition,
+			final int fence) {
+		this.source = source;
+		this.prefix = prefix;
+		this.pageSize = pageSize;
+		this.partition = partition;
+		this.fence = fence;
+	}
+
+	@Override
+	public int characteristics() {
+		return NONNULL;
+	}
+
+	@Override
+	public long estimateSize() {
+		return partition >= fence && page.isEmpty() ? 0L : Long.MAX_VALUE;
+	}
+
+	@Override
+	public void forEachRemaining(final Consumer<? super KeyValue> action) {
+		Objects.requireNonNull(action, "Action must not be null");
+		while (!page.isEmpty())
+			action.accept(page.poll());
+		while (partition < fence) {
+			if (started && cursor == null) {
+				partition++;
+				started = false;
+				continue;
+			}
+			// Straight to the consumer, no buffering needed when draining everything
+			cursor = source.scan(partition, cursor, prefix, pageSize, action);
+			started = true;
+		}
+	}
+
+	@Override
+	public boolean tryAdvance(final Consumer<? super KeyValue> action) {
+		Objects.requireNonNull(action, "Action must not be null");
+		while (page.isEmpty()) {
+			if (partition >= fence)
+				return false;
+			if (started && cursor == null) {
+				partition++;
+				started = false;
+				continue;
+			}
+			cursor = source.scan(partition, cursor, prefix, pageSize, page::add);
+			started = true;
+		}
+		action.accept(page.poll());
+		return true;
+	}
+
+	@Override
+	public Spliterator<KeyValue> trySplit() {
+		if (fence - partition < 2)
+			return null;
+		// Keeps the current, possibly started, partition
+		final int middle = (partition + fence) >>> 1;
+		final ScanSpliterator split = new ScanSpliterator(source, prefix, pageSize, middle, fence);
+		fence = middle;
+		return split;
+	}
+}
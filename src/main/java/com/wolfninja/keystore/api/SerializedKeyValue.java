@@ -0,0 +1,59 @@
+package com.wolfninja.keystore.api;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.nio.ByteBuffer;
+
+/**
+ * Serialized form of {@link KeyValue}, written as its {@link KeyValueCodec#compact()} encoding
+ * <p>
+ * Only this class name goes into the stream instead of the descriptors of {@link KeyValue} and its fields, and
+ * deserializing yields a plain {@link KeyValue} again, whatever subclass was written.
+ */
+final class SerializedKeyValue implements Externalizable {
+	private static final long serialVersionUID = 1L;
+
+	private KeyValue keyValue;
+
+	/**
+	 * Create an empty instance to read into, as required by {@link Externalizable}
+	 */
+	public SerializedKeyValue() {
+	}
+
+	SerializedKeyValue(final KeyValue keyValue) {
+		this.keyValue = keyValue;
+	}
+
+	@Override
+	public void readExternal(final ObjectInput in) throws IOException {
+		final int length = in.readInt();
+		if (length < 0)
+			throw new InvalidObjectException("Negative length");
+		final byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		final ByteBuffer source = ByteBuffer.wrap(bytes);
+		try {
+			keyValue = CompactKeyValueCodec.INSTANCE.decode(source);
+		} catch (final IllegalArgumentException e) {
+			throw new InvalidObjectException(e.getMessage());
+		}
+		if (source.hasRemaining())
+			throw new InvalidObjectException("Trailing bytes");
+	}
+
+	@Override
+	public void writeExternal(final ObjectOutput out) throws IOException {
+		final byte[] bytes = new byte[CompactKeyValueCodec.INSTANCE.encodedLength(keyValue)];
+		CompactKeyValueCodec.INSTANCE.encode(keyValue, ByteBuffer.wrap(bytes));
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private Object readResolve() {
+		return keyValue;
+	}
+}
@@ -0,0 +1,101 @@
+package com.wolfninja.keystore.api;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.Optional;
+
+import javax.annotation.Nonnull;
+
+/**
+ * {@link BinaryKeyspace} stored through a String {@link Keyspace}
+ * <p>
+ * Each byte is mapped to the character with the same code point (ISO-8859-1), which round trips any byte sequence
+ * exactly without the size overhead of Base64. This is the fallback used by
+ * {@link KeyValueStore#getBinaryKeyspace(String)} for adapters without native binary support. Versions are those of
+ * the underlying keyspace.
+ *
+ * @since 0.2
+ */
+public final class StringBackedBinaryKeyspace implements BinaryKeyspace {
+
+	/**
+	 * Create a new {@code StringBackedBinaryKeyspace} storing values in the given keyspace
+	 *
+	 * @param keyspace
+	 *            {@link Keyspace} to store values in, not null
+	 * @return new {@link StringBackedBinaryKeyspace} instance, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	public static StringBackedBinaryKeyspace create(@Nonnull final Keyspace keyspace) {
+		return new StringBackedBinaryKeyspace(keyspace);
+	}
+
+	private final Keyspace keyspace;
+
+	private StringBackedBinaryKeyspace(@Nonnull final Keyspace keyspace) {
+		Objects.requireNonNull(keyspace, "Keyspace must not be null");
+		this.keyspace = keyspace;
+	}
+
+	@Override
+	public boolean add(final String key, final ByteBuffer value) {
+		return keyspace.add(key, encode(value));
+	}
+
+	@Override
+	public boolean checkAndSet(final String key, final ByteBuffer value, final long version) {
+		return keyspace.checkAndSet(key, encode(value), version);
+	}
+
+	@Override
+	public boolean delete(final String key) {
+		return keyspace.delete(key);
+	}
+
+	@Override
+	public boolean deletes(final String key, final long version) {
+		return keyspace.deletes(key, version);
+	}
+
+	@Override
+	public boolean exists(final String key) {
+		return keyspace.exists(key);
+	}
+
+	@Override
+	public Optional<ByteBuffer> get(final String key) {
+		return keyspace.get(key).map(StringBackedBinaryKeyspace::decode);
+	}
+
+	@Override
+	public Optional<BinaryKeyValue> gets(final String key) {
+		return keyspace.gets(key)
+				.map(keyValue -> BinaryKeyValue.create(key, decode(keyValue.getValue()), keyValue.getVersion()));
+	}
+
+	@Override
+	public boolean replace(final String key, final ByteBuffer value) {
+		return keyspace.replace(key, encode(value));
+	}
+
+	@Override
+	public boolean set(final String key, final ByteBuffer value) {
+		return keyspace.set(key, encode(value));
+	}
+
+	private static ByteBuffer decode(final String value) {
+		return ByteBuffer.wrap(value.getBytes(StandardCharsets.ISO_8859_1)).asReadOnlyBuffer();
+	}
+
+	private static String encode(final ByteBuffer value) {
+		Objects.requireNonNull(value, "Value must not be null");
+		if (value.hasArray())
+			return new String(value.array(), value.arrayOffset() + value.position(), value.remaining(),
+					StandardCharsets.ISO_8859_1);
+		final byte[] bytes = new byte[value.remaining()];
+		value.duplicate().get(bytes);
+		return new String(bytes, StandardCharsets.ISO_8859_1);
+	}
+}
@@ -0,0 +1,100 @@
+package com.wolfninja.keystore.api;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Typed counterpart of {@link KeyValue}, returned by {@link TypedKeyspace#gets(String)}
+ * <p>
+ * The value is kept encoded and only decoded on the first call to {@link #getValue()}, so entries read for their
+ * version or existence never pay for decoding. Equality compares the key, the version and the encoded bytes.
+ *
+ * @param <T>
+ *            value type
+ * @since 0.2
+ */
+public final class TypedKeyValue<T> {
+
+	private final String key;
+	private final ByteBuffer encoded;
+	private final long version;
+	private final ValueCodec<T> codec;
+	private volatile T value;
+
+	TypedKeyValue(@Nonnull final BinaryKeyValue keyValue, @Nonnull final ValueCodec<T> codec) {
+		this.key = keyValue.getKey();
+		this.encoded = keyValue.getValue();
+		this.version = keyValue.getVersion();
+		this.codec = codec;
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof TypedKeyValue))
+			return false;
+		final TypedKeyValue<?> other = (TypedKeyValue<?>) obj;
+		return version == other.version && key.equals(other.key) && encoded.equals(other.encoded);
+	}
+
+	/**
+	 * Get the encoded value
+	 *
+	 * @return new read-only {@link ByteBuffer} view of the encoded value, positioned at its start
+	 * @since 0.2
+	 */
+	@Nonnull
+	public ByteBuffer getEncodedValue() {
+		return encoded.duplicate();
+	}
+
+	/**
+	 * Get key
+	 *
+	 * @return String key
+	 * @since 0.2
+	 */
+	@Nonnull
+	public String getKey() {
+		return key;
+	}
+
+	/**
+	 * Get value, decoding it on the first call
+	 * <p>
+	 * Threads racing on the first call may each decode the value, but all later calls return the same instance.
+	 *
+	 * @return decoded value, not null
+	 * @throws IllegalArgumentException
+	 *             if the codec cannot decode the stored bytes
+	 * @since 0.2
+	 */
+	@Nonnull
+	public T getValue() {
+		T decoded = value;
+		if (decoded == null) {
+			decoded = Objects.requireNonNull(codec.decode(encoded.duplicate()), "Codec returned null");
+			value = decoded;
+		}
+		return decoded;
+	}
+
+	/**
+	 * Get version
+	 *
+	 * @return long version
+	 * @since 0.2
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * (31 * key.hashCode() + encoded.hashCode()) + Long.hashCode(version);
+	}
+
+}
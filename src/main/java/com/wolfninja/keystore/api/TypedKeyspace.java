@@ -0,0 +1,285 @@
+package com.wolfninja.keystore.api;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalLong;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Typed view of a {@link BinaryKeyspace}, storing values of type {@code T} through a {@link ValueCodec}
+ * <p>
+ * Values are encoded into a heap buffer kept per thread and handed to the binary keyspace, which copies what it
+ * stores, so writes allocate nothing beyond what the codec and the backend do. The buffer grows as needed; buffers
+ * grown past {@value #MAX_RETAINED_CAPACITY} bytes are dropped after the call rather than kept. Reads decode lazily
+ * through {@link TypedKeyValue}. Each operation has the same semantics as its {@link Keyspace} equivalent, and
+ * versions are those of the underlying keyspace.
+ *
+ * @param <T>
+ *            value type
+ * @since 0.2
+ */
+public final class TypedKeyspace<T> {
+
+	/**
+	 * Per-thread slot holding the encode buffer while it is not in use
+	 */
+	private static final class EncodeBuffer {
+		private ByteBuffer buffer;
+	}
+
+	/**
+	 * Largest buffer kept per thread between calls
+	 */
+	static final int MAX_RETAINED_CAPACITY = 1 << 16;
+
+	private static final int INITIAL_CAPACITY = 256;
+	private static final ThreadLocal<EncodeBuffer> BUFFERS = ThreadLocal.withInitial(EncodeBuffer::new);
+
+	/**
+	 * Create a new {@code TypedKeyspace} storing values in the given keyspace
+	 *
+	 * @param keyspace
+	 *            {@link BinaryKeyspace} to store values in, not null
+	 * @param codec
+	 *            {@link ValueCodec} to encode and decode values, not null
+	 * @param <T>
+	 *            value type
+	 * @return new {@link TypedKeyspace} instance, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	public static <T> TypedKeyspace<T> create(@Nonnull final BinaryKeyspace keyspace,
+			@Nonnull final ValueCodec<T> codec) {
+		return new TypedKeyspace<>(keyspace, codec);
+	}
+
+	private final BinaryKeyspace keyspace;
+	private final ValueCodec<T> codec;
+
+	private TypedKeyspace(@Nonnull final BinaryKeyspace keyspace, @Nonnull final ValueCodec<T> codec) {
+		Objects.requireNonNull(keyspace, "Keyspace must not be null");
+		Objects.requireNonNull(codec, "Codec must not be null");
+		this.keyspace = keyspace;
+		this.codec = codec;
+	}
+
+	/**
+	 * Add value("Store data only if key does NOT exist")
+	 *
+	 * @param key
+	 *            String key, not null
+	 * @param value
+	 *            value, not null
+	 * @return true if value added, false otherwise
+	 * @see Keyspace#add(String, String)
+	 * @since 0.2
+	 */
+	public boolean add(@Nonnull final String key, @Nonnull final T value) {
+		final ByteBuffer buffer = encode(value);
+		try {
+			return keyspace.add(key, buffer);
+		} finally {
+			release(buffer);
+		}
+	}
+
+	/**
+	 * Check and Set value( "Store data only if nobody else has changed it since I last fetched it")
+	 *
+	 * @param key
+	 *            String key, not null
+	 * @param value
+	 *            value, not null
+	 * @param version
+	 *            long version, as returned by {@link #gets(String)} or {@link #version(String)}
+	 * @return true if value set, false otherwise
+	 * @see Keyspace#checkAndSet(String, String, long)
+	 * @since 0.2
+	 */
+	public boolean checkAndSet(@Nonnull final String key, @Nonnull final T value, final long version) {
+		final ByteBuffer buffer = encode(value);
+		try {
+			return keyspace.checkAndSet(key, buffer, version);
+		} finally {
+			release(buffer);
+		}
+	}
+
+	/**
+	 * Delete key and its value
+	 *
+	 * @param key
+	 *            String key, not null
+	 * @return true if key and value deleted, false otherwise
+	 * @see Keyspace#delete(String)
+	 * @since 0.2
+	 */
+	public boolean delete(@Nonnull final String key) {
+		return keyspace.delete(key);
+	}
+
+	/**
+	 * Delete key and its value if the version matches
+	 *
+	 * @param key
+	 *            String key, not null
+	 * @param version
+	 *            long version, as returned by {@link #gets(String)} or {@link #version(String)}
+	 * @return true if key and value deleted, false otherwise
+	 * @see Keyspace#deletes(String, long)
+	 * @since 0.2
+	 */
+	public boolean deletes(@Nonnull final String key, final long version) {
+		return keyspace.deletes(key, version);
+	}
+
+	/**
+	 * Check if a key exists
+	 *
+	 * @param key
+	 *            String key, not null
+	 * @return true if key exists, false otherwise
+	 * @see Keyspace#exists(String)
+	 * @since 0.2
+	 */
+	public boolean exists(@Nonnull final String key) {
+		return keyspace.exists(key);
+	}
+
+	/**
+	 * Get decoded value for a key
+	 *
+	 * @param key
+	 *            String key, not null
+	 * @return value wrapped in {@link Optional}. {@link Optional#empty()} if no value for key.
+	 * @throws IllegalArgumentException
+	 *             if the codec cannot decode the stored bytes
+	 * @see Keyspace#get(String)
+	 * @since 0.2
+	 */
+	@Nonnull
+	public Optional<T> get(@Nonnull final String key) {
+		return keyspace.get(key).map(codec::decode);
+	}
+
+	/**
+	 * Get the underlying binary keyspace
+	 *
+	 * @return {@link BinaryKeyspace} values are stored in, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	public BinaryKeyspace getBinaryKeyspace() {
+		return keyspace;
+	}
+
+	/**
+	 * Get value for a key with version info, without decoding the value
+	 *
+	 * @param key
+	 *            String key, not null
+	 * @return {@link TypedKeyValue} decoding its value on first use, wrapped in {@link Optional}.
+	 *         {@link Optional#empty()} if no value for key.
+	 * @see Keyspace#gets(String)
+	 * @since 0.2
+	 */
+	@Nonnull
+	public Optional<TypedKeyValue<T>> gets(@Nonnull final String key) {
+		return keyspace.gets(key).map(keyValue -> new TypedKeyValue<>(keyValue, codec));
+	}
+
+	/**
+	 * Replace value("Store data only if key exists already")
+	 *
+	 * @param key
+	 *            String key, not null
+	 * @param value
+	 *            value, not null
+	 * @return true if value replaced, false otherwise
+	 * @see Keyspace#replace(String, String)
+	 * @since 0.2
+	 */
+	public boolean replace(@Nonnull final String key, @Nonnull final T value) {
+		final ByteBuffer buffer = encode(value);
+		try {
+			return keyspace.replace(key, buffer);
+		} finally {
+			release(buffer);
+		}
+	}
+
+	/**
+	 * Set value("Store this data")
+	 *
+	 * @param key
+	 *            String key, not null
+	 * @param value
+	 *            value, not null
+	 * @return true if value set, false otherwise
+	 * @see Keyspace#set(String, String)
+	 * @since 0.2
+	 */
+	public boolean set(@Nonnull final String key, @Nonnull final T value) {
+		final ByteBuffer buffer = encode(value);
+		try {
+			return keyspace.set(key, buffer);
+		} finally {
+			release(buffer);
+		}
+	}
+
+	/**
+	 * Get the version of the value for a key, without decoding the value
+	 *
+	 * @param key
+	 *            String key, not null
+	 * @return long version wrapped in {@link OptionalLong}. {@link OptionalLong#empty()} if no value for key.
+	 * @see Keyspace#version(String)
+	 * @since 0.2
+	 */
+	@Nonnull
+	public OptionalLong version(@Nonnull final String key) {
+		final Optional<BinaryKeyValue> keyValue = keyspace.gets(key);
+		return keyValue.isPresent() ? OptionalLong.of(keyValue.get().getVersion()) : OptionalLong.empty();
+	}
+
+	/**
+	 * Encode a value into the calling thread's buffer, taking the buffer until {@link #release(ByteBuffer)}
+	 * <p>
+	 * Taking rather than borrowing keeps a codec or backend calling back into a typed keyspace on the same thread from
+	 * overwriting the bytes in use; the nested call simply allocates its own buffer.
+	 */
+	private ByteBuffer encode(final T value) {
+		Objects.requireNonNull(value, "Value must not be null");
+		final EncodeBuffer owner = BUFFERS.get();
+		ByteBuffer buffer = owner.buffer;
+		owner.buffer = null;
+		if (buffer == null)
+			buffer = ByteBuffer.allocate(INITIAL_CAPACITY);
+		while (true) {
+			buffer.clear();
+			try {
+				codec.encode(value, buffer);
+				buffer.flip();
+				return buffer;
+			} catch (final BufferOverflowException e) {
+				if (buffer.capacity() > Integer.MAX_VALUE / 2) {
+					release(buffer);
+					throw new IllegalArgumentException("Encoded value too large", e);
+				}
+				buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+			} catch (final RuntimeException e) {
+				release(buffer);
+				throw e;
+			}
+		}
+	}
+
+	private static void release(final ByteBuffer buffer) {
+		if (buffer.capacity() <= MAX_RETAINED_CAPACITY)
+			BUFFERS.get().buffer = buffer;
+	}
+}
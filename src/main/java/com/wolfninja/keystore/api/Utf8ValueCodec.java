@@ -0,0 +1,35 @@
+package com.wolfninja.keystore.api;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * {@link ValueCodec} writing Strings as UTF-8
+ */
+final class Utf8ValueCodec implements ValueCodec<String> {
+
+	static final Utf8ValueCodec INSTANCE = new Utf8ValueCodec();
+
+	private Utf8ValueCodec() {
+	}
+
+	@Override
+	public String decode(final ByteBuffer source) {
+		Objects.requireNonNull(source, "Source must not be null");
+		if (source.hasArray())
+			return new String(source.array(), source.arrayOffset() + source.position(), source.remaining(),
+					StandardCharsets.UTF_8);
+		return StandardCharsets.UTF_8.decode(source.duplicate()).toString();
+	}
+
+	@Override
+	public void encode(final String value, final ByteBuffer target) {
+		Objects.requireNonNull(value, "Value must not be null");
+		Objects.requireNonNull(target, "Target must not be null");
+		if (target.remaining() < CompactKeyValueCodec.utf8Length(value))
+			throw new BufferOverflowException();
+		CompactKeyValueCodec.writeUtf8(target, value);
+	}
+}
@@ -0,0 +1,63 @@
+package com.wolfninja.keystore.api;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+import javax.annotation.Nonnull;
+
+import aQute.bnd.annotation.ConsumerType;
+
+/**
+ * Binary encoding of the values of a {@link TypedKeyspace}
+ * <p>
+ * Values are encoded straight into a buffer reused by the calling thread and decoded from the buffer returned by the
+ * {@link BinaryKeyspace}, so no intermediate String or byte array is needed. Implementations must be thread safe.
+ *
+ * @param <T>
+ *            value type
+ * @since 0.2
+ */
+@ConsumerType
+public interface ValueCodec<T> {
+
+	/**
+	 * Get the built-in codec storing Strings as UTF-8
+	 * <p>
+	 * Unpaired surrogates are encoded as {@code '?'}, as by {@link String#getBytes(java.nio.charset.Charset)}.
+	 * Encoding allocates nothing.
+	 *
+	 * @return shared, thread safe {@link ValueCodec} instance, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	static ValueCodec<String> utf8() {
+		return Utf8ValueCodec.INSTANCE;
+	}
+
+	/**
+	 * Read a value from the bytes between the position and the limit of a buffer
+	 *
+	 * @param source
+	 *            read-only {@link ByteBuffer} holding exactly the encoded value, not null
+	 * @return decoded value, not null
+	 * @throws IllegalArgumentException
+	 *             if the bytes are not a valid value
+	 * @since 0.2
+	 */
+	@Nonnull
+	T decode(@Nonnull ByteBuffer source);
+
+	/**
+	 * Write a value at the position of a buffer, advancing the position past it
+	 *
+	 * @param value
+	 *            value to write, not null
+	 * @param target
+	 *            {@link ByteBuffer} to write to, not null
+	 * @throws BufferOverflowException
+	 *             if the value does not fit in the remaining bytes, in which case the caller retries with a larger
+	 *             buffer and whatever was written is discarded
+	 * @since 0.2
+	 */
+	void encode(@Nonnull T value, @Nonnull ByteBuffer target);
+}
@@ -0,0 +1,179 @@
+package com.wolfninja.keystore.api;
+
+import java.util.Objects;
+
+import javax.annotation.Nonnull;
+
+/**
+ * What to watch with {@link Keyspace#watch(Watch)}: a single key, the keys starting with a prefix or the whole
+ * keyspace, and how changes are buffered for each subscriber
+ * <p>
+ * Changes wait in a buffer of {@link Builder#bufferSize(int)} changes until the subscriber requests them. A
+ * subscriber falling further behind fails with an {@link IllegalStateException} rather than silently missing changes.
+ * With {@link Builder#coalescing(boolean)}, a change replaces the buffered change of the same key instead, so a slow
+ * subscriber skips intermediate versions and only the number of distinct changed keys counts against the buffer.
+ *
+ * @since 0.2
+ */
+public final class Watch {
+
+	/**
+	 * Builder for {@link Watch} instances
+	 *
+	 * @since 0.2
+	 */
+	public static final class Builder {
+		private final String key;
+		private final boolean exact;
+		private int bufferSize = 256;
+		private boolean coalescing;
+
+		private Builder(@Nonnull final String key, final boolean exact) {
+			this.key = key;
+			this.exact = exact;
+		}
+
+		/**
+		 * Set the number of changes buffered for each subscriber, 256 by default
+		 *
+		 * @param bufferSize
+		 *            int number of changes, at least one
+		 * @return this builder
+		 * @since 0.2
+		 */
+		@Nonnull
+		public Builder bufferSize(final int bufferSize) {
+			if (bufferSize < 1)
+				throw new IllegalArgumentException("Buffer size must be at least 1");
+			this.bufferSize = bufferSize;
+			return this;
+		}
+
+		/**
+		 * Build the {@link Watch}
+		 *
+		 * @return new {@link Watch} instance, not null
+		 * @since 0.2
+		 */
+		@Nonnull
+		public Watch build() {
+			return new Watch(this);
+		}
+
+		/**
+		 * Set whether a buffered change is replaced by a later change of the same key, false by default
+		 *
+		 * @param coalescing
+		 *            boolean true to only keep the latest buffered change of each key
+		 * @return this builder
+		 * @since 0.2
+		 */
+		@Nonnull
+		public Builder coalescing(final boolean coalescing) {
+			this.coalescing = coalescing;
+			return this;
+		}
+	}
+
+	/**
+	 * Create a new {@link Builder} watching every key of the keyspace
+	 *
+	 * @return new {@link Builder} instance, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	public static Builder all() {
+		return new Builder("", false);
+	}
+
+	/**
+	 * Create a new {@link Builder} watching a single key
+	 *
+	 * @param key
+	 *            String key, not null
+	 * @return new {@link Builder} instance, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	public static Builder key(@Nonnull final String key) {
+		return new Builder(Objects.requireNonNull(key, "Key must not be null"), true);
+	}
+
+	/**
+	 * Create a new {@link Builder} watching the keys starting with a prefix
+	 *
+	 * @param prefix
+	 *            String key prefix, not null, empty for all keys
+	 * @return new {@link Builder} instance, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	public static Builder prefix(@Nonnull final String prefix) {
+		return new Builder(Objects.requireNonNull(prefix, "Prefix must not be null"), false);
+	}
+
+	private final String key;
+	private final boolean exact;
+	private final int bufferSize;
+	private final boolean coalescing;
+
+	private Watch(final Builder builder) {
+		this.key = builder.key;
+		this.exact = builder.exact;
+		this.bufferSize = builder.bufferSize;
+		this.coalescing = builder.coalescing;
+	}
+
+	/**
+	 * Get the number of changes buffered for each subscriber
+	 *
+	 * @return int buffer size
+	 * @since 0.2
+	 */
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	/**
+	 * Get the key watched, or the prefix of the keys watched
+	 *
+	 * @return String key or prefix, empty for the whole keyspace
+	 * @since 0.2
+	 */
+	@Nonnull
+	public String getKey() {
+		return key;
+	}
+
+	/**
+	 * Check whether changes are coalesced by key
+	 *
+	 * @return true if a buffered change is replaced by a later change of the same key
+	 * @since 0.2
+	 */
+	public boolean isCoalescing() {
+		return coalescing;
+	}
+
+	/**
+	 * Check whether a single key is watched
+	 *
+	 * @return true if {@link #getKey()} is a key, false if it is a prefix
+	 * @since 0.2
+	 */
+	public boolean isExact() {
+		return exact;
+	}
+
+	/**
+	 * Check whether changes of a key are watched
+	 *
+	 * @param key
+	 *            String key, not null
+	 * @return true if the key is watched
+	 * @since 0.2
+	 */
+	public boolean matches(@Nonnull final String key) {
+		return exact ? this.key.equals(key) : key.startsWith(this.key);
+	}
+}
@@ -0,0 +1,587 @@
+package com.wolfninja.keystore.bloom;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import javax.annotation.Nonnull;
+
+import com.wolfninja.keystore.api.AsyncExecutors;
+import com.wolfninja.keystore.api.ChangePublisher;
+import com.wolfninja.keystore.api.KeyHashes;
+import com.wolfninja.keystore.api.KeyValue;
+import com.wolfninja.keystore.api.KeyValueConsumer;
+import com.wolfninja.keystore.api.Keyspace;
+import com.wolfninja.keystore.api.Watch;
+
+/**
+ * {@link Keyspace} decorator answering lookups of missing keys locally from a counting Bloom filter of the keys
+ * present
+ * <p>
+ * {@code exists}, {@code get}, {@code gets}, {@code version}, {@code ttl} and the bulk reads only reach the decorated
+ * keyspace for keys the filter might contain; a key it has never seen is missing for sure. Keys are added to the
+ * filter before {@code add}, {@code set}, {@code setAll} and counters write them, so a reader never misses a key
+ * already written, and removed after {@code delete} and {@code deletes} removed them. {@code replace} and
+ * {@code checkAndSet} only write keys which are present already. Failed writes, bulk deletes, expiry and keys written
+ * repeatedly leave stale counts behind, which only cost false positives: a backend lookup answering that the key is
+ * missing after all.
+ * <p>
+ * The filter is built in bulk from all keys of the decorated keyspace, by default from a scan, when built and by
+ * {@link #rebuild()}, optionally at a fixed interval, which clears stale counts and resizes the filter for the number
+ * of keys. Writes during a rebuild go to both filters; writes and the switch to the new filter exclude each other, so
+ * no write falls between them. Keys must only be written through this decorator, since keys written around it are
+ * reported missing until the next rebuild.
+ *
+ * @since 0.2
+ */
+public final class BloomFilterKeyspace implements Keyspace {
+
+	/**
+	 * Builder for {@link BloomFilterKeyspace} instances
+	 *
+	 * @since 0.2
+	 */
+	public static final class Builder {
+		private final Keyspace delegate;
+		private long expectedKeys = 100_000L;
+		private double falsePositiveRate = 0.01;
+		private Supplier<? extends Stream<String>> keys;
+		private long rebuildIntervalNanos;
+
+		private Builder(@Nonnull final Keyspace delegate) {
+			Objects.requireNonNull(delegate, "Keyspace must not be null");
+			this.delegate = delegate;
+			this.keys = () -> delegate.stream().map(KeyValue::getKey);
+		}
+
+		/**
+		 * Build the {@link BloomFilterKeyspace}, loading every key into its filter and starting its rebuild thread
+		 *
+		 * @return new {@link BloomFilterKeyspace} instance, not null
+		 * @throws UnsupportedOperationException
+		 *             if keys are loaded from a scan, and the decorated keyspace does not support scans
+		 * @since 0.2
+		 */
+		@Nonnull
+		public BloomFilterKeyspace build() {
+			return new BloomFilterKeyspace(this);
+		}
+
+		/**
+		 * Set the number of keys the filter is sized for until a rebuild has counted them, 100,000 by default
+		 *
+		 * @param expectedKeys
+		 *            long number of keys, greater than zero
+		 * @return this builder
+		 * @since 0.2
+		 */
+		@Nonnull
+		public Builder expectedKeys(final long expectedKeys) {
+			if (expectedKeys <= 0L)
+				throw new IllegalArgumentException("Expected keys must be greater than zero");
+			this.expectedKeys = expectedKeys;
+			return this;
+		}
+
+		/**
+		 * Set the false positive rate the filter is sized for, 0.01 by default
+		 *
+		 * @param falsePositiveRate
+		 *            double rate, greater than zero and less than one
+		 * @return this builder
+		 * @since 0.2
+		 */
+		@Nonnull
+		public Builder falsePositiveRate(final double falsePositiveRate) {
+			if (!(falsePositiveRate > 0.0 && falsePositiveRate < 1.0))
+				throw new IllegalArgumentException("False positive rate must be between zero and one");
+			this.falsePositiveRate = falsePositiveRate;
+			return this;
+		}
+
+		/**
+		 * Load keys from the given source instead of scanning the decorated keyspace, such as from a snapshot
+		 * <p>
+		 * The source must return every key present when it is called, and may return more.
+		 *
+		 * @param keys
+		 *            {@link Supplier} of a new {@link Stream} of all keys on every call, not null
+		 * @return this builder
+		 * @since 0.2
+		 */
+		@Nonnull
+		public Builder keys(@Nonnull final Supplier<? extends Stream<String>> keys) {
+			this.keys = Objects.requireNonNull(keys, "Keys must not be null");
+			return this;
+		}
+
+		/**
+		 * Rebuild the filter at a fixed interval, never by default
+		 *
+		 * @param interval
+		 *            long interval, greater than zero
+		 * @param unit
+		 *            {@link TimeUnit} of interval, not null
+		 * @return this builder
+		 * @since 0.2
+		 */
+		@Nonnull
+		public Builder rebuildInterval(final long interval, @Nonnull final TimeUnit unit) {
+			Objects.requireNonNull(unit, "Unit must not be null");
+			if (interval <= 0L)
+				throw new IllegalArgumentException("Interval must be greater than zero");
+			this.rebuildIntervalNanos = unit.toNanos(interval);
+			return this;
+		}
+	}
+
+	/**
+	 * Create a new {@link Builder} decorating the given keyspace
+	 *
+	 * @param delegate
+	 *            {@link Keyspace} to filter lookups of, not null
+	 * @return new {@link Builder} instance, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	public static Builder builder(@Nonnull final Keyspace delegate) {
+		return new Builder(delegate);
+	}
+
+	private final Keyspace delegate;
+	private final long expectedKeys;
+	private final double falsePositiveRate;
+	private final Supplier<? extends Stream<String>> keys;
+	private final ScheduledExecutorService rebuilder;
+	// Shared by writes, exclusive to start and finish a rebuild
+	private final ReentrantReadWriteLock switchLock = new ReentrantReadWriteLock();
+	private final ReentrantLock rebuildLock = new ReentrantLock();
+	private final LongAdder filtered = new LongAdder();
+	private final LongAdder falsePositives = new LongAdder();
+	private final LongAdder insertions = new LongAdder();
+	private final LongAdder failedRebuilds = new LongAdder();
+	private volatile CountingBloomFilter filter;
+	private volatile CountingBloomFilter building;
+
+	// Guarded by rebuildLock
+	private long loadedKeys;
+
+	private BloomFilterKeyspace(final Builder builder) {
+		this.delegate = builder.delegate;
+		this.expectedKeys = builder.expectedKeys;
+		this.falsePositiveRate = builder.falsePositiveRate;
+		this.keys = builder.keys;
+		rebuild();
+		if (builder.rebuildIntervalNanos > 0L) {
+			this.rebuilder = Executors
+					.newSingleThreadScheduledExecutor(AsyncExecutors.daemonThreadFactory("keystore-bloom-filter"));
+			rebuilder.scheduleWithFixedDelay(this::rebuildInBackground, builder.rebuildIntervalNanos,
+					builder.rebuildIntervalNanos, TimeUnit.NANOSECONDS);
+		} else
+			this.rebuilder = null;
+	}
+
+	@Override
+	public boolean add(final String key, final String value) {
+		final Lock lock = switchLock.readLock();
+		lock.lock();
+		try {
+			insert(key);
+			return delegate.add(key, value);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean add(final String key, final String value, final long ttl, final TimeUnit unit) {
+		final Lock lock = switchLock.readLock();
+		lock.lock();
+		try {
+			insert(key);
+			return delegate.add(key, value, ttl, unit);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public long addAndGet(final String key, final long delta) {
+		final Lock lock = switchLock.readLock();
+		lock.lock();
+		try {
+			insert(key);
+			return delegate.addAndGet(key, delta);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean checkAndSet(final String key, final String value, final long version) {
+		return delegate.checkAndSet(key, value, version);
+	}
+
+	@Override
+	public boolean checkAndSet(final String key, final String value, final long version, final long ttl,
+			final TimeUnit unit) {
+		return delegate.checkAndSet(key, value, version, ttl, unit);
+	}
+
+	/**
+	 * Stop the rebuild thread, waiting for a running rebuild, then close the decorated keyspace
+	 *
+	 * @since 0.2
+	 */
+	@Override
+	public void close() {
+		if (rebuilder != null) {
+			rebuilder.shutdown();
+			try {
+				rebuilder.awaitTermination(1L, TimeUnit.MINUTES);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		delegate.close();
+	}
+
+	@Override
+	public boolean delete(final String key) {
+		final Lock lock = switchLock.readLock();
+		lock.lock();
+		try {
+			final boolean deleted = delegate.delete(key);
+			if (deleted)
+				filter.remove(KeyHashes.hash(key));
+			return deleted;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int deleteAll(final Collection<String> keys) {
+		// Which keys were deleted is unknown, so their counts stay until the next rebuild
+		return delegate.deleteAll(keys);
+	}
+
+	@Override
+	public boolean deletes(final String key, final long version) {
+		final Lock lock = switchLock.readLock();
+		lock.lock();
+		try {
+			final boolean deleted = delegate.deletes(key, version);
+			if (deleted)
+				filter.remove(KeyHashes.hash(key));
+			return deleted;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean exists(final String key) {
+		return mightContain(key) && present(delegate.exists(key));
+	}
+
+	@Override
+	public void flush() {
+		delegate.flush();
+	}
+
+	@Override
+	public Optional<String> get(final String key) {
+		if (!mightContain(key))
+			return Optional.empty();
+		final Optional<String> value = delegate.get(key);
+		present(value.isPresent());
+		return value;
+	}
+
+	@Override
+	public Map<String, String> getAll(final Collection<String> keys) {
+		final List<String> candidates = candidates(keys);
+		if (candidates.isEmpty())
+			return Collections.emptyMap();
+		final Map<String, String> values = delegate.getAll(candidates);
+		falsePositives.add(candidates.size() - values.size());
+		return values;
+	}
+
+	/**
+	 * Get the number of background rebuilds which failed, keeping the previous filter
+	 *
+	 * @return long failed rebuild count
+	 * @since 0.2
+	 */
+	public long getFailedRebuildCount() {
+		return failedRebuilds.sum();
+	}
+
+	/**
+	 * Get the number of keys the filter might contain which the decorated keyspace reported missing
+	 *
+	 * @return long false positive count
+	 * @since 0.2
+	 */
+	public long getFalsePositiveCount() {
+		return falsePositives.sum();
+	}
+
+	/**
+	 * Get the measured false positive rate: the share of lookups of missing keys which the filter did not answer
+	 * <p>
+	 * Includes the stale counts of deleted, expired and repeatedly written keys, so it is usually above the rate the
+	 * filter was sized for, and drops after a rebuild.
+	 *
+	 * @return double between 0 and 1, 0 if no missing key was looked up
+	 * @since 0.2
+	 */
+	public double getFalsePositiveRate() {
+		final long falsePositive = falsePositives.sum();
+		final long misses = falsePositive + filtered.sum();
+		return misses == 0L ? 0.0 : (double) falsePositive / misses;
+	}
+
+	/**
+	 * Get the number of lookups answered locally as missing
+	 *
+	 * @return long filtered lookup count
+	 * @since 0.2
+	 */
+	public long getFilteredCount() {
+		return filtered.sum();
+	}
+
+	/**
+	 * Get the memory held by the filter, and by the filter being built during a rebuild
+	 *
+	 * @return long number of bytes
+	 * @since 0.2
+	 */
+	public long getMemoryBytes() {
+		final CountingBloomFilter next = building;
+		return filter.getMemoryBytes() + (next == null ? 0L : next.getMemoryBytes());
+	}
+
+	@Override
+	public Optional<KeyValue> gets(final String key) {
+		if (!mightContain(key))
+			return Optional.empty();
+		final Optional<KeyValue> keyValue = delegate.gets(key);
+		present(keyValue.isPresent());
+		return keyValue;
+	}
+
+	@Override
+	public boolean gets(final String key, final KeyValueConsumer consumer) {
+		Objects.requireNonNull(consumer, "Consumer must not be null");
+		return mightContain(key) && present(delegate.gets(key, consumer));
+	}
+
+	@Override
+	public Map<String, KeyValue> getsAll(final Collection<String> keys) {
+		final List<String> candidates = candidates(keys);
+		if (candidates.isEmpty())
+			return Collections.emptyMap();
+		final Map<String, KeyValue> values = delegate.getsAll(candidates);
+		falsePositives.add(candidates.size() - values.size());
+		return values;
+	}
+
+	/**
+	 * Build a new filter from all keys of the decorated keyspace and switch to it, waiting for a running rebuild
+	 * <p>
+	 * The new filter is sized for the keys loaded by the previous build plus the keys written since, or the expected
+	 * keys if more.
+	 *
+	 * @return long number of keys loaded
+	 * @throws UnsupportedOperationException
+	 *             if keys are loaded from a scan, and the decorated keyspace does not support scans
+	 * @since 0.2
+	 */
+	public long rebuild() {
+		rebuildLock.lock();
+		try {
+			final CountingBloomFilter next = new CountingBloomFilter(
+					Math.max(expectedKeys, loadedKeys + insertions.sum()), falsePositiveRate);
+			switchTo(null, next);
+			long loaded = 0L;
+			try (final Stream<String> stream = keys.get()) {
+				final Iterator<String> iterator = stream.iterator();
+				while (iterator.hasNext()) {
+					next.add(KeyHashes.hash(iterator.next()));
+					loaded++;
+				}
+			} catch (final RuntimeException e) {
+				switchTo(null, null);
+				throw e;
+			}
+			switchTo(next, null);
+			loadedKeys = loaded;
+			return loaded;
+		} finally {
+			rebuildLock.unlock();
+		}
+	}
+
+	@Override
+	public boolean replace(final String key, final String value) {
+		return delegate.replace(key, value);
+	}
+
+	@Override
+	public boolean replace(final String key, final String value, final long ttl, final TimeUnit unit) {
+		return delegate.replace(key, value, ttl, unit);
+	}
+
+	@Override
+	public Stream<KeyValue> scan(final String prefix) {
+		return delegate.scan(prefix);
+	}
+
+	@Override
+	public boolean set(final String key, final String value) {
+		final Lock lock = switchLock.readLock();
+		lock.lock();
+		try {
+			insert(key);
+			return delegate.set(key, value);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean set(final String key, final String value, final long ttl, final TimeUnit unit) {
+		final Lock lock = switchLock.readLock();
+		lock.lock();
+		try {
+			insert(key);
+			return delegate.set(key, value, ttl, unit);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean setAll(final Map<String, String> values) {
+		Objects.requireNonNull(values, "Values must not be null");
+		final Lock lock = switchLock.readLock();
+		lock.lock();
+		try {
+			values.keySet().forEach(this::insert);
+			return delegate.setAll(values);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public Optional<Duration> ttl(final String key) {
+		if (!mightContain(key))
+			return Optional.empty();
+		// Not counted, keys without a time to live answer the same as missing ones
+		return delegate.ttl(key);
+	}
+
+	@Override
+	public OptionalLong version(final String key) {
+		if (!mightContain(key))
+			return OptionalLong.empty();
+		final OptionalLong version = delegate.version(key);
+		present(version.isPresent());
+		return version;
+	}
+
+	@Override
+	public ChangePublisher watch(final Watch watch) {
+		return delegate.watch(watch);
+	}
+
+	/**
+	 * Keep the keys the filter might contain, counting the others as answered locally
+	 */
+	private List<String> candidates(final Collection<String> keys) {
+		Objects.requireNonNull(keys, "Keys must not be null");
+		final List<String> candidates = new ArrayList<>(keys.size());
+		for (final String key : keys)
+			if (mightContain(key))
+				candidates.add(key);
+		return candidates;
+	}
+
+	/**
+	 * Add a key to the filter, and to the filter being built; callers hold the switch lock
+	 */
+	private void insert(final String key) {
+		Objects.requireNonNull(key, "Key must not be null");
+		final long hash = KeyHashes.hash(key);
+		filter.add(hash);
+		final CountingBloomFilter next = building;
+		if (next != null)
+			next.add(hash);
+		insertions.increment();
+	}
+
+	private boolean mightContain(final String key) {
+		Objects.requireNonNull(key, "Key must not be null");
+		if (filter.mightContain(KeyHashes.hash(key)))
+			return true;
+		filtered.increment();
+		return false;
+	}
+
+	/**
+	 * Count a lookup the filter let through which found nothing
+	 */
+	private boolean present(final boolean present) {
+		if (!present)
+			falsePositives.increment();
+		return present;
+	}
+
+	private void rebuildInBackground() {
+		try {
+			rebuild();
+		} catch (final RuntimeException e) {
+			// Counted, and the previous filter stays in use
+			failedRebuilds.increment();
+		}
+	}
+
+	/**
+	 * Switch to a new filter if given, and start or stop adding writes to the filter being built, once no write is
+	 * in progress
+	 */
+	private void switchTo(final CountingBloomFilter current, final CountingBloomFilter next) {
+		final Lock lock = switchLock.writeLock();
+		lock.lock();
+		try {
+			if (current != null)
+				filter = current;
+			else if (next != null)
+				insertions.reset();
+			building = next;
+		} finally {
+			lock.unlock();
+		}
+	}
+}
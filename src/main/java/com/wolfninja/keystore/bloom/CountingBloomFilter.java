@@ -0,0 +1,96 @@
+package com.wolfninja.keystore.bloom;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counting Bloom filter of 4-bit counters over 64-bit key hashes
+ * <p>
+ * Each long in the table holds sixteen counters. A key increments the counters at {@code h1 + i * h2} for each of the
+ * hash functions, from the two halves of its hash, and removing it decrements them again, so the filter follows
+ * deletes. A counter reaching 15 sticks there, as its true count is lost; it is only reset by building a new filter.
+ * Counters are updated with compare-and-set, so the filter is thread safe without locking.
+ */
+final class CountingBloomFilter {
+	private static final long MAX_COUNTERS = 1L << 31;
+	private static final long SATURATED = 0xfL;
+
+	private final AtomicLongArray table;
+	private final long counters;
+	private final int hashes;
+
+	/**
+	 * Size the filter for a number of keys and false positive rate
+	 */
+	CountingBloomFilter(final long expectedKeys, final double falsePositiveRate) {
+		final double ln2 = Math.log(2.0);
+		final long optimal = (long) Math.ceil(-expectedKeys * Math.log(falsePositiveRate) / (ln2 * ln2));
+		this.counters = Math.min(MAX_COUNTERS, Math.max(64L, optimal + 15L) & ~15L);
+		this.table = new AtomicLongArray((int) (counters >>> 4));
+		this.hashes = (int) Math.max(1L, Math.round((double) optimal / expectedKeys * ln2));
+	}
+
+	void add(final long hash) {
+		final long h2 = hash >>> 32 | 1L;
+		for (int i = 0; i < hashes; i++)
+			incrementAt(counter(hash + i * h2));
+	}
+
+	int getHashes() {
+		return hashes;
+	}
+
+	long getMemoryBytes() {
+		return (long) table.length() * Long.BYTES;
+	}
+
+	boolean mightContain(final long hash) {
+		final long h2 = hash >>> 32 | 1L;
+		for (int i = 0; i < hashes; i++) {
+			final long counter = counter(hash + i * h2);
+			if ((table.get((int) (counter >>> 4)) >>> ((counter & 15L) << 2) & SATURATED) == 0L)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Remove a key which was added, and not removed since
+	 */
+	void remove(final long hash) {
+		final long h2 = hash >>> 32 | 1L;
+		for (int i = 0; i < hashes; i++)
+			decrementAt(counter(hash + i * h2));
+	}
+
+	/**
+	 * Map a hash onto the counters by multiplying, which unlike a mask needs no power of two
+	 */
+	private long counter(final long hash) {
+		return (hash & 0xffffffffL) * counters >>> 32;
+	}
+
+	private void decrementAt(final long counter) {
+		final int index = (int) (counter >>> 4);
+		final int offset = (int) (counter & 15L) << 2;
+		while (true) {
+			final long current = table.get(index);
+			final long count = current >>> offset & SATURATED;
+			if (count == 0L || count == SATURATED)
+				return;
+			if (table.compareAndSet(index, current, current - (1L << offset)))
+				return;
+		}
+	}
+
+	private void incrementAt(final long counter) {
+		final int index = (int) (counter >>> 4);
+		final int offset = (int) (counter & 15L) << 2;
+		while (true) {
+			final long current = table.get(index);
+			if ((current >>> offset & SATURATED) == SATURATED)
+				return;
+			if (table.compareAndSet(index, current, current + (1L << offset)))
+				return;
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package com.wolfninja.keystore.cache;
+
+import java.util.Objects;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Immutable snapshot of {@link CachingKeyspace} counters
+ *
+ * @since 0.2
+ */
+public final class CacheStats {
+
+	/**
+	 * Create new {@code CacheStats} instance
+	 *
+	 * @param hitCount
+	 *            long number of lookups answered from the cache
+	 * @param missCount
+	 *            long number of lookups passed to the backend
+	 * @param evictionCount
+	 *            long number of entries evicted by the size bound
+	 * @return new {@link CacheStats} instance
+	 * @since 0.2
+	 */
+	@Nonnull
+	public static CacheStats create(final long hitCount, final long missCount, final long evictionCount) {
+		return new CacheStats(hitCount, missCount, evictionCount);
+	}
+
+	private final long hitCount;
+	private final long missCount;
+	private final long evictionCount;
+
+	private CacheStats(final long hitCount, final long missCount, final long evictionCount) {
+		this.hitCount = hitCount;
+		this.missCount = missCount;
+		this.evictionCount = evictionCount;
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof CacheStats))
+			return false;
+		final CacheStats other = (CacheStats) obj;
+		return hitCount == other.hitCount && missCount == other.missCount && evictionCount == other.evictionCount;
+	}
+
+	/**
+	 * Get number of entries evicted by the size bound
+	 *
+	 * @return long eviction count
+	 * @since 0.2
+	 */
+	public long getEvictionCount() {
+		return evictionCount;
+	}
+
+	/**
+	 * Get number of lookups answered from the cache
+	 *
+	 * @return long hit count
+	 * @since 0.2
+	 */
+	public long getHitCount() {
+		return hitCount;
+	}
+
+	/**
+	 * Get ratio of lookups answered from the cache
+	 *
+	 * @return double between 0 and 1, 1 if there were no lookups
+	 * @since 0.2
+	 */
+	public double getHitRate() {
+		final long requests = hitCount + missCount;
+		return requests == 0L ? 1.0 : (double) hitCount / requests;
+	}
+
+	/**
+	 * Get number of lookups passed to the backend
+	 *
+	 * @return long miss count
+	 * @since 0.2
+	 */
+	public long getMissCount() {
+		return missCount;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(hitCount, missCount, evictionCount);
+	}
+
+	@Override
+	public String toString() {
+		return "CacheStats[hitCount=" + hitCount + ", missCount=" + missCount + ", evictionCount=" + evictionCount
+				+ "]";
+	}
+}
@@ -0,0 +1,644 @@
+package com.wolfninja.keystore.cache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+import javax.annotation.Nonnull;
+
+import com.wolfninja.keystore.api.ChangePublisher;
+import com.wolfninja.keystore.api.KeyValue;
+import com.wolfninja.keystore.api.Keyspace;
+import com.wolfninja.keystore.api.Watch;
+
+/**
+ * {@link Keyspace} decorator keeping a bounded local copy of recently read {@link KeyValue} entries
+ * <p>
+ * Reads are served from a {@link ConcurrentHashMap} without locking. Eviction follows W-TinyLFU: new entries enter a
+ * small LRU window, and when they leave it they are only admitted to the main segmented LRU if a frequency sketch says
+ * they are more popular than the entry they would displace. Access order is recorded under a per-segment lock which
+ * readers only ever try to take, so under heavy contention some accesses are dropped instead of blocking.
+ * <p>
+ * Every write through this keyspace invalidates the key after the backend call returns, so a later {@link #gets}
+ * fetches the new version. Loads that race with an invalidation are discarded, so a stale version is never left
+ * behind in the cache. Writes made by other clients directly against the backend are only seen once the entry is
+ * evicted or expires. The same goes for entries expiring in the backend, so when writing with a time to live, set
+ * {@link Builder#expireAfterWrite(long, TimeUnit)} no longer than the shortest one used.
+ *
+ * @since 0.2
+ */
+public final class CachingKeyspace implements Keyspace {
+
+	/**
+	 * Builder for {@link CachingKeyspace} instances
+	 *
+	 * @since 0.2
+	 */
+	public static final class Builder {
+		private final Keyspace delegate;
+		private long maximumWeight = 10_000L;
+		private Weigher weigher = Weigher.SINGLETON;
+		private long expireAfterWriteNanos;
+		private LongSupplier ticker = System::nanoTime;
+
+		private Builder(@Nonnull final Keyspace delegate) {
+			Objects.requireNonNull(delegate, "Keyspace must not be null");
+			this.delegate = delegate;
+		}
+
+		/**
+		 * Build the {@link CachingKeyspace}
+		 *
+		 * @return new {@link CachingKeyspace} instance, not null
+		 * @since 0.2
+		 */
+		@Nonnull
+		public CachingKeyspace build() {
+			return new CachingKeyspace(this);
+		}
+
+		/**
+		 * Expire entries a fixed duration after they were loaded
+		 *
+		 * @param duration
+		 *            long duration, greater than zero
+		 * @param unit
+		 *            {@link TimeUnit} of duration, not null
+		 * @return this builder
+		 * @since 0.2
+		 */
+		@Nonnull
+		public Builder expireAfterWrite(final long duration, @Nonnull final TimeUnit unit) {
+			Objects.requireNonNull(unit, "Unit must not be null");
+			if (duration <= 0L)
+				throw new IllegalArgumentException("Duration must be greater than zero");
+			this.expireAfterWriteNanos = unit.toNanos(duration);
+			return this;
+		}
+
+		/**
+		 * Bound the cache by number of entries
+		 *
+		 * @param maximumSize
+		 *            long maximum number of entries, greater than zero
+		 * @return this builder
+		 * @since 0.2
+		 */
+		@Nonnull
+		public Builder maximumSize(final long maximumSize) {
+			return maximumWeight(maximumSize, Weigher.SINGLETON);
+		}
+
+		/**
+		 * Bound the cache by total weight of entries
+		 *
+		 * @param maximumWeight
+		 *            long maximum total weight, greater than zero
+		 * @param weigher
+		 *            {@link Weigher} calculating entry weights, not null
+		 * @return this builder
+		 * @since 0.2
+		 */
+		@Nonnull
+		public Builder maximumWeight(final long maximumWeight, @Nonnull final Weigher weigher) {
+			Objects.requireNonNull(weigher, "Weigher must not be null");
+			if (maximumWeight <= 0L)
+				throw new IllegalArgumentException("Maximum weight must be greater than zero");
+			this.maximumWeight = maximumWeight;
+			this.weigher = weigher;
+			return this;
+		}
+
+		Builder ticker(final LongSupplier ticker) {
+			this.ticker = ticker;
+			return this;
+		}
+	}
+
+	private static final int MAX_SEGMENTS = 16;
+	private static final int MIN_SEGMENT_WEIGHT = 64;
+	private static final int INVALIDATION_STRIPES = 64;
+
+	private static final int WINDOW = 0;
+	private static final int PROBATION = 1;
+	private static final int PROTECTED = 2;
+
+	/**
+	 * Create a new {@link Builder} decorating the given keyspace
+	 *
+	 * @param delegate
+	 *            {@link Keyspace} to cache, not null
+	 * @return new {@link Builder} instance, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	public static Builder builder(@Nonnull final Keyspace delegate) {
+		return new Builder(delegate);
+	}
+
+	private final Keyspace delegate;
+	private final ConcurrentHashMap<String, Node> data = new ConcurrentHashMap<>();
+	private final Segment[] segments;
+	private final int segmentMask;
+	private final AtomicLongArray invalidations = new AtomicLongArray(INVALIDATION_STRIPES);
+	private final Weigher weigher;
+	private final long expireAfterWriteNanos;
+	private final LongSupplier ticker;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	private CachingKeyspace(final Builder builder) {
+		this.delegate = builder.delegate;
+		this.weigher = builder.weigher;
+		this.expireAfterWriteNanos = builder.expireAfterWriteNanos;
+		this.ticker = builder.ticker;
+
+		int segmentCount = 1;
+		while (segmentCount < MAX_SEGMENTS && builder.maximumWeight / (segmentCount * 2) >= MIN_SEGMENT_WEIGHT)
+			segmentCount <<= 1;
+		this.segments = new Segment[segmentCount];
+		this.segmentMask = segmentCount - 1;
+		final long segmentWeight = builder.maximumWeight / segmentCount;
+		for (int i = 0; i < segmentCount; i++)
+			segments[i] = new Segment(i == 0 ? builder.maximumWeight - segmentWeight * (segmentCount - 1)
+					: segmentWeight);
+	}
+
+	@Override
+	public boolean add(final String key, final String value) {
+		try {
+			return delegate.add(key, value);
+		} finally {
+			invalidateIfNotNull(key);
+		}
+	}
+
+	@Override
+	public boolean add(final String key, final String value, final long ttl, final TimeUnit unit) {
+		try {
+			return delegate.add(key, value, ttl, unit);
+		} finally {
+			invalidateIfNotNull(key);
+		}
+	}
+
+	@Override
+	public long addAndGet(final String key, final long delta) {
+		try {
+			return delegate.addAndGet(key, delta);
+		} finally {
+			invalidateIfNotNull(key);
+		}
+	}
+
+	@Override
+	public boolean checkAndSet(final String key, final String value, final long version) {
+		try {
+			return delegate.checkAndSet(key, value, version);
+		} finally {
+			invalidateIfNotNull(key);
+		}
+	}
+
+	@Override
+	public boolean checkAndSet(final String key, final String value, final long version, final long ttl,
+			final TimeUnit unit) {
+		try {
+			return delegate.checkAndSet(key, value, version, ttl, unit);
+		} finally {
+			invalidateIfNotNull(key);
+		}
+	}
+
+	@Override
+	public void close() {
+		invalidateAll();
+		delegate.close();
+	}
+
+	@Override
+	public boolean delete(final String key) {
+		try {
+			return delegate.delete(key);
+		} finally {
+			invalidateIfNotNull(key);
+		}
+	}
+
+	@Override
+	public int deleteAll(final Collection<String> keys) {
+		try {
+			return delegate.deleteAll(keys);
+		} finally {
+			if (keys != null)
+				keys.forEach(this::invalidateIfNotNull);
+		}
+	}
+
+	@Override
+	public boolean deletes(final String key, final long version) {
+		try {
+			return delegate.deletes(key, version);
+		} finally {
+			invalidateIfNotNull(key);
+		}
+	}
+
+	/**
+	 * Get approximate number of cached entries
+	 *
+	 * @return long entry count
+	 * @since 0.2
+	 */
+	public long estimatedSize() {
+		return data.size();
+	}
+
+	@Override
+	public boolean exists(final String key) {
+		Objects.requireNonNull(key, "Key must not be null");
+		if (getIfPresent(key) != null)
+			return true;
+		misses.increment();
+		return delegate.exists(key);
+	}
+
+	@Override
+	public void flush() {
+		delegate.flush();
+	}
+
+	@Override
+	public Optional<String> get(final String key) {
+		return gets(key).map(KeyValue::getValue);
+	}
+
+	@Override
+	public Optional<KeyValue> gets(final String key) {
+		Objects.requireNonNull(key, "Key must not be null");
+		final Node node = getIfPresent(key);
+		if (node != null)
+			return Optional.of(node.value);
+		misses.increment();
+
+		final int stripe = stripe(key);
+		final long stamp = invalidations.get(stripe);
+		final Optional<KeyValue> loaded = delegate.gets(key);
+		loaded.ifPresent(keyValue -> cache(keyValue, stripe, stamp));
+		return loaded;
+	}
+
+	@Override
+	public Map<String, KeyValue> getsAll(final Collection<String> keys) {
+		Objects.requireNonNull(keys, "Keys must not be null");
+		final Map<String, KeyValue> values = new HashMap<>();
+		final List<String> missing = new ArrayList<>();
+		for (final String key : keys) {
+			Objects.requireNonNull(key, "Key must not be null");
+			final Node node = getIfPresent(key);
+			if (node != null)
+				values.put(key, node.value);
+			else
+				missing.add(key);
+		}
+		if (missing.isEmpty())
+			return values;
+		misses.add(missing.size());
+
+		final long[] stamps = new long[missing.size()];
+		for (int i = 0; i < stamps.length; i++)
+			stamps[i] = invalidations.get(stripe(missing.get(i)));
+		final Map<String, KeyValue> loaded = delegate.getsAll(missing);
+		for (int i = 0; i < stamps.length; i++) {
+			final KeyValue keyValue = loaded.get(missing.get(i));
+			if (keyValue != null) {
+				cache(keyValue, stripe(keyValue.getKey()), stamps[i]);
+				values.put(keyValue.getKey(), keyValue);
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Discard any cached entry for the given key
+	 *
+	 * @param key
+	 *            String key, not null
+	 * @since 0.2
+	 */
+	public void invalidate(@Nonnull final String key) {
+		Objects.requireNonNull(key, "Key must not be null");
+		invalidations.incrementAndGet(stripe(key));
+		final Node node = data.remove(key);
+		if (node != null)
+			segmentFor(node.hash).remove(node);
+	}
+
+	/**
+	 * Discard all cached entries
+	 *
+	 * @since 0.2
+	 */
+	public void invalidateAll() {
+		data.keySet().forEach(this::invalidate);
+	}
+
+	@Override
+	public boolean replace(final String key, final String value) {
+		try {
+			return delegate.replace(key, value);
+		} finally {
+			invalidateIfNotNull(key);
+		}
+	}
+
+	@Override
+	public boolean replace(final String key, final String value, final long ttl, final TimeUnit unit) {
+		try {
+			return delegate.replace(key, value, ttl, unit);
+		} finally {
+			invalidateIfNotNull(key);
+		}
+	}
+
+	@Override
+	public Stream<KeyValue> scan(final String prefix) {
+		// The cache only holds recently read entries, so scans always go to the backend
+		return delegate.scan(prefix);
+	}
+
+	@Override
+	public boolean set(final String key, final String value) {
+		try {
+			return delegate.set(key, value);
+		} finally {
+			invalidateIfNotNull(key);
+		}
+	}
+
+	@Override
+	public boolean set(final String key, final String value, final long ttl, final TimeUnit unit) {
+		try {
+			return delegate.set(key, value, ttl, unit);
+		} finally {
+			invalidateIfNotNull(key);
+		}
+	}
+
+	@Override
+	public boolean setAll(final Map<String, String> values) {
+		try {
+			return delegate.setAll(values);
+		} finally {
+			if (values != null)
+				values.keySet().forEach(this::invalidateIfNotNull);
+		}
+	}
+
+	@Override
+	public Optional<Duration> ttl(final String key) {
+		// Not cached, the remaining time changes on every call
+		return delegate.ttl(key);
+	}
+
+	/**
+	 * Watch the decorated keyspace, which sees every write made through this cache
+	 */
+	@Override
+	public ChangePublisher watch(final Watch watch) {
+		return delegate.watch(watch);
+	}
+
+	/**
+	 * Get a snapshot of the hit, miss and eviction counters
+	 *
+	 * @return {@link CacheStats} snapshot, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	public CacheStats stats() {
+		return CacheStats.create(hits.sum(), misses.sum(), evictions.sum());
+	}
+
+	private void cache(final KeyValue keyValue, final int stripe, final long stamp) {
+		final Node node = new Node(keyValue, weigher.weigh(keyValue), expireAfterWriteNanos > 0L ? ticker.getAsLong()
+				: 0L);
+		final Node[] prior = new Node[1];
+		// An invalidation may have happened while the value was loading, in which case it could be stale. Checking
+		// the stamp inside compute orders the check against the removal that follows every stamp increment, so a
+		// stale value is never visible once the write that invalidated it has returned.
+		final Node installed = data.compute(node.key, (key, current) -> {
+			if (invalidations.get(stripe) != stamp)
+				return current;
+			prior[0] = current;
+			return node;
+		});
+		if (installed == node)
+			segmentFor(node.hash).insert(node, prior[0]);
+	}
+
+	private Node getIfPresent(final String key) {
+		final Node node = data.get(key);
+		if (node == null)
+			return null;
+		if (expireAfterWriteNanos > 0L && ticker.getAsLong() - node.writeTime >= expireAfterWriteNanos) {
+			if (data.remove(key, node))
+				segmentFor(node.hash).remove(node);
+			return null;
+		}
+		hits.increment();
+		segmentFor(node.hash).recordAccess(node);
+		return node;
+	}
+
+	private void invalidateIfNotNull(final String key) {
+		if (key != null)
+			invalidate(key);
+	}
+
+	private Segment segmentFor(final int hash) {
+		return segments[(hash ^ (hash >>> 16)) & segmentMask];
+	}
+
+	private static int stripe(final String key) {
+		final int hash = key.hashCode();
+		return (hash ^ (hash >>> 16)) & (INVALIDATION_STRIPES - 1);
+	}
+
+	private static final class Node {
+		final String key;
+		final int hash;
+		final KeyValue value;
+		final int weight;
+		final long writeTime;
+
+		// Guarded by segment lock
+		Node prev;
+		Node next;
+		int queue = -1;
+
+		Node(final KeyValue value, final int weight, final long writeTime) {
+			this.key = value.getKey();
+			this.hash = key.hashCode();
+			this.value = value;
+			this.weight = weight;
+			this.writeTime = writeTime;
+		}
+	}
+
+	private static final class NodeQueue {
+		Node head;
+		Node tail;
+		long weight;
+
+		void addFirst(final Node node) {
+			node.prev = null;
+			node.next = head;
+			if (head == null)
+				tail = node;
+			else
+				head.prev = node;
+			head = node;
+			weight += node.weight;
+		}
+
+		void remove(final Node node) {
+			if (node.prev == null)
+				head = node.next;
+			else
+				node.prev.next = node.next;
+			if (node.next == null)
+				tail = node.prev;
+			else
+				node.next.prev = node.prev;
+			node.prev = null;
+			node.next = null;
+			weight -= node.weight;
+		}
+	}
+
+	private final class Segment {
+		private final ReentrantLock lock = new ReentrantLock();
+		private final FrequencySketch sketch;
+		private final NodeQueue[] queues = { new NodeQueue(), new NodeQueue(), new NodeQueue() };
+		private final long maximumWeight;
+		private final long windowMaximum;
+		private final long protectedMaximum;
+
+		Segment(final long maximumWeight) {
+			this.maximumWeight = maximumWeight;
+			this.windowMaximum = Math.max(1L, maximumWeight / 100L);
+			this.protectedMaximum = (maximumWeight - windowMaximum) * 4L / 5L;
+			this.sketch = new FrequencySketch(maximumWeight);
+		}
+
+		void insert(final Node node, final Node prior) {
+			lock.lock();
+			try {
+				sketch.increment(node.hash);
+				if (prior != null && prior.queue >= 0)
+					unlink(prior);
+				// A newer load or an invalidation may already have replaced this node
+				if (data.get(node.key) != node)
+					return;
+				link(WINDOW, node);
+				Node candidate = null;
+				while (queues[WINDOW].weight > windowMaximum && queues[WINDOW].tail != null) {
+					candidate = queues[WINDOW].tail;
+					unlink(candidate);
+					link(PROBATION, candidate);
+				}
+				evict(candidate);
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		void recordAccess(final Node node) {
+			if (!lock.tryLock())
+				return;
+			try {
+				sketch.increment(node.hash);
+				switch (node.queue) {
+				case WINDOW:
+				case PROTECTED:
+					moveToFront(node.queue, node);
+					break;
+				case PROBATION:
+					unlink(node);
+					link(PROTECTED, node);
+					while (queues[PROTECTED].weight > protectedMaximum && queues[PROTECTED].tail != null) {
+						final Node demoted = queues[PROTECTED].tail;
+						unlink(demoted);
+						link(PROBATION, demoted);
+					}
+					break;
+				default:
+					// Already evicted or invalidated
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		void remove(final Node node) {
+			lock.lock();
+			try {
+				if (node.queue >= 0)
+					unlink(node);
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private void evict(Node candidate) {
+			while (totalWeight() > maximumWeight) {
+				Node victim = queues[PROBATION].tail;
+				if (victim == null)
+					victim = queues[PROTECTED].tail;
+				if (victim == null)
+					victim = queues[WINDOW].tail;
+				if (candidate != null && candidate != victim && candidate.queue == PROBATION
+						&& sketch.frequency(candidate.hash) <= sketch.frequency(victim.hash)) {
+					victim = candidate;
+					candidate = null;
+				}
+				unlink(victim);
+				if (data.remove(victim.key, victim))
+					evictions.increment();
+			}
+		}
+
+		private void link(final int queue, final Node node) {
+			node.queue = queue;
+			queues[queue].addFirst(node);
+		}
+
+		private void moveToFront(final int queue, final Node node) {
+			queues[queue].remove(node);
+			queues[queue].addFirst(node);
+		}
+
+		private long totalWeight() {
+			return queues[WINDOW].weight + queues[PROBATION].weight + queues[PROTECTED].weight;
+		}
+
+		private void unlink(final Node node) {
+			queues[node.queue].remove(node);
+			node.queue = -1;
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package com.wolfninja.keystore.cache;
+
+/**
+ * Count-min sketch of 4-bit counters estimating how often a key hash has been seen recently
+ * <p>
+ * Each long in the table holds sixteen counters; a hash selects one table row per seed and one counter group within
+ * each row. Once the number of increments reaches the sample size all counters are halved, so popularity ages out.
+ * Not thread safe, callers must synchronize.
+ */
+final class FrequencySketch {
+	private static final long[] SEEDS = { 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL,
+			0xcbf29ce484222325L };
+	private static final long RESET_MASK = 0x7777777777777777L;
+	private static final int MAX_TABLE_LENGTH = 1 << 24;
+
+	private final long[] table;
+	private final int tableMask;
+	private final int sampleSize;
+	private int size;
+
+	FrequencySketch(final long expectedEntries) {
+		final int length = ceilingPowerOfTwo((int) Math.max(16L, Math.min(MAX_TABLE_LENGTH, expectedEntries)));
+		this.table = new long[length];
+		this.tableMask = length - 1;
+		this.sampleSize = 10 * length;
+	}
+
+	int frequency(final int hash) {
+		final int spread = spread(hash);
+		final int start = (spread & 3) << 2;
+		int frequency = Integer.MAX_VALUE;
+		for (int i = 0; i < 4; i++) {
+			final int index = indexOf(spread, i);
+			final int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+			frequency = Math.min(frequency, count);
+		}
+		return frequency;
+	}
+
+	void increment(final int hash) {
+		final int spread = spread(hash);
+		final int start = (spread & 3) << 2;
+		boolean added = false;
+		for (int i = 0; i < 4; i++)
+			added |= incrementAt(indexOf(spread, i), start + i);
+		if (added && ++size >= sampleSize)
+			reset();
+	}
+
+	private boolean incrementAt(final int index, final int counter) {
+		final int offset = counter << 2;
+		final long mask = 0xfL << offset;
+		if ((table[index] & mask) != mask) {
+			table[index] += 1L << offset;
+			return true;
+		}
+		return false;
+	}
+
+	private int indexOf(final int hash, final int row) {
+		long h = (hash + SEEDS[row]) * SEEDS[row];
+		h += h >>> 32;
+		return ((int) h) & tableMask;
+	}
+
+	private void reset() {
+		for (int i = 0; i < table.length; i++)
+			table[i] = (table[i] >>> 1) & RESET_MASK;
+		size >>>= 1;
+	}
+
+	private static int spread(final int hash) {
+		int h = hash * 0x9e3779b9;
+		return h ^ (h >>> 16);
+	}
+
+	private static int ceilingPowerOfTwo(final int value) {
+		return 1 << (32 - Integer.numberOfLeadingZeros(value - 1));
+	}
+}
@@ -0,0 +1,39 @@
+package com.wolfninja.keystore.cache;
+
+import javax.annotation.Nonnull;
+
+import com.wolfninja.keystore.api.KeyValue;
+
+/**
+ * Calculates the weight of a cached entry, used to bound a {@link CachingKeyspace} by something other than entry
+ * count
+ *
+ * @since 0.2
+ */
+@FunctionalInterface
+public interface Weigher {
+
+	/**
+	 * Weigher giving every entry a weight of one, bounding the cache by entry count
+	 *
+	 * @since 0.2
+	 */
+	Weigher SINGLETON = keyValue -> 1;
+
+	/**
+	 * Weigher using the combined length of key and value
+	 *
+	 * @since 0.2
+	 */
+	Weigher LENGTH = keyValue -> keyValue.getKey().length() + keyValue.getValue().length();
+
+	/**
+	 * Get the weight of an entry
+	 *
+	 * @param keyValue
+	 *            {@link KeyValue} being cached, not null
+	 * @return int weight, zero or greater
+	 * @since 0.2
+	 */
+	int weigh(@Nonnull KeyValue keyValue);
+}
@@ -0,0 +1,137 @@
+package com.wolfninja.keystore.coalesce;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import javax.annotation.Nonnull;
+
+import com.wolfninja.keystore.api.AsyncKeyspace;
+import com.wolfninja.keystore.api.KeyValue;
+
+/**
+ * {@link AsyncKeyspace} decorator letting only one {@link #get(String)} and one {@link #gets(String)} per key run
+ * against the decorated keyspace at a time
+ * <p>
+ * Callers reading a key while a read of it is in flight get a future completing with the result of that read. Each
+ * caller gets its own future, so cancelling one leaves the shared read and the other callers alone. Writes through
+ * this keyspace forget the read in flight of their key once complete, like {@link CoalescingKeyspace}. All other
+ * operations go straight to the decorated keyspace.
+ *
+ * @since 0.2
+ */
+public final class CoalescingAsyncKeyspace implements AsyncKeyspace {
+
+	/**
+	 * Create a new {@link CoalescingAsyncKeyspace} decorating the given keyspace
+	 *
+	 * @param delegate
+	 *            {@link AsyncKeyspace} to read from, not null
+	 * @return new {@link CoalescingAsyncKeyspace} instance, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	public static CoalescingAsyncKeyspace create(@Nonnull final AsyncKeyspace delegate) {
+		Objects.requireNonNull(delegate, "Keyspace must not be null");
+		return new CoalescingAsyncKeyspace(delegate);
+	}
+
+	private final AsyncKeyspace delegate;
+	private final SingleFlight<Optional<String>> getFlights = new SingleFlight<>();
+	private final SingleFlight<Optional<KeyValue>> getsFlights = new SingleFlight<>();
+
+	private CoalescingAsyncKeyspace(final AsyncKeyspace delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public CompletableFuture<Boolean> add(final String key, final String value) {
+		return written(key, delegate.add(key, value));
+	}
+
+	@Override
+	public CompletableFuture<Boolean> checkAndSet(final String key, final String value, final long version) {
+		return written(key, delegate.checkAndSet(key, value, version));
+	}
+
+	@Override
+	public void close() {
+		delegate.close();
+	}
+
+	@Override
+	public CompletableFuture<Boolean> delete(final String key) {
+		return written(key, delegate.delete(key));
+	}
+
+	@Override
+	public CompletableFuture<Integer> deleteAll(final Collection<String> keys) {
+		return delegate.deleteAll(keys).whenComplete((deleted, failure) -> keys.forEach(this::forget));
+	}
+
+	@Override
+	public CompletableFuture<Boolean> deletes(final String key, final long version) {
+		return written(key, delegate.deletes(key, version));
+	}
+
+	@Override
+	public CompletableFuture<Boolean> exists(final String key) {
+		return delegate.exists(key);
+	}
+
+	@Override
+	public CompletableFuture<Optional<String>> get(final String key) {
+		return getFlights.loadAsync(key, delegate::get);
+	}
+
+	@Override
+	public CompletableFuture<Map<String, String>> getAll(final Collection<String> keys) {
+		return delegate.getAll(keys);
+	}
+
+	/**
+	 * Get the number of reads which shared a read already in flight instead of reading themselves
+	 *
+	 * @return long count of coalesced {@link #get(String)} and {@link #gets(String)} calls
+	 * @since 0.2
+	 */
+	public long getCoalescedCount() {
+		return getFlights.getCoalescedCount() + getsFlights.getCoalescedCount();
+	}
+
+	@Override
+	public CompletableFuture<Optional<KeyValue>> gets(final String key) {
+		return getsFlights.loadAsync(key, delegate::gets);
+	}
+
+	@Override
+	public CompletableFuture<Map<String, KeyValue>> getsAll(final Collection<String> keys) {
+		return delegate.getsAll(keys);
+	}
+
+	@Override
+	public CompletableFuture<Boolean> replace(final String key, final String value) {
+		return written(key, delegate.replace(key, value));
+	}
+
+	@Override
+	public CompletableFuture<Boolean> set(final String key, final String value) {
+		return written(key, delegate.set(key, value));
+	}
+
+	@Override
+	public CompletableFuture<Boolean> setAll(final Map<String, String> values) {
+		return delegate.setAll(values).whenComplete((result, failure) -> values.keySet().forEach(this::forget));
+	}
+
+	private void forget(final String key) {
+		getFlights.forget(key);
+		getsFlights.forget(key);
+	}
+
+	private <T> CompletableFuture<T> written(final String key, final CompletableFuture<T> write) {
+		return write.whenComplete((result, failure) -> forget(key));
+	}
+}
@@ -0,0 +1,197 @@
+package com.wolfninja.keystore.coalesce;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import javax.annotation.Nonnull;
+
+import com.wolfninja.keystore.api.ChangePublisher;
+import com.wolfninja.keystore.api.KeyValue;
+import com.wolfninja.keystore.api.Keyspace;
+import com.wolfninja.keystore.api.Watch;
+
+/**
+ * {@link Keyspace} decorator letting only one {@link #get(String)} and one {@link #gets(String)} per key run against
+ * the decorated keyspace at a time
+ * <p>
+ * Callers reading a key while a read of it is in flight wait for that read and get its result, or its exception,
+ * instead of reading the key again. This keeps a stampede of reads on a hot key, such as after it dropped out of a
+ * cache, from reaching the backend as more than one read per key.
+ * <p>
+ * Writes through this keyspace forget the read in flight of their key once done, so a read started after a write
+ * returned never gets an older value. Writes made around this keyspace can still be missed by reads already in flight.
+ * All other operations go straight to the decorated keyspace.
+ *
+ * @since 0.2
+ */
+public final class CoalescingKeyspace implements Keyspace {
+
+	/**
+	 * Create a new {@link CoalescingKeyspace} decorating the given keyspace
+	 *
+	 * @param delegate
+	 *            {@link Keyspace} to read from, not null
+	 * @return new {@link CoalescingKeyspace} instance, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	public static CoalescingKeyspace create(@Nonnull final Keyspace delegate) {
+		Objects.requireNonNull(delegate, "Keyspace must not be null");
+		return new CoalescingKeyspace(delegate);
+	}
+
+	private final Keyspace delegate;
+	private final SingleFlight<Optional<String>> getFlights = new SingleFlight<>();
+	private final SingleFlight<Optional<KeyValue>> getsFlights = new SingleFlight<>();
+
+	private CoalescingKeyspace(final Keyspace delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public boolean add(final String key, final String value) {
+		return written(key, delegate.add(key, value));
+	}
+
+	@Override
+	public boolean add(final String key, final String value, final long ttl, final TimeUnit unit) {
+		return written(key, delegate.add(key, value, ttl, unit));
+	}
+
+	@Override
+	public long addAndGet(final String key, final long delta) {
+		final long count = delegate.addAndGet(key, delta);
+		forget(key);
+		return count;
+	}
+
+	@Override
+	public boolean checkAndSet(final String key, final String value, final long version) {
+		return written(key, delegate.checkAndSet(key, value, version));
+	}
+
+	@Override
+	public boolean checkAndSet(final String key, final String value, final long version, final long ttl,
+			final TimeUnit unit) {
+		return written(key, delegate.checkAndSet(key, value, version, ttl, unit));
+	}
+
+	@Override
+	public void close() {
+		delegate.close();
+	}
+
+	@Override
+	public boolean delete(final String key) {
+		return written(key, delegate.delete(key));
+	}
+
+	@Override
+	public int deleteAll(final Collection<String> keys) {
+		final int deleted = delegate.deleteAll(keys);
+		keys.forEach(this::forget);
+		return deleted;
+	}
+
+	@Override
+	public boolean deletes(final String key, final long version) {
+		return written(key, delegate.deletes(key, version));
+	}
+
+	@Override
+	public boolean exists(final String key) {
+		return delegate.exists(key);
+	}
+
+	@Override
+	public void flush() {
+		delegate.flush();
+	}
+
+	@Override
+	public Optional<String> get(final String key) {
+		return getFlights.load(key, delegate::get);
+	}
+
+	@Override
+	public Map<String, String> getAll(final Collection<String> keys) {
+		return delegate.getAll(keys);
+	}
+
+	/**
+	 * Get the number of reads which waited for a read already in flight instead of reading themselves
+	 *
+	 * @return long count of coalesced {@link #get(String)} and {@link #gets(String)} calls
+	 * @since 0.2
+	 */
+	public long getCoalescedCount() {
+		return getFlights.getCoalescedCount() + getsFlights.getCoalescedCount();
+	}
+
+	@Override
+	public Optional<KeyValue> gets(final String key) {
+		return getsFlights.load(key, delegate::gets);
+	}
+
+	@Override
+	public Map<String, KeyValue> getsAll(final Collection<String> keys) {
+		return delegate.getsAll(keys);
+	}
+
+	@Override
+	public boolean replace(final String key, final String value) {
+		return written(key, delegate.replace(key, value));
+	}
+
+	@Override
+	public boolean replace(final String key, final String value, final long ttl, final TimeUnit unit) {
+		return written(key, delegate.replace(key, value, ttl, unit));
+	}
+
+	@Override
+	public Stream<KeyValue> scan(final String prefix) {
+		return delegate.scan(prefix);
+	}
+
+	@Override
+	public boolean set(final String key, final String value) {
+		return written(key, delegate.set(key, value));
+	}
+
+	@Override
+	public boolean set(final String key, final String value, final long ttl, final TimeUnit unit) {
+		return written(key, delegate.set(key, value, ttl, unit));
+	}
+
+	@Override
+	public boolean setAll(final Map<String, String> values) {
+		final boolean result = delegate.setAll(values);
+		values.keySet().forEach(this::forget);
+		return result;
+	}
+
+	@Override
+	public Optional<Duration> ttl(final String key) {
+		return delegate.ttl(key);
+	}
+
+	@Override
+	public ChangePublisher watch(final Watch watch) {
+		return delegate.watch(watch);
+	}
+
+	private void forget(final String key) {
+		getFlights.forget(key);
+		getsFlights.forget(key);
+	}
+
+	private boolean written(final String key, final boolean result) {
+		forget(key);
+		return result;
+	}
+}
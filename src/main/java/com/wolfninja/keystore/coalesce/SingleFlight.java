@@ -0,0 +1,107 @@
+package com.wolfninja.keystore.coalesce;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Runs at most one load per key at a time, handing its result to every caller asking for the key meanwhile
+ * <p>
+ * In-flight loads are futures in a {@link ConcurrentHashMap}, so an uncontended load costs one insert and one
+ * removal, which only lock the bin of the key. A load is removed before its result is published, so a caller arriving
+ * after that starts a new load instead of seeing an old result.
+ *
+ * @param <V>
+ *            type of the loaded values
+ */
+final class SingleFlight<V> {
+
+	private final ConcurrentHashMap<String, CompletableFuture<V>> flights = new ConcurrentHashMap<>();
+	private final LongAdder coalesced = new LongAdder();
+
+	/**
+	 * Forget the in-flight load of a key, so the next caller starts a new one
+	 * <p>
+	 * Called after writing the key, since a load in flight may have read the value before the write.
+	 */
+	void forget(final String key) {
+		flights.remove(key);
+	}
+
+	long getCoalescedCount() {
+		return coalesced.sum();
+	}
+
+	/**
+	 * Load the value of a key on the calling thread, or wait for the load already in flight
+	 */
+	V load(final String key, final Function<String, V> loader) {
+		Objects.requireNonNull(key, "Key must not be null");
+		final CompletableFuture<V> flight = new CompletableFuture<>();
+		final CompletableFuture<V> existing = flights.putIfAbsent(key, flight);
+		if (existing != null) {
+			coalesced.increment();
+			return join(existing);
+		}
+		final V value;
+		try {
+			value = loader.apply(key);
+		} catch (final RuntimeException | Error e) {
+			flights.remove(key, flight);
+			flight.completeExceptionally(e);
+			throw e;
+		}
+		flights.remove(key, flight);
+		flight.complete(value);
+		return value;
+	}
+
+	/**
+	 * Start loading the value of a key, or share the load already in flight
+	 * <p>
+	 * Every caller gets its own dependent future, so cancelling one does not affect the others.
+	 */
+	CompletableFuture<V> loadAsync(final String key, final Function<String, CompletableFuture<V>> loader) {
+		Objects.requireNonNull(key, "Key must not be null");
+		final CompletableFuture<V> flight = new CompletableFuture<>();
+		final CompletableFuture<V> existing = flights.putIfAbsent(key, flight);
+		if (existing != null) {
+			coalesced.increment();
+			return existing.thenApply(Function.identity());
+		}
+		final CompletableFuture<V> loaded;
+		try {
+			loaded = loader.apply(key);
+		} catch (final RuntimeException | Error e) {
+			flights.remove(key, flight);
+			flight.completeExceptionally(e);
+			throw e;
+		}
+		// Not chained to the future returned, since a dependent cancelled first skips its action
+		loaded.whenComplete((value, failure) -> {
+			flights.remove(key, flight);
+			if (failure == null)
+				flight.complete(value);
+			else
+				flight.completeExceptionally(failure);
+		});
+		return flight.thenApply(Function.identity());
+	}
+
+	private static <V> V join(final CompletableFuture<V> flight) {
+		try {
+			return flight.join();
+		} catch (final CompletionException e) {
+			// Rethrow what the loading caller got
+			final Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw e;
+		}
+	}
+}
@@ -0,0 +1,456 @@
+package com.wolfninja.keystore.compression;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.Adler32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import javax.annotation.Nonnull;
+
+import com.wolfninja.keystore.api.ChangeEvent;
+import com.wolfninja.keystore.api.ChangePublisher;
+import com.wolfninja.keystore.api.ChangeSubscriber;
+import com.wolfninja.keystore.api.ChangeSubscription;
+import com.wolfninja.keystore.api.KeyValue;
+import com.wolfninja.keystore.api.Keyspace;
+import com.wolfninja.keystore.api.Watch;
+
+/**
+ * {@link Keyspace} decorator compressing large values with the JDK's {@link Deflater}
+ * <p>
+ * Values are stored as they are unless compressing them saves space, so stored values stay readable text. A compressed
+ * value is stored as the marker character {@code \u00a7}, a type character, and the Base64 encoding of the
+ * uncompressed UTF-8 length as four big-endian bytes followed by the zlib stream. The type is {@code 1}, or {@code 2}
+ * when a preset dictionary was used. Base64 keeps compressed values printable ASCII, so they fit any String backend,
+ * including text columns that refuse control characters, and compression is only kept if the result takes fewer
+ * UTF-8 bytes than the value itself. A value that happens to start with the marker is stored behind the marker and
+ * type {@code 0}. Values written without the decorator are returned unchanged, so a keyspace can be switched to
+ * compression without rewriting old values, as long as those do not start with the marker followed by a type
+ * character.
+ * <p>
+ * A preset dictionary of strings common to many values, such as JSON field names, lets even small values compress
+ * well. Values written with a dictionary can only be read with the same dictionary.
+ * <p>
+ * Codec state is kept per thread and reused, so native zlib state is not allocated on every call. Versions are those
+ * of the decorated keyspace. Counters are not passed to the decorated keyspace, since it holds encoded values; they
+ * use the default check-and-set loop through this keyspace instead.
+ *
+ * @since 0.2
+ */
+public final class CompressingKeyspace implements Keyspace {
+
+	/**
+	 * Builder for {@link CompressingKeyspace} instances
+	 *
+	 * @since 0.2
+	 */
+	public static final class Builder {
+		private final Keyspace delegate;
+		private int threshold = 512;
+		private int level = Deflater.DEFAULT_COMPRESSION;
+		private byte[] dictionary;
+
+		private Builder(@Nonnull final Keyspace delegate) {
+			Objects.requireNonNull(delegate, "Keyspace must not be null");
+			this.delegate = delegate;
+		}
+
+		/**
+		 * Build the {@link CompressingKeyspace}
+		 *
+		 * @return new {@link CompressingKeyspace} instance, not null
+		 * @since 0.2
+		 */
+		@Nonnull
+		public CompressingKeyspace build() {
+			return new CompressingKeyspace(this);
+		}
+
+		/**
+		 * Prime compression with a preset dictionary
+		 *
+		 * @param dictionary
+		 *            String of content common to many values, not null, its most common parts last
+		 * @return this builder
+		 * @since 0.2
+		 */
+		@Nonnull
+		public Builder dictionary(@Nonnull final String dictionary) {
+			Objects.requireNonNull(dictionary, "Dictionary must not be null");
+			this.dictionary = dictionary.isEmpty() ? null : dictionary.getBytes(StandardCharsets.UTF_8);
+			return this;
+		}
+
+		/**
+		 * Set the compression level
+		 *
+		 * @param level
+		 *            int level from 0 to 9, or -1 for the default
+		 * @return this builder
+		 * @since 0.2
+		 */
+		@Nonnull
+		public Builder level(final int level) {
+			if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION)
+				throw new IllegalArgumentException("Level must be between -1 and 9");
+			this.level = level;
+			return this;
+		}
+
+		/**
+		 * Set the length below which values are stored uncompressed
+		 *
+		 * @param threshold
+		 *            int length in characters, zero or greater
+		 * @return this builder
+		 * @since 0.2
+		 */
+		@Nonnull
+		public Builder threshold(final int threshold) {
+			if (threshold < 0)
+				throw new IllegalArgumentException("Threshold must not be negative");
+			this.threshold = threshold;
+			return this;
+		}
+	}
+
+	/**
+	 * Reusable zlib state of one thread
+	 */
+	private static final class Codec {
+		private final Deflater[] deflaters = new Deflater[Deflater.BEST_COMPRESSION + 2];
+		private final Inflater inflater = new Inflater();
+		private byte[] buffer = new byte[1024];
+
+		private byte[] buffer(final int length) {
+			if (buffer.length < length)
+				buffer = new byte[Math.max(length, buffer.length * 2)];
+			return buffer;
+		}
+
+		private Deflater deflater(final int level) {
+			final Deflater deflater = deflaters[level + 1];
+			if (deflater != null) {
+				deflater.reset();
+				return deflater;
+			}
+			return deflaters[level + 1] = new Deflater(level);
+		}
+	}
+
+	/**
+	 * Subscriber decoding the values of the changes of the decorated keyspace
+	 */
+	private final class DecodingSubscriber implements ChangeSubscriber {
+		private final ChangeSubscriber subscriber;
+		private ChangeSubscription subscription;
+		private boolean failed;
+
+		private DecodingSubscriber(final ChangeSubscriber subscriber) {
+			this.subscriber = Objects.requireNonNull(subscriber, "Subscriber must not be null");
+		}
+
+		@Override
+		public void onComplete() {
+			if (!failed)
+				subscriber.onComplete();
+		}
+
+		@Override
+		public void onError(final Throwable failure) {
+			if (!failed)
+				subscriber.onError(failure);
+		}
+
+		@Override
+		public void onNext(final ChangeEvent event) {
+			if (failed)
+				return;
+			final ChangeEvent decoded;
+			try {
+				decoded = event.getType() == ChangeEvent.Type.DELETE ? event
+						: ChangeEvent.create(event.getType(), event.getKey(), decode(event.getValue().get()),
+								event.getVersion());
+			} catch (final IllegalStateException e) {
+				failed = true;
+				subscription.cancel();
+				subscriber.onError(e);
+				return;
+			}
+			subscriber.onNext(decoded);
+		}
+
+		@Override
+		public void onSubscribe(final ChangeSubscription subscription) {
+			this.subscription = subscription;
+			subscriber.onSubscribe(subscription);
+		}
+	}
+
+	static final char MARKER = '\u00a7';
+	static final char RAW = '0';
+	static final char DEFLATE = '1';
+	static final char DEFLATE_DICTIONARY = '2';
+
+	// Marker, which takes two UTF-8 bytes, and type
+	private static final int PREFIX_BYTES = 3;
+	private static final int HEADER = 4;
+	// Deflate can not shrink data by more than this factor, so a longer claimed length means a corrupt value
+	private static final int MAX_RATIO = 1032;
+	private static final ThreadLocal<Codec> CODECS = ThreadLocal.withInitial(Codec::new);
+
+	/**
+	 * Create a new {@link Builder} decorating the given keyspace
+	 *
+	 * @param delegate
+	 *            {@link Keyspace} to store compressed values in, not null
+	 * @return new {@link Builder} instance, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	public static Builder builder(@Nonnull final Keyspace delegate) {
+		return new Builder(delegate);
+	}
+
+	private final Keyspace delegate;
+	private final int threshold;
+	private final int level;
+	private final byte[] dictionary;
+	private final int dictionaryChecksum;
+
+	private CompressingKeyspace(final Builder builder) {
+		this.delegate = builder.delegate;
+		this.threshold = builder.threshold;
+		this.level = builder.level;
+		this.dictionary = builder.dictionary;
+		if (dictionary == null) {
+			this.dictionaryChecksum = 0;
+		} else {
+			final Adler32 adler = new Adler32();
+			adler.update(dictionary);
+			this.dictionaryChecksum = (int) adler.getValue();
+		}
+	}
+
+	@Override
+	public boolean add(final String key, final String value) {
+		return delegate.add(key, encode(value));
+	}
+
+	@Override
+	public boolean add(final String key, final String value, final long ttl, final TimeUnit unit) {
+		return delegate.add(key, encode(value), ttl, unit);
+	}
+
+	@Override
+	public boolean checkAndSet(final String key, final String value, final long version) {
+		return delegate.checkAndSet(key, encode(value), version);
+	}
+
+	@Override
+	public boolean checkAndSet(final String key, final String value, final long version, final long ttl,
+			final TimeUnit unit) {
+		return delegate.checkAndSet(key, encode(value), version, ttl, unit);
+	}
+
+	@Override
+	public void close() {
+		delegate.close();
+	}
+
+	@Override
+	public boolean delete(final String key) {
+		return delegate.delete(key);
+	}
+
+	@Override
+	public int deleteAll(final Collection<String> keys) {
+		return delegate.deleteAll(keys);
+	}
+
+	@Override
+	public boolean deletes(final String key, final long version) {
+		return delegate.deletes(key, version);
+	}
+
+	@Override
+	public boolean exists(final String key) {
+		return delegate.exists(key);
+	}
+
+	@Override
+	public void flush() {
+		delegate.flush();
+	}
+
+	@Override
+	public Optional<String> get(final String key) {
+		return delegate.get(key).map(this::decode);
+	}
+
+	@Override
+	public Map<String, String> getAll(final Collection<String> keys) {
+		final Map<String, String> values = new HashMap<>();
+		delegate.getAll(keys).forEach((key, value) -> values.put(key, decode(value)));
+		return values;
+	}
+
+	@Override
+	public Optional<KeyValue> gets(final String key) {
+		return delegate.gets(key).map(this::decode);
+	}
+
+	@Override
+	public Map<String, KeyValue> getsAll(final Collection<String> keys) {
+		final Map<String, KeyValue> values = new HashMap<>();
+		delegate.getsAll(keys).forEach((key, keyValue) -> values.put(key, decode(keyValue)));
+		return values;
+	}
+
+	@Override
+	public boolean replace(final String key, final String value) {
+		return delegate.replace(key, encode(value));
+	}
+
+	@Override
+	public boolean replace(final String key, final String value, final long ttl, final TimeUnit unit) {
+		return delegate.replace(key, encode(value), ttl, unit);
+	}
+
+	@Override
+	public Stream<KeyValue> scan(final String prefix) {
+		return delegate.scan(prefix).map(this::decode);
+	}
+
+	@Override
+	public boolean set(final String key, final String value) {
+		return delegate.set(key, encode(value));
+	}
+
+	@Override
+	public boolean set(final String key, final String value, final long ttl, final TimeUnit unit) {
+		return delegate.set(key, encode(value), ttl, unit);
+	}
+
+	@Override
+	public boolean setAll(final Map<String, String> values) {
+		Objects.requireNonNull(values, "Values must not be null");
+		final Map<String, String> encoded = new HashMap<>(values.size() * 2);
+		values.forEach((key, value) -> encoded.put(key, encode(value)));
+		return delegate.setAll(encoded);
+	}
+
+	@Override
+	public Optional<Duration> ttl(final String key) {
+		return delegate.ttl(key);
+	}
+
+	/**
+	 * Watch the decorated keyspace, decoding the values of its changes
+	 * <p>
+	 * Counters are updated with check-and-set through this keyspace, so their changes arrive as
+	 * {@link ChangeEvent.Type#CHECK_AND_SET}. A value that cannot be decoded fails the subscriber.
+	 */
+	@Override
+	public ChangePublisher watch(final Watch watch) {
+		final ChangePublisher changes = delegate.watch(watch);
+		return subscriber -> changes.subscribe(new DecodingSubscriber(subscriber));
+	}
+
+	String decode(final String stored) {
+		if (stored.length() < 2 || stored.charAt(0) != MARKER)
+			return stored;
+		final char type = stored.charAt(1);
+		if (type == RAW)
+			return stored.substring(2);
+		if (type != DEFLATE && type != DEFLATE_DICTIONARY)
+			return stored;
+
+		final byte[] input;
+		try {
+			input = Base64.getDecoder().decode(stored.substring(2));
+		} catch (final IllegalArgumentException e) {
+			throw new IllegalStateException("Compressed value is corrupt", e);
+		}
+		if (input.length < HEADER)
+			throw new IllegalStateException("Compressed value is truncated");
+		final int length = (input[0] & 0xff) << 24 | (input[1] & 0xff) << 16 | (input[2] & 0xff) << 8
+				| (input[3] & 0xff);
+		if (length < 0 || length > (long) (input.length - HEADER) * MAX_RATIO)
+			throw new IllegalStateException("Compressed value is corrupt");
+		final byte[] output = new byte[length];
+		final Inflater inflater = CODECS.get().inflater;
+		inflater.reset();
+		inflater.setInput(input, HEADER, input.length - HEADER);
+		try {
+			int inflated = 0;
+			while (inflated < length) {
+				final int count = inflater.inflate(output, inflated, length - inflated);
+				if (count == 0 && inflater.needsDictionary()) {
+					if (dictionary == null || inflater.getAdler() != dictionaryChecksum)
+						throw new IllegalStateException("Value was compressed with a different preset dictionary");
+					inflater.setDictionary(dictionary);
+				} else if (count == 0 && (inflater.finished() || inflater.needsInput())) {
+					throw new IllegalStateException("Compressed value is truncated");
+				}
+				inflated += count;
+			}
+		} catch (final DataFormatException e) {
+			throw new IllegalStateException("Compressed value is corrupt", e);
+		}
+		return new String(output, StandardCharsets.UTF_8);
+	}
+
+	String encode(final String value) {
+		Objects.requireNonNull(value, "Value must not be null");
+		if (value.length() < threshold)
+			return raw(value);
+
+		final byte[] input = value.getBytes(StandardCharsets.UTF_8);
+		final Codec codec = CODECS.get();
+		final Deflater deflater = codec.deflater(level);
+		if (dictionary != null)
+			deflater.setDictionary(dictionary);
+		deflater.setInput(input);
+		deflater.finish();
+		// Only worth it if the result takes fewer UTF-8 bytes than the raw value, which Base64 can only make larger
+		final int limit = HEADER + input.length;
+		final byte[] output = codec.buffer(limit);
+		int length = HEADER;
+		while (!deflater.finished() && length < limit)
+			length += deflater.deflate(output, length, limit - length);
+		if (!deflater.finished() || PREFIX_BYTES + (length + 2) / 3 * 4 >= input.length)
+			return raw(value);
+
+		output[0] = (byte) (input.length >>> 24);
+		output[1] = (byte) (input.length >>> 16);
+		output[2] = (byte) (input.length >>> 8);
+		output[3] = (byte) input.length;
+		final ByteBuffer encoded = Base64.getEncoder().encode(ByteBuffer.wrap(output, 0, length));
+		return new StringBuilder(2 + encoded.remaining()).append(MARKER)
+				.append(dictionary == null ? DEFLATE : DEFLATE_DICTIONARY)
+				.append(StandardCharsets.US_ASCII.decode(encoded)).toString();
+	}
+
+	private KeyValue decode(final KeyValue keyValue) {
+		return KeyValue.create(keyValue.getKey(), decode(keyValue.getValue()), keyValue.getVersion());
+	}
+
+	/**
+	 * Store a value as is, unless it would be mistaken for an encoded one
+	 */
+	private static String raw(final String value) {
+		return value.isEmpty() || value.charAt(0) != MARKER ? value : String.valueOf(MARKER) + RAW + value;
+	}
+}
@@ -0,0 +1,330 @@
+package com.wolfninja.keystore.file;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import javax.annotation.Nonnull;
+
+import com.wolfninja.keystore.api.AsyncExecutors;
+import com.wolfninja.keystore.api.BinaryKeyspace;
+import com.wolfninja.keystore.api.KeyValueStoreAdapter;
+import com.wolfninja.keystore.api.Keyspace;
+import com.wolfninja.keystore.api.ScanFeature;
+
+/**
+ * {@link KeyValueStoreAdapter} persisting keyspaces as log-structured, memory-mapped files in a directory
+ * <p>
+ * Each keyspace is a sub directory of append-only segment files. Writes append a record to the current segment and
+ * update an in-memory index of key locations; reads look up the index and view the mapped file directly, and
+ * {@link #getBinaryKeyspace(String)} returns values as read-only views of the mapping without copying. Segments whose
+ * records are mostly superseded are compacted on a background thread.
+ * <p>
+ * Versions are persisted with each record, so {@code checkAndSet} and {@code deletes} behave the same after a
+ * restart. On startup the index is rebuilt from the small hint file written for each full segment, and only the last
+ * segment is scanned; records torn by a crash are detected by their checksum and ignored.
+ * <p>
+ * Writes reach the operating system as soon as they return, so they survive the JVM exiting. To also survive an
+ * operating system crash, enable {@link Builder#syncOnWrite(boolean)} at the cost of flushing on every write. The
+ * directory is locked while the adapter is open; {@link #close()} releases it.
+ *
+ * @since 0.2
+ */
+public final class FileAdapter implements KeyValueStoreAdapter, Closeable {
+
+	/**
+	 * Builder for {@link FileAdapter} instances
+	 *
+	 * @since 0.2
+	 */
+	public static final class Builder {
+		private final Path directory;
+		private int segmentSize = 64 << 20;
+		private double compactionThreshold = 0.5;
+		private boolean syncOnWrite;
+		private LongSupplier clock = System::currentTimeMillis;
+
+		private Builder(@Nonnull final Path directory) {
+			Objects.requireNonNull(directory, "Directory must not be null");
+			this.directory = directory;
+		}
+
+		/**
+		 * Open the directory, creating it if needed, and build the {@link FileAdapter}
+		 *
+		 * @return new {@link FileAdapter} instance, not null
+		 * @throws UncheckedIOException
+		 *             if the directory cannot be created or read
+		 * @throws IllegalStateException
+		 *             if the directory is already in use by another adapter
+		 * @since 0.2
+		 */
+		@Nonnull
+		public FileAdapter build() {
+			return new FileAdapter(this);
+		}
+
+		/**
+		 * Replace the wall clock expiry times are based on, for tests
+		 */
+		Builder clock(final LongSupplier clock) {
+			this.clock = Objects.requireNonNull(clock, "Clock must not be null");
+			return this;
+		}
+
+		/**
+		 * Compact a keyspace once this fraction of its full segments is taken by superseded records and deletes
+		 *
+		 * @param compactionThreshold
+		 *            double fraction, greater than zero and at most one
+		 * @return this builder
+		 * @since 0.2
+		 */
+		@Nonnull
+		public Builder compactionThreshold(final double compactionThreshold) {
+			if (!(compactionThreshold > 0.0 && compactionThreshold <= 1.0))
+				throw new IllegalArgumentException("Compaction threshold must be greater than zero and at most one");
+			this.compactionThreshold = compactionThreshold;
+			return this;
+		}
+
+		/**
+		 * Set the size of segment files, which also limits the size of a single entry
+		 *
+		 * @param segmentSize
+		 *            int size in bytes, at least 4096
+		 * @return this builder
+		 * @since 0.2
+		 */
+		@Nonnull
+		public Builder segmentSize(final int segmentSize) {
+			if (segmentSize < MIN_SEGMENT_SIZE)
+				throw new IllegalArgumentException("Segment size must be at least " + MIN_SEGMENT_SIZE + " bytes");
+			this.segmentSize = segmentSize;
+			return this;
+		}
+
+		/**
+		 * Flush every write to the storage device before returning
+		 *
+		 * @param syncOnWrite
+		 *            boolean true to flush each write, false to leave flushing to the operating system
+		 * @return this builder
+		 * @since 0.2
+		 */
+		@Nonnull
+		public Builder syncOnWrite(final boolean syncOnWrite) {
+			this.syncOnWrite = syncOnWrite;
+			return this;
+		}
+	}
+
+	private static final int MIN_SEGMENT_SIZE = 4096;
+	private static final String LOCK_FILE = "lock";
+	private static final Set<ScanFeature> SCAN_FEATURES = Collections.unmodifiableSet(EnumSet.of(ScanFeature.SCAN));
+
+	/**
+	 * Create a new {@link Builder} for an adapter storing its data in the given directory
+	 *
+	 * @param directory
+	 *            {@link Path} of the data directory, not null
+	 * @return new {@link Builder} instance, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	public static Builder builder(@Nonnull final Path directory) {
+		return new Builder(directory);
+	}
+
+	/**
+	 * Open an adapter storing its data in the given directory, using default settings
+	 *
+	 * @param directory
+	 *            {@link Path} of the data directory, not null
+	 * @return new {@link FileAdapter} instance, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	public static FileAdapter open(@Nonnull final Path directory) {
+		return builder(directory).build();
+	}
+
+	private final Path directory;
+	private final int segmentSize;
+	private final double compactionThreshold;
+	private final boolean syncOnWrite;
+	private final LongSupplier clock;
+	private final ExecutorService compactor;
+	private final FileChannel lockChannel;
+	private final FileLock lock;
+	private final ConcurrentHashMap<String, FileKeyspace> keyspaces = new ConcurrentHashMap<>();
+	private volatile boolean closed;
+
+	private FileAdapter(final Builder builder) {
+		this.directory = builder.directory;
+		this.segmentSize = builder.segmentSize;
+		this.compactionThreshold = builder.compactionThreshold;
+		this.syncOnWrite = builder.syncOnWrite;
+		this.clock = builder.clock;
+		try {
+			Files.createDirectories(directory);
+			this.lockChannel = FileChannel.open(directory.resolve(LOCK_FILE), StandardOpenOption.CREATE,
+					StandardOpenOption.WRITE);
+		} catch (final IOException e) {
+			throw new UncheckedIOException("Unable to open directory " + directory, e);
+		}
+		this.lock = tryLock(lockChannel);
+		if (lock == null) {
+			closeQuietly(lockChannel);
+			throw new IllegalStateException("Directory " + directory + " is already in use");
+		}
+		this.compactor = Executors
+				.newSingleThreadExecutor(AsyncExecutors.daemonThreadFactory("keystore-file-compaction"));
+	}
+
+	/**
+	 * Stop background compaction, flush all keyspaces and release the directory
+	 * <p>
+	 * Keyspaces obtained from this adapter reject writes afterwards.
+	 *
+	 * @throws UncheckedIOException
+	 *             if the directory lock cannot be released
+	 * @since 0.2
+	 */
+	@Override
+	public void close() {
+		if (closed)
+			return;
+		closed = true;
+		compactor.shutdown();
+		try {
+			compactor.awaitTermination(1L, TimeUnit.MINUTES);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		keyspaces.values().forEach(FileKeyspace::seal);
+		try {
+			lock.release();
+			lockChannel.close();
+		} catch (final IOException e) {
+			closeQuietly(lockChannel);
+			throw new UncheckedIOException("Unable to release directory " + directory, e);
+		}
+	}
+
+	/**
+	 * Compact all open keyspaces now, rewriting their live entries into as few segment files as possible
+	 * <p>
+	 * Compaction normally runs in the background; this is useful before backups or after bulk deletes.
+	 *
+	 * @since 0.2
+	 */
+	public void compact() {
+		keyspaces.values().forEach(FileKeyspace::compact);
+	}
+
+	/**
+	 * Force the active segment of every open keyspace to storage, so writes made so far survive an operating system
+	 * crash
+	 *
+	 * @since 0.2
+	 */
+	@Override
+	public void flush() {
+		keyspaces.values().forEach(FileKeyspace::flush);
+	}
+
+	@Override
+	public Optional<BinaryKeyspace> getBinaryKeyspace(final String keyspaceName) {
+		return Optional.of(keyspace(keyspaceName).binary());
+	}
+
+	/**
+	 * Get the data directory
+	 *
+	 * @return {@link Path} of the data directory, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	public Path getDirectory() {
+		return directory;
+	}
+
+	@Override
+	public Keyspace getKeyspace(final String keyspaceName) {
+		return keyspace(keyspaceName);
+	}
+
+	@Override
+	public Set<ScanFeature> getScanFeatures() {
+		return SCAN_FEATURES;
+	}
+
+	/**
+	 * Get the configured segment size
+	 *
+	 * @return int size of segment files in bytes
+	 * @since 0.2
+	 */
+	public int getSegmentSize() {
+		return segmentSize;
+	}
+
+	private FileKeyspace keyspace(final String keyspaceName) {
+		Objects.requireNonNull(keyspaceName, "Keyspace name must not be null");
+		final FileKeyspace existing = keyspaces.get(keyspaceName);
+		if (existing != null)
+			return existing;
+		if (closed)
+			throw new IllegalStateException("Adapter is closed");
+		return keyspaces.computeIfAbsent(keyspaceName, name -> FileKeyspace.open(directory.resolve(directoryName(name)),
+				segmentSize, compactionThreshold, syncOnWrite, compactor, clock));
+	}
+
+	/**
+	 * Keyspace names are hex encoded, so any name maps to a valid and distinct directory name on every platform
+	 */
+	private static String directoryName(final String keyspaceName) {
+		final byte[] bytes = keyspaceName.getBytes(StandardCharsets.UTF_8);
+		final StringBuilder name = new StringBuilder(3 + bytes.length * 2).append("ks-");
+		for (final byte b : bytes)
+			name.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+		return name.toString();
+	}
+
+	private static FileLock tryLock(final FileChannel channel) {
+		try {
+			return channel.tryLock();
+		} catch (final OverlappingFileLockException e) {
+			return null;
+		} catch (final IOException e) {
+			closeQuietly(channel);
+			throw new UncheckedIOException("Unable to lock directory", e);
+		}
+	}
+
+	private static void closeQuietly(final FileChannel channel) {
+		try {
+			channel.close();
+		} catch (final IOException e) {
+			// Already failing
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package com.wolfninja.keystore.file;
+
+import java.nio.ByteBuffer;
+import java.util.Optional;
+
+import com.wolfninja.keystore.api.BinaryKeyValue;
+import com.wolfninja.keystore.api.BinaryKeyspace;
+
+/**
+ * {@link BinaryKeyspace} view of a {@link FileKeyspace}
+ * <p>
+ * Values are returned as read-only views of the mapped segment file, without copying. Records are never modified
+ * once written, so a view stays valid after the key is overwritten or its segment is compacted away.
+ */
+final class FileBinaryKeyspace implements BinaryKeyspace {
+
+	private final FileKeyspace keyspace;
+
+	FileBinaryKeyspace(final FileKeyspace keyspace) {
+		this.keyspace = keyspace;
+	}
+
+	@Override
+	public boolean add(final String key, final ByteBuffer value) {
+		return keyspace.write(key, value, FileKeyspace.ADD, 0L);
+	}
+
+	@Override
+	public boolean checkAndSet(final String key, final ByteBuffer value, final long version) {
+		return keyspace.write(key, value, FileKeyspace.CHECK_AND_SET, version);
+	}
+
+	@Override
+	public boolean delete(final String key) {
+		return keyspace.remove(key, FileKeyspace.ANY_VERSION);
+	}
+
+	@Override
+	public boolean deletes(final String key, final long version) {
+		return keyspace.remove(key, version);
+	}
+
+	@Override
+	public boolean exists(final String key) {
+		return keyspace.exists(key);
+	}
+
+	@Override
+	public Optional<ByteBuffer> get(final String key) {
+		final FileKeyspace.Location location = keyspace.locate(key);
+		return location == null ? Optional.empty() : Optional.of(keyspace.value(location));
+	}
+
+	@Override
+	public Optional<BinaryKeyValue> gets(final String key) {
+		final FileKeyspace.Location location = keyspace.locate(key);
+		return location == null ? Optional.empty()
+				: Optional.of(BinaryKeyValue.create(key, keyspace.value(location), keyspace.version(location)));
+	}
+
+	@Override
+	public boolean replace(final String key, final ByteBuffer value) {
+		return keyspace.write(key, value, FileKeyspace.REPLACE, 0L);
+	}
+
+	@Override
+	public boolean set(final String key, final ByteBuffer value) {
+		return keyspace.write(key, value, FileKeyspace.SET, 0L);
+	}
+}
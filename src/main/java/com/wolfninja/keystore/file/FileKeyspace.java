@@ -0,0 +1,766 @@
+package com.wolfninja.keystore.file;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+import com.wolfninja.keystore.api.ChangeBus;
+import com.wolfninja.keystore.api.ChangeEvent;
+import com.wolfninja.keystore.api.ChangePublisher;
+import com.wolfninja.keystore.api.KeyValue;
+import com.wolfninja.keystore.api.Keyspace;
+import com.wolfninja.keystore.api.Watch;
+
+/**
+ * {@link Keyspace} stored as a log of memory-mapped {@link Segment segment} files in one directory
+ * <p>
+ * Every write appends a record to the active segment under a single writer lock and then publishes the new location
+ * in an in-memory index; reads only look up the index and view the mapped file, without locking. Full segments are
+ * sealed, and once enough of their records are superseded they are compacted in the background by copying the live
+ * records to new segments.
+ * <p>
+ * Versions are handed out from one counter per keyspace and stored in every record, including deletes. On startup
+ * the index is rebuilt by keeping the highest version seen for each key, so the order in which segments are read does
+ * not matter and a crash during compaction at worst leaves duplicates. The counter resumes above every version seen,
+ * and above the {@value #VERSION_FILE} checkpoint written by compaction, which covers the deletes compaction drops.
+ * <p>
+ * Compaction drops deletes, which is only safe once every older record of their key is gone too. Before deleting the
+ * segments it replaced, compaction lists them in a {@value #COMPACTED_FILE} file, and recovery finishes deleting the
+ * listed segments before reading any, so a crash can not leave an older record behind without the delete that
+ * superseded it.
+ * <p>
+ * Scans stream the index, reading each value from the mapped file only when the entry is consumed.
+ * <p>
+ * Entries with a time to live store their expiry in the record. Expired entries are treated as absent as soon as
+ * they are read and dropped from the index, without writing a delete, since the record itself says it expired. Once
+ * any entry has an expiry, every write also checks a few index entries along a cursor, so expired entries that are
+ * never read again are dropped too; recovery and compaction skip them. A superseded older record can not reappear,
+ * because it sits in the same or an earlier segment and so is compacted away no later than the expired one.
+ * <p>
+ * Counters are read from the mapped file and appended under the writer lock, like any other conditional write.
+ * <p>
+ * Changes are published to a {@link ChangeBus} under the writer lock, so in the order they were made. Sealing the
+ * keyspace completes its subscribers.
+ */
+final class FileKeyspace implements Keyspace {
+
+	static final int ADD = 0;
+	static final int REPLACE = 1;
+	static final int SET = 2;
+	static final int CHECK_AND_SET = 3;
+
+	static final long ANY_VERSION = Long.MIN_VALUE;
+
+	// Indexed by the write modes
+	private static final ChangeEvent.Type[] CHANGE_TYPES = { ChangeEvent.Type.ADD, ChangeEvent.Type.REPLACE,
+			ChangeEvent.Type.SET, ChangeEvent.Type.CHECK_AND_SET };
+
+	private static final String VERSION_FILE = "version";
+	private static final String COMPACTED_FILE = "compacted";
+	private static final int SWEEP_BATCH = 8;
+
+	/**
+	 * Location of the current record of a key
+	 */
+	static final class Location {
+		private final Segment segment;
+		private final int offset;
+		private final long version;
+		private final long expiresAt;
+
+		private Location(final Segment segment, final int offset, final long version, final long expiresAt) {
+			this.segment = segment;
+			this.offset = offset;
+			this.version = version;
+			this.expiresAt = expiresAt;
+		}
+
+		private boolean isLive(final long now) {
+			return expiresAt == Segment.NEVER || expiresAt > now;
+		}
+
+		private void markDead() {
+			segment.markDead(segment.recordLength(offset));
+		}
+	}
+
+	/**
+	 * Open the keyspace stored in the given directory, creating it if needed
+	 */
+	static FileKeyspace open(final Path directory, final int segmentSize, final double compactionThreshold,
+			final boolean syncOnWrite, final Executor compactor, final LongSupplier clock) {
+		final FileKeyspace keyspace = new FileKeyspace(directory, segmentSize, compactionThreshold, syncOnWrite,
+				compactor, clock);
+		keyspace.recover();
+		return keyspace;
+	}
+
+	private final Path directory;
+	private final int segmentSize;
+	private final double compactionThreshold;
+	private final boolean syncOnWrite;
+	private final Executor compactor;
+	private final LongSupplier clock;
+
+	private final ConcurrentHashMap<String, Location> index = new ConcurrentHashMap<>();
+	private final FileBinaryKeyspace binary = new FileBinaryKeyspace(this);
+	private final ReentrantLock writeLock = new ReentrantLock();
+	private final ReentrantLock compactionLock = new ReentrantLock();
+	private final ChangeBus changes = ChangeBus.create();
+
+	// Guarded by writeLock
+	private final List<Segment> sealed = new ArrayList<>();
+	private Segment active;
+	private long version;
+	private long nextSegmentId;
+	private boolean closed;
+	private boolean expiring;
+	private Iterator<Map.Entry<String, Location>> sweepCursor = Collections.emptyIterator();
+
+	private FileKeyspace(final Path directory, final int segmentSize, final double compactionThreshold,
+			final boolean syncOnWrite, final Executor compactor, final LongSupplier clock) {
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		this.compactionThreshold = compactionThreshold;
+		this.syncOnWrite = syncOnWrite;
+		this.compactor = compactor;
+		this.clock = clock;
+	}
+
+	@Override
+	public boolean add(final String key, final String value) {
+		return write(key, encode(value), ADD, 0L);
+	}
+
+	@Override
+	public boolean add(final String key, final String value, final long ttl, final TimeUnit unit) {
+		return write(key, encode(value), ADD, 0L, expiresAt(ttl, unit));
+	}
+
+	@Override
+	public long addAndGet(final String key, final long delta) {
+		Objects.requireNonNull(key, "Key must not be null");
+		final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+		writeLock.lock();
+		try {
+			ensureOpen();
+			sweep();
+			final Location current = locate(key);
+			final long count = current == null ? delta
+					: Math.addExact(parseDecimal(current.segment.value(current.offset)), delta);
+			final ByteBuffer value = ByteBuffer.wrap(Long.toString(count).getBytes(StandardCharsets.US_ASCII));
+			checkFits(keyBytes, value);
+			final Location location = append(Segment.PUT, keyBytes, value,
+					current == null ? Segment.NEVER : current.expiresAt);
+			final Location previous = index.put(key, location);
+			if (previous != null)
+				previous.markDead();
+			if (changes.isWatched(key))
+				changes.publish(ChangeEvent.Type.COUNTER, key, Long.toString(count), location.version);
+			return count;
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	@Override
+	public boolean checkAndSet(final String key, final String value, final long version) {
+		return write(key, encode(value), CHECK_AND_SET, version);
+	}
+
+	@Override
+	public boolean checkAndSet(final String key, final String value, final long version, final long ttl,
+			final TimeUnit unit) {
+		return write(key, encode(value), CHECK_AND_SET, version, expiresAt(ttl, unit));
+	}
+
+	@Override
+	public boolean delete(final String key) {
+		return remove(key, ANY_VERSION);
+	}
+
+	@Override
+	public boolean deletes(final String key, final long version) {
+		return remove(key, version);
+	}
+
+	@Override
+	public boolean exists(final String key) {
+		return locate(key) != null;
+	}
+
+	/**
+	 * Force the active segment to storage, so writes made so far survive an operating system crash
+	 */
+	@Override
+	public void flush() {
+		writeLock.lock();
+		try {
+			if (!closed)
+				active.force();
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	@Override
+	public Optional<String> get(final String key) {
+		final Location location = locate(key);
+		return location == null ? Optional.empty() : Optional.of(decode(location.segment.value(location.offset)));
+	}
+
+	@Override
+	public Optional<KeyValue> gets(final String key) {
+		final Location location = locate(key);
+		return location == null ? Optional.empty()
+				: Optional.of(
+						KeyValue.create(key, decode(location.segment.value(location.offset)), location.version));
+	}
+
+	@Override
+	public boolean replace(final String key, final String value) {
+		return write(key, encode(value), REPLACE, 0L);
+	}
+
+	@Override
+	public boolean replace(final String key, final String value, final long ttl, final TimeUnit unit) {
+		return write(key, encode(value), REPLACE, 0L, expiresAt(ttl, unit));
+	}
+
+	@Override
+	public Stream<KeyValue> scan(final String prefix) {
+		Objects.requireNonNull(prefix, "Prefix must not be null");
+		final Stream<Map.Entry<String, Location>> entries = index.entrySet().stream();
+		return (prefix.isEmpty() ? entries : entries.filter(entry -> entry.getKey().startsWith(prefix)))
+				.filter(entry -> entry.getValue().isLive(clock.getAsLong()))
+				.map(entry -> KeyValue.create(entry.getKey(),
+						decode(entry.getValue().segment.value(entry.getValue().offset)), entry.getValue().version));
+	}
+
+	@Override
+	public boolean set(final String key, final String value) {
+		return write(key, encode(value), SET, 0L);
+	}
+
+	@Override
+	public boolean set(final String key, final String value, final long ttl, final TimeUnit unit) {
+		return write(key, encode(value), SET, 0L, expiresAt(ttl, unit));
+	}
+
+	@Override
+	public Optional<Duration> ttl(final String key) {
+		final Location location = locate(key);
+		if (location == null)
+			return Optional.empty();
+		if (location.expiresAt == Segment.NEVER)
+			return Optional.of(NO_EXPIRY);
+		return Optional.of(Duration.ofMillis(Math.max(1L, location.expiresAt - clock.getAsLong())));
+	}
+
+	@Override
+	public ChangePublisher watch(final Watch watch) {
+		return changes.publisher(watch);
+	}
+
+	FileBinaryKeyspace binary() {
+		return binary;
+	}
+
+	/**
+	 * Seal the active segment, flushing it and writing its hint file so the next start is fast; writes fail after
+	 * this
+	 * <p>
+	 * Only called by the adapter, which owns its keyspaces; {@link #close()} leaves a keyspace open
+	 */
+	void seal() {
+		writeLock.lock();
+		try {
+			if (closed)
+				return;
+			closed = true;
+			active.seal();
+			changes.close();
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Seal the active segment if it holds any records, then compact all sealed segments
+	 */
+	void compact() {
+		writeLock.lock();
+		try {
+			if (closed)
+				return;
+			if (active.end() > 0)
+				roll();
+		} finally {
+			writeLock.unlock();
+		}
+		compactionLock.lock();
+		try {
+			compactSealed();
+		} finally {
+			compactionLock.unlock();
+		}
+	}
+
+	/**
+	 * Fraction of the bytes in sealed segments taken by superseded records and deletes
+	 */
+	double garbageRatio() {
+		writeLock.lock();
+		try {
+			long dead = 0L;
+			long total = 0L;
+			for (final Segment segment : sealed) {
+				dead += segment.deadBytes();
+				total += segment.end();
+			}
+			return total == 0L ? 0.0 : (double) dead / total;
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Get the location of the current record of a key unless it expired, dropping it from the index if it did
+	 */
+	Location locate(final String key) {
+		Objects.requireNonNull(key, "Key must not be null");
+		final Location location = index.get(key);
+		if (location == null || location.isLive(clock.getAsLong()))
+			return location;
+		if (index.remove(key, location))
+			location.markDead();
+		return null;
+	}
+
+	/**
+	 * Read-only view of the value at the given location, sharing the mapped file
+	 */
+	ByteBuffer value(final Location location) {
+		return location.segment.value(location.offset);
+	}
+
+	long version(final Location location) {
+		return location.version;
+	}
+
+	boolean remove(final String key, final long expectedVersion) {
+		Objects.requireNonNull(key, "Key must not be null");
+		final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+		writeLock.lock();
+		try {
+			ensureOpen();
+			sweep();
+			final Location current = locate(key);
+			if (current == null || (expectedVersion != ANY_VERSION && current.version != expectedVersion))
+				return false;
+			final Location tombstone = append(Segment.DELETE, keyBytes, null, Segment.NEVER);
+			// Removed whatever the entry is now: compaction may have moved the record meanwhile, and a reader may have
+			// dropped it if it expired since
+			final Location removed = index.remove(key);
+			if (removed != null)
+				removed.markDead();
+			tombstone.markDead();
+			changes.publish(ChangeEvent.Type.DELETE, key, null, current.version);
+			return true;
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	int segmentCount() {
+		writeLock.lock();
+		try {
+			return sealed.size() + 1;
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	long size() {
+		return index.size();
+	}
+
+	boolean write(final String key, final ByteBuffer value, final int mode, final long expectedVersion) {
+		return write(key, value, mode, expectedVersion, Segment.NEVER);
+	}
+
+	boolean write(final String key, final ByteBuffer value, final int mode, final long expectedVersion,
+			final long expiresAt) {
+		Objects.requireNonNull(key, "Key must not be null");
+		Objects.requireNonNull(value, "Value must not be null");
+		final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+		checkFits(keyBytes, value);
+		writeLock.lock();
+		try {
+			ensureOpen();
+			sweep();
+			final Location current = locate(key);
+			switch (mode) {
+			case ADD:
+				if (current != null)
+					return false;
+				break;
+			case REPLACE:
+				if (current == null || current.segment.valueEquals(current.offset, value))
+					return false;
+				break;
+			case CHECK_AND_SET:
+				if (current == null || current.version != expectedVersion)
+					return false;
+				break;
+			default:
+				break;
+			}
+			if (expiresAt != Segment.NEVER)
+				expiring = true;
+			final Location location = append(Segment.PUT, keyBytes, value, expiresAt);
+			// Null if a reader dropped the current record meanwhile, because it expired since
+			final Location previous = index.put(key, location);
+			if (previous != null)
+				previous.markDead();
+			if (changes.isWatched(key))
+				changes.publish(CHANGE_TYPES[mode], key, decode(value.duplicate()), location.version);
+			return true;
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	private Location append(final byte type, final byte[] key, final ByteBuffer value, final long expiresAt) {
+		final long recordVersion = ++version;
+		int offset = active.append(type, recordVersion, expiresAt, key, value);
+		if (offset < 0) {
+			roll();
+			offset = active.append(type, recordVersion, expiresAt, key, value);
+			if (compactor != null && !compactionLock.isLocked() && garbageRatio() >= compactionThreshold)
+				compactor.execute(this::compactInBackground);
+		}
+		if (syncOnWrite)
+			active.force();
+		return new Location(active, offset, recordVersion, expiresAt);
+	}
+
+	/**
+	 * Copy the live records of all currently sealed segments to new segments, then delete the old ones
+	 * <p>
+	 * Writers only hold the lock to snapshot and swap the segment list. Index entries are moved with a
+	 * compare-and-set, so a key written or deleted meanwhile keeps its newer location or stays deleted, and the copy
+	 * is simply dead; the delete record sits in a segment written after the snapshot, so it outlives the copy. Called
+	 * with the compaction lock held. Expired entries are dropped instead of copied.
+	 */
+	private void compactSealed() {
+		final List<Segment> victims;
+		final long checkpoint;
+		writeLock.lock();
+		try {
+			if (closed || sealed.isEmpty())
+				return;
+			victims = new ArrayList<>(sealed);
+			checkpoint = version;
+		} finally {
+			writeLock.unlock();
+		}
+
+		final Set<Segment> victimSet = Collections.newSetFromMap(new IdentityHashMap<>());
+		victimSet.addAll(victims);
+		final List<Segment> outputs = new ArrayList<>();
+		Segment output = null;
+		final long now = clock.getAsLong();
+		for (final Map.Entry<String, Location> entry : index.entrySet()) {
+			final Location location = entry.getValue();
+			if (!victimSet.contains(location.segment))
+				continue;
+			if (!location.isLive(now)) {
+				index.remove(entry.getKey(), location);
+				continue;
+			}
+			int offset = output == null ? -1 : location.segment.copyTo(output, location.offset);
+			if (offset < 0) {
+				output = Segment.create(directory, nextSegmentId(), segmentSize);
+				outputs.add(output);
+				offset = location.segment.copyTo(output, location.offset);
+			}
+			final Location moved = new Location(output, offset, location.version, location.expiresAt);
+			if (!index.replace(entry.getKey(), location, moved))
+				moved.markDead();
+		}
+		for (final Segment segment : outputs)
+			segment.seal();
+		writeVersionCheckpoint(checkpoint);
+		writeCompacted(victims);
+
+		writeLock.lock();
+		try {
+			sealed.removeAll(victims);
+			sealed.addAll(outputs);
+		} finally {
+			writeLock.unlock();
+		}
+		for (final Segment victim : victims)
+			victim.delete();
+		try {
+			Files.deleteIfExists(directory.resolve(COMPACTED_FILE));
+		} catch (final IOException e) {
+			throw new UncheckedIOException("Unable to delete compaction list in " + directory, e);
+		}
+	}
+
+	private void checkFits(final byte[] key, final ByteBuffer value) {
+		if ((long) Segment.HEADER + key.length + value.remaining() > segmentSize)
+			throw new IllegalArgumentException("Entry does not fit in a segment of " + segmentSize + " bytes");
+	}
+
+	private void compactInBackground() {
+		if (!compactionLock.tryLock())
+			return;
+		try {
+			compactSealed();
+		} finally {
+			compactionLock.unlock();
+		}
+	}
+
+	/**
+	 * Finish deleting the segments listed by a compaction interrupted by a crash
+	 */
+	private void deleteCompacted() {
+		final Path file = directory.resolve(COMPACTED_FILE);
+		final List<String> ids;
+		try {
+			ids = Files.readAllLines(file, StandardCharsets.US_ASCII);
+		} catch (final NoSuchFileException e) {
+			return;
+		} catch (final IOException e) {
+			throw new UncheckedIOException("Unable to read compaction list in " + directory, e);
+		}
+		for (final String id : ids)
+			if (!id.isEmpty())
+				Segment.delete(directory, Long.parseLong(id));
+		try {
+			Files.delete(file);
+		} catch (final IOException e) {
+			throw new UncheckedIOException("Unable to delete compaction list in " + directory, e);
+		}
+	}
+
+	private void ensureOpen() {
+		if (closed)
+			throw new IllegalStateException("Keyspace is closed");
+	}
+
+	private void recover() {
+		try {
+			Files.createDirectories(directory);
+		} catch (final IOException e) {
+			throw new UncheckedIOException("Unable to create keyspace directory " + directory, e);
+		}
+		deleteCompacted();
+		final List<Segment> segments = new ArrayList<>();
+		try (final DirectoryStream<Path> files = Files.newDirectoryStream(directory, Segment::isSegmentFile)) {
+			for (final Path file : files)
+				segments.add(Segment.open(file));
+		} catch (final IOException e) {
+			throw new UncheckedIOException("Unable to list keyspace directory " + directory, e);
+		}
+		segments.sort(Comparator.comparingLong(Segment::id));
+
+		final long[] maxVersion = { readVersionCheckpoint() };
+		final Map<String, Long> deleted = new HashMap<>();
+		for (final Segment segment : segments) {
+			segment.readIndex((type, recordVersion, expiresAt, offset, key) -> {
+				maxVersion[0] = Math.max(maxVersion[0], recordVersion);
+				final Location current = index.get(key);
+				if (type == Segment.DELETE) {
+					segment.markDead(segment.recordLength(offset));
+					deleted.merge(key, recordVersion, Math::max);
+					if (current != null && current.version < recordVersion) {
+						index.remove(key);
+						current.markDead();
+					}
+					return;
+				}
+				final Long deletedVersion = deleted.get(key);
+				final Location candidate = new Location(segment, offset, recordVersion, expiresAt);
+				if ((deletedVersion != null && deletedVersion > recordVersion)
+						|| (current != null && current.version >= recordVersion)) {
+					candidate.markDead();
+					return;
+				}
+				index.put(key, candidate);
+				if (current != null)
+					current.markDead();
+			});
+		}
+		version = maxVersion[0];
+		// Only the latest record of a key decides whether it expired, so older ones can not reappear
+		final long now = clock.getAsLong();
+		index.entrySet().removeIf(entry -> {
+			final Location location = entry.getValue();
+			if (location.expiresAt == Segment.NEVER)
+				return false;
+			if (location.isLive(now)) {
+				expiring = true;
+				return false;
+			}
+			location.markDead();
+			return true;
+		});
+
+		if (segments.isEmpty()) {
+			active = Segment.create(directory, 1L, segmentSize);
+		} else {
+			active = segments.remove(segments.size() - 1);
+			active.deleteHint();
+			sealed.addAll(segments);
+		}
+		nextSegmentId = active.id() + 1;
+	}
+
+	private long readVersionCheckpoint() {
+		try {
+			return Long.parseLong(new String(Files.readAllBytes(directory.resolve(VERSION_FILE)),
+					StandardCharsets.US_ASCII).trim());
+		} catch (final NoSuchFileException e) {
+			return 0L;
+		} catch (final IOException e) {
+			throw new UncheckedIOException("Unable to read version checkpoint in " + directory, e);
+		}
+	}
+
+	private void roll() {
+		active.seal();
+		sealed.add(active);
+		active = Segment.create(directory, nextSegmentId(), segmentSize);
+	}
+
+	private long nextSegmentId() {
+		writeLock.lock();
+		try {
+			return nextSegmentId++;
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Drop the expired entries among the next few along the sweep cursor; called by writers with the lock held
+	 */
+	private void sweep() {
+		if (!expiring)
+			return;
+		final long now = clock.getAsLong();
+		for (int i = 0; i < SWEEP_BATCH; i++) {
+			if (!sweepCursor.hasNext()) {
+				sweepCursor = index.entrySet().iterator();
+				if (!sweepCursor.hasNext())
+					return;
+			}
+			final Map.Entry<String, Location> entry = sweepCursor.next();
+			final Location location = entry.getValue();
+			if (!location.isLive(now) && index.remove(entry.getKey(), location))
+				location.markDead();
+		}
+	}
+
+	/**
+	 * List the segments compaction is about to delete, replacing the file atomically so it is complete or absent
+	 */
+	private void writeCompacted(final List<Segment> victims) {
+		final StringBuilder ids = new StringBuilder();
+		for (final Segment victim : victims)
+			ids.append(victim.id()).append('\n');
+		final Path file = directory.resolve(COMPACTED_FILE);
+		final Path temporary = directory.resolve(COMPACTED_FILE + ".tmp");
+		try {
+			Files.write(temporary, ids.toString().getBytes(StandardCharsets.US_ASCII));
+			Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (final IOException e) {
+			throw new UncheckedIOException("Unable to write compaction list in " + directory, e);
+		}
+	}
+
+	private void writeVersionCheckpoint(final long checkpoint) {
+		final Path file = directory.resolve(VERSION_FILE);
+		final Path temporary = directory.resolve(VERSION_FILE + ".tmp");
+		try {
+			Files.write(temporary, Long.toString(checkpoint).getBytes(StandardCharsets.US_ASCII));
+			Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (final IOException e) {
+			throw new UncheckedIOException("Unable to write version checkpoint in " + directory, e);
+		}
+	}
+
+	private static String decode(final ByteBuffer value) {
+		return StandardCharsets.UTF_8.decode(value).toString();
+	}
+
+	private long expiresAt(final long ttl, final TimeUnit unit) {
+		Objects.requireNonNull(unit, "Unit must not be null");
+		if (ttl <= 0L)
+			throw new IllegalArgumentException("TTL must be greater than zero");
+		final long now = clock.getAsLong();
+		// At least a millisecond, saturating at the end of time
+		final long millis = Math.max(1L, unit.toMillis(ttl));
+		return millis > Long.MAX_VALUE - now ? Long.MAX_VALUE : now + millis;
+	}
+
+	/**
+	 * Parse a decimal long straight from the mapped value, without decoding a String
+	 */
+	private static long parseDecimal(final ByteBuffer value) {
+		final int start = value.position();
+		final int length = value.remaining();
+		final byte sign = length > 0 ? value.get(start) : 0;
+		final boolean negative = sign == '-';
+		int i = negative || sign == '+' ? 1 : 0;
+		if (i == length)
+			throw new IllegalStateException("Value is not an integer");
+		// Accumulated negatively, since the negative range is the larger one
+		long result = 0L;
+		for (; i < length; i++) {
+			final int digit = value.get(start + i) - '0';
+			if (digit < 0 || digit > 9 || result < (Long.MIN_VALUE + digit) / 10)
+				throw new IllegalStateException("Value is not an integer");
+			result = result * 10 - digit;
+		}
+		if (negative)
+			return result;
+		if (result == Long.MIN_VALUE)
+			throw new IllegalStateException("Value is not an integer");
+		return -result;
+	}
+
+	private static ByteBuffer encode(final String value) {
+		Objects.requireNonNull(value, "Value must not be null");
+		return ByteBuffer.wrap(value.getBytes(StandardCharsets.UTF_8));
+	}
+}
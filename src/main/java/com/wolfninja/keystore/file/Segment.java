@@ -0,0 +1,376 @@
+package com.wolfninja.keystore.file;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * One memory-mapped, append-only segment file of a {@link FileKeyspace}
+ * <p>
+ * Segment files are created at their full size and mapped once, so appends never remap. A record is laid out as
+ * {@code [int crc][byte type][long version][long expiresAt][int keyLength][int valueLength][key][value]}, with the CRC covering
+ * everything after it. New files are zero filled, so a zero type marks the end of the log and a CRC mismatch marks a
+ * write torn by a crash.
+ * <p>
+ * The expiry is a wall clock time in epoch milliseconds, or {@link #NEVER}, so it keeps its meaning across restarts.
+ * <p>
+ * A sealed segment gets a hint file listing the type, version, expiry, offset and key of each record, but not the
+ * value, so the index can be rebuilt without reading values.
+ */
+final class Segment {
+
+	/**
+	 * Receives the records of a segment or its hint file
+	 */
+	@FunctionalInterface
+	interface RecordVisitor {
+		void visit(byte type, long version, long expiresAt, int offset, String key);
+	}
+
+	static final byte PUT = 1;
+	static final byte DELETE = 2;
+	static final int HEADER = 29;
+	static final long NEVER = 0L;
+
+	private static final int TYPE = 4;
+	private static final int VERSION = 5;
+	private static final int EXPIRES_AT = 13;
+	private static final int KEY_LENGTH = 21;
+	private static final int VALUE_LENGTH = 25;
+
+	private static final String LOG_SUFFIX = ".log";
+	private static final String HINT_SUFFIX = ".hint";
+	private static final long HINT_MAGIC = 0x4b5348494e543032L;
+	private static final int HINT_TRAILER = 20;
+
+	/**
+	 * Create and map a new, zero filled segment file
+	 *
+	 * @param directory
+	 *            keyspace directory
+	 * @param id
+	 *            segment id, determining the file name
+	 * @param size
+	 *            file size in bytes
+	 * @return new segment
+	 */
+	static Segment create(final Path directory, final long id, final int size) {
+		final Path file = directory.resolve(fileName(id, LOG_SUFFIX));
+		try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+			return new Segment(id, file, channel.map(MapMode.READ_WRITE, 0L, size));
+		} catch (final IOException e) {
+			throw new UncheckedIOException("Unable to create segment " + file, e);
+		}
+	}
+
+	/**
+	 * Remove the segment and hint files of a segment that is not open
+	 *
+	 * @param directory
+	 *            keyspace directory
+	 * @param id
+	 *            segment id
+	 */
+	static void delete(final Path directory, final long id) {
+		try {
+			Files.deleteIfExists(directory.resolve(fileName(id, HINT_SUFFIX)));
+			Files.deleteIfExists(directory.resolve(fileName(id, LOG_SUFFIX)));
+		} catch (final IOException e) {
+			throw new UncheckedIOException("Unable to delete segment " + id + " in " + directory, e);
+		}
+	}
+
+	static boolean isSegmentFile(final Path file) {
+		final String name = file.getFileName().toString();
+		return name.endsWith(LOG_SUFFIX) && name.length() == 16 + LOG_SUFFIX.length();
+	}
+
+	/**
+	 * Map an existing segment file
+	 * <p>
+	 * The end of the log is only known after {@link #readIndex(RecordVisitor)}.
+	 *
+	 * @param file
+	 *            segment file
+	 * @return mapped segment
+	 */
+	static Segment open(final Path file) {
+		final String name = file.getFileName().toString();
+		final long id = Long.parseUnsignedLong(name.substring(0, name.length() - LOG_SUFFIX.length()), 16);
+		try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			return new Segment(id, file, channel.map(MapMode.READ_WRITE, 0L, channel.size()));
+		} catch (final IOException e) {
+			throw new UncheckedIOException("Unable to open segment " + file, e);
+		}
+	}
+
+	private static String fileName(final long id, final String suffix) {
+		return String.format("%016x%s", id, suffix);
+	}
+
+	private final long id;
+	private final Path file;
+	private final MappedByteBuffer buffer;
+	private final AtomicLong deadBytes = new AtomicLong();
+	private volatile int end;
+
+	private Segment(final long id, final Path file, final MappedByteBuffer buffer) {
+		this.id = id;
+		this.file = file;
+		this.buffer = buffer;
+	}
+
+	/**
+	 * Append a record; only called by the single writer of the keyspace
+	 *
+	 * @return offset of the record, or -1 if it does not fit
+	 */
+	int append(final byte type, final long version, final long expiresAt, final byte[] key, final ByteBuffer value) {
+		final int valueLength = value == null ? 0 : value.remaining();
+		final int offset = end;
+		final int length = HEADER + key.length + valueLength;
+		if (length > buffer.capacity() - offset)
+			return -1;
+
+		final ByteBuffer target = buffer.duplicate();
+		target.position(offset + TYPE);
+		target.put(type).putLong(version).putLong(expiresAt).putInt(key.length).putInt(valueLength).put(key);
+		if (value != null)
+			target.put(value.duplicate());
+		buffer.putInt(offset, checksum(offset, length));
+		end = offset + length;
+		return offset;
+	}
+
+	int capacity() {
+		return buffer.capacity();
+	}
+
+	/**
+	 * Copy the record at the given offset verbatim to the end of another segment
+	 *
+	 * @return offset in the target segment, or -1 if it does not fit
+	 */
+	int copyTo(final Segment target, final int offset) {
+		final int length = recordLength(offset);
+		final int targetOffset = target.end;
+		if (length > target.buffer.capacity() - targetOffset)
+			return -1;
+		final ByteBuffer source = buffer.duplicate();
+		source.position(offset).limit(offset + length);
+		final ByteBuffer destination = target.buffer.duplicate();
+		destination.position(targetOffset);
+		destination.put(source);
+		target.end = targetOffset + length;
+		return targetOffset;
+	}
+
+	long deadBytes() {
+		return deadBytes.get();
+	}
+
+	/**
+	 * Remove the segment and hint files
+	 * <p>
+	 * Readers may still hold views of the mapping, which stays valid until it is garbage collected.
+	 */
+	void delete() {
+		try {
+			Files.deleteIfExists(hintFile());
+			Files.deleteIfExists(file);
+		} catch (final IOException e) {
+			file.toFile().deleteOnExit();
+		}
+	}
+
+	/**
+	 * Drop the hint file of a segment that will be appended to again, since it would no longer be complete
+	 */
+	void deleteHint() {
+		try {
+			Files.deleteIfExists(hintFile());
+		} catch (final IOException e) {
+			throw new UncheckedIOException("Unable to delete hint of " + file, e);
+		}
+	}
+
+	int end() {
+		return end;
+	}
+
+	void force() {
+		buffer.force();
+	}
+
+	long id() {
+		return id;
+	}
+
+	void markDead(final int length) {
+		deadBytes.addAndGet(length);
+	}
+
+	/**
+	 * Visit the records of this segment, from its hint file when there is a valid one and otherwise by scanning the
+	 * log up to the first empty or corrupt record
+	 *
+	 * @return true if the hint file was used
+	 */
+	boolean readIndex(final RecordVisitor visitor) {
+		final ByteBuffer hint = readHint();
+		if (hint == null) {
+			end = scan(visitor);
+			return false;
+		}
+		while (hint.remaining() > HINT_TRAILER) {
+			final byte type = hint.get();
+			final long version = hint.getLong();
+			final long expiresAt = hint.getLong();
+			final int offset = hint.getInt();
+			final byte[] key = new byte[hint.getInt()];
+			hint.get(key);
+			visitor.visit(type, version, expiresAt, offset, new String(key, StandardCharsets.UTF_8));
+		}
+		hint.getLong();
+		end = hint.getInt();
+		return true;
+	}
+
+	int recordLength(final int offset) {
+		return HEADER + buffer.getInt(offset + KEY_LENGTH) + buffer.getInt(offset + VALUE_LENGTH);
+	}
+
+	/**
+	 * Flush the mapping and write the hint file; no more records are appended after this
+	 */
+	void seal() {
+		force();
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (final DataOutputStream out = new DataOutputStream(bytes)) {
+			scan((type, version, expiresAt, offset, key) -> {
+				try {
+					final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+					out.writeByte(type);
+					out.writeLong(version);
+					out.writeLong(expiresAt);
+					out.writeInt(offset);
+					out.writeInt(keyBytes.length);
+					out.write(keyBytes);
+				} catch (final IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+			out.writeLong(HINT_MAGIC);
+			out.writeInt(end);
+			final CRC32 crc = new CRC32();
+			crc.update(bytes.toByteArray());
+			out.writeLong(crc.getValue());
+		} catch (final IOException e) {
+			throw new UncheckedIOException("Unable to build hint of " + file, e);
+		}
+
+		final Path hint = hintFile();
+		final Path temporary = hint.resolveSibling(hint.getFileName() + ".tmp");
+		try {
+			Files.write(temporary, bytes.toByteArray());
+			Files.move(temporary, hint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (final IOException e) {
+			throw new UncheckedIOException("Unable to write hint of " + file, e);
+		}
+	}
+
+	/**
+	 * Read-only view of the value of the record at the given offset, sharing the mapped memory
+	 */
+	ByteBuffer value(final int offset) {
+		final int start = offset + HEADER + buffer.getInt(offset + KEY_LENGTH);
+		final ByteBuffer value = buffer.duplicate();
+		value.limit(start + buffer.getInt(offset + VALUE_LENGTH)).position(start);
+		return value.slice().asReadOnlyBuffer();
+	}
+
+	boolean valueEquals(final int offset, final ByteBuffer other) {
+		final int length = other.remaining();
+		if (buffer.getInt(offset + VALUE_LENGTH) != length)
+			return false;
+		final int start = offset + HEADER + buffer.getInt(offset + KEY_LENGTH);
+		final int otherStart = other.position();
+		for (int i = 0; i < length; i++)
+			if (buffer.get(start + i) != other.get(otherStart + i))
+				return false;
+		return true;
+	}
+
+	private int checksum(final int offset, final int length) {
+		final ByteBuffer checked = buffer.duplicate();
+		checked.limit(offset + length).position(offset + TYPE);
+		final CRC32 crc = new CRC32();
+		crc.update(checked);
+		return (int) crc.getValue();
+	}
+
+	private Path hintFile() {
+		return file.resolveSibling(fileName(id, HINT_SUFFIX));
+	}
+
+	private ByteBuffer readHint() {
+		final byte[] content;
+		try {
+			content = Files.readAllBytes(hintFile());
+		} catch (final NoSuchFileException e) {
+			return null;
+		} catch (final IOException e) {
+			throw new UncheckedIOException("Unable to read hint of " + file, e);
+		}
+		if (content.length < HINT_TRAILER)
+			return null;
+		final ByteBuffer hint = ByteBuffer.wrap(content);
+		final CRC32 crc = new CRC32();
+		crc.update(content, 0, content.length - 8);
+		if (hint.getLong(content.length - 8) != crc.getValue()
+				|| hint.getLong(content.length - HINT_TRAILER) != HINT_MAGIC)
+			return null;
+		return hint;
+	}
+
+	private int scan(final RecordVisitor visitor) {
+		final int capacity = buffer.capacity();
+		int offset = 0;
+		while (offset + HEADER <= capacity) {
+			final byte type = buffer.get(offset + TYPE);
+			if (type != PUT && type != DELETE)
+				break;
+			final int keyLength = buffer.getInt(offset + KEY_LENGTH);
+			final int valueLength = buffer.getInt(offset + VALUE_LENGTH);
+			if (keyLength < 0 || valueLength < 0 || (long) offset + HEADER + keyLength + valueLength > capacity)
+				break;
+			final int length = HEADER + keyLength + valueLength;
+			if (buffer.getInt(offset) != checksum(offset, length))
+				break;
+			if (visitor != null) {
+				final byte[] key = new byte[keyLength];
+				final ByteBuffer source = buffer.duplicate();
+				source.position(offset + HEADER);
+				source.get(key);
+				visitor.visit(type, buffer.getLong(offset + VERSION), buffer.getLong(offset + EXPIRES_AT), offset,
+						new String(key, StandardCharsets.UTF_8));
+			}
+			offset += length;
+		}
+		return offset;
+	}
+}
@@ -0,0 +1,225 @@
+package com.wolfninja.keystore.limit;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.wolfninja.keystore.limit.LimitAdapter.Algorithm;
+import com.wolfninja.keystore.metrics.LatencyHistogram;
+
+/**
+ * Limit on the calls in flight against one keyspace, adapted from the latency of the calls that complete
+ * <p>
+ * Admission is a compare-and-set on the in-flight count, checked against the current limit. Calls over the limit
+ * are rejected, or wait on a condition signalled by completing calls for at most the maximum queue time. Each
+ * completed call is a sample for the limit algorithm; samples are taken under a lock, and dropped while another
+ * thread holds it, so completing calls never wait for each other.
+ */
+final class ConcurrencyLimiter {
+
+	/**
+	 * Multiplicative decrease of {@link Algorithm#AIMD}
+	 */
+	static final double BACKOFF_RATIO = 0.9;
+
+	/**
+	 * Ratio of the long-term latency within which {@link Algorithm#GRADIENT} sees no queueing
+	 */
+	static final double TOLERANCE = 1.5;
+
+	private static final int SHORT_WINDOW = 10;
+	private static final int LONG_WINDOW = 600;
+	private static final double SMOOTHING = 0.2;
+
+	private final Algorithm algorithm;
+	private final int minLimit;
+	private final int maxLimit;
+	private final long latencyTargetNanos;
+	private final long maxQueueNanos;
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final ReentrantLock sampleLock = new ReentrantLock();
+	private final ReentrantLock queueLock = new ReentrantLock();
+	private final Condition released = queueLock.newCondition();
+	private final LatencyHistogram queueTime = LatencyHistogram.create();
+	private final LongAdder queued = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+	private volatile int limit;
+	// Modified under queueLock, read without it by completing calls
+	private volatile int waiting;
+
+	// Guarded by sampleLock
+	private double estimate;
+	private double shortLatency;
+	private double longLatency;
+	private long lastBackoff;
+
+	ConcurrencyLimiter(final Algorithm algorithm, final int initialLimit, final int minLimit, final int maxLimit,
+			final long latencyTargetNanos, final long maxQueueNanos) {
+		this.algorithm = algorithm;
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.latencyTargetNanos = latencyTargetNanos;
+		this.maxQueueNanos = maxQueueNanos;
+		this.limit = initialLimit;
+		this.estimate = initialLimit;
+		this.lastBackoff = System.nanoTime();
+	}
+
+	/**
+	 * Admit a call, waiting for at most the maximum queue time
+	 *
+	 * @return int number of calls in flight including this one, to pass to {@link #release(int, long)}
+	 * @throws RejectedExecutionException
+	 *             if the limit is reached
+	 */
+	int acquire() {
+		final int admitted = tryAcquire();
+		if (admitted > 0)
+			return admitted;
+		if (maxQueueNanos == 0L) {
+			rejected.increment();
+			throw new RejectedExecutionException("Concurrency limit of " + limit + " calls reached");
+		}
+		return await();
+	}
+
+	int getInFlight() {
+		return inFlight.get();
+	}
+
+	int getLimit() {
+		return limit;
+	}
+
+	long getQueuedCount() {
+		return queued.sum();
+	}
+
+	LatencyHistogram getQueueTime() {
+		return queueTime;
+	}
+
+	long getRejectedCount() {
+		return rejected.sum();
+	}
+
+	/**
+	 * Complete a call admitted by {@link #acquire()}, sampling its latency
+	 *
+	 * @param admitted
+	 *            int number of calls in flight when it was admitted
+	 * @param start
+	 *            long {@link System#nanoTime()} when it started
+	 */
+	void release(final int admitted, final long start) {
+		final long end = System.nanoTime();
+		inFlight.decrementAndGet();
+		if (sampleLock.tryLock())
+			try {
+				sample(admitted, start, end);
+			} finally {
+				sampleLock.unlock();
+			}
+		if (waiting > 0) {
+			queueLock.lock();
+			try {
+				released.signal();
+			} finally {
+				queueLock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Update the limit with the latency of a call; callers hold the sample lock
+	 */
+	void sample(final int admitted, final long start, final long end) {
+		final long latency = end - start;
+		if (algorithm == Algorithm.AIMD)
+			sampleAimd(admitted, start, end, latency);
+		else
+			sampleGradient(admitted, latency);
+		limit = (int) estimate;
+	}
+
+	private int await() {
+		final long start = System.nanoTime();
+		queued.increment();
+		queueLock.lock();
+		waiting++;
+		try {
+			long remaining = maxQueueNanos;
+			while (true) {
+				final int admitted = tryAcquire();
+				if (admitted > 0)
+					return admitted;
+				if (remaining <= 0L)
+					break;
+				try {
+					remaining = released.awaitNanos(remaining);
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+		} finally {
+			waiting--;
+			queueLock.unlock();
+			queueTime.record(System.nanoTime() - start);
+		}
+		rejected.increment();
+		throw new RejectedExecutionException("Concurrency limit of " + limit + " calls reached after waiting "
+				+ TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+	}
+
+	/**
+	 * Add one call per limit's worth of fast samples, so about one per round trip, while the limit is in use, and
+	 * back off once per round trip when a call is slower than the target: calls admitted before the last backoff
+	 * were admitted under the old limit and say nothing about the new one
+	 */
+	private void sampleAimd(final int admitted, final long start, final long end, final long latency) {
+		if (latency > latencyTargetNanos) {
+			if (start - lastBackoff > 0L) {
+				estimate = Math.max(minLimit, estimate * BACKOFF_RATIO);
+				lastBackoff = end;
+			}
+		} else if (admitted * 2 >= estimate)
+			estimate = Math.min(maxLimit, estimate + 1.0 / estimate);
+	}
+
+	/**
+	 * Compare the short-term latency to the long-term one: the limit shrinks by their ratio once calls take longer
+	 * than the tolerance allows, as they start queueing in the backend, and grows by the square root of the limit
+	 * otherwise, as long as the limit is in use
+	 */
+	private void sampleGradient(final int admitted, final long latency) {
+		if (longLatency == 0.0) {
+			shortLatency = latency;
+			longLatency = latency;
+		} else {
+			shortLatency += (latency - shortLatency) / SHORT_WINDOW;
+			longLatency += (latency - longLatency) / LONG_WINDOW;
+		}
+		// Let the baseline follow a backend that got faster, rather than trusting the old one for hundreds of samples
+		if (longLatency > 2.0 * shortLatency)
+			longLatency *= 0.95;
+		if (admitted * 2 < estimate)
+			return;
+		final double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longLatency / Math.max(1.0, shortLatency)));
+		final double target = estimate * gradient + Math.sqrt(estimate);
+		estimate = Math.max(minLimit, Math.min(maxLimit, estimate * (1.0 - SMOOTHING) + target * SMOOTHING));
+	}
+
+	private int tryAcquire() {
+		while (true) {
+			final int current = inFlight.get();
+			if (current >= limit)
+				return 0;
+			if (inFlight.compareAndSet(current, current + 1))
+				return current + 1;
+		}
+	}
+}
@@ -0,0 +1,262 @@
+package com.wolfninja.keystore.limit;
+
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import com.wolfninja.keystore.api.KeyValueStoreAdapter;
+import com.wolfninja.keystore.api.Keyspace;
+import com.wolfninja.keystore.api.ScanFeature;
+
+/**
+ * {@link KeyValueStoreAdapter} decorator capping the calls in flight against each keyspace of another adapter, with a
+ * limit adapted from measured latency
+ * <p>
+ * A backend that slows down makes unbounded callers pile up, so every caller waits longer and latency collapses for
+ * everyone. Each keyspace is a {@link LimitKeyspace} with its own limit: calls over it are rejected with a
+ * {@link RejectedExecutionException} at once, or after waiting at most {@link Builder#maxQueueTime(long, TimeUnit)},
+ * which keeps the latency of the admitted calls close to that of an unloaded backend. Like TCP congestion control,
+ * the limit grows while calls stay fast and shrinks when latency shows the backend queueing, within
+ * {@link Builder#minLimit(int)} and {@link Builder#maxLimit(int)}; see {@link Algorithm}.
+ * <p>
+ * The asynchronous and binary keyspaces of the decorated adapter are not exposed, so {@code KeyValueStore} builds them
+ * on top of the limited String keyspaces instead of bypassing the limit.
+ *
+ * @since 0.2
+ */
+public final class LimitAdapter implements KeyValueStoreAdapter {
+
+	/**
+	 * How the limit adapts to measured latency
+	 *
+	 * @since 0.2
+	 */
+	public enum Algorithm {
+		/**
+		 * Additive increase, multiplicative decrease: while calls complete within
+		 * {@link Builder#latencyTarget(long, TimeUnit)} and at least half the limit is in use, the limit grows by
+		 * about one call per round trip; a slower call shrinks it by 10%, at most once per round trip
+		 *
+		 * @since 0.2
+		 */
+		AIMD,
+		/**
+		 * Gradient of short-term to long-term latency: the limit shrinks by their ratio once calls take more than half
+		 * again as long as usual, and otherwise grows by the square root of the limit, smoothed over several calls.
+		 * Needs no latency target, as the long-term latency is the baseline
+		 *
+		 * @since 0.2
+		 */
+		GRADIENT
+	}
+
+	/**
+	 * Builder for {@link LimitAdapter} instances
+	 *
+	 * @since 0.2
+	 */
+	public static final class Builder {
+		private final KeyValueStoreAdapter delegate;
+		private Algorithm algorithm = Algorithm.GRADIENT;
+		private int initialLimit = 20;
+		private int minLimit = 1;
+		private int maxLimit = 1000;
+		private long latencyTargetNanos = TimeUnit.MILLISECONDS.toNanos(50L);
+		private long maxQueueNanos;
+
+		private Builder(@Nonnull final KeyValueStoreAdapter delegate) {
+			this.delegate = Objects.requireNonNull(delegate, "Adapter must not be null");
+		}
+
+		/**
+		 * Set how the limit adapts, {@link Algorithm#GRADIENT} by default
+		 *
+		 * @param algorithm
+		 *            {@link Algorithm}, not null
+		 * @return this builder
+		 * @since 0.2
+		 */
+		@Nonnull
+		public Builder algorithm(@Nonnull final Algorithm algorithm) {
+			this.algorithm = Objects.requireNonNull(algorithm, "Algorithm must not be null");
+			return this;
+		}
+
+		/**
+		 * Build the {@link LimitAdapter}
+		 *
+		 * @return new {@link LimitAdapter} instance, not null
+		 * @since 0.2
+		 */
+		@Nonnull
+		public LimitAdapter build() {
+			if (minLimit > maxLimit)
+				throw new IllegalArgumentException("Minimum limit must not be greater than the maximum limit");
+			if (initialLimit < minLimit || initialLimit > maxLimit)
+				throw new IllegalArgumentException("Initial limit must be between the minimum and maximum limit");
+			return new LimitAdapter(this);
+		}
+
+		/**
+		 * Set the limit each keyspace starts with, 20 by default
+		 *
+		 * @param initialLimit
+		 *            int number of calls, between the minimum and maximum limit
+		 * @return this builder
+		 * @since 0.2
+		 */
+		@Nonnull
+		public Builder initialLimit(final int initialLimit) {
+			if (initialLimit < 1)
+				throw new IllegalArgumentException("Initial limit must be at least 1");
+			this.initialLimit = initialLimit;
+			return this;
+		}
+
+		/**
+		 * Set the latency above which {@link Algorithm#AIMD} shrinks the limit, 50 milliseconds by default
+		 *
+		 * @param latency
+		 *            long latency, greater than zero
+		 * @param unit
+		 *            {@link TimeUnit} of latency, not null
+		 * @return this builder
+		 * @since 0.2
+		 */
+		@Nonnull
+		public Builder latencyTarget(final long latency, @Nonnull final TimeUnit unit) {
+			Objects.requireNonNull(unit, "Unit must not be null");
+			if (latency <= 0L)
+				throw new IllegalArgumentException("Latency must be greater than zero");
+			this.latencyTargetNanos = unit.toNanos(latency);
+			return this;
+		}
+
+		/**
+		 * Set the limit never exceeded, 1000 by default
+		 *
+		 * @param maxLimit
+		 *            int number of calls, at least one
+		 * @return this builder
+		 * @since 0.2
+		 */
+		@Nonnull
+		public Builder maxLimit(final int maxLimit) {
+			if (maxLimit < 1)
+				throw new IllegalArgumentException("Maximum limit must be at least 1");
+			this.maxLimit = maxLimit;
+			return this;
+		}
+
+		/**
+		 * Set how long a call finding the limit reached waits for a slot before it is rejected, zero by default to
+		 * reject at once
+		 *
+		 * @param duration
+		 *            long duration, zero or more
+		 * @param unit
+		 *            {@link TimeUnit} of duration, not null
+		 * @return this builder
+		 * @since 0.2
+		 */
+		@Nonnull
+		public Builder maxQueueTime(final long duration, @Nonnull final TimeUnit unit) {
+			Objects.requireNonNull(unit, "Unit must not be null");
+			if (duration < 0L)
+				throw new IllegalArgumentException("Duration must not be negative");
+			this.maxQueueNanos = unit.toNanos(duration);
+			return this;
+		}
+
+		/**
+		 * Set the limit never gone below, 1 by default
+		 *
+		 * @param minLimit
+		 *            int number of calls, at least one
+		 * @return this builder
+		 * @since 0.2
+		 */
+		@Nonnull
+		public Builder minLimit(final int minLimit) {
+			if (minLimit < 1)
+				throw new IllegalArgumentException("Minimum limit must be at least 1");
+			this.minLimit = minLimit;
+			return this;
+		}
+	}
+
+	/**
+	 * Create a new {@link Builder} decorating the given adapter
+	 *
+	 * @param delegate
+	 *            {@link KeyValueStoreAdapter} to limit, not null
+	 * @return new {@link Builder} instance, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	public static Builder builder(@Nonnull final KeyValueStoreAdapter delegate) {
+		return new Builder(delegate);
+	}
+
+	private final KeyValueStoreAdapter delegate;
+	private final Algorithm algorithm;
+	private final int initialLimit;
+	private final int minLimit;
+	private final int maxLimit;
+	private final long latencyTargetNanos;
+	private final long maxQueueNanos;
+	private final ConcurrentHashMap<String, LimitKeyspace> keyspaces = new ConcurrentHashMap<>();
+
+	private LimitAdapter(final Builder builder) {
+		this.delegate = builder.delegate;
+		this.algorithm = builder.algorithm;
+		this.initialLimit = builder.initialLimit;
+		this.minLimit = builder.minLimit;
+		this.maxLimit = builder.maxLimit;
+		this.latencyTargetNanos = builder.latencyTargetNanos;
+		this.maxQueueNanos = builder.maxQueueNanos;
+	}
+
+	@Override
+	public void close() {
+		delegate.close();
+	}
+
+	@Override
+	public void flush() {
+		delegate.flush();
+	}
+
+	@Override
+	public Keyspace getKeyspace(final String keyspaceName) {
+		return getLimitKeyspace(keyspaceName);
+	}
+
+	/**
+	 * Get the limited keyspace of the given name, giving access to its limit and counters
+	 *
+	 * @param keyspaceName
+	 *            String name of the keyspace, not null
+	 * @return {@link LimitKeyspace}, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	public LimitKeyspace getLimitKeyspace(@Nonnull final String keyspaceName) {
+		Objects.requireNonNull(keyspaceName, "Keyspace name must not be null");
+		final LimitKeyspace existing = keyspaces.get(keyspaceName);
+		if (existing != null)
+			return existing;
+		return keyspaces.computeIfAbsent(keyspaceName, name -> new LimitKeyspace(delegate.getKeyspace(name),
+				new ConcurrencyLimiter(algorithm, initialLimit, minLimit, maxLimit, latencyTargetNanos,
+						maxQueueNanos)));
+	}
+
+	@Override
+	public Set<ScanFeature> getScanFeatures() {
+		return delegate.getScanFeatures();
+	}
+}
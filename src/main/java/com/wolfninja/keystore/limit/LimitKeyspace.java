@@ -0,0 +1,322 @@
+package com.wolfninja.keystore.limit;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import javax.annotation.Nonnull;
+
+import com.wolfninja.keystore.api.ChangePublisher;
+import com.wolfninja.keystore.api.KeyValue;
+import com.wolfninja.keystore.api.Keyspace;
+import com.wolfninja.keystore.api.Watch;
+import com.wolfninja.keystore.metrics.LatencyHistogram;
+
+/**
+ * {@link Keyspace} decorator capping the calls in flight against the decorated keyspace, created by
+ * {@link LimitAdapter}
+ * <p>
+ * Every call except {@code close}, {@code flush}, {@code scan} and {@code watch} takes a slot for as long as the
+ * decorated keyspace takes to answer, bulk calls taking a single one. Calls finding the limit reached wait for a slot
+ * for at most the maximum queue time, and are then rejected with a {@link RejectedExecutionException} without
+ * reaching the decorated keyspace. The limit itself follows the latency of completed calls, as configured on the
+ * {@link LimitAdapter}.
+ *
+ * @since 0.2
+ */
+public final class LimitKeyspace implements Keyspace {
+
+	private final Keyspace delegate;
+	private final ConcurrencyLimiter limiter;
+
+	LimitKeyspace(final Keyspace delegate, final ConcurrencyLimiter limiter) {
+		this.delegate = delegate;
+		this.limiter = limiter;
+	}
+
+	@Override
+	public boolean add(final String key, final String value) {
+		final int admitted = limiter.acquire();
+		final long start = System.nanoTime();
+		try {
+			return delegate.add(key, value);
+		} finally {
+			limiter.release(admitted, start);
+		}
+	}
+
+	@Override
+	public boolean add(final String key, final String value, final long ttl, final TimeUnit unit) {
+		final int admitted = limiter.acquire();
+		final long start = System.nanoTime();
+		try {
+			return delegate.add(key, value, ttl, unit);
+		} finally {
+			limiter.release(admitted, start);
+		}
+	}
+
+	@Override
+	public long addAndGet(final String key, final long delta) {
+		final int admitted = limiter.acquire();
+		final long start = System.nanoTime();
+		try {
+			return delegate.addAndGet(key, delta);
+		} finally {
+			limiter.release(admitted, start);
+		}
+	}
+
+	@Override
+	public boolean checkAndSet(final String key, final String value, final long version) {
+		final int admitted = limiter.acquire();
+		final long start = System.nanoTime();
+		try {
+			return delegate.checkAndSet(key, value, version);
+		} finally {
+			limiter.release(admitted, start);
+		}
+	}
+
+	@Override
+	public boolean checkAndSet(final String key, final String value, final long version, final long ttl,
+			final TimeUnit unit) {
+		final int admitted = limiter.acquire();
+		final long start = System.nanoTime();
+		try {
+			return delegate.checkAndSet(key, value, version, ttl, unit);
+		} finally {
+			limiter.release(admitted, start);
+		}
+	}
+
+	@Override
+	public void close() {
+		delegate.close();
+	}
+
+	@Override
+	public boolean delete(final String key) {
+		final int admitted = limiter.acquire();
+		final long start = System.nanoTime();
+		try {
+			return delegate.delete(key);
+		} finally {
+			limiter.release(admitted, start);
+		}
+	}
+
+	@Override
+	public int deleteAll(final Collection<String> keys) {
+		final int admitted = limiter.acquire();
+		final long start = System.nanoTime();
+		try {
+			return delegate.deleteAll(keys);
+		} finally {
+			limiter.release(admitted, start);
+		}
+	}
+
+	@Override
+	public boolean deletes(final String key, final long version) {
+		final int admitted = limiter.acquire();
+		final long start = System.nanoTime();
+		try {
+			return delegate.deletes(key, version);
+		} finally {
+			limiter.release(admitted, start);
+		}
+	}
+
+	@Override
+	public boolean exists(final String key) {
+		final int admitted = limiter.acquire();
+		final long start = System.nanoTime();
+		try {
+			return delegate.exists(key);
+		} finally {
+			limiter.release(admitted, start);
+		}
+	}
+
+	@Override
+	public void flush() {
+		delegate.flush();
+	}
+
+	@Override
+	public Optional<String> get(final String key) {
+		final int admitted = limiter.acquire();
+		final long start = System.nanoTime();
+		try {
+			return delegate.get(key);
+		} finally {
+			limiter.release(admitted, start);
+		}
+	}
+
+	@Override
+	public Map<String, String> getAll(final Collection<String> keys) {
+		final int admitted = limiter.acquire();
+		final long start = System.nanoTime();
+		try {
+			return delegate.getAll(keys);
+		} finally {
+			limiter.release(admitted, start);
+		}
+	}
+
+	/**
+	 * Get the number of calls in flight against the decorated keyspace
+	 *
+	 * @return int in-flight call count
+	 * @since 0.2
+	 */
+	public int getInFlight() {
+		return limiter.getInFlight();
+	}
+
+	/**
+	 * Get the current limit on calls in flight
+	 *
+	 * @return int limit, between the minimum and maximum limit
+	 * @since 0.2
+	 */
+	public int getLimit() {
+		return limiter.getLimit();
+	}
+
+	/**
+	 * Get the number of calls which found the limit reached and waited
+	 *
+	 * @return long queued call count, including those rejected after waiting
+	 * @since 0.2
+	 */
+	public long getQueuedCount() {
+		return limiter.getQueuedCount();
+	}
+
+	/**
+	 * Get the time calls waited for the limit, whether admitted or rejected afterwards
+	 *
+	 * @return live {@link LatencyHistogram}, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	public LatencyHistogram getQueueTime() {
+		return limiter.getQueueTime();
+	}
+
+	/**
+	 * Get the number of calls rejected with a {@link RejectedExecutionException}
+	 *
+	 * @return long rejected call count
+	 * @since 0.2
+	 */
+	public long getRejectedCount() {
+		return limiter.getRejectedCount();
+	}
+
+	@Override
+	public Optional<KeyValue> gets(final String key) {
+		final int admitted = limiter.acquire();
+		final long start = System.nanoTime();
+		try {
+			return delegate.gets(key);
+		} finally {
+			limiter.release(admitted, start);
+		}
+	}
+
+	@Override
+	public Map<String, KeyValue> getsAll(final Collection<String> keys) {
+		final int admitted = limiter.acquire();
+		final long start = System.nanoTime();
+		try {
+			return delegate.getsAll(keys);
+		} finally {
+			limiter.release(admitted, start);
+		}
+	}
+
+	@Override
+	public boolean replace(final String key, final String value) {
+		final int admitted = limiter.acquire();
+		final long start = System.nanoTime();
+		try {
+			return delegate.replace(key, value);
+		} finally {
+			limiter.release(admitted, start);
+		}
+	}
+
+	@Override
+	public boolean replace(final String key, final String value, final long ttl, final TimeUnit unit) {
+		final int admitted = limiter.acquire();
+		final long start = System.nanoTime();
+		try {
+			return delegate.replace(key, value, ttl, unit);
+		} finally {
+			limiter.release(admitted, start);
+		}
+	}
+
+	@Override
+	public Stream<KeyValue> scan(final String prefix) {
+		// Not limited, the stream is consumed after this returns
+		return delegate.scan(prefix);
+	}
+
+	@Override
+	public boolean set(final String key, final String value) {
+		final int admitted = limiter.acquire();
+		final long start = System.nanoTime();
+		try {
+			return delegate.set(key, value);
+		} finally {
+			limiter.release(admitted, start);
+		}
+	}
+
+	@Override
+	public boolean set(final String key, final String value, final long ttl, final TimeUnit unit) {
+		final int admitted = limiter.acquire();
+		final long start = System.nanoTime();
+		try {
+			return delegate.set(key, value, ttl, unit);
+		} finally {
+			limiter.release(admitted, start);
+		}
+	}
+
+	@Override
+	public boolean setAll(final Map<String, String> values) {
+		final int admitted = limiter.acquire();
+		final long start = System.nanoTime();
+		try {
+			return delegate.setAll(values);
+		} finally {
+			limiter.release(admitted, start);
+		}
+	}
+
+	@Override
+	public Optional<Duration> ttl(final String key) {
+		final int admitted = limiter.acquire();
+		final long start = System.nanoTime();
+		try {
+			return delegate.ttl(key);
+		} finally {
+			limiter.release(admitted, start);
+		}
+	}
+
+	@Override
+	public ChangePublisher watch(final Watch watch) {
+		return delegate.watch(watch);
+	}
+}
@@ -0,0 +1,65 @@
+package com.wolfninja.keystore.memory;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nonnull;
+
+import com.wolfninja.keystore.api.AsyncKeyspace;
+import com.wolfninja.keystore.api.ExecutorAsyncKeyspace;
+import com.wolfninja.keystore.api.KeyValueStoreAdapter;
+import com.wolfninja.keystore.api.Keyspace;
+import com.wolfninja.keystore.api.ScanFeature;
+
+/**
+ * {@link KeyValueStoreAdapter} keeping all keyspaces in memory
+ * <p>
+ * Each keyspace is an independent lock-free map with its own striped version sequence, so writes to one keyspace
+ * never contend with another. Contents are lost when the adapter is garbage collected.
+ *
+ * @since 0.2
+ */
+public final class MemoryAdapter implements KeyValueStoreAdapter {
+
+	/**
+	 * Create new, empty {@code MemoryAdapter} instance
+	 *
+	 * @return new {@link MemoryAdapter} instance, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	public static MemoryAdapter create() {
+		return new MemoryAdapter();
+	}
+
+	private static final Set<ScanFeature> SCAN_FEATURES = Collections.unmodifiableSet(EnumSet.of(ScanFeature.SCAN));
+
+	private final ConcurrentHashMap<String, MemoryKeyspace> keyspaces = new ConcurrentHashMap<>();
+
+	private MemoryAdapter() {
+	}
+
+	@Override
+	public Optional<AsyncKeyspace> getAsyncKeyspace(final String keyspaceName) {
+		// Operations never block, so run them on the calling thread rather than handing off
+		return Optional.of(ExecutorAsyncKeyspace.create(getKeyspace(keyspaceName), Runnable::run));
+	}
+
+	@Override
+	public Keyspace getKeyspace(final String keyspaceName) {
+		Objects.requireNonNull(keyspaceName, "Keyspace name must not be null");
+		final MemoryKeyspace existing = keyspaces.get(keyspaceName);
+		if (existing != null)
+			return existing;
+		return keyspaces.computeIfAbsent(keyspaceName, name -> new MemoryKeyspace());
+	}
+
+	@Override
+	public Set<ScanFeature> getScanFeatures() {
+		return SCAN_FEATURES;
+	}
+}
@@ -0,0 +1,488 @@
+package com.wolfninja.keystore.memory;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+import com.wolfninja.keystore.api.ChangeBus;
+import com.wolfninja.keystore.api.ChangeEvent;
+import com.wolfninja.keystore.api.ChangePublisher;
+import com.wolfninja.keystore.api.KeyValue;
+import com.wolfninja.keystore.api.KeyValueConsumer;
+import com.wolfninja.keystore.api.Keyspace;
+import com.wolfninja.keystore.api.Watch;
+
+/**
+ * {@link Keyspace} held in a {@link ConcurrentHashMap}
+ * <p>
+ * Conditional writes are compare-and-swap operations against the map: the current entry is read, a new version is
+ * drawn and the entry is swapped only if it is still the one read. Because the version is drawn after the read, the
+ * version of a key only ever increases, even across delete and re-add.
+ * <p>
+ * Scans stream the map's own weakly consistent, splittable view, so they neither copy nor lock it.
+ * <p>
+ * Entries with a time to live carry their deadline. Expired entries are treated as absent as soon as they are read
+ * and removed with a compare-and-swap. Once any entry has been given a time to live, every write also sweeps a few
+ * entries along a cursor over the map, so expired entries that are never read again are reclaimed too. Only one
+ * writer sweeps at a time and the others skip it, and readers never do, so sweeping never blocks.
+ * <p>
+ * Counters are updated with {@link ConcurrentHashMap#compute}, which locks only the bin of the key, so concurrent
+ * increments queue up instead of retrying. Counter entries keep their number next to its decimal String, so an
+ * increment never parses, and they keep the deadline of the entry they replace.
+ * <p>
+ * Changes are published to a {@link ChangeBus}. Compare-and-swap writes have no lock that would order the changes
+ * of a key, so while a key is watched its writes take one of a few striped locks and publish before releasing it;
+ * writes of keys nobody watches stay lock-free.
+ */
+final class MemoryKeyspace implements Keyspace {
+
+	/**
+	 * Entry written by a counter operation
+	 */
+	private interface Counter {
+		long count();
+	}
+
+	/**
+	 * Entry written with a time to live
+	 */
+	private static class ExpiringKeyValue extends KeyValue {
+		private static final long serialVersionUID = 1L;
+
+		private final long deadline;
+
+		private ExpiringKeyValue(final String key, final String value, final long version, final long deadline) {
+			super(key, value, version);
+			this.deadline = deadline;
+		}
+	}
+
+	private static final class CounterKeyValue extends KeyValue implements Counter {
+		private static final long serialVersionUID = 1L;
+
+		private final long count;
+
+		private CounterKeyValue(final String key, final long count, final long version) {
+			super(key, Long.toString(count), version);
+			this.count = count;
+		}
+
+		@Override
+		public long count() {
+			return count;
+		}
+	}
+
+	private static final class ExpiringCounterKeyValue extends ExpiringKeyValue implements Counter {
+		private static final long serialVersionUID = 1L;
+
+		private final long count;
+
+		private ExpiringCounterKeyValue(final String key, final long count, final long version, final long deadline) {
+			super(key, Long.toString(count), version, deadline);
+			this.count = count;
+		}
+
+		@Override
+		public long count() {
+			return count;
+		}
+	}
+
+	private static final long NO_TTL = 0L;
+	// Deadlines are compared by difference, so keep them within half the range of the ticker
+	private static final long MAX_TTL_NANOS = Long.MAX_VALUE >> 1;
+	private static final int SWEEP_BATCH = 8;
+	private static final int WATCH_STRIPES = 64;
+
+	private final ConcurrentHashMap<String, KeyValue> data = new ConcurrentHashMap<>();
+	private final VersionSequence versions = new VersionSequence();
+	private final LongSupplier ticker;
+	private final ReentrantLock sweepLock = new ReentrantLock();
+	private final ChangeBus changes = ChangeBus.create();
+	private final ReentrantLock[] watchLocks = new ReentrantLock[WATCH_STRIPES];
+	private volatile boolean expiring;
+
+	// Guarded by sweepLock
+	private Iterator<KeyValue> sweepCursor = Collections.emptyIterator();
+
+	MemoryKeyspace() {
+		this(System::nanoTime);
+	}
+
+	MemoryKeyspace(final LongSupplier ticker) {
+		this.ticker = ticker;
+		for (int i = 0; i < WATCH_STRIPES; i++)
+			watchLocks[i] = new ReentrantLock();
+	}
+
+	@Override
+	public boolean add(final String key, final String value) {
+		return add(key, value, NO_TTL);
+	}
+
+	@Override
+	public boolean add(final String key, final String value, final long ttl, final TimeUnit unit) {
+		return add(key, value, ttlNanos(ttl, unit));
+	}
+
+	@Override
+	public long addAndGet(final String key, final long delta) {
+		Objects.requireNonNull(key, "Key must not be null");
+		sweep();
+		final ReentrantLock lock = lockWatched(key);
+		try {
+			final KeyValue entry = data.compute(key, (k, current) -> add(k, current, delta));
+			publish(lock, ChangeEvent.Type.COUNTER, entry);
+			return ((Counter) entry).count();
+		} finally {
+			unlock(lock);
+		}
+	}
+
+	@Override
+	public boolean checkAndSet(final String key, final String value, final long version) {
+		return checkAndSet(key, value, version, NO_TTL);
+	}
+
+	@Override
+	public boolean checkAndSet(final String key, final String value, final long version, final long ttl,
+			final TimeUnit unit) {
+		return checkAndSet(key, value, version, ttlNanos(ttl, unit));
+	}
+
+	@Override
+	public boolean delete(final String key) {
+		Objects.requireNonNull(key, "Key must not be null");
+		final ReentrantLock lock = lockWatched(key);
+		try {
+			final KeyValue removed = data.remove(key);
+			return removed != null && isLive(removed) && publish(lock, ChangeEvent.Type.DELETE, removed);
+		} finally {
+			unlock(lock);
+		}
+	}
+
+	@Override
+	public boolean deletes(final String key, final long version) {
+		Objects.requireNonNull(key, "Key must not be null");
+		final ReentrantLock lock = lockWatched(key);
+		try {
+			final KeyValue current = live(key);
+			if (current == null || current.getVersion() != version)
+				return false;
+			return data.remove(key, current) && publish(lock, ChangeEvent.Type.DELETE, current);
+		} finally {
+			unlock(lock);
+		}
+	}
+
+	@Override
+	public boolean exists(final String key) {
+		Objects.requireNonNull(key, "Key must not be null");
+		return live(key) != null;
+	}
+
+	@Override
+	public Optional<String> get(final String key) {
+		Objects.requireNonNull(key, "Key must not be null");
+		final KeyValue current = live(key);
+		return current == null ? Optional.empty() : Optional.of(current.getValue());
+	}
+
+	@Override
+	public Map<String, String> getAll(final Collection<String> keys) {
+		Objects.requireNonNull(keys, "Keys must not be null");
+		final Map<String, String> values = new HashMap<>();
+		for (final String key : keys) {
+			final KeyValue current = live(Objects.requireNonNull(key, "Key must not be null"));
+			if (current != null)
+				values.put(key, current.getValue());
+		}
+		return values;
+	}
+
+	@Override
+	public Optional<KeyValue> gets(final String key) {
+		Objects.requireNonNull(key, "Key must not be null");
+		return Optional.ofNullable(live(key));
+	}
+
+	@Override
+	public boolean gets(final String key, final KeyValueConsumer consumer) {
+		Objects.requireNonNull(key, "Key must not be null");
+		Objects.requireNonNull(consumer, "Consumer must not be null");
+		final KeyValue current = live(key);
+		if (current == null)
+			return false;
+		consumer.accept(current.getKey(), current.getValue(), current.getVersion());
+		return true;
+	}
+
+	@Override
+	public Map<String, KeyValue> getsAll(final Collection<String> keys) {
+		Objects.requireNonNull(keys, "Keys must not be null");
+		final Map<String, KeyValue> values = new HashMap<>();
+		for (final String key : keys) {
+			final KeyValue current = live(Objects.requireNonNull(key, "Key must not be null"));
+			if (current != null)
+				values.put(key, current);
+		}
+		return values;
+	}
+
+	@Override
+	public int getsAll(final Collection<String> keys, final KeyValueConsumer consumer) {
+		Objects.requireNonNull(keys, "Keys must not be null");
+		Objects.requireNonNull(consumer, "Consumer must not be null");
+		int found = 0;
+		if (keys instanceof List && keys instanceof RandomAccess) {
+			// Indexed, so not even an iterator is allocated
+			final List<String> list = (List<String>) keys;
+			for (int i = 0; i < list.size(); i++)
+				if (gets(list.get(i), consumer))
+					found++;
+		} else
+			for (final String key : keys)
+				if (gets(key, consumer))
+					found++;
+		return found;
+	}
+
+	@Override
+	public boolean replace(final String key, final String value) {
+		return replace(key, value, NO_TTL);
+	}
+
+	@Override
+	public boolean replace(final String key, final String value, final long ttl, final TimeUnit unit) {
+		return replace(key, value, ttlNanos(ttl, unit));
+	}
+
+	@Override
+	public Stream<KeyValue> scan(final String prefix) {
+		Objects.requireNonNull(prefix, "Prefix must not be null");
+		final Stream<KeyValue> values = data.values().stream();
+		return (prefix.isEmpty() ? values : values.filter(keyValue -> keyValue.getKey().startsWith(prefix)))
+				.filter(this::isLive);
+	}
+
+	@Override
+	public boolean set(final String key, final String value) {
+		return set(key, value, NO_TTL);
+	}
+
+	@Override
+	public boolean set(final String key, final String value, final long ttl, final TimeUnit unit) {
+		return set(key, value, ttlNanos(ttl, unit));
+	}
+
+	@Override
+	public Optional<Duration> ttl(final String key) {
+		Objects.requireNonNull(key, "Key must not be null");
+		final KeyValue current = live(key);
+		if (current == null)
+			return Optional.empty();
+		if (!(current instanceof ExpiringKeyValue))
+			return Optional.of(NO_EXPIRY);
+		return Optional.of(Duration.ofNanos(Math.max(1L, ((ExpiringKeyValue) current).deadline - ticker.getAsLong())));
+	}
+
+	@Override
+	public OptionalLong version(final String key) {
+		Objects.requireNonNull(key, "Key must not be null");
+		final KeyValue current = live(key);
+		return current == null ? OptionalLong.empty() : OptionalLong.of(current.getVersion());
+	}
+
+	@Override
+	public ChangePublisher watch(final Watch watch) {
+		return changes.publisher(watch);
+	}
+
+	private boolean add(final String key, final String value, final long ttlNanos) {
+		Objects.requireNonNull(key, "Key must not be null");
+		Objects.requireNonNull(value, "Value must not be null");
+		sweep();
+		final ReentrantLock lock = lockWatched(key);
+		try {
+			while (true) {
+				final KeyValue current = data.get(key);
+				if (current != null && isLive(current))
+					return false;
+				final KeyValue entry = newValue(key, value, ttlNanos);
+				if (current == null ? data.putIfAbsent(key, entry) == null : data.replace(key, current, entry))
+					return publish(lock, ChangeEvent.Type.ADD, entry);
+			}
+		} finally {
+			unlock(lock);
+		}
+	}
+
+	private KeyValue add(final String key, final KeyValue current, final long delta) {
+		if (current == null || !isLive(current))
+			return new CounterKeyValue(key, delta, versions.next(key));
+		final long count = Math.addExact(count(current), delta);
+		if (current instanceof ExpiringKeyValue)
+			return new ExpiringCounterKeyValue(key, count, versions.next(key), ((ExpiringKeyValue) current).deadline);
+		return new CounterKeyValue(key, count, versions.next(key));
+	}
+
+	private boolean checkAndSet(final String key, final String value, final long version, final long ttlNanos) {
+		Objects.requireNonNull(key, "Key must not be null");
+		Objects.requireNonNull(value, "Value must not be null");
+		sweep();
+		final ReentrantLock lock = lockWatched(key);
+		try {
+			final KeyValue current = data.get(key);
+			if (current == null || current.getVersion() != version || !isLive(current))
+				return false;
+			final KeyValue entry = newValue(key, value, ttlNanos);
+			return data.replace(key, current, entry) && publish(lock, ChangeEvent.Type.CHECK_AND_SET, entry);
+		} finally {
+			unlock(lock);
+		}
+	}
+
+	private boolean isLive(final KeyValue entry) {
+		return !(entry instanceof ExpiringKeyValue) || ((ExpiringKeyValue) entry).deadline - ticker.getAsLong() > 0L;
+	}
+
+	/**
+	 * Get the entry of a key unless it expired, removing it if it did
+	 */
+	private KeyValue live(final String key) {
+		final KeyValue current = data.get(key);
+		if (current == null || isLive(current))
+			return current;
+		data.remove(key, current);
+		return null;
+	}
+
+	/**
+	 * Take the watch lock of a key if its changes are watched
+	 *
+	 * @return lock to release, or null if the key is not watched
+	 */
+	private ReentrantLock lockWatched(final String key) {
+		if (!changes.isWatched(key))
+			return null;
+		final int hash = key.hashCode() * 0x9e3779b9;
+		final ReentrantLock lock = watchLocks[(hash ^ hash >>> 16) & (WATCH_STRIPES - 1)];
+		lock.lock();
+		return lock;
+	}
+
+	private KeyValue newValue(final String key, final String value, final long ttlNanos) {
+		if (ttlNanos == NO_TTL)
+			return KeyValue.create(key, value, versions.next(key));
+		expiring = true;
+		return new ExpiringKeyValue(key, value, versions.next(key), ticker.getAsLong() + ttlNanos);
+	}
+
+	/**
+	 * Publish a change made while holding the given watch lock, if any
+	 *
+	 * @return true, for chaining after the write
+	 */
+	private boolean publish(final ReentrantLock lock, final ChangeEvent.Type type, final KeyValue entry) {
+		if (lock != null)
+			changes.publish(type, entry.getKey(), type == ChangeEvent.Type.DELETE ? null : entry.getValue(),
+					entry.getVersion());
+		return true;
+	}
+
+	private boolean replace(final String key, final String value, final long ttlNanos) {
+		Objects.requireNonNull(key, "Key must not be null");
+		Objects.requireNonNull(value, "Value must not be null");
+		sweep();
+		final ReentrantLock lock = lockWatched(key);
+		try {
+			while (true) {
+				final KeyValue current = data.get(key);
+				if (current == null || !isLive(current) || current.getValue().equals(value))
+					return false;
+				final KeyValue entry = newValue(key, value, ttlNanos);
+				if (data.replace(key, current, entry))
+					return publish(lock, ChangeEvent.Type.REPLACE, entry);
+			}
+		} finally {
+			unlock(lock);
+		}
+	}
+
+	private boolean set(final String key, final String value, final long ttlNanos) {
+		Objects.requireNonNull(key, "Key must not be null");
+		Objects.requireNonNull(value, "Value must not be null");
+		sweep();
+		final ReentrantLock lock = lockWatched(key);
+		try {
+			while (true) {
+				final KeyValue current = data.get(key);
+				final KeyValue entry = newValue(key, value, ttlNanos);
+				if (current == null ? data.putIfAbsent(key, entry) == null : data.replace(key, current, entry))
+					return publish(lock, ChangeEvent.Type.SET, entry);
+			}
+		} finally {
+			unlock(lock);
+		}
+	}
+
+	/**
+	 * Remove the expired entries among the next few along the sweep cursor, unless another writer is sweeping
+	 */
+	private void sweep() {
+		if (!expiring || !sweepLock.tryLock())
+			return;
+		try {
+			final long now = ticker.getAsLong();
+			for (int i = 0; i < SWEEP_BATCH; i++) {
+				if (!sweepCursor.hasNext()) {
+					sweepCursor = data.values().iterator();
+					if (!sweepCursor.hasNext())
+						return;
+				}
+				final KeyValue entry = sweepCursor.next();
+				if (entry instanceof ExpiringKeyValue && ((ExpiringKeyValue) entry).deadline - now <= 0L)
+					data.remove(entry.getKey(), entry);
+			}
+		} finally {
+			sweepLock.unlock();
+		}
+	}
+
+	private static long count(final KeyValue entry) {
+		if (entry instanceof Counter)
+			return ((Counter) entry).count();
+		try {
+			return Long.parseLong(entry.getValue());
+		} catch (final NumberFormatException e) {
+			throw new IllegalStateException("Value is not an integer", e);
+		}
+	}
+
+	private static long ttlNanos(final long ttl, final TimeUnit unit) {
+		Objects.requireNonNull(unit, "Unit must not be null");
+		if (ttl <= 0L)
+			throw new IllegalArgumentException("TTL must be greater than zero");
+		return Math.min(unit.toNanos(ttl), MAX_TTL_NANOS);
+	}
+
+	private static void unlock(final ReentrantLock lock) {
+		if (lock != null)
+			lock.unlock();
+	}
+}
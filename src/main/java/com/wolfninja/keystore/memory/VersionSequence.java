@@ -0,0 +1,24 @@
+package com.wolfninja.keystore.memory;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Striped source of version numbers
+ * <p>
+ * A key always draws from the same stripe, and the stripe index is encoded in the low bits of each version, so
+ * versions are unique within the sequence and strictly increasing per key without every writer contending on one
+ * counter. Stripes are spaced a cache line apart to avoid false sharing.
+ */
+final class VersionSequence {
+	private static final int STRIPE_BITS = 6;
+	private static final int STRIPES = 1 << STRIPE_BITS;
+	private static final int PADDING = 8;
+
+	private final AtomicLongArray counters = new AtomicLongArray(STRIPES * PADDING);
+
+	long next(final String key) {
+		final int hash = key.hashCode();
+		final int stripe = (hash ^ (hash >>> 16)) & (STRIPES - 1);
+		return (counters.incrementAndGet(stripe * PADDING) << STRIPE_BITS) | stripe;
+	}
+}
@@ -0,0 +1,144 @@
+package com.wolfninja.keystore.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Concurrent histogram of latencies in nanoseconds with log-linear buckets
+ * <p>
+ * Each power of two is split into 32 linear sub-buckets, so reported values are within about 3% of the recorded ones
+ * from a nanosecond up to about half an hour; longer latencies count as the longest. Recording only increments
+ * preallocated counters and never allocates or locks. Reads are not atomic with respect to concurrent recording, so a
+ * percentile may ignore the latest few values.
+ *
+ * @since 0.2
+ */
+public final class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int MAX_EXPONENT = 40;
+	private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+	/**
+	 * Create new, empty {@code LatencyHistogram} instance
+	 *
+	 * @return new {@link LatencyHistogram} instance, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	public static LatencyHistogram create() {
+		return new LatencyHistogram();
+	}
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder total = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	private LatencyHistogram() {
+	}
+
+	/**
+	 * Get number of recorded latencies
+	 *
+	 * @return long count
+	 * @since 0.2
+	 */
+	public long getCount() {
+		long count = 0L;
+		for (int i = 0; i < BUCKETS; i++)
+			count += counts.get(i);
+		return count;
+	}
+
+	/**
+	 * Get the longest recorded latency
+	 *
+	 * @return long nanoseconds, exact, zero if nothing was recorded
+	 * @since 0.2
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * Get the mean of recorded latencies
+	 *
+	 * @return double nanoseconds, exact, zero if nothing was recorded
+	 * @since 0.2
+	 */
+	public double getMean() {
+		final long count = getCount();
+		return count == 0L ? 0.0 : total.doubleValue() / count;
+	}
+
+	/**
+	 * Get the latency at or below which the given fraction of recorded latencies fall
+	 *
+	 * @param percentile
+	 *            double fraction between 0 and 1, for example 0.99
+	 * @return long nanoseconds, zero if nothing was recorded
+	 * @since 0.2
+	 */
+	public long getValueAtPercentile(final double percentile) {
+		if (!(percentile >= 0.0 && percentile <= 1.0))
+			throw new IllegalArgumentException("Percentile must be between 0 and 1");
+		final long[] snapshot = new long[BUCKETS];
+		long count = 0L;
+		for (int i = 0; i < BUCKETS; i++)
+			count += snapshot[i] = counts.get(i);
+		if (count == 0L)
+			return 0L;
+		final long rank = Math.max(1L, (long) Math.ceil(percentile * count));
+		long seen = 0L;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += snapshot[i];
+			if (seen >= rank)
+				return Math.min(highestValue(i), max.get());
+		}
+		return max.get();
+	}
+
+	/**
+	 * Record a latency
+	 *
+	 * @param nanos
+	 *            long latency in nanoseconds, negative values count as zero
+	 * @since 0.2
+	 */
+	public void record(final long nanos) {
+		final long value = Math.max(nanos, 0L);
+		counts.incrementAndGet(index(value));
+		total.add(value);
+		long current;
+		while (value > (current = max.get()))
+			if (max.compareAndSet(current, value))
+				break;
+	}
+
+	@Override
+	public String toString() {
+		return "LatencyHistogram [count=" + getCount() + ", p50=" + getValueAtPercentile(0.5) + ", p99="
+				+ getValueAtPercentile(0.99) + ", max=" + getMax() + "]";
+	}
+
+	static int index(final long value) {
+		if (value < SUB_BUCKETS)
+			return (int) value;
+		final int exponent = 63 - Long.numberOfLeadingZeros(value);
+		if (exponent > MAX_EXPONENT)
+			return BUCKETS - 1;
+		final int shift = exponent - SUB_BUCKET_BITS;
+		return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+	}
+
+	static long highestValue(final int index) {
+		if (index < SUB_BUCKETS)
+			return index;
+		final int shift = (index >>> SUB_BUCKET_BITS) - 1;
+		return ((long) (SUB_BUCKETS + (index & (SUB_BUCKETS - 1))) << shift) + (1L << shift) - 1L;
+	}
+}
@@ -0,0 +1,265 @@
+package com.wolfninja.keystore.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nonnull;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.wolfninja.keystore.api.KeyValueStoreAdapter;
+import com.wolfninja.keystore.api.Keyspace;
+import com.wolfninja.keystore.api.ScanFeature;
+
+/**
+ * {@link KeyValueStoreAdapter} decorator measuring every keyspace of another adapter with a {@link MetricsKeyspace}
+ * <p>
+ * When built with an {@link MBeanServer}, the {@link OperationMetrics} of each operation of each keyspace are
+ * registered as an {@link OperationMetricsMXBean} the first time the keyspace is requested, and unregistered by
+ * {@link #close()}.
+ * <p>
+ * The asynchronous and binary keyspaces of the decorated adapter are not exposed, so {@code KeyValueStore} builds them
+ * on top of the measured String keyspaces instead of bypassing the measurement.
+ *
+ * @since 0.2
+ */
+public final class MetricsAdapter implements KeyValueStoreAdapter, AutoCloseable {
+
+	/**
+	 * Builder for {@link MetricsAdapter} instances
+	 *
+	 * @since 0.2
+	 */
+	public static final class Builder {
+		private final KeyValueStoreAdapter delegate;
+		private String name = "default";
+		private MetricsListener listener = MetricsListener.NONE;
+		private MBeanServer mBeanServer;
+
+		private Builder(@Nonnull final KeyValueStoreAdapter delegate) {
+			Objects.requireNonNull(delegate, "Adapter must not be null");
+			this.delegate = delegate;
+		}
+
+		/**
+		 * Build the {@link MetricsAdapter}
+		 *
+		 * @return new {@link MetricsAdapter} instance, not null
+		 * @since 0.2
+		 */
+		@Nonnull
+		public MetricsAdapter build() {
+			return new MetricsAdapter(this);
+		}
+
+		/**
+		 * Pass every operation to a listener
+		 *
+		 * @param listener
+		 *            {@link MetricsListener}, not null
+		 * @return this builder
+		 * @since 0.2
+		 */
+		@Nonnull
+		public Builder listener(@Nonnull final MetricsListener listener) {
+			Objects.requireNonNull(listener, "Listener must not be null");
+			this.listener = listener;
+			return this;
+		}
+
+		/**
+		 * Register metrics with the given MBean server
+		 *
+		 * @param mBeanServer
+		 *            {@link MBeanServer}, not null
+		 * @return this builder
+		 * @since 0.2
+		 */
+		@Nonnull
+		public Builder mBeanServer(@Nonnull final MBeanServer mBeanServer) {
+			Objects.requireNonNull(mBeanServer, "MBean server must not be null");
+			this.mBeanServer = mBeanServer;
+			return this;
+		}
+
+		/**
+		 * Set the adapter name, used in MBean names to tell several adapters apart
+		 *
+		 * @param name
+		 *            String name, not null, "default" if not set
+		 * @return this builder
+		 * @since 0.2
+		 */
+		@Nonnull
+		public Builder name(@Nonnull final String name) {
+			Objects.requireNonNull(name, "Name must not be null");
+			this.name = name;
+			return this;
+		}
+
+		/**
+		 * Register metrics with the platform MBean server
+		 *
+		 * @return this builder
+		 * @since 0.2
+		 */
+		@Nonnull
+		public Builder platformMBeanServer() {
+			return mBeanServer(ManagementFactory.getPlatformMBeanServer());
+		}
+	}
+
+	/**
+	 * JMX domain of registered MBeans
+	 *
+	 * @since 0.2
+	 */
+	public static final String DOMAIN = "com.wolfninja.keystore";
+
+	/**
+	 * Create a new {@link Builder} decorating the given adapter
+	 *
+	 * @param delegate
+	 *            {@link KeyValueStoreAdapter} to measure, not null
+	 * @return new {@link Builder} instance, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	public static Builder builder(@Nonnull final KeyValueStoreAdapter delegate) {
+		return new Builder(delegate);
+	}
+
+	private final KeyValueStoreAdapter delegate;
+	private final String name;
+	private final MetricsListener listener;
+	private final MBeanServer mBeanServer;
+	private final ConcurrentHashMap<String, MetricsKeyspace> keyspaces = new ConcurrentHashMap<>();
+	private final List<ObjectName> registered = new ArrayList<>();
+
+	private MetricsAdapter(final Builder builder) {
+		this.delegate = builder.delegate;
+		this.name = builder.name;
+		this.listener = builder.listener;
+		this.mBeanServer = builder.mBeanServer;
+	}
+
+	/**
+	 * Unregister all MBeans registered by this adapter, then close the decorated adapter; the keyspaces keep working
+	 * as far as the decorated adapter allows
+	 *
+	 * @since 0.2
+	 */
+	@Override
+	public void close() {
+		try {
+			unregister();
+		} finally {
+			delegate.close();
+		}
+	}
+
+	@Override
+	public void flush() {
+		delegate.flush();
+	}
+
+	@Override
+	public Keyspace getKeyspace(final String keyspaceName) {
+		return getMetricsKeyspace(keyspaceName);
+	}
+
+	/**
+	 * Get the measured keyspace of the given name, giving access to its metrics
+	 *
+	 * @param keyspaceName
+	 *            String name of the keyspace, not null
+	 * @return {@link MetricsKeyspace}, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	public MetricsKeyspace getMetricsKeyspace(@Nonnull final String keyspaceName) {
+		Objects.requireNonNull(keyspaceName, "Keyspace name must not be null");
+		final MetricsKeyspace existing = keyspaces.get(keyspaceName);
+		if (existing != null)
+			return existing;
+		return keyspaces.computeIfAbsent(keyspaceName, this::createKeyspace);
+	}
+
+	@Override
+	public Set<ScanFeature> getScanFeatures() {
+		return delegate.getScanFeatures();
+	}
+
+	/**
+	 * Get the adapter name used in MBean names
+	 *
+	 * @return String name, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Get the name an operation of a keyspace is registered under
+	 *
+	 * @param keyspaceName
+	 *            String name of the keyspace, not null
+	 * @param operation
+	 *            {@link Operation}, not null
+	 * @return {@link ObjectName}, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	public ObjectName objectName(@Nonnull final String keyspaceName, @Nonnull final Operation operation) {
+		Objects.requireNonNull(keyspaceName, "Keyspace name must not be null");
+		Objects.requireNonNull(operation, "Operation must not be null");
+		try {
+			return new ObjectName(DOMAIN + ":type=Operation,adapter=" + ObjectName.quote(name) + ",keyspace="
+					+ ObjectName.quote(keyspaceName) + ",operation=" + operation.name());
+		} catch (final JMException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private void unregister() {
+		if (mBeanServer == null)
+			return;
+		synchronized (registered) {
+			for (final ObjectName objectName : registered)
+				try {
+					mBeanServer.unregisterMBean(objectName);
+				} catch (final InstanceNotFoundException e) {
+					// Already unregistered by someone else
+				} catch (final JMException e) {
+					throw new IllegalStateException("Unable to unregister " + objectName, e);
+				}
+			registered.clear();
+		}
+	}
+
+	private MetricsKeyspace createKeyspace(final String keyspaceName) {
+		final MetricsKeyspace keyspace = MetricsKeyspace.create(delegate.getKeyspace(keyspaceName), keyspaceName,
+				listener);
+		if (mBeanServer != null)
+			synchronized (registered) {
+				for (final Operation operation : Operation.values()) {
+					final ObjectName objectName = objectName(keyspaceName, operation);
+					try {
+						mBeanServer.registerMBean(keyspace.getMetrics(operation), objectName);
+					} catch (final JMException e) {
+						throw new IllegalStateException("Unable to register " + objectName, e);
+					}
+					registered.add(objectName);
+				}
+			}
+		return keyspace;
+	}
+}
@@ -0,0 +1,337 @@
+package com.wolfninja.keystore.metrics;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import javax.annotation.Nonnull;
+
+import com.wolfninja.keystore.api.ChangePublisher;
+import com.wolfninja.keystore.api.KeyValue;
+import com.wolfninja.keystore.api.Keyspace;
+import com.wolfninja.keystore.api.Watch;
+
+/**
+ * {@link Keyspace} decorator measuring call counts, outcomes and latencies of every operation
+ * <p>
+ * Each call is timed with {@link System#nanoTime()} and recorded in the {@link OperationMetrics} of its
+ * {@link Operation}, then passed to the {@link MetricsListener}. Recording never allocates or locks. Exceptions from
+ * the delegate are counted as errors and rethrown.
+ *
+ * @since 0.2
+ */
+public final class MetricsKeyspace implements Keyspace {
+
+	/**
+	 * Create new {@code MetricsKeyspace} instance
+	 *
+	 * @param delegate
+	 *            {@link Keyspace} to measure, not null
+	 * @param name
+	 *            String name of the keyspace, passed to the listener, not null
+	 * @param listener
+	 *            {@link MetricsListener} receiving every operation, not null, see {@link MetricsListener#NONE}
+	 * @return new {@link MetricsKeyspace} instance, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	public static MetricsKeyspace create(@Nonnull final Keyspace delegate, @Nonnull final String name,
+			@Nonnull final MetricsListener listener) {
+		return new MetricsKeyspace(delegate, name, listener);
+	}
+
+	private static final Operation[] OPERATIONS = Operation.values();
+
+	private final Keyspace delegate;
+	private final String name;
+	private final MetricsListener listener;
+	private final OperationMetrics[] metrics = new OperationMetrics[OPERATIONS.length];
+
+	private MetricsKeyspace(@Nonnull final Keyspace delegate, @Nonnull final String name,
+			@Nonnull final MetricsListener listener) {
+		Objects.requireNonNull(delegate, "Keyspace must not be null");
+		Objects.requireNonNull(name, "Name must not be null");
+		Objects.requireNonNull(listener, "Listener must not be null");
+		this.delegate = delegate;
+		this.name = name;
+		this.listener = listener;
+		for (final Operation operation : OPERATIONS)
+			metrics[operation.ordinal()] = new OperationMetrics(operation);
+	}
+
+	@Override
+	public boolean add(final String key, final String value) {
+		final long start = System.nanoTime();
+		try {
+			return write(Operation.ADD, start, delegate.add(key, value));
+		} catch (final RuntimeException e) {
+			throw error(Operation.ADD, start, e);
+		}
+	}
+
+	@Override
+	public boolean add(final String key, final String value, final long ttl, final TimeUnit unit) {
+		final long start = System.nanoTime();
+		try {
+			return write(Operation.ADD, start, delegate.add(key, value, ttl, unit));
+		} catch (final RuntimeException e) {
+			throw error(Operation.ADD, start, e);
+		}
+	}
+
+	@Override
+	public long addAndGet(final String key, final long delta) {
+		final long start = System.nanoTime();
+		try {
+			final long value = delegate.addAndGet(key, delta);
+			complete(Operation.ADD_AND_GET, start, Outcome.SUCCESS);
+			return value;
+		} catch (final RuntimeException e) {
+			throw error(Operation.ADD_AND_GET, start, e);
+		}
+	}
+
+	@Override
+	public boolean checkAndSet(final String key, final String value, final long version) {
+		final long start = System.nanoTime();
+		try {
+			return write(Operation.CHECK_AND_SET, start, delegate.checkAndSet(key, value, version));
+		} catch (final RuntimeException e) {
+			throw error(Operation.CHECK_AND_SET, start, e);
+		}
+	}
+
+	@Override
+	public boolean checkAndSet(final String key, final String value, final long version, final long ttl,
+			final TimeUnit unit) {
+		final long start = System.nanoTime();
+		try {
+			return write(Operation.CHECK_AND_SET, start, delegate.checkAndSet(key, value, version, ttl, unit));
+		} catch (final RuntimeException e) {
+			throw error(Operation.CHECK_AND_SET, start, e);
+		}
+	}
+
+	@Override
+	public void close() {
+		delegate.close();
+	}
+
+	@Override
+	public boolean delete(final String key) {
+		final long start = System.nanoTime();
+		try {
+			return write(Operation.DELETE, start, delegate.delete(key));
+		} catch (final RuntimeException e) {
+			throw error(Operation.DELETE, start, e);
+		}
+	}
+
+	@Override
+	public int deleteAll(final Collection<String> keys) {
+		final long start = System.nanoTime();
+		try {
+			final int deleted = delegate.deleteAll(keys);
+			write(Operation.DELETE_ALL, start, deleted > 0);
+			return deleted;
+		} catch (final RuntimeException e) {
+			throw error(Operation.DELETE_ALL, start, e);
+		}
+	}
+
+	@Override
+	public boolean deletes(final String key, final long version) {
+		final long start = System.nanoTime();
+		try {
+			return write(Operation.DELETES, start, delegate.deletes(key, version));
+		} catch (final RuntimeException e) {
+			throw error(Operation.DELETES, start, e);
+		}
+	}
+
+	@Override
+	public boolean exists(final String key) {
+		final long start = System.nanoTime();
+		try {
+			final boolean exists = delegate.exists(key);
+			complete(Operation.EXISTS, start, exists ? Outcome.HIT : Outcome.MISS);
+			return exists;
+		} catch (final RuntimeException e) {
+			throw error(Operation.EXISTS, start, e);
+		}
+	}
+
+	@Override
+	public void flush() {
+		delegate.flush();
+	}
+
+	@Override
+	public Optional<String> get(final String key) {
+		final long start = System.nanoTime();
+		try {
+			return read(Operation.GET, start, delegate.get(key));
+		} catch (final RuntimeException e) {
+			throw error(Operation.GET, start, e);
+		}
+	}
+
+	@Override
+	public Map<String, String> getAll(final Collection<String> keys) {
+		final long start = System.nanoTime();
+		try {
+			final Map<String, String> values = delegate.getAll(keys);
+			complete(Operation.GET_ALL, start, values.isEmpty() ? Outcome.MISS : Outcome.HIT);
+			return values;
+		} catch (final RuntimeException e) {
+			throw error(Operation.GET_ALL, start, e);
+		}
+	}
+
+	/**
+	 * Get the live metrics of an operation
+	 *
+	 * @param operation
+	 *            {@link Operation} to get metrics for, not null
+	 * @return {@link OperationMetrics}, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	public OperationMetrics getMetrics(@Nonnull final Operation operation) {
+		Objects.requireNonNull(operation, "Operation must not be null");
+		return metrics[operation.ordinal()];
+	}
+
+	/**
+	 * Get the keyspace name passed to the listener
+	 *
+	 * @return String name, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public Optional<KeyValue> gets(final String key) {
+		final long start = System.nanoTime();
+		try {
+			return read(Operation.GETS, start, delegate.gets(key));
+		} catch (final RuntimeException e) {
+			throw error(Operation.GETS, start, e);
+		}
+	}
+
+	@Override
+	public Map<String, KeyValue> getsAll(final Collection<String> keys) {
+		final long start = System.nanoTime();
+		try {
+			final Map<String, KeyValue> values = delegate.getsAll(keys);
+			complete(Operation.GETS_ALL, start, values.isEmpty() ? Outcome.MISS : Outcome.HIT);
+			return values;
+		} catch (final RuntimeException e) {
+			throw error(Operation.GETS_ALL, start, e);
+		}
+	}
+
+	@Override
+	public boolean replace(final String key, final String value) {
+		final long start = System.nanoTime();
+		try {
+			return write(Operation.REPLACE, start, delegate.replace(key, value));
+		} catch (final RuntimeException e) {
+			throw error(Operation.REPLACE, start, e);
+		}
+	}
+
+	@Override
+	public boolean replace(final String key, final String value, final long ttl, final TimeUnit unit) {
+		final long start = System.nanoTime();
+		try {
+			return write(Operation.REPLACE, start, delegate.replace(key, value, ttl, unit));
+		} catch (final RuntimeException e) {
+			throw error(Operation.REPLACE, start, e);
+		}
+	}
+
+	@Override
+	public Stream<KeyValue> scan(final String prefix) {
+		// Not measured, the stream is consumed after this returns
+		return delegate.scan(prefix);
+	}
+
+	@Override
+	public boolean set(final String key, final String value) {
+		final long start = System.nanoTime();
+		try {
+			return write(Operation.SET, start, delegate.set(key, value));
+		} catch (final RuntimeException e) {
+			throw error(Operation.SET, start, e);
+		}
+	}
+
+	@Override
+	public boolean set(final String key, final String value, final long ttl, final TimeUnit unit) {
+		final long start = System.nanoTime();
+		try {
+			return write(Operation.SET, start, delegate.set(key, value, ttl, unit));
+		} catch (final RuntimeException e) {
+			throw error(Operation.SET, start, e);
+		}
+	}
+
+	@Override
+	public boolean setAll(final Map<String, String> values) {
+		final long start = System.nanoTime();
+		try {
+			return write(Operation.SET_ALL, start, delegate.setAll(values));
+		} catch (final RuntimeException e) {
+			throw error(Operation.SET_ALL, start, e);
+		}
+	}
+
+	@Override
+	public Optional<Duration> ttl(final String key) {
+		final long start = System.nanoTime();
+		try {
+			return read(Operation.TTL, start, delegate.ttl(key));
+		} catch (final RuntimeException e) {
+			throw error(Operation.TTL, start, e);
+		}
+	}
+
+	@Override
+	public ChangePublisher watch(final Watch watch) {
+		return delegate.watch(watch);
+	}
+
+	private void complete(final Operation operation, final long start, final Outcome outcome) {
+		final long nanos = System.nanoTime() - start;
+		metrics[operation.ordinal()].record(nanos, outcome);
+		try {
+			listener.operationCompleted(name, operation, outcome, nanos);
+		} catch (final RuntimeException e) {
+			// Listeners must not affect the operation
+		}
+	}
+
+	private RuntimeException error(final Operation operation, final long start, final RuntimeException e) {
+		complete(operation, start, Outcome.ERROR);
+		return e;
+	}
+
+	private <T> Optional<T> read(final Operation operation, final long start, final Optional<T> result) {
+		complete(operation, start, result.isPresent() ? Outcome.HIT : Outcome.MISS);
+		return result;
+	}
+
+	private boolean write(final Operation operation, final long start, final boolean result) {
+		complete(operation, start, result ? Outcome.SUCCESS : Outcome.FAILURE);
+		return result;
+	}
+}
@@ -0,0 +1,42 @@
+package com.wolfninja.keystore.metrics;
+
+import javax.annotation.Nonnull;
+
+import aQute.bnd.annotation.ConsumerType;
+
+/**
+ * Receives every operation measured by a {@link MetricsKeyspace}, for forwarding to another metrics system
+ * <p>
+ * Called synchronously on the calling thread after each operation, so implementations must be fast, thread-safe and
+ * should not throw; exceptions thrown by a listener are ignored.
+ *
+ * @since 0.2
+ */
+@ConsumerType
+@FunctionalInterface
+public interface MetricsListener {
+
+	/**
+	 * Listener ignoring all operations
+	 *
+	 * @since 0.2
+	 */
+	MetricsListener NONE = (keyspace, operation, outcome, nanos) -> {
+	};
+
+	/**
+	 * Called after an operation completes
+	 *
+	 * @param keyspace
+	 *            String name of the keyspace, not null
+	 * @param operation
+	 *            {@link Operation} performed, not null
+	 * @param outcome
+	 *            {@link Outcome} of the operation, not null
+	 * @param nanos
+	 *            long latency in nanoseconds
+	 * @since 0.2
+	 */
+	void operationCompleted(@Nonnull String keyspace, @Nonnull Operation operation, @Nonnull Outcome outcome,
+			long nanos);
+}
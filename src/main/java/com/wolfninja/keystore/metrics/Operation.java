@@ -0,0 +1,71 @@
+package com.wolfninja.keystore.metrics;
+
+import com.wolfninja.keystore.api.Keyspace;
+
+/**
+ * {@link Keyspace} operations measured by a {@link MetricsKeyspace}
+ *
+ * @since 0.2
+ */
+public enum Operation {
+	/**
+	 * {@link Keyspace#add(String, String)} and its time to live variant, outcome is success or failure
+	 */
+	ADD,
+	/**
+	 * {@link Keyspace#addAndGet(String, long)}, also counting increment and decrement, outcome is always success
+	 */
+	ADD_AND_GET,
+	/**
+	 * {@link Keyspace#checkAndSet(String, String, long)} and its time to live variant, outcome is success or failure
+	 */
+	CHECK_AND_SET,
+	/**
+	 * {@link Keyspace#delete(String)}, outcome is success or failure
+	 */
+	DELETE,
+	/**
+	 * {@link Keyspace#deleteAll(java.util.Collection)}, outcome is success if any key was deleted
+	 */
+	DELETE_ALL,
+	/**
+	 * {@link Keyspace#deletes(String, long)}, outcome is success or failure
+	 */
+	DELETES,
+	/**
+	 * {@link Keyspace#exists(String)}, outcome is hit or miss
+	 */
+	EXISTS,
+	/**
+	 * {@link Keyspace#get(String)}, outcome is hit or miss
+	 */
+	GET,
+	/**
+	 * {@link Keyspace#getAll(java.util.Collection)}, outcome is hit if any key was found
+	 */
+	GET_ALL,
+	/**
+	 * {@link Keyspace#gets(String)}, outcome is hit or miss
+	 */
+	GETS,
+	/**
+	 * {@link Keyspace#getsAll(java.util.Collection)}, outcome is hit if any key was found
+	 */
+	GETS_ALL,
+	/**
+	 * {@link Keyspace#replace(String, String)} and its time to live variant, outcome is success or failure
+	 */
+	REPLACE,
+	/**
+	 * {@link Keyspace#set(String, String)} and its time to live variant, outcome is success or failure
+	 */
+	SET,
+	/**
+	 * {@link Keyspace#setAll(java.util.Map)}, outcome is success or failure
+	 */
+	SET_ALL,
+	/**
+	 * {@link Keyspace#ttl(String)}, outcome is hit or miss
+	 */
+	TTL
+}
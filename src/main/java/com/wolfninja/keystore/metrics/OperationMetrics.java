@@ -0,0 +1,146 @@
+package com.wolfninja.keystore.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Live counters and latency histogram of one {@link Operation} on one keyspace
+ *
+ * @since 0.2
+ */
+public final class OperationMetrics implements OperationMetricsMXBean {
+
+	private final Operation operation;
+	private final LatencyHistogram latency = LatencyHistogram.create();
+	private final LongAdder calls = new LongAdder();
+	private final LongAdder errors = new LongAdder();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder successes = new LongAdder();
+	private final LongAdder failures = new LongAdder();
+
+	OperationMetrics(final Operation operation) {
+		this.operation = operation;
+	}
+
+	@Override
+	public long getCalls() {
+		return calls.sum();
+	}
+
+	@Override
+	public long getErrors() {
+		return errors.sum();
+	}
+
+	@Override
+	public long getFailures() {
+		return failures.sum();
+	}
+
+	@Override
+	public double getHitRatio() {
+		return ratio(hits.sum(), misses.sum());
+	}
+
+	@Override
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Get the latency histogram
+	 *
+	 * @return {@link LatencyHistogram} of all calls, including failed ones, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	public LatencyHistogram getLatency() {
+		return latency;
+	}
+
+	@Override
+	public long getLatencyMaxNanos() {
+		return latency.getMax();
+	}
+
+	@Override
+	public double getLatencyMeanNanos() {
+		return latency.getMean();
+	}
+
+	@Override
+	public long getLatencyP50Nanos() {
+		return latency.getValueAtPercentile(0.5);
+	}
+
+	@Override
+	public long getLatencyP999Nanos() {
+		return latency.getValueAtPercentile(0.999);
+	}
+
+	@Override
+	public long getLatencyP99Nanos() {
+		return latency.getValueAtPercentile(0.99);
+	}
+
+	@Override
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Get the measured operation
+	 *
+	 * @return {@link Operation}, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	public Operation getOperation() {
+		return operation;
+	}
+
+	@Override
+	public long getSuccesses() {
+		return successes.sum();
+	}
+
+	@Override
+	public double getSuccessRatio() {
+		return ratio(successes.sum(), failures.sum());
+	}
+
+	@Override
+	public String toString() {
+		return "OperationMetrics [operation=" + operation + ", calls=" + getCalls() + ", errors=" + getErrors()
+				+ ", latency=" + latency + "]";
+	}
+
+	void record(final long nanos, final Outcome outcome) {
+		calls.increment();
+		latency.record(nanos);
+		switch (outcome) {
+		case HIT:
+			hits.increment();
+			break;
+		case MISS:
+			misses.increment();
+			break;
+		case SUCCESS:
+			successes.increment();
+			break;
+		case FAILURE:
+			failures.increment();
+			break;
+		default:
+			errors.increment();
+			break;
+		}
+	}
+
+	private static double ratio(final long positive, final long negative) {
+		final long total = positive + negative;
+		return total == 0L ? 1.0 : (double) positive / total;
+	}
+}
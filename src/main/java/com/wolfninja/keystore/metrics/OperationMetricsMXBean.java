@@ -0,0 +1,90 @@
+package com.wolfninja.keystore.metrics;
+
+/**
+ * JMX view of the {@link OperationMetrics} of one operation on one keyspace
+ * <p>
+ * Registered by {@link MetricsAdapter} as
+ * {@code com.wolfninja.keystore:type=Operation,adapter=<name>,keyspace=<keyspace>,operation=<operation>}.
+ *
+ * @since 0.2
+ */
+public interface OperationMetricsMXBean {
+
+	/**
+	 * @return long number of calls, including failed ones
+	 * @since 0.2
+	 */
+	long getCalls();
+
+	/**
+	 * @return long number of calls that threw an exception
+	 * @since 0.2
+	 */
+	long getErrors();
+
+	/**
+	 * @return long number of writes that returned false
+	 * @since 0.2
+	 */
+	long getFailures();
+
+	/**
+	 * @return long number of reads that found the key
+	 * @since 0.2
+	 */
+	long getHits();
+
+	/**
+	 * @return double ratio of hits to all reads, 1 if there were no reads
+	 * @since 0.2
+	 */
+	double getHitRatio();
+
+	/**
+	 * @return long longest latency in nanoseconds
+	 * @since 0.2
+	 */
+	long getLatencyMaxNanos();
+
+	/**
+	 * @return double mean latency in nanoseconds
+	 * @since 0.2
+	 */
+	double getLatencyMeanNanos();
+
+	/**
+	 * @return long median latency in nanoseconds
+	 * @since 0.2
+	 */
+	long getLatencyP50Nanos();
+
+	/**
+	 * @return long 99th percentile latency in nanoseconds
+	 * @since 0.2
+	 */
+	long getLatencyP99Nanos();
+
+	/**
+	 * @return long 99.9th percentile latency in nanoseconds
+	 * @since 0.2
+	 */
+	long getLatencyP999Nanos();
+
+	/**
+	 * @return long number of reads that did not find the key
+	 * @since 0.2
+	 */
+	long getMisses();
+
+	/**
+	 * @return long number of writes that returned true
+	 * @since 0.2
+	 */
+	long getSuccesses();
+
+	/**
+	 * @return double ratio of successes to all writes, 1 if there were no writes
+	 * @since 0.2
+	 */
+	double getSuccessRatio();
+}
@@ -0,0 +1,29 @@
+package com.wolfninja.keystore.metrics;
+
+/**
+ * Result of a measured {@link Operation}
+ *
+ * @since 0.2
+ */
+public enum Outcome {
+	/**
+	 * A read found the key
+	 */
+	HIT,
+	/**
+	 * A read did not find the key
+	 */
+	MISS,
+	/**
+	 * A write returned true
+	 */
+	SUCCESS,
+	/**
+	 * A write returned false, for example a {@link Operation#CHECK_AND_SET} with an outdated version
+	 */
+	FAILURE,
+	/**
+	 * The operation threw an exception
+	 */
+	ERROR
+}
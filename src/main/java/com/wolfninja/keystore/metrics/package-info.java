@@ -0,0 +1 @@
+package com.wolfninja.keystore.metrics;
@@ -0,0 +1,179 @@
+package com.wolfninja.keystore.offheap;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nonnull;
+
+import com.wolfninja.keystore.api.BinaryKeyspace;
+import com.wolfninja.keystore.api.KeyValueStoreAdapter;
+import com.wolfninja.keystore.api.Keyspace;
+import com.wolfninja.keystore.api.ScanFeature;
+
+/**
+ * {@link KeyValueStoreAdapter} keeping keys, values and versions in direct memory outside the Java heap
+ * <p>
+ * Entries are stored in 1 MiB slab pages drawn from a shared budget, so large data sets do not add to garbage
+ * collection work. The budget covers the slab pages of all keyspaces; each keyspace's index adds a further 16 bytes
+ * of direct memory per slot. A single entry, including its 24 byte header, may not exceed one page. The JVM must be
+ * allowed enough direct memory, see {@code -XX:MaxDirectMemorySize}.
+ * <p>
+ * Once the budget is used up, behavior follows the {@link FullPolicy}. {@link #close()} returns the pages of all
+ * keyspaces to the budget.
+ * <p>
+ * Data is stored as bytes; {@link #getKeyspace(String)} stores Strings UTF-8 encoded, and
+ * {@link #getBinaryKeyspace(String)} gives direct access to the same entries.
+ *
+ * @since 0.2
+ */
+public final class OffHeapAdapter implements KeyValueStoreAdapter {
+
+	/**
+	 * What to do when a write needs memory and the capacity is used up
+	 *
+	 * @since 0.2
+	 */
+	public enum FullPolicy {
+		/**
+		 * Evict entries to make room, using a CLOCK approximation of least recently used within a segment
+		 * <p>
+		 * A segment holding far fewer pages than another, of this or any other keyspace of the adapter, first takes a
+		 * whole page from it, evicting the entries on that page, so every keyspace and segment can store entries even
+		 * after others used up the capacity.
+		 *
+		 * @since 0.2
+		 */
+		EVICT,
+		/**
+		 * Reject the write, which then returns false
+		 *
+		 * @since 0.2
+		 */
+		REJECT
+	}
+
+	private static final int MAX_SEGMENTS = 16;
+	private static final int PAGES_PER_SEGMENT = 4;
+	private static final Set<ScanFeature> SCAN_FEATURES = Collections.unmodifiableSet(EnumSet.of(ScanFeature.SCAN));
+
+	/**
+	 * Create new, empty {@code OffHeapAdapter} instance
+	 *
+	 * @param capacityBytes
+	 *            long maximum number of bytes of slab pages, at least one page (1 MiB)
+	 * @param policy
+	 *            {@link FullPolicy} applied when capacity is used up, not null
+	 * @return new {@link OffHeapAdapter} instance, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	public static OffHeapAdapter create(final long capacityBytes, @Nonnull final FullPolicy policy) {
+		return new OffHeapAdapter(capacityBytes, policy);
+	}
+
+	private final PageAllocator allocator;
+	private final FullPolicy policy;
+	private final int segmentCount;
+	private final ConcurrentHashMap<String, OffHeapKeyspace> keyspaces = new ConcurrentHashMap<>();
+
+	private OffHeapAdapter(final long capacityBytes, @Nonnull final FullPolicy policy) {
+		Objects.requireNonNull(policy, "Policy must not be null");
+		if (capacityBytes < PageAllocator.PAGE_SIZE)
+			throw new IllegalArgumentException("Capacity must be at least " + PageAllocator.PAGE_SIZE + " bytes");
+		this.allocator = new PageAllocator(capacityBytes);
+		this.policy = policy;
+
+		int segments = 1;
+		while (segments < MAX_SEGMENTS
+				&& capacityBytes / ((long) segments * 2 * PAGES_PER_SEGMENT * PageAllocator.PAGE_SIZE) >= 1L)
+			segments <<= 1;
+		this.segmentCount = segments;
+	}
+
+	/**
+	 * Drop the entries of all keyspaces and return their pages to the budget
+	 * <p>
+	 * Keyspaces obtained from this adapter read as empty and reject writes afterwards; {@link #getKeyspace(String)}
+	 * hands out new, empty ones. The direct memory itself is freed once the garbage collector finds the pages
+	 * unreachable.
+	 *
+	 * @since 0.2
+	 */
+	@Override
+	public void close() {
+		for (final String keyspaceName : keyspaces.keySet()) {
+			final OffHeapKeyspace keyspace = keyspaces.remove(keyspaceName);
+			if (keyspace != null)
+				keyspace.release();
+		}
+	}
+
+	/**
+	 * Get number of bytes of slab pages currently allocated
+	 *
+	 * @return long allocated bytes
+	 * @since 0.2
+	 */
+	public long getAllocatedBytes() {
+		return allocator.allocatedBytes();
+	}
+
+	/**
+	 * Get configured capacity
+	 *
+	 * @return long maximum number of bytes of slab pages
+	 * @since 0.2
+	 */
+	public long getCapacity() {
+		return allocator.capacity();
+	}
+
+	/**
+	 * Get number of entries evicted to make room for new ones
+	 *
+	 * @return long eviction count, always zero with {@link FullPolicy#REJECT}
+	 * @since 0.2
+	 */
+	public long getEvictionCount() {
+		return allocator.evictions();
+	}
+
+	@Override
+	public Optional<BinaryKeyspace> getBinaryKeyspace(final String keyspaceName) {
+		return Optional.of(keyspace(keyspaceName).binary());
+	}
+
+	@Override
+	public Keyspace getKeyspace(final String keyspaceName) {
+		return keyspace(keyspaceName);
+	}
+
+	@Override
+	public Set<ScanFeature> getScanFeatures() {
+		return SCAN_FEATURES;
+	}
+
+	/**
+	 * Get the configured full policy
+	 *
+	 * @return {@link FullPolicy}, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	public FullPolicy getPolicy() {
+		return policy;
+	}
+
+	private OffHeapKeyspace keyspace(final String keyspaceName) {
+		Objects.requireNonNull(keyspaceName, "Keyspace name must not be null");
+		final OffHeapKeyspace existing = keyspaces.get(keyspaceName);
+		if (existing != null)
+			return existing;
+		return keyspaces.computeIfAbsent(keyspaceName,
+				name -> new OffHeapKeyspace(allocator, policy == FullPolicy.EVICT, segmentCount));
+	}
+}
@@ -0,0 +1,79 @@
+package com.wolfninja.keystore.offheap;
+
+import java.nio.ByteBuffer;
+import java.util.Optional;
+
+import com.wolfninja.keystore.api.BinaryKeyValue;
+import com.wolfninja.keystore.api.BinaryKeyspace;
+
+/**
+ * {@link BinaryKeyspace} view of an {@link OffHeapKeyspace}
+ * <p>
+ * Values are copied straight between caller buffers and direct memory. Reads copy the value once onto the heap,
+ * since the off-heap record may be overwritten as soon as the segment lock is released.
+ */
+final class OffHeapBinaryKeyspace implements BinaryKeyspace {
+
+	private final OffHeapKeyspace keyspace;
+
+	OffHeapBinaryKeyspace(final OffHeapKeyspace keyspace) {
+		this.keyspace = keyspace;
+	}
+
+	@Override
+	public boolean add(final String key, final ByteBuffer value) {
+		return keyspace.write(key, value, OffHeapSegment.ADD, 0L);
+	}
+
+	@Override
+	public boolean checkAndSet(final String key, final ByteBuffer value, final long version) {
+		return keyspace.write(key, value, OffHeapSegment.CHECK_AND_SET, version);
+	}
+
+	@Override
+	public boolean delete(final String key) {
+		return keyspace.remove(key, OffHeapSegment.ANY_VERSION);
+	}
+
+	@Override
+	public boolean deletes(final String key, final long version) {
+		return keyspace.remove(key, version);
+	}
+
+	@Override
+	public boolean exists(final String key) {
+		return keyspace.exists(key);
+	}
+
+	@Override
+	public Optional<ByteBuffer> get(final String key) {
+		return Optional.ofNullable(
+				keyspace.read(key, (version, page, offset, length) -> copy(page, offset, length).asReadOnlyBuffer()));
+	}
+
+	@Override
+	public Optional<BinaryKeyValue> gets(final String key) {
+		return Optional.ofNullable(keyspace.read(key,
+				(version, page, offset, length) -> BinaryKeyValue.create(key, copy(page, offset, length), version)));
+	}
+
+	@Override
+	public boolean replace(final String key, final ByteBuffer value) {
+		return keyspace.write(key, value, OffHeapSegment.REPLACE, 0L);
+	}
+
+	@Override
+	public boolean set(final String key, final ByteBuffer value) {
+		return keyspace.write(key, value, OffHeapSegment.SET, 0L);
+	}
+
+	private static ByteBuffer copy(final ByteBuffer page, final int offset, final int length) {
+		final ByteBuffer source = page.duplicate();
+		source.position(offset);
+		source.limit(offset + length);
+		final ByteBuffer copy = ByteBuffer.allocate(length);
+		copy.put(source);
+		copy.flip();
+		return copy;
+	}
+}
@@ -0,0 +1,261 @@
+package com.wolfninja.keystore.offheap;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+import com.wolfninja.keystore.api.ChangeBus;
+import com.wolfninja.keystore.api.ChangeEvent;
+import com.wolfninja.keystore.api.ChangePublisher;
+import com.wolfninja.keystore.api.KeyValue;
+import com.wolfninja.keystore.api.Keyspace;
+import com.wolfninja.keystore.api.ScanSource;
+import com.wolfninja.keystore.api.ScanSpliterator;
+import com.wolfninja.keystore.api.Watch;
+
+/**
+ * {@link Keyspace} storing keys, values and versions in direct memory
+ * <p>
+ * Keys are spread over independently locked {@link OffHeapSegment segments}; the segment is picked from the high bits
+ * of the key hash and the index slot from the low bits. Strings are stored UTF-8 encoded. The same data is available
+ * as bytes through {@link #binary()}.
+ * <p>
+ * Each segment is a {@link ScanSource} partition, so a parallel scan reads segments concurrently; entries are copied
+ * to the heap a page at a time under the segment's read lock and handed on after it is released.
+ * <p>
+ * Entries with a time to live store the ticker value at which they expire, see {@link OffHeapSegment} for how they
+ * are removed.
+ * <p>
+ * Counters are parsed from and written back to the page under the segment's write lock, without decoding a String.
+ * <p>
+ * Changes are published to a {@link ChangeBus} from within the segment's write lock, so the changes of a key are
+ * published in the order they were made. Values are only decoded for that while their key is watched.
+ */
+final class OffHeapKeyspace implements Keyspace, ScanSource {
+
+	// Indexed by the segment write modes
+	private static final ChangeEvent.Type[] CHANGE_TYPES = { ChangeEvent.Type.ADD, ChangeEvent.Type.REPLACE,
+			ChangeEvent.Type.SET, ChangeEvent.Type.CHECK_AND_SET };
+
+	private final OffHeapSegment[] segments;
+	private final int segmentShift;
+	private final LongSupplier ticker;
+	private final OffHeapBinaryKeyspace binary = new OffHeapBinaryKeyspace(this);
+	private final ChangeBus changes = ChangeBus.create();
+
+	OffHeapKeyspace(final PageAllocator allocator, final boolean evict, final int segmentCount) {
+		this(allocator, evict, segmentCount, System::nanoTime);
+	}
+
+	OffHeapKeyspace(final PageAllocator allocator, final boolean evict, final int segmentCount,
+			final LongSupplier ticker) {
+		this.segments = new OffHeapSegment[segmentCount];
+		this.segmentShift = 32 - Integer.numberOfTrailingZeros(segmentCount);
+		this.ticker = ticker;
+		for (int i = 0; i < segmentCount; i++)
+			segments[i] = new OffHeapSegment(allocator, evict, ticker);
+	}
+
+	@Override
+	public boolean add(final String key, final String value) {
+		return write(key, encode(value), OffHeapSegment.ADD, 0L);
+	}
+
+	@Override
+	public boolean add(final String key, final String value, final long ttl, final TimeUnit unit) {
+		return write(key, encode(value), OffHeapSegment.ADD, 0L, deadline(ttl, unit));
+	}
+
+	@Override
+	public long addAndGet(final String key, final long delta) {
+		final int hash = hash(key);
+		return segmentFor(hash).addAndGet(key.getBytes(StandardCharsets.UTF_8), hash, delta,
+				listener(ChangeEvent.Type.COUNTER, key));
+	}
+
+	@Override
+	public boolean checkAndSet(final String key, final String value, final long version) {
+		return write(key, encode(value), OffHeapSegment.CHECK_AND_SET, version);
+	}
+
+	@Override
+	public boolean checkAndSet(final String key, final String value, final long version, final long ttl,
+			final TimeUnit unit) {
+		return write(key, encode(value), OffHeapSegment.CHECK_AND_SET, version, deadline(ttl, unit));
+	}
+
+	@Override
+	public boolean delete(final String key) {
+		return remove(key, OffHeapSegment.ANY_VERSION);
+	}
+
+	@Override
+	public boolean deletes(final String key, final long version) {
+		return remove(key, version);
+	}
+
+	@Override
+	public boolean exists(final String key) {
+		final int hash = hash(key);
+		return segmentFor(hash).exists(key.getBytes(StandardCharsets.UTF_8), hash);
+	}
+
+	@Override
+	public Optional<String> get(final String key) {
+		return Optional.ofNullable(read(key, (version, page, offset, length) -> decode(page, offset, length)));
+	}
+
+	@Override
+	public Optional<KeyValue> gets(final String key) {
+		return Optional.ofNullable(read(key,
+				(version, page, offset, length) -> KeyValue.create(key, decode(page, offset, length), version)));
+	}
+
+	@Override
+	public int partitions() {
+		return segments.length;
+	}
+
+	@Override
+	public boolean replace(final String key, final String value) {
+		return write(key, encode(value), OffHeapSegment.REPLACE, 0L);
+	}
+
+	@Override
+	public boolean replace(final String key, final String value, final long ttl, final TimeUnit unit) {
+		return write(key, encode(value), OffHeapSegment.REPLACE, 0L, deadline(ttl, unit));
+	}
+
+	@Override
+	public String scan(final int partition, final String cursor, final String prefix, final int limit,
+			final Consumer<? super KeyValue> action) {
+		final List<KeyValue> entries = new ArrayList<>(Math.min(limit, ScanSpliterator.DEFAULT_PAGE_SIZE));
+		final long next = segments[partition].scan(cursor == null ? 0L : Long.parseLong(cursor),
+				prefix.getBytes(StandardCharsets.UTF_8), limit,
+				(version, page, keyOffset, keyLength, valueLength) -> entries.add(KeyValue.create(
+						decode(page, keyOffset, keyLength), decode(page, keyOffset + keyLength, valueLength), version)));
+		entries.forEach(action);
+		return next == OffHeapSegment.SCAN_DONE ? null : Long.toString(next);
+	}
+
+	@Override
+	public Stream<KeyValue> scan(final String prefix) {
+		return ScanSpliterator.stream(this, prefix);
+	}
+
+	@Override
+	public boolean set(final String key, final String value) {
+		return write(key, encode(value), OffHeapSegment.SET, 0L);
+	}
+
+	@Override
+	public boolean set(final String key, final String value, final long ttl, final TimeUnit unit) {
+		return write(key, encode(value), OffHeapSegment.SET, 0L, deadline(ttl, unit));
+	}
+
+	@Override
+	public Optional<Duration> ttl(final String key) {
+		final int hash = hash(key);
+		final long remaining = segmentFor(hash).remaining(key.getBytes(StandardCharsets.UTF_8), hash);
+		if (remaining == OffHeapSegment.ABSENT)
+			return Optional.empty();
+		return Optional.of(remaining == Long.MAX_VALUE ? NO_EXPIRY : Duration.ofNanos(remaining));
+	}
+
+	@Override
+	public ChangePublisher watch(final Watch watch) {
+		return changes.publisher(watch);
+	}
+
+	OffHeapBinaryKeyspace binary() {
+		return binary;
+	}
+
+	<T> T read(final String key, final OffHeapSegment.RecordReader<T> reader) {
+		final int hash = hash(key);
+		return segmentFor(hash).read(key.getBytes(StandardCharsets.UTF_8), hash, reader);
+	}
+
+	/**
+	 * Release the pages of every segment and complete the watchers
+	 */
+	void release() {
+		for (final OffHeapSegment segment : segments)
+			segment.release();
+		changes.close();
+	}
+
+	boolean remove(final String key, final long version) {
+		final int hash = hash(key);
+		return segmentFor(hash).remove(key.getBytes(StandardCharsets.UTF_8), hash, version,
+				listener(ChangeEvent.Type.DELETE, key));
+	}
+
+	long size() {
+		long size = 0L;
+		for (final OffHeapSegment segment : segments)
+			size += segment.size();
+		return size;
+	}
+
+	boolean write(final String key, final ByteBuffer value, final int mode, final long version) {
+		return write(key, value, mode, version, OffHeapSegment.NO_DEADLINE);
+	}
+
+	boolean write(final String key, final ByteBuffer value, final int mode, final long version, final long deadline) {
+		final int hash = hash(key);
+		Objects.requireNonNull(value, "Value must not be null");
+		return segmentFor(hash).write(key.getBytes(StandardCharsets.UTF_8), hash, value, mode, version, deadline,
+				listener(CHANGE_TYPES[mode], key));
+	}
+
+	private long deadline(final long ttl, final TimeUnit unit) {
+		Objects.requireNonNull(unit, "Unit must not be null");
+		if (ttl <= 0L)
+			throw new IllegalArgumentException("TTL must be greater than zero");
+		// Deadlines are compared by difference, so keep them within half the range of the ticker
+		final long deadline = ticker.getAsLong() + Math.min(unit.toNanos(ttl), Long.MAX_VALUE >> 1);
+		return deadline == OffHeapSegment.NO_DEADLINE ? 1L : deadline;
+	}
+
+	/**
+	 * Get a listener publishing the change of a key, or null while the key is not watched
+	 */
+	private OffHeapSegment.ChangeListener listener(final ChangeEvent.Type type, final String key) {
+		if (!changes.isWatched(key))
+			return null;
+		return (version, value) -> changes.publish(type, key,
+				value == null ? null : StandardCharsets.UTF_8.decode(value.duplicate()).toString(), version);
+	}
+
+	private OffHeapSegment segmentFor(final int hash) {
+		return segments[segmentShift == 32 ? 0 : hash >>> segmentShift];
+	}
+
+	private static String decode(final ByteBuffer page, final int offset, final int length) {
+		final byte[] bytes = new byte[length];
+		final ByteBuffer source = page.duplicate();
+		source.position(offset);
+		source.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static ByteBuffer encode(final String value) {
+		Objects.requireNonNull(value, "Value must not be null");
+		return ByteBuffer.wrap(value.getBytes(StandardCharsets.UTF_8));
+	}
+
+	static int hash(final String key) {
+		Objects.requireNonNull(key, "Key must not be null");
+		final int hash = key.hashCode() * 0x9e3779b9;
+		return hash ^ (hash >>> 16);
+	}
+}
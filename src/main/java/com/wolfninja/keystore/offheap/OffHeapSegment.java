@@ -0,0 +1,759 @@
+package com.wolfninja.keystore.offheap;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongSupplier;
+
+/**
+ * One lock-guarded slice of an off-heap keyspace
+ * <p>
+ * Records live in slab pages obtained from the {@link PageAllocator}. Each page is carved into chunks of a single
+ * power-of-two size class, and freed chunks are kept on a per-class free list threaded through the chunks
+ * themselves. A record is laid out as {@code [long version][int keyLength][int valueLength][long deadline][key][value]},
+ * where the deadline is the ticker value at which the entry expires, or zero if it never does.
+ * <p>
+ * Keys are found through an open-addressing, linear-probing index which is itself a direct buffer of
+ * {@code [long handle][int hash][int referenced]} slots, so the heap only holds the page and index buffer objects. A
+ * handle packs {@code (page + 1) << 32 | offset}; zero marks an empty slot and minus one a deleted one.
+ * <p>
+ * When the allocator has no pages left, a page of another class with no live chunks is moved to the needed class.
+ * Failing that, and if eviction is enabled, the allocator takes a page from the segment, of any keyspace, holding the
+ * most pages if that is at least two more than this one holds, or any page at all if this one holds none; the donor
+ * evicts all entries of the page. Otherwise a CLOCK sweep over the index evicts an unreferenced entry of the needed
+ * size class, and if no entry of that class exists, a whole page is taken from another class and all its entries
+ * evicted. Donors are only ever try-locked, so segments taking pages from each other cannot deadlock.
+ * <p>
+ * Expired entries are treated as absent by every operation. Writes, which hold the write lock anyway, remove them:
+ * once any entry has been given a deadline, each write also sweeps a few index slots along its own hand, and the
+ * CLOCK sweep evicts expired entries without a second chance. It also runs when eviction is disabled, removing only
+ * expired entries, so a full segment reclaims them before rejecting a write. Readers never remove entries.
+ * <p>
+ * Scans walk the index in slot order a page at a time. The cursor holds the next slot and the number of index
+ * rehashes seen; a rehash moves entries to other slots, so a scan resumed after one starts over.
+ */
+final class OffHeapSegment {
+
+	/**
+	 * Notified of each change while the segment's write lock is still held
+	 */
+	@FunctionalInterface
+	interface ChangeListener {
+		/**
+		 * @param version
+		 *            version written, or removed
+		 * @param value
+		 *            value written, or null for a removal
+		 */
+		void changed(long version, ByteBuffer value);
+	}
+
+	/**
+	 * Reads a stored value in place, valid only for the duration of the call
+	 *
+	 * @param <T>
+	 *            result type
+	 */
+	@FunctionalInterface
+	interface RecordReader<T> {
+		T read(long version, ByteBuffer page, int offset, int length);
+	}
+
+	/**
+	 * Visits a stored record in place, valid only for the duration of the call
+	 */
+	@FunctionalInterface
+	interface RecordVisitor {
+		void visit(long version, ByteBuffer page, int keyOffset, int keyLength, int valueLength);
+	}
+
+	static final int ADD = 0;
+	static final int REPLACE = 1;
+	static final int SET = 2;
+	static final int CHECK_AND_SET = 3;
+
+	static final long ANY_VERSION = Long.MIN_VALUE;
+	static final long SCAN_DONE = -1L;
+	static final long NO_DEADLINE = 0L;
+	static final long ABSENT = -1L;
+
+	private static final int PAGE_SIZE = PageAllocator.PAGE_SIZE;
+	private static final int MIN_CHUNK_SHIFT = 6;
+	private static final int CLASSES = Integer.numberOfTrailingZeros(PAGE_SIZE) - MIN_CHUNK_SHIFT + 1;
+	private static final int HEADER = 24;
+	private static final int SWEEP_BATCH = 8;
+
+	private static final int SLOT = 16;
+	private static final int INITIAL_SLOTS = 1024;
+	private static final long EMPTY = 0L;
+	private static final long TOMBSTONE = -1L;
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	private final PageAllocator allocator;
+	private final boolean evict;
+	private final LongSupplier ticker;
+
+	private ByteBuffer[] pages = new ByteBuffer[8];
+	private byte[] pageClasses = new byte[8];
+	private int[] pageLive = new int[8];
+	private int pageCount;
+	// Pages held, fewer than pageCount once pages were given to other segments; read racily by the allocator
+	private volatile int ownedPages;
+	private final long[] freeLists = new long[CLASSES];
+	private final int[] bumpPages = new int[CLASSES];
+	private final int[] bumpOffsets = new int[CLASSES];
+	private int reassignHand;
+
+	private ByteBuffer index = ByteBuffer.allocateDirect(INITIAL_SLOTS * SLOT);
+	private int indexMask = INITIAL_SLOTS - 1;
+	private int size;
+	private int tombstones;
+	private int clockHand;
+	private int rehashes;
+	private int sweepHand;
+	private boolean expiring;
+
+	private long versionCounter;
+	private boolean closed;
+
+	OffHeapSegment(final PageAllocator allocator, final boolean evict, final LongSupplier ticker) {
+		this.allocator = allocator;
+		this.evict = evict;
+		this.ticker = ticker;
+		Arrays.fill(bumpPages, -1);
+		if (evict)
+			allocator.register(this);
+	}
+
+	/**
+	 * Evict all entries of one page and give the page up, unless another thread holds the lock
+	 *
+	 * @return the page, or null if the lock is busy or the segment holds no pages
+	 */
+	ByteBuffer donatePage() {
+		if (!lock.writeLock().tryLock())
+			return null;
+		try {
+			if (closed || ownedPages == 0)
+				return null;
+			int victim = -1;
+			for (int page = 0; page < pageCount && victim < 0; page++)
+				if (pages[page] != null && pageLive[page] == 0)
+					victim = page;
+			while (victim < 0) {
+				final int page = reassignHand;
+				reassignHand = (reassignHand + 1) % pageCount;
+				if (pages[page] != null)
+					victim = page;
+			}
+			allocator.recordEvictions(evictPage(victim));
+			dropFreeChunks(victim);
+			final ByteBuffer page = pages[victim];
+			pages[victim] = null;
+			pageLive[victim] = 0;
+			ownedPages--;
+			return page;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	boolean exists(final byte[] key, final int hash) {
+		lock.readLock().lock();
+		try {
+			final int slot = find(key, hash);
+			return slot >= 0 && isLive(index.getLong(slot * SLOT), ticker.getAsLong());
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	<T> T read(final byte[] key, final int hash, final RecordReader<T> reader) {
+		lock.readLock().lock();
+		try {
+			final int slot = find(key, hash);
+			if (slot < 0)
+				return null;
+			final long handle = index.getLong(slot * SLOT);
+			if (!isLive(handle, ticker.getAsLong()))
+				return null;
+			// Racy but benign, readers only ever set the bit
+			index.putInt(slot * SLOT + 12, 1);
+			final ByteBuffer page = page(handle);
+			final int offset = offset(handle);
+			return reader.read(page.getLong(offset), page, offset + HEADER + page.getInt(offset + 8),
+					page.getInt(offset + 12));
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Get the time left until the entry of a key expires
+	 *
+	 * @return remaining ticks, {@link Long#MAX_VALUE} if the entry never expires, or {@link #ABSENT}
+	 */
+	long remaining(final byte[] key, final int hash) {
+		lock.readLock().lock();
+		try {
+			final int slot = find(key, hash);
+			if (slot < 0)
+				return ABSENT;
+			final long deadline = deadline(index.getLong(slot * SLOT));
+			if (deadline == NO_DEADLINE)
+				return Long.MAX_VALUE;
+			final long remaining = deadline - ticker.getAsLong();
+			return remaining > 0L ? remaining : ABSENT;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Remove the entry of a key, if it has the expected version unless that is {@link #ANY_VERSION}
+	 *
+	 * @param listener
+	 *            {@link ChangeListener} told about the removal, or null
+	 */
+	boolean remove(final byte[] key, final int hash, final long expectedVersion, final ChangeListener listener) {
+		lock.writeLock().lock();
+		try {
+			final int slot = find(key, hash);
+			if (slot < 0)
+				return false;
+			final long handle = index.getLong(slot * SLOT);
+			if (!isLive(handle, ticker.getAsLong())) {
+				removeSlot(slot);
+				return false;
+			}
+			final long version = page(handle).getLong(offset(handle));
+			if (expectedVersion != ANY_VERSION && version != expectedVersion)
+				return false;
+			removeSlot(slot);
+			if (listener != null)
+				listener.changed(version, null);
+			return true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Drop every entry and hand the pages back to the allocator; later writes fail with
+	 * {@link IllegalStateException}
+	 */
+	void release() {
+		allocator.unregister(this);
+		lock.writeLock().lock();
+		try {
+			if (closed)
+				return;
+			closed = true;
+			allocator.release(ownedPages);
+			pages = new ByteBuffer[0];
+			pageClasses = new byte[0];
+			pageLive = new int[0];
+			pageCount = 0;
+			ownedPages = 0;
+			Arrays.fill(freeLists, EMPTY);
+			Arrays.fill(bumpPages, -1);
+			// A single empty slot, so lookups find nothing without holding on to the index
+			index = ByteBuffer.allocateDirect(SLOT);
+			indexMask = 0;
+			size = 0;
+			tombstones = 0;
+			clockHand = 0;
+			sweepHand = 0;
+			rehashes++;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Visit up to limit records whose key starts with the prefix, resuming at the cursor
+	 *
+	 * @return cursor to resume at, or {@link #SCAN_DONE} when the whole index was visited
+	 */
+	long scan(final long cursor, final byte[] prefix, final int limit, final RecordVisitor visitor) {
+		lock.readLock().lock();
+		try {
+			final long now = ticker.getAsLong();
+			int slot = (int) (cursor >>> 32) == rehashes ? (int) cursor : 0;
+			for (int visited = 0; slot <= indexMask && visited < limit; slot++) {
+				final long handle = index.getLong(slot * SLOT);
+				if (handle == EMPTY || handle == TOMBSTONE || !isLive(handle, now))
+					continue;
+				final ByteBuffer page = page(handle);
+				final int offset = offset(handle);
+				final int keyLength = page.getInt(offset + 8);
+				if (!startsWith(page, offset + HEADER, keyLength, prefix))
+					continue;
+				visitor.visit(page.getLong(offset), page, offset + HEADER, keyLength, page.getInt(offset + 12));
+				visited++;
+			}
+			return slot > indexMask ? SCAN_DONE : (long) rehashes << 32 | slot;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	int ownedPages() {
+		return ownedPages;
+	}
+
+	long size() {
+		lock.readLock().lock();
+		try {
+			return size;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Add a delta to the decimal value of a key, or to zero if it has none, keeping its deadline
+	 *
+	 * @param listener
+	 *            {@link ChangeListener} told about the write, or null
+	 * @return value after adding
+	 * @throws IllegalStateException
+	 *             if the value is not a decimal long, or there is no room for the new one
+	 */
+	long addAndGet(final byte[] key, final int hash, final long delta, final ChangeListener listener) {
+		lock.writeLock().lock();
+		try {
+			final long now = ticker.getAsLong();
+			if (expiring)
+				sweep(now);
+			final int slot = find(key, hash);
+			final long current = slot < 0 ? EMPTY : index.getLong(slot * SLOT);
+			final boolean live = slot >= 0 && isLive(current, now);
+			long count = delta;
+			if (live) {
+				final ByteBuffer page = page(current);
+				final int offset = offset(current);
+				count = Math.addExact(
+						parseDecimal(page, offset + HEADER + page.getInt(offset + 8), page.getInt(offset + 12)), delta);
+			}
+			final ByteBuffer value = decimal(count);
+			if (!store(key, hash, value, slot, current, live ? deadline(current) : NO_DEADLINE))
+				throw new IllegalStateException("Keyspace is full");
+			if (listener != null)
+				listener.changed(versionCounter, value);
+			return count;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Store a value for a key as allowed by the mode
+	 *
+	 * @param listener
+	 *            {@link ChangeListener} told about the write, or null
+	 */
+	boolean write(final byte[] key, final int hash, final ByteBuffer value, final int mode,
+			final long expectedVersion, final long deadline, final ChangeListener listener) {
+		lock.writeLock().lock();
+		try {
+			final long now = ticker.getAsLong();
+			if (expiring)
+				sweep(now);
+			final int slot = find(key, hash);
+			final long current = slot < 0 ? EMPTY : index.getLong(slot * SLOT);
+			final boolean live = slot >= 0 && isLive(current, now);
+			switch (mode) {
+			case ADD:
+				if (live)
+					return false;
+				break;
+			case REPLACE:
+				if (!live || valueEquals(current, value))
+					return false;
+				break;
+			case CHECK_AND_SET:
+				if (!live || page(current).getLong(offset(current)) != expectedVersion)
+					return false;
+				break;
+			default:
+				break;
+			}
+			if (!store(key, hash, value, slot, current, deadline))
+				return false;
+			if (listener != null)
+				listener.changed(versionCounter, value);
+			return true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private long allocate(final int sizeClass) {
+		if (closed)
+			throw new IllegalStateException("Keyspace is closed");
+		final long free = freeLists[sizeClass];
+		if (free != EMPTY) {
+			freeLists[sizeClass] = page(free).getLong(offset(free));
+			pageLive[pageIndex(free)]++;
+			return free;
+		}
+
+		final int chunkSize = chunkSize(sizeClass);
+		final int bumpPage = bumpPages[sizeClass];
+		if (bumpPage >= 0 && bumpOffsets[sizeClass] + chunkSize <= PAGE_SIZE) {
+			final int offset = bumpOffsets[sizeClass];
+			bumpOffsets[sizeClass] += chunkSize;
+			pageLive[bumpPage]++;
+			return handle(bumpPage, offset);
+		}
+
+		ByteBuffer page = allocator.allocate();
+		if (page == null) {
+			if (reclaimEmptyPage(sizeClass))
+				return allocate(sizeClass);
+			if (evict)
+				page = allocator.steal(this);
+		}
+		if (page != null) {
+			final int pageIndex = addPage(page, sizeClass);
+			bumpPages[sizeClass] = pageIndex;
+			bumpOffsets[sizeClass] = 0;
+			return allocate(sizeClass);
+		}
+
+		if ((evict || expiring) && evictOne(sizeClass) || evict && reassignPage(sizeClass))
+			return allocate(sizeClass);
+		return EMPTY;
+	}
+
+	/**
+	 * Store a record for a key found at the given slot, or not found if negative; called with the write lock held
+	 *
+	 * @return false if there is no room for it
+	 */
+	private boolean store(final byte[] key, final int hash, final ByteBuffer value, final int slot, final long current,
+			final long deadline) {
+		final int sizeClass = sizeClass(HEADER + key.length + value.remaining());
+		if (deadline != NO_DEADLINE)
+			expiring = true;
+		// Overwrite in place when the new record fits the same size class
+		if (slot >= 0 && pageClasses[pageIndex(current)] == sizeClass) {
+			writeRecord(current, key, value, deadline);
+			return true;
+		}
+
+		final long handle = allocate(sizeClass);
+		if (handle == EMPTY)
+			return false;
+		writeRecord(handle, key, value, deadline);
+
+		// Allocation may have evicted entries, so look the key up again
+		final int found = find(key, hash);
+		if (found >= 0) {
+			free(index.getLong(found * SLOT));
+			index.putLong(found * SLOT, handle);
+			index.putInt(found * SLOT + 12, 0);
+		} else
+			insertSlot(handle, hash);
+		return true;
+	}
+
+	private int addPage(final ByteBuffer page, final int sizeClass) {
+		ownedPages++;
+		// Reuse the slot of a page given to another segment, no handle refers to it any more
+		for (int slot = 0; slot < pageCount; slot++)
+			if (pages[slot] == null) {
+				pages[slot] = page;
+				pageClasses[slot] = (byte) sizeClass;
+				return slot;
+			}
+		if (pageCount == pages.length) {
+			pages = Arrays.copyOf(pages, pageCount * 2);
+			pageClasses = Arrays.copyOf(pageClasses, pageCount * 2);
+			pageLive = Arrays.copyOf(pageLive, pageCount * 2);
+		}
+		pages[pageCount] = page;
+		pageClasses[pageCount] = (byte) sizeClass;
+		return pageCount++;
+	}
+
+	private boolean evictOne(final int sizeClass) {
+		final int slots = indexMask + 1;
+		final long now = ticker.getAsLong();
+		for (int i = 0; i < slots * 2; i++) {
+			final int slot = clockHand;
+			clockHand = (clockHand + 1) & indexMask;
+			final long handle = index.getLong(slot * SLOT);
+			if (handle == EMPTY || handle == TOMBSTONE || pageClasses[pageIndex(handle)] != sizeClass)
+				continue;
+			if (!isLive(handle, now)) {
+				// No second chance for expired entries, and they do not count as evictions
+				removeSlot(slot);
+				return true;
+			}
+			if (!evict)
+				continue;
+			if (index.getInt(slot * SLOT + 12) != 0) {
+				index.putInt(slot * SLOT + 12, 0);
+				continue;
+			}
+			removeSlot(slot);
+			allocator.recordEvictions(1);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Remove the index slots of all entries on a page, without returning their chunks to the free list
+	 *
+	 * @return number of entries evicted
+	 */
+	private int evictPage(final int victim) {
+		int evicted = 0;
+		for (int slot = 0; slot <= indexMask && pageLive[victim] > evicted; slot++) {
+			final long handle = index.getLong(slot * SLOT);
+			if (handle != EMPTY && handle != TOMBSTONE && pageIndex(handle) == victim) {
+				index.putLong(slot * SLOT, TOMBSTONE);
+				size--;
+				tombstones++;
+				evicted++;
+			}
+		}
+		return evicted;
+	}
+
+	private int find(final byte[] key, final int hash) {
+		int slot = hash & indexMask;
+		while (true) {
+			final long handle = index.getLong(slot * SLOT);
+			if (handle == EMPTY)
+				return -1;
+			if (handle != TOMBSTONE && index.getInt(slot * SLOT + 8) == hash && keyEquals(handle, key))
+				return slot;
+			slot = (slot + 1) & indexMask;
+		}
+	}
+
+	private long deadline(final long handle) {
+		return page(handle).getLong(offset(handle) + 16);
+	}
+
+	private void free(final long handle) {
+		final int pageIndex = pageIndex(handle);
+		final int sizeClass = pageClasses[pageIndex];
+		page(handle).putLong(offset(handle), freeLists[sizeClass]);
+		freeLists[sizeClass] = handle;
+		pageLive[pageIndex]--;
+	}
+
+	private void insertSlot(final long handle, final int hash) {
+		if ((size + tombstones + 1) * 4L > (indexMask + 1) * 3L)
+			rehash(size * 2 >= indexMask + 1 ? (indexMask + 1) * 2 : indexMask + 1);
+		int slot = hash & indexMask;
+		long existing;
+		while ((existing = index.getLong(slot * SLOT)) != EMPTY && existing != TOMBSTONE)
+			slot = (slot + 1) & indexMask;
+		if (existing == TOMBSTONE)
+			tombstones--;
+		index.putLong(slot * SLOT, handle);
+		index.putInt(slot * SLOT + 8, hash);
+		index.putInt(slot * SLOT + 12, 0);
+		size++;
+	}
+
+	private boolean isLive(final long handle, final long now) {
+		final long deadline = deadline(handle);
+		return deadline == NO_DEADLINE || deadline - now > 0L;
+	}
+
+	private boolean keyEquals(final long handle, final byte[] key) {
+		final ByteBuffer page = page(handle);
+		final int offset = offset(handle);
+		if (page.getInt(offset + 8) != key.length)
+			return false;
+		final int start = offset + HEADER;
+		for (int i = 0; i < key.length; i++)
+			if (page.get(start + i) != key[i])
+				return false;
+		return true;
+	}
+
+	private ByteBuffer page(final long handle) {
+		return pages[pageIndex(handle)];
+	}
+
+	private boolean reassignPage(final int sizeClass) {
+		for (int attempt = 0; attempt < pageCount; attempt++) {
+			final int victim = reassignHand;
+			reassignHand = (reassignHand + 1) % pageCount;
+			if (pages[victim] == null || pageClasses[victim] == sizeClass)
+				continue;
+			allocator.recordEvictions(evictPage(victim));
+			reassign(victim, sizeClass);
+			return true;
+		}
+		return false;
+	}
+
+	private boolean reclaimEmptyPage(final int sizeClass) {
+		for (int page = 0; page < pageCount; page++) {
+			if (pages[page] != null && pageLive[page] == 0 && pageClasses[page] != sizeClass) {
+				reassign(page, sizeClass);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void reassign(final int page, final int sizeClass) {
+		dropFreeChunks(page);
+		pageClasses[page] = (byte) sizeClass;
+		pageLive[page] = 0;
+		bumpPages[sizeClass] = page;
+		bumpOffsets[sizeClass] = 0;
+	}
+
+	/**
+	 * Drop the chunks of a page from the free list of its class, and stop carving new ones from it
+	 */
+	private void dropFreeChunks(final int page) {
+		final int previousClass = pageClasses[page];
+		long kept = EMPTY;
+		for (long handle = freeLists[previousClass]; handle != EMPTY;) {
+			final long next = page(handle).getLong(offset(handle));
+			if (pageIndex(handle) != page) {
+				page(handle).putLong(offset(handle), kept);
+				kept = handle;
+			}
+			handle = next;
+		}
+		freeLists[previousClass] = kept;
+		if (bumpPages[previousClass] == page)
+			bumpPages[previousClass] = -1;
+	}
+
+	private void rehash(final int slots) {
+		final ByteBuffer previous = index;
+		final int previousSlots = indexMask + 1;
+		index = ByteBuffer.allocateDirect(slots * SLOT);
+		indexMask = slots - 1;
+		tombstones = 0;
+		clockHand = 0;
+		rehashes++;
+		for (int i = 0; i < previousSlots; i++) {
+			final long handle = previous.getLong(i * SLOT);
+			if (handle == EMPTY || handle == TOMBSTONE)
+				continue;
+			final int hash = previous.getInt(i * SLOT + 8);
+			int slot = hash & indexMask;
+			while (index.getLong(slot * SLOT) != EMPTY)
+				slot = (slot + 1) & indexMask;
+			index.putLong(slot * SLOT, handle);
+			index.putInt(slot * SLOT + 8, hash);
+			index.putInt(slot * SLOT + 12, previous.getInt(i * SLOT + 12));
+		}
+	}
+
+	private void removeSlot(final int slot) {
+		free(index.getLong(slot * SLOT));
+		index.putLong(slot * SLOT, TOMBSTONE);
+		size--;
+		tombstones++;
+	}
+
+	/**
+	 * Remove the expired entries among the next few index slots along the sweep hand
+	 */
+	private void sweep(final long now) {
+		for (int i = 0; i < SWEEP_BATCH; i++) {
+			final int slot = sweepHand & indexMask;
+			sweepHand = slot + 1;
+			final long handle = index.getLong(slot * SLOT);
+			if (handle != EMPTY && handle != TOMBSTONE && !isLive(handle, now))
+				removeSlot(slot);
+		}
+	}
+
+	private static ByteBuffer decimal(final long value) {
+		return ByteBuffer.wrap(Long.toString(value).getBytes(StandardCharsets.US_ASCII));
+	}
+
+	/**
+	 * Parse a decimal long straight from the page, without decoding a String
+	 */
+	private static long parseDecimal(final ByteBuffer page, final int start, final int length) {
+		final byte sign = length > 0 ? page.get(start) : 0;
+		final boolean negative = sign == '-';
+		int i = negative || sign == '+' ? 1 : 0;
+		if (i == length)
+			throw new IllegalStateException("Value is not an integer");
+		// Accumulated negatively, since the negative range is the larger one
+		long result = 0L;
+		for (; i < length; i++) {
+			final int digit = page.get(start + i) - '0';
+			if (digit < 0 || digit > 9 || result < (Long.MIN_VALUE + digit) / 10)
+				throw new IllegalStateException("Value is not an integer");
+			result = result * 10 - digit;
+		}
+		if (negative)
+			return result;
+		if (result == Long.MIN_VALUE)
+			throw new IllegalStateException("Value is not an integer");
+		return -result;
+	}
+
+	private static boolean startsWith(final ByteBuffer page, final int start, final int length, final byte[] prefix) {
+		if (length < prefix.length)
+			return false;
+		for (int i = 0; i < prefix.length; i++)
+			if (page.get(start + i) != prefix[i])
+				return false;
+		return true;
+	}
+
+	private boolean valueEquals(final long handle, final ByteBuffer value) {
+		final ByteBuffer page = page(handle);
+		final int offset = offset(handle);
+		final int length = value.remaining();
+		if (page.getInt(offset + 12) != length)
+			return false;
+		final int start = offset + HEADER + page.getInt(offset + 8);
+		final int valueStart = value.position();
+		for (int i = 0; i < length; i++)
+			if (page.get(start + i) != value.get(valueStart + i))
+				return false;
+		return true;
+	}
+
+	private void writeRecord(final long handle, final byte[] key, final ByteBuffer value, final long deadline) {
+		final ByteBuffer page = pages[pageIndex(handle)].duplicate();
+		page.position(offset(handle));
+		page.putLong(++versionCounter).putInt(key.length).putInt(value.remaining()).putLong(deadline).put(key)
+				.put(value.duplicate());
+	}
+
+	private static int chunkSize(final int sizeClass) {
+		return 1 << (sizeClass + MIN_CHUNK_SHIFT);
+	}
+
+	private static long handle(final int pageIndex, final int offset) {
+		return ((long) (pageIndex + 1) << 32) | offset;
+	}
+
+	private static int offset(final long handle) {
+		return (int) handle;
+	}
+
+	private static int pageIndex(final long handle) {
+		return (int) (handle >>> 32) - 1;
+	}
+
+	private static int sizeClass(final int length) {
+		if (length > PAGE_SIZE)
+			throw new IllegalArgumentException("Entry of " + length + " bytes exceeds off-heap page size");
+		return Math.max(0, 32 - Integer.numberOfLeadingZeros(length - 1) - MIN_CHUNK_SHIFT);
+	}
+}
@@ -0,0 +1,97 @@
+package com.wolfninja.keystore.offheap;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hands out fixed size direct memory pages until the configured capacity is used up
+ * <p>
+ * Once it is, segments allowed to evict can take a page from another registered segment, of any keyspace, so memory
+ * follows the writes rather than staying with whichever segments filled the budget first.
+ */
+final class PageAllocator {
+	static final int PAGE_SIZE = 1 << 20;
+
+	private final long capacity;
+	private final AtomicLong allocated = new AtomicLong();
+	private final LongAdder evictions = new LongAdder();
+	private final List<OffHeapSegment> donors = new CopyOnWriteArrayList<>();
+
+	PageAllocator(final long capacity) {
+		this.capacity = capacity;
+	}
+
+	ByteBuffer allocate() {
+		while (true) {
+			final long current = allocated.get();
+			if (current + PAGE_SIZE > capacity)
+				return null;
+			if (allocated.compareAndSet(current, current + PAGE_SIZE))
+				return ByteBuffer.allocateDirect(PAGE_SIZE);
+		}
+	}
+
+	long allocatedBytes() {
+		return allocated.get();
+	}
+
+	/**
+	 * Make a segment's pages available to {@link #steal(OffHeapSegment)}
+	 */
+	void register(final OffHeapSegment segment) {
+		donors.add(segment);
+	}
+
+	long capacity() {
+		return capacity;
+	}
+
+	long evictions() {
+		return evictions.sum();
+	}
+
+	void recordEvictions(final int count) {
+		evictions.add(count);
+	}
+
+	/**
+	 * Return pages to the budget; their memory is freed once the buffers are no longer reachable
+	 */
+	void release(final int pages) {
+		allocated.addAndGet(-(long) pages * PAGE_SIZE);
+	}
+
+	/**
+	 * Take a page from the registered segment holding the most, trying the others in turn if it is busy
+	 * <p>
+	 * A segment only gives up a page to one holding at least two fewer, or to one holding none, so pages spread
+	 * evenly over the segments written to instead of moving back and forth.
+	 *
+	 * @return page now owned by the requester, or null if no segment may or can give one up
+	 */
+	ByteBuffer steal(final OffHeapSegment requester) {
+		final int held = requester.ownedPages();
+		final List<OffHeapSegment> candidates = new ArrayList<>();
+		for (final OffHeapSegment donor : donors) {
+			final int pages = donor.ownedPages();
+			if (donor != requester && pages > 0 && (held == 0 || pages > held + 1))
+				candidates.add(donor);
+		}
+		candidates.sort(Comparator.comparingInt(OffHeapSegment::ownedPages).reversed());
+		for (final OffHeapSegment donor : candidates) {
+			final ByteBuffer page = donor.donatePage();
+			if (page != null)
+				return page;
+		}
+		return null;
+	}
+
+	void unregister(final OffHeapSegment segment) {
+		donors.remove(segment);
+	}
+}
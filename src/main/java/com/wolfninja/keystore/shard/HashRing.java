@@ -0,0 +1,57 @@
+package com.wolfninja.keystore.shard;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.wolfninja.keystore.api.KeyHashes;
+
+/**
+ * Immutable consistent hash ring mapping keys to shards
+ * <p>
+ * Each shard is placed on the ring at {@code virtualNodes} times its weight points, and a key belongs to the shard
+ * of the first point at or after the hash of the key. Adding a shard therefore only takes keys from the points
+ * before its own, and removing one only hands its keys to the next points, so about {@code 1 / shards} of the keys
+ * move either way. Points and keys are hashed from their names alone, so every process places keys the same way.
+ */
+final class HashRing {
+
+	static HashRing create(final List<Shard> shards, final int virtualNodes) {
+		final TreeMap<Long, Shard> ring = new TreeMap<>();
+		for (final Shard shard : shards)
+			for (int i = 0; i < shard.weight * virtualNodes; i++)
+				// A collision of 64 bit hashes keeps the first shard's point
+				ring.putIfAbsent(KeyHashes.hash(shard.name + '#' + i), shard);
+		final long[] points = new long[ring.size()];
+		final Shard[] owners = new Shard[ring.size()];
+		int index = 0;
+		for (final Map.Entry<Long, Shard> point : ring.entrySet()) {
+			points[index] = point.getKey();
+			owners[index++] = point.getValue();
+		}
+		return new HashRing(points, owners, Collections.unmodifiableList(shards));
+	}
+
+	private final long[] points;
+	private final Shard[] owners;
+	private final List<Shard> shards;
+
+	private HashRing(final long[] points, final Shard[] owners, final List<Shard> shards) {
+		this.points = points;
+		this.owners = owners;
+		this.shards = shards;
+	}
+
+	Shard shard(final String key) {
+		int index = Arrays.binarySearch(points, KeyHashes.hash(key));
+		if (index < 0)
+			index = -index - 1;
+		return owners[index == points.length ? 0 : index];
+	}
+
+	List<Shard> shards() {
+		return shards;
+	}
+}
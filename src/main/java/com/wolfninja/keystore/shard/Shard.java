@@ -0,0 +1,24 @@
+package com.wolfninja.keystore.shard;
+
+import com.wolfninja.keystore.api.KeyValueStoreAdapter;
+
+/**
+ * Named adapter holding a part of the keys, compared by identity
+ */
+final class Shard {
+
+	final String name;
+	final KeyValueStoreAdapter adapter;
+	final int weight;
+
+	Shard(final String name, final KeyValueStoreAdapter adapter, final int weight) {
+		this.name = name;
+		this.adapter = adapter;
+		this.weight = weight;
+	}
+
+	@Override
+	public String toString() {
+		return "Shard [name=" + name + ", weight=" + weight + "]";
+	}
+}
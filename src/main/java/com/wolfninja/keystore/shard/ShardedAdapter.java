@@ -0,0 +1,371 @@
+package com.wolfninja.keystore.shard;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.annotation.Nonnull;
+
+import com.wolfninja.keystore.api.KeyValueStoreAdapter;
+import com.wolfninja.keystore.api.Keyspace;
+import com.wolfninja.keystore.api.ScanFeature;
+
+/**
+ * {@link KeyValueStoreAdapter} spreading the keys of every keyspace over several adapters by consistent hashing
+ * <p>
+ * Each shard is placed on a hash ring at a number of virtual nodes proportional to its weight, and every key belongs
+ * to one shard. Single-key operations go to that shard; bulk operations are split by shard and run on all of them in
+ * parallel on the configured executor, the calling thread taking one part itself. Scans stream the shards one after
+ * the other and can be split by shard for parallel streams; they are never ordered. Versions are those of the
+ * owning shard.
+ * <p>
+ * {@link #addShard(String, KeyValueStoreAdapter, int)} and {@link #removeShard(String)} take effect at once and only
+ * change the owner of the keys between the affected points of the ring. Until {@link #rebalance()} has copied those
+ * keys over, each operation on such a key first moves it from its previous owner and each scan first moves the keys
+ * it matches, so nothing is lost or returned twice in between.
+ * A moved key gets a new version from its new owner, failing {@code checkAndSet} with the version read before the
+ * move like any concurrent write would. Operations already running when a shard is added or removed may still reach
+ * the previous owner.
+ *
+ * @since 0.2
+ */
+public final class ShardedAdapter implements KeyValueStoreAdapter {
+
+	/**
+	 * Builder for {@link ShardedAdapter} instances
+	 *
+	 * @since 0.2
+	 */
+	public static final class Builder {
+		private final Map<String, Shard> shards = new LinkedHashMap<>();
+		private int virtualNodes = 128;
+		private Executor executor = ForkJoinPool.commonPool();
+
+		private Builder() {
+		}
+
+		/**
+		 * Build the {@link ShardedAdapter}
+		 *
+		 * @return new {@link ShardedAdapter} instance, not null
+		 * @throws IllegalArgumentException
+		 *             if no shard was added
+		 * @since 0.2
+		 */
+		@Nonnull
+		public ShardedAdapter build() {
+			if (shards.isEmpty())
+				throw new IllegalArgumentException("At least one shard is required");
+			return new ShardedAdapter(this);
+		}
+
+		/**
+		 * Set the executor running the parts of bulk operations on other shards
+		 * <p>
+		 * Backends doing blocking I/O should be given a dedicated executor rather than the default common pool.
+		 *
+		 * @param executor
+		 *            {@link Executor}, not null
+		 * @return this builder
+		 * @since 0.2
+		 */
+		@Nonnull
+		public Builder executor(@Nonnull final Executor executor) {
+			this.executor = Objects.requireNonNull(executor, "Executor must not be null");
+			return this;
+		}
+
+		/**
+		 * Add a shard of weight one
+		 *
+		 * @param name
+		 *            String name placing the shard on the ring, not null, unique
+		 * @param adapter
+		 *            {@link KeyValueStoreAdapter} of the shard, not null
+		 * @return this builder
+		 * @since 0.2
+		 */
+		@Nonnull
+		public Builder shard(@Nonnull final String name, @Nonnull final KeyValueStoreAdapter adapter) {
+			return shard(name, adapter, 1);
+		}
+
+		/**
+		 * Add a shard holding a share of the keys proportional to its weight
+		 * <p>
+		 * Shards are placed by name, so a shard must keep its name to keep its keys.
+		 *
+		 * @param name
+		 *            String name placing the shard on the ring, not null, unique
+		 * @param adapter
+		 *            {@link KeyValueStoreAdapter} of the shard, not null
+		 * @param weight
+		 *            int weight, from 1 to 1024
+		 * @return this builder
+		 * @since 0.2
+		 */
+		@Nonnull
+		public Builder shard(@Nonnull final String name, @Nonnull final KeyValueStoreAdapter adapter,
+				final int weight) {
+			final Shard shard = newShard(name, adapter, weight);
+			if (shards.putIfAbsent(name, shard) != null)
+				throw new IllegalArgumentException("Shard " + name + " already added");
+			return this;
+		}
+
+		/**
+		 * Set the number of points on the ring per unit of weight
+		 * <p>
+		 * More points spread keys more evenly at the cost of a larger ring to search.
+		 *
+		 * @param virtualNodes
+		 *            int number of points, from 1 to 4096
+		 * @return this builder
+		 * @since 0.2
+		 */
+		@Nonnull
+		public Builder virtualNodes(final int virtualNodes) {
+			if (virtualNodes < 1 || virtualNodes > MAX_VIRTUAL_NODES)
+				throw new IllegalArgumentException("Virtual nodes must be between 1 and " + MAX_VIRTUAL_NODES);
+			this.virtualNodes = virtualNodes;
+			return this;
+		}
+	}
+
+	/**
+	 * Current ring, and the ring before the last change while its keys are not all moved yet
+	 */
+	static final class Topology {
+		final HashRing ring;
+		final HashRing previous;
+
+		private Topology(final HashRing ring, final HashRing previous) {
+			this.ring = ring;
+			this.previous = previous;
+		}
+	}
+
+	private static final int MAX_VIRTUAL_NODES = 1 << 12;
+	private static final int MAX_WEIGHT = 1 << 10;
+
+	/**
+	 * Create a new {@link Builder}
+	 *
+	 * @return new {@link Builder} instance, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	private final int virtualNodes;
+	private final Executor executor;
+	private final ConcurrentHashMap<String, ShardedKeyspace> keyspaces = new ConcurrentHashMap<>();
+	private volatile Topology topology;
+
+	private ShardedAdapter(final Builder builder) {
+		this.virtualNodes = builder.virtualNodes;
+		this.executor = builder.executor;
+		this.topology = new Topology(HashRing.create(new ArrayList<>(builder.shards.values()), virtualNodes), null);
+	}
+
+	/**
+	 * Add a shard, which takes over its share of the keys at once
+	 *
+	 * @param name
+	 *            String name placing the shard on the ring, not null, unique
+	 * @param adapter
+	 *            {@link KeyValueStoreAdapter} of the shard, not null
+	 * @param weight
+	 *            int weight, from 1 to 1024
+	 * @throws IllegalStateException
+	 *             if the keys of the previous change are not rebalanced yet
+	 * @since 0.2
+	 */
+	public synchronized void addShard(@Nonnull final String name, @Nonnull final KeyValueStoreAdapter adapter,
+			final int weight) {
+		final Shard added = newShard(name, adapter, weight);
+		final Topology current = pendingRebalance();
+		final List<Shard> shards = new ArrayList<>(current.ring.shards());
+		for (final Shard shard : shards)
+			if (shard.name.equals(name))
+				throw new IllegalArgumentException("Shard " + name + " already added");
+		shards.add(added);
+		topology = new Topology(HashRing.create(shards, virtualNodes), current.ring);
+	}
+
+	/**
+	 * Close all shard adapters, closing every one even if another fails
+	 *
+	 * @since 0.2
+	 */
+	@Override
+	public void close() {
+		RuntimeException failure = null;
+		for (final Shard shard : allShards(topology))
+			failure = run(shard.adapter::close, failure);
+		if (failure != null)
+			throw failure;
+	}
+
+	/**
+	 * Flush all shard adapters, flushing every one even if another fails
+	 *
+	 * @since 0.2
+	 */
+	@Override
+	public void flush() {
+		RuntimeException failure = null;
+		for (final Shard shard : allShards(topology))
+			failure = run(shard.adapter::flush, failure);
+		if (failure != null)
+			throw failure;
+	}
+
+	@Override
+	public Keyspace getKeyspace(final String keyspaceName) {
+		Objects.requireNonNull(keyspaceName, "Keyspace name must not be null");
+		final ShardedKeyspace existing = keyspaces.get(keyspaceName);
+		if (existing != null)
+			return existing;
+		return keyspaces.computeIfAbsent(keyspaceName, name -> new ShardedKeyspace(this, name));
+	}
+
+	/**
+	 * Scan features supported by every shard, except ordering, since shards are scanned one after the other
+	 */
+	@Override
+	public Set<ScanFeature> getScanFeatures() {
+		final Set<ScanFeature> features = EnumSet.of(ScanFeature.SCAN, ScanFeature.PREFIX);
+		for (final Shard shard : allShards(topology))
+			features.retainAll(shard.adapter.getScanFeatures());
+		return features;
+	}
+
+	/**
+	 * Get the name of the shard owning a key
+	 *
+	 * @param key
+	 *            String key, not null
+	 * @return String shard name, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	public String getShardName(@Nonnull final String key) {
+		Objects.requireNonNull(key, "Key must not be null");
+		return topology.ring.shard(key).name;
+	}
+
+	/**
+	 * Get the names of the current shards
+	 *
+	 * @return {@link Set} of String shard names in the order they were added, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	public Set<String> getShardNames() {
+		final Set<String> names = new LinkedHashSet<>();
+		for (final Shard shard : topology.ring.shards())
+			names.add(shard.name);
+		return names;
+	}
+
+	/**
+	 * Move the keys whose owner changed with the last added or removed shard to their new owner
+	 * <p>
+	 * Scans every keyspace obtained from this adapter on each shard of the previous ring; keyspaces not obtained yet
+	 * are not moved, so get them first. Runs while the keyspaces are in use. A removed shard is no longer used
+	 * afterwards and is not closed.
+	 *
+	 * @return long number of keys moved
+	 * @throws UnsupportedOperationException
+	 *             if a shard's keyspaces cannot be scanned
+	 * @since 0.2
+	 */
+	public synchronized long rebalance() {
+		final Topology current = topology;
+		if (current.previous == null)
+			return 0L;
+		long moved = 0L;
+		for (final ShardedKeyspace keyspace : keyspaces.values())
+			moved += keyspace.rebalance(current);
+		topology = new Topology(current.ring, null);
+		return moved;
+	}
+
+	/**
+	 * Remove a shard, handing its keys to the remaining shards at once
+	 *
+	 * @param name
+	 *            String name of the shard, not null
+	 * @throws IllegalArgumentException
+	 *             if there is no such shard, or it is the last one
+	 * @throws IllegalStateException
+	 *             if the keys of the previous change are not rebalanced yet
+	 * @since 0.2
+	 */
+	public synchronized void removeShard(@Nonnull final String name) {
+		Objects.requireNonNull(name, "Name must not be null");
+		final Topology current = pendingRebalance();
+		final List<Shard> shards = new ArrayList<>(current.ring.shards());
+		if (!shards.removeIf(shard -> shard.name.equals(name)))
+			throw new IllegalArgumentException("No shard " + name);
+		if (shards.isEmpty())
+			throw new IllegalArgumentException("Cannot remove the last shard");
+		topology = new Topology(HashRing.create(shards, virtualNodes), current.ring);
+	}
+
+	Executor executor() {
+		return executor;
+	}
+
+	Topology topology() {
+		return topology;
+	}
+
+	private Topology pendingRebalance() {
+		final Topology current = topology;
+		if (current.previous != null)
+			throw new IllegalStateException("Keys of the previous change must be rebalanced first");
+		return current;
+	}
+
+	/**
+	 * Shards of the current and previous ring
+	 */
+	static Set<Shard> allShards(final Topology topology) {
+		final Set<Shard> shards = new LinkedHashSet<>(topology.ring.shards());
+		if (topology.previous != null)
+			shards.addAll(topology.previous.shards());
+		return shards;
+	}
+
+	private static Shard newShard(final String name, final KeyValueStoreAdapter adapter, final int weight) {
+		Objects.requireNonNull(name, "Name must not be null");
+		Objects.requireNonNull(adapter, "Adapter must not be null");
+		if (weight < 1 || weight > MAX_WEIGHT)
+			throw new IllegalArgumentException("Weight must be between 1 and " + MAX_WEIGHT);
+		return new Shard(name, adapter, weight);
+	}
+
+	private static RuntimeException run(final Runnable action, final RuntimeException failure) {
+		try {
+			action.run();
+			return failure;
+		} catch (final RuntimeException e) {
+			if (failure == null)
+				return e;
+			failure.addSuppressed(e);
+			return failure;
+		}
+	}
+}
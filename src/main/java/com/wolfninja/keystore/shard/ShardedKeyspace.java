@@ -0,0 +1,337 @@
+package com.wolfninja.keystore.shard;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.wolfninja.keystore.api.ChangePublisher;
+import com.wolfninja.keystore.api.KeyValue;
+import com.wolfninja.keystore.api.Keyspace;
+import com.wolfninja.keystore.api.Watch;
+import com.wolfninja.keystore.shard.ShardedAdapter.Topology;
+
+/**
+ * {@link Keyspace} routing each key to the keyspace of the same name on its shard
+ * <p>
+ * While keys of a topology change are not all moved, a key whose owner changed is moved before it is used. Moves of
+ * keys sharing a lock stripe are serialized, so a key is copied at most once and a move never brings back a value
+ * deleted or overwritten at the new owner.
+ */
+final class ShardedKeyspace implements Keyspace {
+
+	private static final int MOVE_STRIPES = 64;
+
+	private final ShardedAdapter adapter;
+	private final String name;
+	private final ConcurrentHashMap<Shard, Keyspace> keyspaces = new ConcurrentHashMap<>();
+	private final ReentrantLock[] moveLocks = new ReentrantLock[MOVE_STRIPES];
+
+	ShardedKeyspace(final ShardedAdapter adapter, final String name) {
+		this.adapter = adapter;
+		this.name = name;
+		for (int i = 0; i < moveLocks.length; i++)
+			moveLocks[i] = new ReentrantLock();
+	}
+
+	@Override
+	public boolean add(final String key, final String value) {
+		return shard(key).add(key, value);
+	}
+
+	@Override
+	public boolean add(final String key, final String value, final long ttl, final TimeUnit unit) {
+		return shard(key).add(key, value, ttl, unit);
+	}
+
+	@Override
+	public long addAndGet(final String key, final long delta) {
+		return shard(key).addAndGet(key, delta);
+	}
+
+	@Override
+	public boolean checkAndSet(final String key, final String value, final long version) {
+		return shard(key).checkAndSet(key, value, version);
+	}
+
+	@Override
+	public boolean checkAndSet(final String key, final String value, final long version, final long ttl,
+			final TimeUnit unit) {
+		return shard(key).checkAndSet(key, value, version, ttl, unit);
+	}
+
+	@Override
+	public void close() {
+		keyspaces.values().forEach(Keyspace::close);
+	}
+
+	@Override
+	public boolean delete(final String key) {
+		return shard(key).delete(key);
+	}
+
+	@Override
+	public int deleteAll(final Collection<String> keys) {
+		Objects.requireNonNull(keys, "Keys must not be null");
+		int deleted = 0;
+		for (final int count : fanOut(group(keys), Keyspace::deleteAll))
+			deleted += count;
+		return deleted;
+	}
+
+	@Override
+	public boolean deletes(final String key, final long version) {
+		return shard(key).deletes(key, version);
+	}
+
+	@Override
+	public boolean exists(final String key) {
+		return shard(key).exists(key);
+	}
+
+	@Override
+	public void flush() {
+		keyspaces.values().forEach(Keyspace::flush);
+	}
+
+	@Override
+	public Optional<String> get(final String key) {
+		return shard(key).get(key);
+	}
+
+	@Override
+	public Map<String, String> getAll(final Collection<String> keys) {
+		Objects.requireNonNull(keys, "Keys must not be null");
+		final Map<String, String> values = new HashMap<>();
+		fanOut(group(keys), Keyspace::getAll).forEach(values::putAll);
+		return values;
+	}
+
+	@Override
+	public Optional<KeyValue> gets(final String key) {
+		return shard(key).gets(key);
+	}
+
+	@Override
+	public Map<String, KeyValue> getsAll(final Collection<String> keys) {
+		Objects.requireNonNull(keys, "Keys must not be null");
+		final Map<String, KeyValue> values = new HashMap<>();
+		fanOut(group(keys), Keyspace::getsAll).forEach(values::putAll);
+		return values;
+	}
+
+	@Override
+	public boolean replace(final String key, final String value) {
+		return shard(key).replace(key, value);
+	}
+
+	@Override
+	public boolean replace(final String key, final String value, final long ttl, final TimeUnit unit) {
+		return shard(key).replace(key, value, ttl, unit);
+	}
+
+	@Override
+	public Stream<KeyValue> scan(final String prefix) {
+		Objects.requireNonNull(prefix, "Prefix must not be null");
+		final Topology topology = adapter.topology();
+		final List<Shard> shards = new ArrayList<>(ShardedAdapter.allShards(topology));
+		if (topology.previous == null)
+			return shards.stream().flatMap(shard -> keyspace(shard).scan(prefix));
+		// Move the matching keys first, so each is found on its owner only, whatever a rebalance does meanwhile
+		for (final Shard shard : topology.previous.shards())
+			moveAway(topology, shard, keyspace(shard).scan(prefix));
+		return shards.stream().flatMap(shard -> keyspace(shard).scan(prefix)
+				.filter(keyValue -> topology.ring.shard(keyValue.getKey()) == shard));
+	}
+
+	@Override
+	public boolean set(final String key, final String value) {
+		return shard(key).set(key, value);
+	}
+
+	@Override
+	public boolean set(final String key, final String value, final long ttl, final TimeUnit unit) {
+		return shard(key).set(key, value, ttl, unit);
+	}
+
+	@Override
+	public boolean setAll(final Map<String, String> values) {
+		Objects.requireNonNull(values, "Values must not be null");
+		final Map<Shard, Map<String, String>> groups = new IdentityHashMap<>();
+		final Topology topology = adapter.topology();
+		values.forEach((key, value) -> groups.computeIfAbsent(owner(topology, key), shard -> new HashMap<>())
+				.put(key, value));
+		boolean result = true;
+		for (final boolean set : fanOut(groups, Keyspace::setAll))
+			result &= set;
+		return result;
+	}
+
+	@Override
+	public Optional<Duration> ttl(final String key) {
+		return shard(key).ttl(key);
+	}
+
+	/**
+	 * Watch every shard of the topology current when subscribing, merging their changes
+	 * <p>
+	 * Shards added later are not watched by existing subscribers. Moving a key to another shard publishes the write
+	 * and the delete it consists of.
+	 */
+	@Override
+	public ChangePublisher watch(final Watch watch) {
+		Objects.requireNonNull(watch, "Watch must not be null");
+		return subscriber -> {
+			final List<ChangePublisher> sources = new ArrayList<>();
+			for (final Shard shard : ShardedAdapter.allShards(adapter.topology()))
+				sources.add(keyspace(shard).watch(watch));
+			ChangePublisher.merge(sources, watch).subscribe(subscriber);
+		};
+	}
+
+	/**
+	 * Move every key on a shard of the previous ring whose owner changed
+	 */
+	long rebalance(final Topology topology) {
+		long moved = 0L;
+		for (final Shard shard : topology.previous.shards())
+			moved += moveAway(topology, shard, keyspace(shard).stream());
+		return moved;
+	}
+
+	/**
+	 * Run an operation on each group, on the executor for all but one, which runs on the calling thread
+	 */
+	private <G, R> List<R> fanOut(final Map<Shard, G> groups, final BiFunction<Keyspace, G, R> operation) {
+		final List<R> results = new ArrayList<>(groups.size());
+		if (groups.isEmpty())
+			return results;
+		final Iterator<Map.Entry<Shard, G>> iterator = groups.entrySet().iterator();
+		final Map.Entry<Shard, G> local = iterator.next();
+		final List<CompletableFuture<R>> remote = new ArrayList<>(groups.size() - 1);
+		while (iterator.hasNext()) {
+			final Map.Entry<Shard, G> group = iterator.next();
+			remote.add(CompletableFuture.supplyAsync(() -> operation.apply(keyspace(group.getKey()), group.getValue()),
+					adapter.executor()));
+		}
+		results.add(operation.apply(keyspace(local.getKey()), local.getValue()));
+		for (final CompletableFuture<R> result : remote)
+			results.add(join(result));
+		return results;
+	}
+
+	private Map<Shard, List<String>> group(final Collection<String> keys) {
+		final Map<Shard, List<String>> groups = new IdentityHashMap<>();
+		final Topology topology = adapter.topology();
+		for (final String key : keys)
+			groups.computeIfAbsent(owner(topology, key), shard -> new ArrayList<>()).add(key);
+		return groups;
+	}
+
+	private Keyspace keyspace(final Shard shard) {
+		final Keyspace existing = keyspaces.get(shard);
+		if (existing != null)
+			return existing;
+		return keyspaces.computeIfAbsent(shard, owner -> owner.adapter.getKeyspace(name));
+	}
+
+	/**
+	 * Copy a key from its previous owner unless its new owner has it already, then delete it at the previous owner
+	 * unless it changed meanwhile
+	 *
+	 * @return true if the key was copied
+	 */
+	private boolean move(final String key, final Shard from, final Shard to) {
+		final ReentrantLock lock = moveLocks[(key.hashCode() & 0x7fffffff) % MOVE_STRIPES];
+		lock.lock();
+		try {
+			final Keyspace source = keyspace(from);
+			final Optional<KeyValue> current = source.gets(key);
+			if (!current.isPresent())
+				return false;
+			final Optional<Duration> ttl = ttl(source, key);
+			boolean copied = false;
+			if (ttl.isPresent()) {
+				final Keyspace target = keyspace(to);
+				final String value = current.get().getValue();
+				copied = ttl.get().equals(NO_EXPIRY) ? target.add(key, value)
+						: target.add(key, value, ttl.get().toMillis() + 1L, TimeUnit.MILLISECONDS);
+			}
+			source.deletes(key, current.get().getVersion());
+			return copied;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Move the given entries of a shard of the previous ring whose owner changed
+	 *
+	 * @return number of keys copied
+	 */
+	private long moveAway(final Topology topology, final Shard shard, final Stream<KeyValue> entries) {
+		final List<String> keys;
+		try (final Stream<KeyValue> closing = entries) {
+			keys = closing.map(KeyValue::getKey).filter(key -> topology.ring.shard(key) != shard)
+					.collect(Collectors.toList());
+		}
+		long moved = 0L;
+		for (final String key : keys)
+			if (move(key, shard, topology.ring.shard(key)))
+				moved++;
+		return moved;
+	}
+
+	private Shard owner(final Topology topology, final String key) {
+		Objects.requireNonNull(key, "Key must not be null");
+		final Shard owner = topology.ring.shard(key);
+		if (topology.previous != null) {
+			final Shard previous = topology.previous.shard(key);
+			if (previous != owner)
+				move(key, previous, owner);
+		}
+		return owner;
+	}
+
+	private Keyspace shard(final String key) {
+		return keyspace(owner(adapter.topology(), key));
+	}
+
+	private static <R> R join(final CompletableFuture<R> result) {
+		try {
+			return result.join();
+		} catch (final CompletionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw e;
+		}
+	}
+
+	/**
+	 * Remaining time to live of a key, treating keyspaces without expiry as never expiring
+	 */
+	private static Optional<Duration> ttl(final Keyspace keyspace, final String key) {
+		try {
+			return keyspace.ttl(key);
+		} catch (final UnsupportedOperationException e) {
+			return Optional.of(NO_EXPIRY);
+		}
+	}
+}
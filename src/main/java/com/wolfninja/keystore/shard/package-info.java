@@ -0,0 +1 @@
+package com.wolfninja.keystore.shard;
@@ -0,0 +1,214 @@
+package com.wolfninja.keystore.tier;
+
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import com.wolfninja.keystore.api.KeyValueStoreAdapter;
+import com.wolfninja.keystore.api.Keyspace;
+import com.wolfninja.keystore.api.ScanFeature;
+
+/**
+ * {@link KeyValueStoreAdapter} composing a small, fast upper tier (L1), typically memory, with an authoritative lower
+ * tier (L2), typically a remote or disk backend
+ * <p>
+ * Reads are served from L1 when the key is there, and otherwise read through from L2, promoting the entry to L1. Each
+ * keyspace keeps at most {@link Builder#maxEntries(int)} entries in L1; past that bound the coldest entries, by access
+ * frequency, are demoted, which drops them from L1 while they stay in L2. Writes always go to L2 first, then either
+ * update L1 ({@link WritePolicy#WRITE_THROUGH}) or remove the key from it ({@link WritePolicy#WRITE_AROUND}).
+ * <p>
+ * Versions always come from L2: entries promoted to L1 keep the L2 version next to their value, and entries written
+ * through have none, so {@code gets} reads them from L2 once to learn it. Conditional writes are decided by L2 alone.
+ * Entries are kept in L1 in an encoded form, so the L1 adapter must be dedicated to this adapter. Scans, time to live
+ * queries and the scan features are those of L2.
+ *
+ * @since 0.2
+ */
+public final class TieredAdapter implements KeyValueStoreAdapter {
+
+	/**
+	 * What a write does to the upper tier after writing the lower tier
+	 *
+	 * @since 0.2
+	 */
+	public enum WritePolicy {
+		/**
+		 * Remove the key from the upper tier, so only reads promote entries
+		 *
+		 * @since 0.2
+		 */
+		WRITE_AROUND,
+		/**
+		 * Store the written value in the upper tier, so it is read from there right away. Writes to keys of the same
+		 * lock stripe are serialized, so the upper tier always ends up with the last value written
+		 *
+		 * @since 0.2
+		 */
+		WRITE_THROUGH
+	}
+
+	/**
+	 * Builder for {@link TieredAdapter} instances
+	 *
+	 * @since 0.2
+	 */
+	public static final class Builder {
+		private final KeyValueStoreAdapter upper;
+		private final KeyValueStoreAdapter lower;
+		private WritePolicy writePolicy = WritePolicy.WRITE_AROUND;
+		private int maxEntries = 10_000;
+		private long expireAfterWriteMillis;
+
+		private Builder(@Nonnull final KeyValueStoreAdapter upper, @Nonnull final KeyValueStoreAdapter lower) {
+			this.upper = Objects.requireNonNull(upper, "Upper adapter must not be null");
+			this.lower = Objects.requireNonNull(lower, "Lower adapter must not be null");
+			if (upper == lower)
+				throw new IllegalArgumentException("Upper and lower adapter must differ");
+		}
+
+		/**
+		 * Build the {@link TieredAdapter}
+		 *
+		 * @return new {@link TieredAdapter} instance, not null
+		 * @since 0.2
+		 */
+		@Nonnull
+		public TieredAdapter build() {
+			return new TieredAdapter(this);
+		}
+
+		/**
+		 * Expire entries from the upper tier a fixed duration after they were promoted or written through
+		 * <p>
+		 * Writes with a time to live always remove the key from the upper tier, and entries promoted from the lower
+		 * tier or counters written through never stay in the upper tier longer than their time to live in the
+		 * lower tier, whether this is set or not. Writes made by other clients directly against the lower tier are
+		 * only seen once the entry is demoted or expires.
+		 *
+		 * @param duration
+		 *            long duration, greater than zero
+		 * @param unit
+		 *            {@link TimeUnit} of duration, not null
+		 * @return this builder
+		 * @since 0.2
+		 */
+		@Nonnull
+		public Builder expireAfterWrite(final long duration, @Nonnull final TimeUnit unit) {
+			Objects.requireNonNull(unit, "Unit must not be null");
+			if (duration <= 0L)
+				throw new IllegalArgumentException("Duration must be greater than zero");
+			this.expireAfterWriteMillis = Math.max(1L, unit.toMillis(duration));
+			return this;
+		}
+
+		/**
+		 * Set the maximum number of entries each keyspace keeps in the upper tier
+		 *
+		 * @param maxEntries
+		 *            int number of entries, at least one
+		 * @return this builder
+		 * @since 0.2
+		 */
+		@Nonnull
+		public Builder maxEntries(final int maxEntries) {
+			if (maxEntries < 1)
+				throw new IllegalArgumentException("Max entries must be at least 1");
+			this.maxEntries = maxEntries;
+			return this;
+		}
+
+		/**
+		 * Set what writes do to the upper tier, {@link WritePolicy#WRITE_AROUND} by default
+		 *
+		 * @param writePolicy
+		 *            {@link WritePolicy}, not null
+		 * @return this builder
+		 * @since 0.2
+		 */
+		@Nonnull
+		public Builder writePolicy(@Nonnull final WritePolicy writePolicy) {
+			this.writePolicy = Objects.requireNonNull(writePolicy, "Write policy must not be null");
+			return this;
+		}
+	}
+
+	/**
+	 * Create a new {@link Builder}
+	 *
+	 * @param upper
+	 *            {@link KeyValueStoreAdapter} of the upper tier (L1), not null, dedicated to this adapter
+	 * @param lower
+	 *            {@link KeyValueStoreAdapter} of the lower, authoritative tier (L2), not null
+	 * @return new {@link Builder} instance, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	public static Builder builder(@Nonnull final KeyValueStoreAdapter upper,
+			@Nonnull final KeyValueStoreAdapter lower) {
+		return new Builder(upper, lower);
+	}
+
+	private final KeyValueStoreAdapter upper;
+	private final KeyValueStoreAdapter lower;
+	private final WritePolicy writePolicy;
+	private final int maxEntries;
+	private final long expireAfterWriteMillis;
+	private final ConcurrentHashMap<String, TieredKeyspace> keyspaces = new ConcurrentHashMap<>();
+
+	private TieredAdapter(final Builder builder) {
+		this.upper = builder.upper;
+		this.lower = builder.lower;
+		this.writePolicy = builder.writePolicy;
+		this.maxEntries = builder.maxEntries;
+		this.expireAfterWriteMillis = builder.expireAfterWriteMillis;
+	}
+
+	/**
+	 * Close both tiers, closing the lower one even if the upper one fails
+	 *
+	 * @since 0.2
+	 */
+	@Override
+	public void close() {
+		try {
+			upper.close();
+		} finally {
+			lower.close();
+		}
+	}
+
+	/**
+	 * Flush both tiers, flushing the lower one even if the upper one fails
+	 *
+	 * @since 0.2
+	 */
+	@Override
+	public void flush() {
+		try {
+			upper.flush();
+		} finally {
+			lower.flush();
+		}
+	}
+
+	@Override
+	public Keyspace getKeyspace(final String keyspaceName) {
+		Objects.requireNonNull(keyspaceName, "Keyspace name must not be null");
+		final TieredKeyspace existing = keyspaces.get(keyspaceName);
+		if (existing != null)
+			return existing;
+		return keyspaces.computeIfAbsent(keyspaceName, name -> new TieredKeyspace(upper.getKeyspace(name), lower
+				.getKeyspace(name), writePolicy, maxEntries, expireAfterWriteMillis));
+	}
+
+	/**
+	 * Scan features of the lower tier, which scans are served from
+	 */
+	@Override
+	public Set<ScanFeature> getScanFeatures() {
+		return lower.getScanFeatures();
+	}
+}
@@ -0,0 +1,529 @@
+package com.wolfninja.keystore.tier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import com.wolfninja.keystore.api.ChangePublisher;
+import com.wolfninja.keystore.api.KeyValue;
+import com.wolfninja.keystore.api.Keyspace;
+import com.wolfninja.keystore.api.Watch;
+import com.wolfninja.keystore.tier.TieredAdapter.WritePolicy;
+
+/**
+ * {@link Keyspace} of a {@link TieredAdapter}, reading through an upper tier and writing to a lower one
+ * <p>
+ * The upper tier holds each entry as its lower tier version, or nothing when it was written through, a colon and the
+ * value. Promotions are discarded when a write to the same lock stripe happened while the entry was read from the
+ * lower tier, the same way {@code CachingKeyspace} discards stale loads. Under {@link WritePolicy#WRITE_THROUGH} writes
+ * also hold the lock of their stripe while they write both tiers, so two writes of a key cannot leave the upper tier
+ * with the older value. Promoted entries and counters written through are kept in the upper tier no longer than
+ * their remaining time to live in the lower tier.
+ * <p>
+ * Entries in the upper tier are tracked with an access count, which is halved every few accesses per tracked entry so
+ * it follows recent popularity. When a promotion or write goes over the bound, the least accessed of a few entries
+ * sampled along a cursor over the tracked entries is demoted, until the tier is back within its bound. Only one
+ * thread demotes at a time and the others skip it.
+ */
+final class TieredKeyspace implements Keyspace {
+
+	/**
+	 * Access count of an entry in the upper tier, aged lazily by comparing epochs
+	 */
+	private static final class Resident {
+		// Racy updates may lose an access, which only makes the count approximate
+		volatile int count;
+		volatile int epoch;
+
+		private Resident(final int epoch) {
+			this.epoch = epoch;
+		}
+	}
+
+	private static final int STRIPES = 64;
+	private static final int DEMOTION_SAMPLE = 8;
+	private static final int AGING_FACTOR = 10;
+	private static final char SEPARATOR = ':';
+	// Marks entries written through, whose lower tier version is not known
+	private static final long NO_VERSION = Long.MIN_VALUE;
+
+	private final Keyspace upper;
+	private final Keyspace lower;
+	private final WritePolicy writePolicy;
+	private final int maxEntries;
+	private final long expireAfterWriteMillis;
+	private final ConcurrentHashMap<String, Resident> residents = new ConcurrentHashMap<>();
+	private final AtomicLongArray invalidations = new AtomicLongArray(STRIPES);
+	private final ReentrantLock[] writeLocks = new ReentrantLock[STRIPES];
+	private final ReentrantLock demotionLock = new ReentrantLock();
+	private volatile int epoch;
+	// Cleared once the lower tier turns out not to support expiry, so lifetimes no longer ask it
+	private volatile boolean expiring = true;
+
+	// Guarded by demotionLock
+	private Iterator<Map.Entry<String, Resident>> demotionCursor = Collections.emptyIterator();
+
+	TieredKeyspace(final Keyspace upper, final Keyspace lower, final WritePolicy writePolicy, final int maxEntries,
+			final long expireAfterWriteMillis) {
+		this.upper = upper;
+		this.lower = lower;
+		this.writePolicy = writePolicy;
+		this.maxEntries = maxEntries;
+		this.expireAfterWriteMillis = expireAfterWriteMillis;
+		for (int i = 0; i < STRIPES; i++)
+			writeLocks[i] = new ReentrantLock();
+	}
+
+	@Override
+	public boolean add(final String key, final String value) {
+		return write(key, value, () -> lower.add(key, value));
+	}
+
+	@Override
+	public boolean add(final String key, final String value, final long ttl, final TimeUnit unit) {
+		return write(key, null, () -> lower.add(key, value, ttl, unit));
+	}
+
+	@Override
+	public long addAndGet(final String key, final long delta) {
+		Objects.requireNonNull(key, "Key must not be null");
+		final ReentrantLock lock = writeLock(key);
+		try {
+			final long count = lower.addAndGet(key, delta);
+			// A counter keeps its time to live, so the upper tier must not keep it longer
+			written(key, Long.toString(count), lifetime(key));
+			return count;
+		} catch (final RuntimeException e) {
+			invalidate(key);
+			throw e;
+		} finally {
+			if (lock != null)
+				lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean checkAndSet(final String key, final String value, final long version) {
+		return write(key, value, () -> lower.checkAndSet(key, value, version));
+	}
+
+	@Override
+	public boolean checkAndSet(final String key, final String value, final long version, final long ttl,
+			final TimeUnit unit) {
+		return write(key, null, () -> lower.checkAndSet(key, value, version, ttl, unit));
+	}
+
+	@Override
+	public boolean delete(final String key) {
+		return write(key, null, () -> lower.delete(key));
+	}
+
+	@Override
+	public int deleteAll(final Collection<String> keys) {
+		Objects.requireNonNull(keys, "Keys must not be null");
+		final int[] stripes = writeLocks(keys);
+		try {
+			return lower.deleteAll(keys);
+		} finally {
+			try {
+				keys.forEach(this::invalidate);
+			} finally {
+				unlock(stripes);
+			}
+		}
+	}
+
+	@Override
+	public boolean deletes(final String key, final long version) {
+		return write(key, null, () -> lower.deletes(key, version));
+	}
+
+	@Override
+	public boolean exists(final String key) {
+		Objects.requireNonNull(key, "Key must not be null");
+		return cached(key) != null || lower.exists(key);
+	}
+
+	@Override
+	public void flush() {
+		try {
+			upper.flush();
+		} finally {
+			lower.flush();
+		}
+	}
+
+	@Override
+	public Optional<String> get(final String key) {
+		Objects.requireNonNull(key, "Key must not be null");
+		final KeyValue cached = cached(key);
+		if (cached != null)
+			return Optional.of(cached.getValue());
+		return load(key).map(KeyValue::getValue);
+	}
+
+	@Override
+	public Map<String, String> getAll(final Collection<String> keys) {
+		Objects.requireNonNull(keys, "Keys must not be null");
+		final Map<String, String> values = new HashMap<>();
+		final List<String> missing = new ArrayList<>();
+		final Map<String, String> cached = upper.getAll(keys);
+		for (final String key : keys) {
+			final KeyValue keyValue = decode(key, cached.get(key));
+			if (keyValue == null)
+				missing.add(key);
+			else {
+				touch(key);
+				values.put(key, keyValue.getValue());
+			}
+		}
+		load(missing).forEach((key, keyValue) -> values.put(key, keyValue.getValue()));
+		return values;
+	}
+
+	@Override
+	public Optional<KeyValue> gets(final String key) {
+		Objects.requireNonNull(key, "Key must not be null");
+		final KeyValue cached = cached(key);
+		if (cached != null && cached.getVersion() != NO_VERSION)
+			return Optional.of(cached);
+		return load(key);
+	}
+
+	@Override
+	public Map<String, KeyValue> getsAll(final Collection<String> keys) {
+		Objects.requireNonNull(keys, "Keys must not be null");
+		final Map<String, KeyValue> values = new HashMap<>();
+		final List<String> missing = new ArrayList<>();
+		final Map<String, String> cached = upper.getAll(keys);
+		for (final String key : keys) {
+			final KeyValue keyValue = decode(key, cached.get(key));
+			if (keyValue == null || keyValue.getVersion() == NO_VERSION)
+				missing.add(key);
+			else {
+				touch(key);
+				values.put(key, keyValue);
+			}
+		}
+		values.putAll(load(missing));
+		return values;
+	}
+
+	@Override
+	public boolean replace(final String key, final String value) {
+		return write(key, value, () -> lower.replace(key, value));
+	}
+
+	@Override
+	public boolean replace(final String key, final String value, final long ttl, final TimeUnit unit) {
+		return write(key, null, () -> lower.replace(key, value, ttl, unit));
+	}
+
+	@Override
+	public Stream<KeyValue> scan(final String prefix) {
+		// The upper tier only holds part of the entries, so scans always go to the lower tier
+		return lower.scan(prefix);
+	}
+
+	@Override
+	public boolean set(final String key, final String value) {
+		return write(key, value, () -> lower.set(key, value));
+	}
+
+	@Override
+	public boolean set(final String key, final String value, final long ttl, final TimeUnit unit) {
+		return write(key, null, () -> lower.set(key, value, ttl, unit));
+	}
+
+	@Override
+	public boolean setAll(final Map<String, String> values) {
+		Objects.requireNonNull(values, "Values must not be null");
+		final int[] stripes = writeLocks(values.keySet());
+		try {
+			final boolean written = lower.setAll(values);
+			if (written)
+				values.forEach(this::written);
+			else
+				values.keySet().forEach(this::invalidate);
+			return written;
+		} catch (final RuntimeException e) {
+			values.keySet().forEach(this::invalidate);
+			throw e;
+		} finally {
+			unlock(stripes);
+		}
+	}
+
+	@Override
+	public Optional<Duration> ttl(final String key) {
+		return lower.ttl(key);
+	}
+
+	/**
+	 * Watch the lower tier, which every write goes to first
+	 */
+	@Override
+	public ChangePublisher watch(final Watch watch) {
+		return lower.watch(watch);
+	}
+
+	/**
+	 * Get the entry of a key from the upper tier, recording the access
+	 */
+	private KeyValue cached(final String key) {
+		final KeyValue keyValue = decode(key, upper.get(key).orElse(null));
+		if (keyValue != null)
+			touch(key);
+		return keyValue;
+	}
+
+	private int count(final Resident resident) {
+		final int age = epoch - resident.epoch;
+		return age >= Integer.SIZE ? 0 : resident.count >>> age;
+	}
+
+	/**
+	 * Demote the least accessed of a few sampled entries until the upper tier is within its bound, unless another
+	 * thread is demoting
+	 */
+	private void demote() {
+		if (residents.size() <= maxEntries || !demotionLock.tryLock())
+			return;
+		try {
+			while (residents.size() > maxEntries) {
+				Map.Entry<String, Resident> coldest = null;
+				for (int i = 0; i < DEMOTION_SAMPLE; i++) {
+					if (!demotionCursor.hasNext()) {
+						demotionCursor = residents.entrySet().iterator();
+						if (!demotionCursor.hasNext())
+							return;
+					}
+					final Map.Entry<String, Resident> entry = demotionCursor.next();
+					if (coldest == null || count(entry.getValue()) < count(coldest.getValue()))
+						coldest = entry;
+				}
+				if (residents.remove(coldest.getKey(), coldest.getValue()))
+					upper.delete(coldest.getKey());
+			}
+		} finally {
+			demotionLock.unlock();
+		}
+	}
+
+	/**
+	 * Store an entry in the upper tier and start tracking it
+	 *
+	 * @param lifetimeMillis
+	 *            long milliseconds the entry may stay in the upper tier, zero for no deadline
+	 */
+	private void install(final String key, final String value, final long version, final long lifetimeMillis) {
+		final String encoded = (version == NO_VERSION ? "" : Long.toString(version)) + SEPARATOR + value;
+		if (lifetimeMillis > 0L)
+			upper.set(key, encoded, lifetimeMillis, TimeUnit.MILLISECONDS);
+		else
+			upper.set(key, encoded);
+		residents.putIfAbsent(key, new Resident(epoch));
+	}
+
+	private void invalidate(final String key) {
+		invalidations.incrementAndGet(stripe(key));
+		residents.remove(key);
+		upper.delete(key);
+	}
+
+	/**
+	 * Time an entry may stay in the upper tier, at most its remaining time to live in the lower tier
+	 *
+	 * @return long milliseconds, zero for no deadline, negative if the entry is no longer in the lower tier
+	 */
+	private long lifetime(final String key) {
+		if (!expiring)
+			return expireAfterWriteMillis;
+		final Optional<Duration> ttl;
+		try {
+			ttl = lower.ttl(key);
+		} catch (final UnsupportedOperationException e) {
+			expiring = false;
+			return expireAfterWriteMillis;
+		}
+		if (!ttl.isPresent())
+			return -1L;
+		if (ttl.get().equals(NO_EXPIRY))
+			return expireAfterWriteMillis;
+		final long remaining = ttl.get().toMillis();
+		if (remaining <= 0L)
+			return -1L;
+		return expireAfterWriteMillis > 0L ? Math.min(remaining, expireAfterWriteMillis) : remaining;
+	}
+
+	private Optional<KeyValue> load(final String key) {
+		final int stripe = stripe(key);
+		final long stamp = invalidations.get(stripe);
+		final Optional<KeyValue> loaded = lower.gets(key);
+		loaded.ifPresent(keyValue -> promote(keyValue, stripe, stamp));
+		return loaded;
+	}
+
+	private Map<String, KeyValue> load(final List<String> keys) {
+		if (keys.isEmpty())
+			return Collections.emptyMap();
+		final long[] stamps = new long[keys.size()];
+		for (int i = 0; i < stamps.length; i++)
+			stamps[i] = invalidations.get(stripe(keys.get(i)));
+		final Map<String, KeyValue> loaded = lower.getsAll(keys);
+		for (int i = 0; i < stamps.length; i++) {
+			final KeyValue keyValue = loaded.get(keys.get(i));
+			if (keyValue != null)
+				promote(keyValue, stripe(keyValue.getKey()), stamps[i]);
+		}
+		return loaded;
+	}
+
+	private void promote(final KeyValue keyValue, final int stripe, final long stamp) {
+		final String key = keyValue.getKey();
+		final long lifetime = lifetime(key);
+		if (lifetime < 0L)
+			return;
+		install(key, keyValue.getValue(), keyValue.getVersion(), lifetime);
+		// A write may have happened while the entry was read from the lower tier, in which case it could be stale
+		if (invalidations.get(stripe) != stamp) {
+			residents.remove(key);
+			upper.delete(key);
+		}
+		demote();
+	}
+
+	/**
+	 * Record an access to a tracked entry, and age all counts once every few accesses per tracked entry
+	 */
+	private void touch(final String key) {
+		final Resident resident = residents.get(key);
+		if (resident == null) {
+			// Left over from a race with a demotion, track it again so it stays within the bound
+			residents.putIfAbsent(key, new Resident(epoch));
+			demote();
+			return;
+		}
+		resident.count = Math.min(count(resident) + 1, Integer.MAX_VALUE >>> 1);
+		resident.epoch = epoch;
+		if (ThreadLocalRandom.current().nextInt(Math.max(maxEntries, residents.size()) * AGING_FACTOR) == 0)
+			epoch++;
+	}
+
+	private void unlock(final int[] stripes) {
+		for (final int stripe : stripes)
+			writeLocks[stripe].unlock();
+	}
+
+	/**
+	 * Write to the lower tier, then bring the upper tier in line if the write changed anything
+	 *
+	 * @param value
+	 *            String value to write through, null to always remove the key from the upper tier
+	 */
+	private boolean write(final String key, final String value, final BooleanSupplier write) {
+		Objects.requireNonNull(key, "Key must not be null");
+		final ReentrantLock lock = writeLock(key);
+		try {
+			final boolean written = write.getAsBoolean();
+			if (written)
+				written(key, value);
+			return written;
+		} catch (final RuntimeException e) {
+			invalidate(key);
+			throw e;
+		} finally {
+			if (lock != null)
+				lock.unlock();
+		}
+	}
+
+	private void written(final String key, final String value) {
+		written(key, value, expireAfterWriteMillis);
+	}
+
+	private void written(final String key, final String value, final long lifetimeMillis) {
+		if (value == null || writePolicy == WritePolicy.WRITE_AROUND || lifetimeMillis < 0L) {
+			invalidate(key);
+			return;
+		}
+		invalidations.incrementAndGet(stripe(key));
+		install(key, value, NO_VERSION, lifetimeMillis);
+		demote();
+	}
+
+	/**
+	 * Take the write lock of a key's stripe when writing through
+	 *
+	 * @return the held {@link ReentrantLock}, or null when writing around
+	 */
+	private ReentrantLock writeLock(final String key) {
+		if (writePolicy != WritePolicy.WRITE_THROUGH)
+			return null;
+		final ReentrantLock lock = writeLocks[stripe(key)];
+		lock.lock();
+		return lock;
+	}
+
+	/**
+	 * Take the write locks of the stripes of several keys in stripe order when writing through
+	 *
+	 * @return int[] stripes whose lock is held, empty when writing around
+	 */
+	private int[] writeLocks(final Collection<String> keys) {
+		if (writePolicy != WritePolicy.WRITE_THROUGH)
+			return new int[0];
+		final boolean[] used = new boolean[STRIPES];
+		for (final String key : keys)
+			used[stripe(Objects.requireNonNull(key, "Key must not be null"))] = true;
+		int count = 0;
+		final int[] stripes = new int[STRIPES];
+		for (int stripe = 0; stripe < STRIPES; stripe++)
+			if (used[stripe]) {
+				writeLocks[stripe].lock();
+				stripes[count++] = stripe;
+			}
+		return Arrays.copyOf(stripes, count);
+	}
+
+	/**
+	 * Decode an entry of the upper tier
+	 *
+	 * @return {@link KeyValue} with the lower tier version, or {@link #NO_VERSION}, null if absent or not encoded
+	 */
+	private static KeyValue decode(final String key, final String encoded) {
+		if (encoded == null)
+			return null;
+		final int separator = encoded.indexOf(SEPARATOR);
+		if (separator < 0)
+			return null;
+		final String value = encoded.substring(separator + 1);
+		if (separator == 0)
+			return KeyValue.create(key, value, NO_VERSION);
+		try {
+			return KeyValue.create(key, value, Long.parseLong(encoded.substring(0, separator)));
+		} catch (final NumberFormatException e) {
+			return null;
+		}
+	}
+
+	private static int stripe(final String key) {
+		final int hash = key.hashCode();
+		return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+	}
+}
@@ -0,0 +1,561 @@
+package com.wolfninja.keystore.writebehind;
+
+import java.time.Duration;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+import javax.annotation.Nonnull;
+
+import com.wolfninja.keystore.api.AsyncExecutors;
+import com.wolfninja.keystore.api.ChangePublisher;
+import com.wolfninja.keystore.api.KeyValue;
+import com.wolfninja.keystore.api.Keyspace;
+import com.wolfninja.keystore.api.Watch;
+import com.wolfninja.keystore.metrics.LatencyHistogram;
+
+/**
+ * {@link Keyspace} decorator buffering {@code set} and {@code delete} calls and writing them to the decorated keyspace
+ * later, in batches
+ * <p>
+ * Buffered writes return at once. Pending writes are kept per key, so repeated writes to a key are coalesced and only
+ * the last one is written. A background thread flushes them once a batch worth of keys is pending, and at a fixed
+ * interval otherwise, through {@link Keyspace#setAll(Map)} and {@link Keyspace#deleteAll(Collection)}; keyspaces
+ * without a native bulk path fall back to their default loop over single calls. A pending write is only dropped from
+ * the buffer after the decorated keyspace accepted it, and a flush that fails, or whose {@code setAll} returns false,
+ * keeps it for the next one.
+ * <p>
+ * When the buffer holds its maximum number of keys, a writer adding another key flushes in its own thread before
+ * continuing, which slows writers down to the pace of the backend. Racing writers can each add one key beyond the
+ * maximum.
+ * <p>
+ * {@code get}, {@code getAll}, {@code exists} and {@code ttl} answer from the buffer for keys with a pending write.
+ * Everything that needs the backend's state, such as versioned reads, conditional writes, counters, writes with a
+ * time to live and scans, first flushes the pending writes of its keys and then goes to the decorated keyspace
+ * directly. A buffered {@code delete} returns whether the key existed when it was buffered, which is a best guess,
+ * since another client may write the key before the delete is flushed. For a key without a pending write, finding
+ * that out takes a read of the decorated keyspace; {@code deleteAll} makes one bulk read for all such keys.
+ * <p>
+ * Writes are lost if the process ends before they are flushed, so this suits high volume writes that can afford
+ * that, such as session touches or analytics. {@link #close()} flushes the writes made before it.
+ *
+ * @since 0.2
+ */
+public final class WriteBehindKeyspace implements Keyspace {
+
+	/**
+	 * Builder for {@link WriteBehindKeyspace} instances
+	 *
+	 * @since 0.2
+	 */
+	public static final class Builder {
+		private final Keyspace delegate;
+		private int maxPending = 10_000;
+		private int batchSize = 500;
+		private long flushIntervalNanos = TimeUnit.SECONDS.toNanos(1L);
+
+		private Builder(@Nonnull final Keyspace delegate) {
+			Objects.requireNonNull(delegate, "Keyspace must not be null");
+			this.delegate = delegate;
+		}
+
+		/**
+		 * Set the number of pending keys which triggers a flush, which is also the maximum number of writes sent to
+		 * the decorated keyspace at once
+		 *
+		 * @param batchSize
+		 *            int number of keys, greater than zero
+		 * @return this builder
+		 * @since 0.2
+		 */
+		@Nonnull
+		public Builder batchSize(final int batchSize) {
+			if (batchSize <= 0)
+				throw new IllegalArgumentException("Batch size must be greater than zero");
+			this.batchSize = batchSize;
+			return this;
+		}
+
+		/**
+		 * Build the {@link WriteBehindKeyspace}, starting its flush thread
+		 *
+		 * @return new {@link WriteBehindKeyspace} instance, not null
+		 * @since 0.2
+		 */
+		@Nonnull
+		public WriteBehindKeyspace build() {
+			if (maxPending < batchSize)
+				throw new IllegalArgumentException("Maximum pending keys must be at least the batch size");
+			return new WriteBehindKeyspace(this);
+		}
+
+		/**
+		 * Set how long a write may stay pending when fewer than a batch of keys are pending
+		 *
+		 * @param interval
+		 *            long interval, greater than zero
+		 * @param unit
+		 *            {@link TimeUnit} of interval, not null
+		 * @return this builder
+		 * @since 0.2
+		 */
+		@Nonnull
+		public Builder flushInterval(final long interval, @Nonnull final TimeUnit unit) {
+			Objects.requireNonNull(unit, "Unit must not be null");
+			if (interval <= 0L)
+				throw new IllegalArgumentException("Interval must be greater than zero");
+			this.flushIntervalNanos = unit.toNanos(interval);
+			return this;
+		}
+
+		/**
+		 * Bound the buffer by number of pending keys, beyond which writers flush themselves
+		 *
+		 * @param maxPending
+		 *            int maximum number of pending keys, at least the batch size
+		 * @return this builder
+		 * @since 0.2
+		 */
+		@Nonnull
+		public Builder maxPending(final int maxPending) {
+			if (maxPending <= 0)
+				throw new IllegalArgumentException("Maximum pending keys must be greater than zero");
+			this.maxPending = maxPending;
+			return this;
+		}
+	}
+
+	/**
+	 * Pending write of a key, a delete if the value is null; compared by identity
+	 */
+	private static final class Write {
+		final String value;
+
+		Write(final String value) {
+			this.value = value;
+		}
+	}
+
+	/**
+	 * Create a new {@link Builder} decorating the given keyspace
+	 *
+	 * @param delegate
+	 *            {@link Keyspace} to write to, not null
+	 * @return new {@link Builder} instance, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	public static Builder builder(@Nonnull final Keyspace delegate) {
+		return new Builder(delegate);
+	}
+
+	private final Keyspace delegate;
+	private final int maxPending;
+	private final int batchSize;
+	private final ConcurrentHashMap<String, Write> pending = new ConcurrentHashMap<>();
+	private final AtomicInteger pendingCount = new AtomicInteger();
+	private final ReentrantLock flushLock = new ReentrantLock();
+	private final ScheduledExecutorService flusher;
+	private final AtomicBoolean flushRequested = new AtomicBoolean();
+	private final LatencyHistogram flushLatency = LatencyHistogram.create();
+	private final LongAdder coalesced = new LongAdder();
+	private final LongAdder flushed = new LongAdder();
+	private final LongAdder failedFlushes = new LongAdder();
+	private final LongAdder backpressure = new LongAdder();
+	private volatile boolean closed;
+
+	private WriteBehindKeyspace(final Builder builder) {
+		this.delegate = builder.delegate;
+		this.maxPending = builder.maxPending;
+		this.batchSize = builder.batchSize;
+		this.flusher = Executors
+				.newSingleThreadScheduledExecutor(AsyncExecutors.daemonThreadFactory("keystore-write-behind"));
+		flusher.scheduleWithFixedDelay(this::flushInBackground, builder.flushIntervalNanos,
+				builder.flushIntervalNanos, TimeUnit.NANOSECONDS);
+	}
+
+	@Override
+	public boolean add(final String key, final String value) {
+		flushKey(key);
+		return delegate.add(key, value);
+	}
+
+	@Override
+	public boolean add(final String key, final String value, final long ttl, final TimeUnit unit) {
+		flushKey(key);
+		return delegate.add(key, value, ttl, unit);
+	}
+
+	@Override
+	public long addAndGet(final String key, final long delta) {
+		flushKey(key);
+		return delegate.addAndGet(key, delta);
+	}
+
+	@Override
+	public boolean checkAndSet(final String key, final String value, final long version) {
+		flushKey(key);
+		return delegate.checkAndSet(key, value, version);
+	}
+
+	@Override
+	public boolean checkAndSet(final String key, final String value, final long version, final long ttl,
+			final TimeUnit unit) {
+		flushKey(key);
+		return delegate.checkAndSet(key, value, version, ttl, unit);
+	}
+
+	/**
+	 * Stop the flush thread, write the pending writes and close the decorated keyspace; buffered writes fail
+	 * afterwards
+	 *
+	 * @throws RuntimeException
+	 *             if the decorated keyspace fails the final flush, leaving the writes pending and it open
+	 * @since 0.2
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		flusher.shutdown();
+		try {
+			flusher.awaitTermination(1L, TimeUnit.MINUTES);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		drain();
+		delegate.close();
+	}
+
+	/**
+	 * Buffer a delete, returning whether the key existed when it was buffered
+	 * <p>
+	 * Answered from the buffer if the key has a pending write, otherwise by asking the decorated keyspace.
+	 */
+	@Override
+	public boolean delete(final String key) {
+		final boolean existed = exists(key);
+		enqueue(key, new Write(null));
+		return existed;
+	}
+
+	/**
+	 * Buffer deletes, returning how many of the keys existed when they were buffered
+	 * <p>
+	 * Keys with a pending write are answered from the buffer, the others with one bulk read of the decorated
+	 * keyspace.
+	 */
+	@Override
+	public int deleteAll(final Collection<String> keys) {
+		Objects.requireNonNull(keys, "Keys must not be null");
+		final Set<String> distinct = new LinkedHashSet<>(keys);
+		int deleted = 0;
+		final List<String> unknown = new ArrayList<>(distinct.size());
+		for (final String key : distinct) {
+			final Write write = pending.get(Objects.requireNonNull(key, "Key must not be null"));
+			if (write == null)
+				unknown.add(key);
+			else if (write.value != null)
+				deleted++;
+		}
+		if (!unknown.isEmpty())
+			deleted += delegate.getAll(unknown).size();
+		for (final String key : distinct)
+			enqueue(key, new Write(null));
+		return deleted;
+	}
+
+	@Override
+	public boolean deletes(final String key, final long version) {
+		flushKey(key);
+		return delegate.deletes(key, version);
+	}
+
+	@Override
+	public boolean exists(final String key) {
+		Objects.requireNonNull(key, "Key must not be null");
+		final Write write = pending.get(key);
+		return write == null ? delegate.exists(key) : write.value != null;
+	}
+
+	/**
+	 * Write all writes pending when called to the decorated keyspace, waiting for a running flush first, then flush
+	 * the decorated keyspace
+	 *
+	 * @throws RuntimeException
+	 *             if the decorated keyspace fails or rejects a batch, leaving its writes pending
+	 * @since 0.2
+	 */
+	@Override
+	public void flush() {
+		drain();
+		delegate.flush();
+	}
+
+	@Override
+	public Optional<String> get(final String key) {
+		Objects.requireNonNull(key, "Key must not be null");
+		final Write write = pending.get(key);
+		return write == null ? delegate.get(key) : Optional.ofNullable(write.value);
+	}
+
+	@Override
+	public Map<String, String> getAll(final Collection<String> keys) {
+		Objects.requireNonNull(keys, "Keys must not be null");
+		final Map<String, String> values = new HashMap<>();
+		final List<String> missing = new ArrayList<>(keys.size());
+		for (final String key : keys) {
+			final Write write = pending.get(Objects.requireNonNull(key, "Key must not be null"));
+			if (write == null)
+				missing.add(key);
+			else if (write.value != null)
+				values.put(key, write.value);
+		}
+		if (!missing.isEmpty())
+			values.putAll(delegate.getAll(missing));
+		return values;
+	}
+
+	/**
+	 * Get the number of writes which found the buffer full and flushed it themselves
+	 *
+	 * @return long backpressure count
+	 * @since 0.2
+	 */
+	public long getBackpressureCount() {
+		return backpressure.sum();
+	}
+
+	/**
+	 * Get the number of writes replaced by a later write to the same key before being flushed
+	 *
+	 * @return long coalesced write count
+	 * @since 0.2
+	 */
+	public long getCoalescedCount() {
+		return coalesced.sum();
+	}
+
+	/**
+	 * Get the number of batches the decorated keyspace failed to write
+	 *
+	 * @return long failed flush count
+	 * @since 0.2
+	 */
+	public long getFailedFlushCount() {
+		return failedFlushes.sum();
+	}
+
+	/**
+	 * Get the number of writes sent to the decorated keyspace
+	 *
+	 * @return long flushed write count
+	 * @since 0.2
+	 */
+	public long getFlushedCount() {
+		return flushed.sum();
+	}
+
+	/**
+	 * Get the latencies of writing a batch to the decorated keyspace
+	 *
+	 * @return live {@link LatencyHistogram}, not null
+	 * @since 0.2
+	 */
+	@Nonnull
+	public LatencyHistogram getFlushLatency() {
+		return flushLatency;
+	}
+
+	/**
+	 * Get the number of keys with a pending write, the depth of the buffer
+	 *
+	 * @return int pending key count
+	 * @since 0.2
+	 */
+	public int getPendingCount() {
+		return pendingCount.get();
+	}
+
+	@Override
+	public Optional<KeyValue> gets(final String key) {
+		flushKey(key);
+		return delegate.gets(key);
+	}
+
+	@Override
+	public Map<String, KeyValue> getsAll(final Collection<String> keys) {
+		Objects.requireNonNull(keys, "Keys must not be null");
+		for (final String key : keys)
+			flushKey(key);
+		return delegate.getsAll(keys);
+	}
+
+	@Override
+	public boolean replace(final String key, final String value) {
+		flushKey(key);
+		return delegate.replace(key, value);
+	}
+
+	@Override
+	public boolean replace(final String key, final String value, final long ttl, final TimeUnit unit) {
+		flushKey(key);
+		return delegate.replace(key, value, ttl, unit);
+	}
+
+	@Override
+	public Stream<KeyValue> scan(final String prefix) {
+		Objects.requireNonNull(prefix, "Prefix must not be null");
+		drain();
+		return delegate.scan(prefix);
+	}
+
+	@Override
+	public boolean set(final String key, final String value) {
+		Objects.requireNonNull(value, "Value must not be null");
+		enqueue(key, new Write(value));
+		return true;
+	}
+
+	@Override
+	public boolean set(final String key, final String value, final long ttl, final TimeUnit unit) {
+		flushKey(key);
+		return delegate.set(key, value, ttl, unit);
+	}
+
+	@Override
+	public boolean setAll(final Map<String, String> values) {
+		Objects.requireNonNull(values, "Values must not be null");
+		values.forEach(this::set);
+		return true;
+	}
+
+	@Override
+	public Optional<Duration> ttl(final String key) {
+		Objects.requireNonNull(key, "Key must not be null");
+		final Write write = pending.get(key);
+		if (write == null)
+			return delegate.ttl(key);
+		// A write without a time to live clears any expiry
+		return write.value == null ? Optional.empty() : Optional.of(NO_EXPIRY);
+	}
+
+	/**
+	 * Watch the decorated keyspace, so changes are published once flushed, as the writes they were coalesced into
+	 */
+	@Override
+	public ChangePublisher watch(final Watch watch) {
+		return delegate.watch(watch);
+	}
+
+	/**
+	 * Write all writes pending when called to the decorated keyspace, waiting for a running flush first
+	 */
+	private void drain() {
+		flushLock.lock();
+		try {
+			final List<Map.Entry<String, Write>> batch = new ArrayList<>(Math.min(batchSize, pendingCount.get()));
+			for (final Map.Entry<String, Write> entry : pending.entrySet()) {
+				batch.add(entry);
+				if (batch.size() == batchSize) {
+					write(batch);
+					batch.clear();
+				}
+			}
+			write(batch);
+		} finally {
+			flushLock.unlock();
+		}
+	}
+
+	private void enqueue(final String key, final Write write) {
+		Objects.requireNonNull(key, "Key must not be null");
+		if (closed)
+			throw new IllegalStateException("Keyspace is closed");
+		while (pendingCount.get() >= maxPending && !pending.containsKey(key)) {
+			backpressure.increment();
+			drain();
+		}
+		if (pending.put(key, write) != null)
+			coalesced.increment();
+		else if (pendingCount.incrementAndGet() >= batchSize && flushRequested.compareAndSet(false, true))
+			flusher.execute(this::flushInBackground);
+	}
+
+	private void flushInBackground() {
+		flushRequested.set(false);
+		try {
+			drain();
+		} catch (final RuntimeException e) {
+			// Counted, and the writes stay pending for the next flush
+		}
+	}
+
+	/**
+	 * Write the pending write of a key, if any, so the decorated keyspace can be used for it directly
+	 */
+	private void flushKey(final String key) {
+		Objects.requireNonNull(key, "Key must not be null");
+		// Writes are only dropped from the buffer once written, so a key without one is up to date
+		if (!pending.containsKey(key))
+			return;
+		flushLock.lock();
+		try {
+			final Write write = pending.get(key);
+			if (write != null)
+				write(Collections.singletonList(new AbstractMap.SimpleImmutableEntry<>(key, write)));
+		} finally {
+			flushLock.unlock();
+		}
+	}
+
+	/**
+	 * Write a batch of pending writes and drop those not replaced meanwhile; called with the flush lock held
+	 */
+	private void write(final List<Map.Entry<String, Write>> batch) {
+		if (batch.isEmpty())
+			return;
+		final Map<String, String> sets = new HashMap<>();
+		final List<String> deletes = new ArrayList<>();
+		for (final Map.Entry<String, Write> entry : batch) {
+			if (entry.getValue().value == null)
+				deletes.add(entry.getKey());
+			else
+				sets.put(entry.getKey(), entry.getValue().value);
+		}
+
+		final long start = System.nanoTime();
+		try {
+			// Rejected writes are kept pending, like failed ones
+			if (!sets.isEmpty() && !delegate.setAll(sets))
+				throw new IllegalStateException("Decorated keyspace rejected a batch of " + sets.size() + " writes");
+			if (!deletes.isEmpty())
+				delegate.deleteAll(deletes);
+		} catch (final RuntimeException e) {
+			failedFlushes.increment();
+			throw e;
+		}
+		flushLatency.record(System.nanoTime() - start);
+		flushed.add(batch.size());
+
+		for (final Map.Entry<String, Write> entry : batch)
+			if (pending.remove(entry.getKey(), entry.getValue()))
+				pendingCount.decrementAndGet();
+	}
+}
@@ -0,0 +1,229 @@
+package com.wolfninja.keystore.api;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+@Test
+public abstract class BaseAsyncKeyspaceTest {
+
+	private AsyncKeyspace keyspace;
+
+	public BaseAsyncKeyspaceTest(final AsyncKeyspace keyspace) {
+		this.keyspace = keyspace;
+	}
+
+	@Test
+	public void addingAgainReturnsFalse() {
+		final String key = genRandKey();
+		Assert.assertTrue(keyspace.add(key, "some value").join(), "Should be able to add a new key");
+		Assert.assertFalse(keyspace.add(key, "other value").join(), "Should not be able to add with existing key");
+	}
+
+	@Test
+	public void checkAndSetShouldReplaceWithSameVersion() {
+		final String key = genRandKey();
+		Assert.assertTrue(keyspace.set(key, "mine!").join());
+
+		final Optional<KeyValue> insertedValue = keyspace.gets(key).join();
+		Assert.assertTrue(insertedValue.isPresent());
+
+		Assert.assertTrue(keyspace.checkAndSet(key, "abcd", insertedValue.get().getVersion()).join());
+		Assert.assertEquals(keyspace.get(key).join().get(), "abcd");
+	}
+
+	@Test
+	public void checkAndSetShouldReturnFalseOnMismatch() {
+		final String key = genRandKey();
+		Assert.assertTrue(keyspace.set(key, "mine!").join());
+
+		final Optional<KeyValue> insertedValue = keyspace.gets(key).join();
+		Assert.assertTrue(insertedValue.isPresent());
+
+		Assert.assertFalse(keyspace.checkAndSet(key, "abcd", insertedValue.get().getVersion() - 1L).join());
+		Assert.assertEquals(keyspace.get(key).join().get(), "mine!");
+	}
+
+	@Test
+	public void checkAndSetShouldReturnFalseOnNewKey() {
+		final String key = genRandKey();
+		Assert.assertFalse(keyspace.checkAndSet(key, "mine!", 43L).join());
+		Assert.assertFalse(keyspace.exists(key).join());
+	}
+
+	@Test
+	public void deleteAllShouldDeleteExistingKeys() {
+		final String first = genRandKey();
+		final String second = genRandKey();
+		Assert.assertTrue(keyspace.add(first, "one").join());
+		Assert.assertTrue(keyspace.add(second, "two").join());
+
+		Assert.assertEquals(keyspace.deleteAll(Arrays.asList(first, second, genRandKey())).join().intValue(), 2);
+		Assert.assertFalse(keyspace.exists(first).join());
+		Assert.assertFalse(keyspace.exists(second).join());
+	}
+
+	@Test
+	public void deletesShouldReturnFalseOnMismatch() {
+		final String key = genRandKey();
+		Assert.assertTrue(keyspace.set(key, "mine!").join());
+		final long version = keyspace.gets(key).join().get().getVersion();
+
+		Assert.assertFalse(keyspace.deletes(key, version - 1L).join());
+		Assert.assertTrue(keyspace.exists(key).join());
+	}
+
+	@Test
+	public void existsShouldReturnTrueIfExists() {
+		final String key = genRandKey();
+		Assert.assertFalse(keyspace.exists(key).join());
+		Assert.assertTrue(keyspace.add(key, "something").join());
+		Assert.assertTrue(keyspace.exists(key).join());
+	}
+
+	private String genRandKey() {
+		return UUID.randomUUID().toString();
+	}
+
+	@Test
+	public void getAllShouldReturnOnlyPresentKeys() {
+		final String first = genRandKey();
+		final String missing = genRandKey();
+		keyspace.add(first, "one").join();
+
+		final Map<String, String> actual = keyspace.getAll(Arrays.asList(first, missing)).join();
+		Assert.assertEquals(actual.size(), 1);
+		Assert.assertEquals(actual.get(first), "one");
+	}
+
+	@Test
+	public void getShouldReturnAbsentIfNotPresent() {
+		Assert.assertFalse(keyspace.get(genRandKey()).join().isPresent());
+	}
+
+	@Test
+	public void getsAllShouldReturnVersions() {
+		final String first = genRandKey();
+		keyspace.add(first, "one").join();
+
+		final Map<String, KeyValue> actual = keyspace.getsAll(Arrays.asList(first, genRandKey())).join();
+		Assert.assertEquals(actual.size(), 1);
+		Assert.assertEquals(actual.get(first), keyspace.gets(first).join().get());
+	}
+
+	@Test
+	public void getsShouldReturnIfPresent() {
+		final String key = genRandKey();
+		keyspace.add(key, "my awesome value").join();
+
+		final KeyValue actual = keyspace.gets(key).join().get();
+		Assert.assertEquals(actual.getKey(), key);
+		Assert.assertEquals(actual.getValue(), "my awesome value");
+	}
+
+	@Test
+	public void replacingExistingKeyWithSameValueShouldReturnFalse() {
+		final String key = genRandKey();
+		keyspace.add(key, "woot").join();
+		Assert.assertFalse(keyspace.replace(key, "woot").join());
+	}
+
+	@Test
+	public void setAllShouldStoreAllValues() {
+		final Map<String, String> values = new HashMap<>();
+		values.put(genRandKey(), "one");
+		values.put(genRandKey(), "two");
+		Assert.assertTrue(keyspace.setAll(values).join());
+		Assert.assertEquals(keyspace.getAll(values.keySet()).join(), values);
+	}
+
+	@Test
+	public void shouldBeAbleToDelete() {
+		final String key = genRandKey();
+		Assert.assertTrue(keyspace.add(key, "something").join());
+		Assert.assertTrue(keyspace.delete(key).join());
+		Assert.assertFalse(keyspace.delete(key).join());
+		Assert.assertFalse(keyspace.exists(key).join());
+	}
+
+	@Test
+	public void shouldBeAbleToDeletesWithVersion() {
+		final String key = genRandKey();
+		Assert.assertTrue(keyspace.set(key, "mine!").join());
+		final long version = keyspace.gets(key).join().get().getVersion();
+
+		Assert.assertTrue(keyspace.deletes(key, version).join());
+		Assert.assertFalse(keyspace.exists(key).join());
+	}
+
+	@Test
+	public void shouldBeAbleToReplaceExistingKey() {
+		final String key = genRandKey();
+		keyspace.add(key, "blah").join();
+		Assert.assertTrue(keyspace.replace(key, "something else").join());
+		Assert.assertEquals(keyspace.get(key).join().get(), "something else");
+	}
+
+	@Test(dataProvider = "shouldNotBeAbleToAddNullsData", expectedExceptions = NullPointerException.class)
+	public void shouldNotBeAbleToAddNulls(final String key, final String value) {
+		keyspace.add(key, value);
+		Assert.fail("Expected exception!");
+	}
+
+	@DataProvider
+	public Object[][] shouldNotBeAbleToAddNullsData() {
+		return new Object[][] { //
+				{ genRandKey(), null }, //
+				{ null, "something else" }, //
+				{ null, null } //
+		};
+	}
+
+	@Test(expectedExceptions = NullPointerException.class)
+	public void shouldNotBeAbleToDeleteNullKey() {
+		keyspace.delete(null);
+		Assert.fail("Should have thrown exception!");
+	}
+
+	@Test(expectedExceptions = NullPointerException.class)
+	public void shouldNotBeAbleToGetAllNullKeys() {
+		keyspace.getAll(null);
+		Assert.fail("Should have thrown exception!");
+	}
+
+	@Test(expectedExceptions = NullPointerException.class)
+	public void shouldNotBeAbleToGetNullKey() {
+		keyspace.get(null);
+		Assert.fail("Should have thrown exception!");
+	}
+
+	@Test(expectedExceptions = NullPointerException.class)
+	public void shouldNotBeAbleToGetsNullKey() {
+		keyspace.gets(null);
+		Assert.fail("Should have thrown exception!");
+	}
+
+	@Test
+	public void shouldNotBeAbleToReplaceNewKey() {
+		Assert.assertFalse(keyspace.replace(genRandKey(), "a value").join());
+	}
+
+	@Test(expectedExceptions = NullPointerException.class)
+	public void shouldNotBeAbleToSetAllNullValues() {
+		keyspace.setAll(null);
+		Assert.fail("Should have thrown exception!");
+	}
+
+	@Test(expectedExceptions = NullPointerException.class)
+	public void shouldNotBeAbleToSetNullValue() {
+		keyspace.set(genRandKey(), null);
+		Assert.fail("Should have thrown exception!");
+	}
+}
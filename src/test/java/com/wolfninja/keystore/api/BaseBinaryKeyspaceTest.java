@@ -0,0 +1,163 @@
+package com.wolfninja.keystore.api;
+
+import java.nio.ByteBuffer;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+@Test
+public abstract class BaseBinaryKeyspaceTest {
+
+	private static final byte[] ALL_BYTES = new byte[256];
+
+	static {
+		for (int i = 0; i < ALL_BYTES.length; i++)
+			ALL_BYTES[i] = (byte) i;
+	}
+
+	private BinaryKeyspace keyspace;
+
+	public BaseBinaryKeyspaceTest(final BinaryKeyspace keyspace) {
+		this.keyspace = keyspace;
+	}
+
+	@Test
+	public void addingAgainReturnsFalse() {
+		final String key = genRandKey();
+		Assert.assertTrue(keyspace.add(key, new byte[] { 1 }), "Should be able to add a new key");
+		Assert.assertFalse(keyspace.add(key, new byte[] { 2 }), "Should not be able to add with existing key");
+	}
+
+	@Test
+	public void allByteValuesShouldRoundTrip() {
+		final String key = genRandKey();
+		Assert.assertTrue(keyspace.set(key, ALL_BYTES));
+		Assert.assertEquals(keyspace.gets(key).get().getValueBytes(), ALL_BYTES);
+	}
+
+	@Test
+	public void byteBufferSliceShouldBeStoredWithoutMovingPosition() {
+		final String key = genRandKey();
+		final ByteBuffer buffer = ByteBuffer.allocateDirect(8);
+		buffer.put(new byte[] { 9, 8, 7, 6, 5, 4, 3, 2 });
+		buffer.position(2).limit(5);
+
+		Assert.assertTrue(keyspace.set(key, buffer));
+		Assert.assertEquals(buffer.position(), 2);
+		Assert.assertEquals(buffer.limit(), 5);
+		Assert.assertEquals(keyspace.get(key).get(), ByteBuffer.wrap(new byte[] { 7, 6, 5 }));
+	}
+
+	@Test
+	public void checkAndSetShouldReplaceWithSameVersion() {
+		final String key = genRandKey();
+		Assert.assertTrue(keyspace.set(key, new byte[] { 1 }));
+		final BinaryKeyValue inserted = keyspace.gets(key).get();
+
+		Assert.assertTrue(keyspace.checkAndSet(key, new byte[] { 2 }, inserted.getVersion()));
+		Assert.assertEquals(keyspace.gets(key).get().getValueBytes(), new byte[] { 2 });
+	}
+
+	@Test
+	public void checkAndSetShouldReturnFalseOnMismatch() {
+		final String key = genRandKey();
+		Assert.assertTrue(keyspace.set(key, new byte[] { 1 }));
+		final BinaryKeyValue inserted = keyspace.gets(key).get();
+
+		Assert.assertFalse(keyspace.checkAndSet(key, new byte[] { 2 }, inserted.getVersion() - 1L));
+		Assert.assertEquals(keyspace.gets(key).get(), inserted);
+	}
+
+	@Test
+	public void deletesShouldRequireMatchingVersion() {
+		final String key = genRandKey();
+		Assert.assertTrue(keyspace.set(key, new byte[] { 1 }));
+		final long version = keyspace.gets(key).get().getVersion();
+
+		Assert.assertFalse(keyspace.deletes(key, version - 1L));
+		Assert.assertTrue(keyspace.deletes(key, version));
+		Assert.assertFalse(keyspace.exists(key));
+	}
+
+	@Test
+	public void emptyValueShouldBeStored() {
+		final String key = genRandKey();
+		Assert.assertTrue(keyspace.add(key, new byte[0]));
+		Assert.assertTrue(keyspace.exists(key));
+		Assert.assertEquals(keyspace.get(key).get().remaining(), 0);
+	}
+
+	private String genRandKey() {
+		return UUID.randomUUID().toString();
+	}
+
+	@Test
+	public void getShouldReturnAbsentIfNotPresent() {
+		Assert.assertFalse(keyspace.get(genRandKey()).isPresent());
+		Assert.assertFalse(keyspace.gets(genRandKey()).isPresent());
+	}
+
+	@Test
+	public void getsShouldReturnDifferentVersionsIfChanged() {
+		final String key = genRandKey();
+		keyspace.add(key, new byte[] { 1 });
+		final long firstVersion = keyspace.gets(key).get().getVersion();
+
+		Assert.assertTrue(keyspace.replace(key, new byte[] { 2 }));
+		Assert.assertNotEquals(keyspace.gets(key).get().getVersion(), firstVersion);
+	}
+
+	@Test
+	public void returnedBuffersShouldBeReadOnly() {
+		final String key = genRandKey();
+		keyspace.add(key, new byte[] { 1 });
+		final Optional<ByteBuffer> actual = keyspace.get(key);
+		Assert.assertTrue(actual.get().isReadOnly());
+	}
+
+	@Test
+	public void replacingExistingKeyWithSameValueShouldReturnFalse() {
+		final String key = genRandKey();
+		keyspace.add(key, new byte[] { 1, 2 });
+		Assert.assertFalse(keyspace.replace(key, new byte[] { 1, 2 }));
+	}
+
+	@Test
+	public void shouldBeAbleToDelete() {
+		final String key = genRandKey();
+		Assert.assertTrue(keyspace.add(key, new byte[] { 1 }));
+		Assert.assertTrue(keyspace.delete(key));
+		Assert.assertFalse(keyspace.delete(key));
+		Assert.assertFalse(keyspace.exists(key));
+	}
+
+	@Test
+	public void shouldNotBeAbleToReplaceNewKey() {
+		Assert.assertFalse(keyspace.replace(genRandKey(), new byte[] { 1 }));
+	}
+
+	@Test(dataProvider = "shouldNotBeAbleToSetWithNullsData", expectedExceptions = NullPointerException.class)
+	public void shouldNotBeAbleToSetWithNulls(final String key, final ByteBuffer value) {
+		keyspace.set(key, value);
+		Assert.fail("Expected exception!");
+	}
+
+	@DataProvider
+	protected Object[][] shouldNotBeAbleToSetWithNullsData() {
+		return new Object[][] { //
+				{ null, ByteBuffer.allocate(1) }, //
+				{ genRandKey(), null }, //
+				{ null, null }, //
+		};
+	}
+
+	@Test(expectedExceptions = NullPointerException.class)
+	public void shouldNotBeAbleToGetNullKey() {
+		keyspace.get(null);
+		Assert.fail("Should have thrown exception!");
+	}
+}
@@ -0,0 +1,356 @@
+package com.wolfninja.keystore.api;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import org.testng.Assert;
+import org.testng.Reporter;
+import org.testng.annotations.Test;
+
+/**
+ * Races many threads over a small key set, checking invariants of the conditional writes and that recorded
+ * histories are linearizable, and reports throughput under contention
+ * <p>
+ * Histories are checked per key, since operations on different keys are independent, against a register holding one
+ * value or none. Every written value is unique, so the value read with a version identifies the write that version
+ * belongs to.
+ */
+@SuppressWarnings("javadoc")
+@Test
+public abstract class BaseConcurrentKeyspaceTest {
+
+	/**
+	 * Body of one racing thread
+	 */
+	@FunctionalInterface
+	private interface Racer {
+		void run(int thread) throws Exception;
+	}
+
+	private enum Kind {
+		ADD, CHECK_AND_SET, DELETE, DELETES, GET, REPLACE, SET
+	}
+
+	/**
+	 * Operation of a recorded history
+	 */
+	private static final class Call {
+		final Kind kind;
+		// Value written, if any
+		final String argument;
+		// Value read with the version passed to checkAndSet or deletes
+		final String expected;
+		final long invoked;
+		long returned;
+		// Boolean outcome of writes, or String value read, null if absent
+		Object result;
+
+		private Call(final Kind kind, final String argument, final String expected) {
+			this.kind = kind;
+			this.argument = argument;
+			this.expected = expected;
+			this.invoked = System.nanoTime();
+		}
+
+		private void returned(final Object result) {
+			this.result = result;
+			this.returned = System.nanoTime();
+		}
+
+		private boolean isLegal(final String state) {
+			switch (kind) {
+			case ADD:
+				return result.equals(state == null);
+			case CHECK_AND_SET:
+			case DELETES:
+				return result.equals(expected.equals(state));
+			case DELETE:
+				return result.equals(state != null);
+			case GET:
+				return Objects.equals(result, state);
+			case REPLACE:
+				return result.equals(state != null && !state.equals(argument));
+			default:
+				return true;
+			}
+		}
+
+		private String next(final String state) {
+			if (kind == Kind.GET || Boolean.FALSE.equals(result))
+				return state;
+			return kind == Kind.DELETE || kind == Kind.DELETES ? null : argument;
+		}
+
+		@Override
+		public String toString() {
+			return kind + "(" + (expected == null ? "" : expected + ", ") + (argument == null ? "" : argument) + ") = "
+					+ result;
+		}
+	}
+
+	private static final int THREADS = 8;
+	private static final int KEYS = 4;
+	private static final int ROUNDS = 200;
+	private static final int HISTORY_OPERATIONS = 16;
+	private static final int THROUGHPUT_OPERATIONS = 20_000;
+	private static final long TIMEOUT_SECONDS = 60L;
+
+	private Keyspace keyspace;
+
+	public BaseConcurrentKeyspaceTest(final Keyspace keyspace) {
+		this.keyspace = keyspace;
+	}
+
+	@Test
+	public void addShouldHaveExactlyOneWinner() throws Exception {
+		final List<String> keys = genRandKeys(ROUNDS);
+		final AtomicIntegerArray winners = new AtomicIntegerArray(ROUNDS);
+		final AtomicIntegerArray wins = new AtomicIntegerArray(ROUNDS);
+		race(THREADS, thread -> {
+			for (int i = 0; i < ROUNDS; i++)
+				if (keyspace.add(keys.get(i), "thread" + thread)) {
+					wins.incrementAndGet(i);
+					winners.set(i, thread);
+				}
+		});
+		for (int i = 0; i < ROUNDS; i++) {
+			Assert.assertEquals(wins.get(i), 1, "Winners of " + keys.get(i));
+			Assert.assertEquals(keyspace.get(keys.get(i)).get(), "thread" + winners.get(i));
+		}
+	}
+
+	@Test
+	public void checkAndSetShouldNotLoseUpdates() throws Exception {
+		final List<String> keys = genRandKeys(KEYS);
+		for (final String key : keys)
+			Assert.assertTrue(keyspace.set(key, "0"));
+		final AtomicLong conflicts = new AtomicLong();
+		race(THREADS, thread -> {
+			final long[] versions = new long[KEYS];
+			Arrays.fill(versions, Long.MIN_VALUE);
+			for (int i = 0; i < ROUNDS; i++) {
+				final int index = (thread + i) % KEYS;
+				while (true) {
+					final KeyValue current = keyspace.gets(keys.get(index)).get();
+					Assert.assertTrue(current.getVersion() >= versions[index], "Version went back on " + current);
+					versions[index] = current.getVersion();
+					final String next = Long.toString(Long.parseLong(current.getValue()) + 1L);
+					if (keyspace.checkAndSet(current.getKey(), next, current.getVersion())) {
+						// Our own write follows the version we replaced
+						versions[index]++;
+						break;
+					}
+					conflicts.incrementAndGet();
+				}
+			}
+		});
+		long total = 0L;
+		for (final String key : keys)
+			total += Long.parseLong(keyspace.get(key).get());
+		Assert.assertEquals(total, (long) THREADS * ROUNDS);
+		Reporter.log(getClass().getSimpleName() + ": " + conflicts.get() + " checkAndSet conflicts for " + total
+				+ " increments");
+	}
+
+	@Test
+	public void deletesShouldHaveExactlyOneWinner() throws Exception {
+		final List<String> keys = genRandKeys(ROUNDS);
+		final long[] versions = new long[ROUNDS];
+		for (int i = 0; i < ROUNDS; i++) {
+			Assert.assertTrue(keyspace.set(keys.get(i), "value"));
+			versions[i] = keyspace.gets(keys.get(i)).get().getVersion();
+		}
+		final AtomicIntegerArray wins = new AtomicIntegerArray(ROUNDS);
+		race(THREADS, thread -> {
+			for (int i = 0; i < ROUNDS; i++)
+				if (keyspace.deletes(keys.get(i), versions[i]))
+					wins.incrementAndGet(i);
+		});
+		for (int i = 0; i < ROUNDS; i++) {
+			Assert.assertEquals(wins.get(i), 1, "Winners of " + keys.get(i));
+			Assert.assertFalse(keyspace.exists(keys.get(i)));
+		}
+	}
+
+	@Test
+	public void replaceWithSameValueShouldHaveExactlyOneWinner() throws Exception {
+		final List<String> keys = genRandKeys(ROUNDS);
+		for (final String key : keys)
+			Assert.assertTrue(keyspace.set(key, "initial"));
+		final AtomicIntegerArray wins = new AtomicIntegerArray(ROUNDS);
+		race(THREADS, thread -> {
+			for (int i = 0; i < ROUNDS; i++)
+				if (keyspace.replace(keys.get(i), "replaced"))
+					wins.incrementAndGet(i);
+		});
+		for (int i = 0; i < ROUNDS; i++) {
+			Assert.assertEquals(wins.get(i), 1, "Winners of " + keys.get(i));
+			Assert.assertEquals(keyspace.get(keys.get(i)).get(), "replaced");
+		}
+	}
+
+	@Test
+	public void historiesShouldBeLinearizable() throws Exception {
+		final List<String> keys = genRandKeys(KEYS);
+		final List<List<Call>> histories = new ArrayList<>();
+		for (int i = 0; i < KEYS; i++)
+			histories.add(Collections.synchronizedList(new ArrayList<>()));
+		race(THREADS, thread -> {
+			final Random random = new Random(thread);
+			for (int i = 0; i < HISTORY_OPERATIONS; i++) {
+				final int index = random.nextInt(KEYS);
+				histories.get(index).addAll(call(keys.get(index), random.nextInt(6), thread + "-" + i));
+			}
+		});
+		for (int i = 0; i < KEYS; i++) {
+			final List<Call> history = new ArrayList<>(histories.get(i));
+			Assert.assertTrue(isLinearizable(history), "Not linearizable: " + history);
+		}
+	}
+
+	@Test
+	public void throughputShouldBeReportedUnderContention() throws Exception {
+		final List<String> keys = genRandKeys(KEYS);
+		for (final String key : keys)
+			Assert.assertTrue(keyspace.set(key, "0"));
+		for (final int threads : new int[] { 1, THREADS }) {
+			final long elapsed = race(threads, thread -> {
+				final Random random = new Random(thread);
+				for (int i = 0; i < THROUGHPUT_OPERATIONS / threads; i++) {
+					final String key = keys.get(random.nextInt(KEYS));
+					// Four reads for every conditional write
+					final KeyValue current = keyspace.gets(key).get();
+					if (i % 5 == 0)
+						keyspace.checkAndSet(key, Integer.toString(i), current.getVersion());
+				}
+			});
+			final long opsPerSecond = THROUGHPUT_OPERATIONS * TimeUnit.SECONDS.toNanos(1L) / Math.max(1L, elapsed);
+			Assert.assertTrue(opsPerSecond > 0L);
+			Reporter.log(getClass().getSimpleName() + ": " + threads + " threads on " + KEYS + " keys, "
+					+ opsPerSecond + " ops/s");
+		}
+	}
+
+	/**
+	 * Run an operation of the given choice on a key, recording it and the read it depends on
+	 */
+	private List<Call> call(final String key, final int choice, final String value) {
+		switch (choice) {
+		case 0:
+			return record(new Call(Kind.ADD, value, null), () -> keyspace.add(key, value));
+		case 1:
+			return record(new Call(Kind.SET, value, null), () -> keyspace.set(key, value));
+		case 2:
+			return record(new Call(Kind.REPLACE, value, null), () -> keyspace.replace(key, value));
+		case 3:
+			return record(new Call(Kind.DELETE, null, null), () -> keyspace.delete(key));
+		default:
+			final Call get = new Call(Kind.GET, null, null);
+			final Optional<KeyValue> current = keyspace.gets(key);
+			get.returned(current.map(KeyValue::getValue).orElse(null));
+			if (!current.isPresent())
+				return Collections.singletonList(get);
+			final String expected = current.get().getValue();
+			final long version = current.get().getVersion();
+			final List<Call> calls = new ArrayList<>(Arrays.asList(get));
+			if (choice == 4)
+				calls.addAll(record(new Call(Kind.CHECK_AND_SET, value, expected),
+						() -> keyspace.checkAndSet(key, value, version)));
+			else
+				calls.addAll(record(new Call(Kind.DELETES, null, expected), () -> keyspace.deletes(key, version)));
+			return calls;
+		}
+	}
+
+	private List<String> genRandKeys(final int count) {
+		final String prefix = UUID.randomUUID().toString() + ":";
+		final List<String> keys = new ArrayList<>();
+		for (int i = 0; i < count; i++)
+			keys.add(prefix + i);
+		return keys;
+	}
+
+	/**
+	 * Start the racers together, waiting for all of them
+	 *
+	 * @return long nanoseconds from start to the last racer done
+	 */
+	private static long race(final int threads, final Racer racer) throws Exception {
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		final CountDownLatch start = new CountDownLatch(1);
+		try {
+			final List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				final int thread = t;
+				futures.add(executor.submit(() -> {
+					start.await();
+					racer.run(thread);
+					return null;
+				}));
+			}
+			final long started = System.nanoTime();
+			start.countDown();
+			for (final Future<?> future : futures)
+				future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+			return System.nanoTime() - started;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static List<Call> record(final Call call, final BooleanSupplier operation) {
+		call.returned(operation.getAsBoolean());
+		return Collections.singletonList(call);
+	}
+
+	/**
+	 * Check that the calls can be ordered, each between its invocation and return, so that every result matches a
+	 * register going through them in that order
+	 */
+	private static boolean isLinearizable(final List<Call> history) {
+		history.sort(Comparator.comparingLong(call -> call.invoked));
+		return linearize(history, new BitSet(), null, new HashSet<>());
+	}
+
+	private static boolean linearize(final List<Call> history, final BitSet done, final String state,
+			final Set<List<Object>> visited) {
+		if (done.cardinality() == history.size())
+			return true;
+		if (!visited.add(Arrays.asList(done.clone(), state)))
+			return false;
+		// Only calls invoked before the earliest pending return can go next
+		long horizon = Long.MAX_VALUE;
+		for (int i = done.nextClearBit(0); i < history.size(); i = done.nextClearBit(i + 1))
+			horizon = Math.min(horizon, history.get(i).returned);
+		for (int i = done.nextClearBit(0); i < history.size(); i = done.nextClearBit(i + 1)) {
+			final Call call = history.get(i);
+			if (call.invoked > horizon)
+				break;
+			if (!call.isLegal(state))
+				continue;
+			done.set(i);
+			if (linearize(history, done, call.next(state), visited))
+				return true;
+			done.clear(i);
+		}
+		return false;
+	}
+}
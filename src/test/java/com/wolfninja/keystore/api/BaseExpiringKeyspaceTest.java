@@ -0,0 +1,158 @@
+package com.wolfninja.keystore.api;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+@Test
+public abstract class BaseExpiringKeyspaceTest {
+
+	private static final long TTL_MILLIS = 50L;
+	private static final long PAST_TTL_MILLIS = 200L;
+
+	private Keyspace keyspace;
+
+	public BaseExpiringKeyspaceTest(final Keyspace keyspace) {
+		this.keyspace = keyspace;
+	}
+
+	@Test
+	public void setWithTtlShouldExpire() throws InterruptedException {
+		final String key = genRandKey();
+		Assert.assertTrue(keyspace.set(key, "value", TTL_MILLIS, TimeUnit.MILLISECONDS));
+		Assert.assertEquals(keyspace.get(key).get(), "value");
+		Assert.assertTrue(keyspace.exists(key));
+
+		Thread.sleep(PAST_TTL_MILLIS);
+		Assert.assertFalse(keyspace.exists(key));
+		Assert.assertFalse(keyspace.get(key).isPresent());
+		Assert.assertFalse(keyspace.gets(key).isPresent());
+		Assert.assertFalse(keyspace.ttl(key).isPresent());
+		Assert.assertEquals(keyspace.scan(key).count(), 0L);
+	}
+
+	@Test
+	public void valueShouldNotExpireBeforeTtl() {
+		final String key = genRandKey();
+		Assert.assertTrue(keyspace.set(key, "value", 1L, TimeUnit.HOURS));
+		Assert.assertEquals(keyspace.get(key).get(), "value");
+		Assert.assertEquals(keyspace.scan(key).count(), 1L);
+	}
+
+	@Test
+	public void addShouldSucceedOverExpiredValue() throws InterruptedException {
+		final String key = genRandKey();
+		Assert.assertTrue(keyspace.add(key, "first", TTL_MILLIS, TimeUnit.MILLISECONDS));
+		Assert.assertFalse(keyspace.add(key, "second"));
+
+		Thread.sleep(PAST_TTL_MILLIS);
+		Assert.assertTrue(keyspace.add(key, "third"));
+		Assert.assertEquals(keyspace.get(key).get(), "third");
+		Assert.assertEquals(keyspace.ttl(key).get(), Keyspace.NO_EXPIRY);
+	}
+
+	@Test
+	public void conditionalWritesShouldFailOnExpiredValue() throws InterruptedException {
+		final String key = genRandKey();
+		Assert.assertTrue(keyspace.set(key, "value", TTL_MILLIS, TimeUnit.MILLISECONDS));
+		final long version = keyspace.gets(key).get().getVersion();
+
+		Thread.sleep(PAST_TTL_MILLIS);
+		Assert.assertFalse(keyspace.replace(key, "other"));
+		Assert.assertFalse(keyspace.checkAndSet(key, "other", version));
+		Assert.assertFalse(keyspace.deletes(key, version));
+		Assert.assertFalse(keyspace.delete(key));
+		Assert.assertFalse(keyspace.exists(key));
+	}
+
+	@Test
+	public void replaceAndCheckAndSetShouldSetTtl() {
+		final String key = genRandKey();
+		Assert.assertTrue(keyspace.set(key, "first"));
+		Assert.assertTrue(keyspace.replace(key, "second", 1L, TimeUnit.HOURS));
+		final KeyValue replaced = keyspace.gets(key).get();
+		Assert.assertEquals(replaced.getValue(), "second");
+		assertExpiresWithin(key, Duration.ofHours(1L));
+
+		Assert.assertTrue(keyspace.checkAndSet(key, "third", replaced.getVersion(), 1L, TimeUnit.MINUTES));
+		Assert.assertEquals(keyspace.get(key).get(), "third");
+		assertExpiresWithin(key, Duration.ofMinutes(1L));
+	}
+
+	@Test
+	public void writeWithoutTtlShouldClearExpiry() throws InterruptedException {
+		final String key = genRandKey();
+		Assert.assertTrue(keyspace.set(key, "value", TTL_MILLIS, TimeUnit.MILLISECONDS));
+		Assert.assertTrue(keyspace.set(key, "kept"));
+
+		Thread.sleep(PAST_TTL_MILLIS);
+		Assert.assertEquals(keyspace.get(key).get(), "kept");
+		Assert.assertEquals(keyspace.ttl(key).get(), Keyspace.NO_EXPIRY);
+	}
+
+	@Test
+	public void ttlShouldReturnRemainingTime() {
+		final String key = genRandKey();
+		Assert.assertTrue(keyspace.set(key, "value", 10L, TimeUnit.MINUTES));
+		assertExpiresWithin(key, Duration.ofMinutes(10L));
+	}
+
+	@Test
+	public void ttlShouldBeEmptyForMissingKey() {
+		Assert.assertEquals(keyspace.ttl(genRandKey()), Optional.empty());
+	}
+
+	@Test
+	public void versionShouldIncreaseAfterExpiry() throws InterruptedException {
+		final String key = genRandKey();
+		Assert.assertTrue(keyspace.add(key, "first", TTL_MILLIS, TimeUnit.MILLISECONDS));
+		final long first = keyspace.gets(key).get().getVersion();
+
+		Thread.sleep(PAST_TTL_MILLIS);
+		Assert.assertTrue(keyspace.add(key, "second"));
+		Assert.assertTrue(keyspace.gets(key).get().getVersion() > first);
+	}
+
+	@Test
+	public void counterShouldKeepTtlAndRestartAfterExpiry() throws InterruptedException {
+		final String key = genRandKey();
+		Assert.assertTrue(keyspace.set(key, "5", TTL_MILLIS, TimeUnit.MILLISECONDS));
+		Assert.assertEquals(keyspace.increment(key), 6L);
+		Assert.assertNotEquals(keyspace.ttl(key).get(), Keyspace.NO_EXPIRY);
+
+		Thread.sleep(PAST_TTL_MILLIS);
+		Assert.assertFalse(keyspace.exists(key));
+		Assert.assertEquals(keyspace.increment(key), 1L);
+		Assert.assertEquals(keyspace.ttl(key).get(), Keyspace.NO_EXPIRY);
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void shouldNotBeAbleToSetZeroTtl() {
+		keyspace.set(genRandKey(), "value", 0L, TimeUnit.SECONDS);
+	}
+
+	@Test(expectedExceptions = NullPointerException.class)
+	public void shouldNotBeAbleToSetNullUnit() {
+		keyspace.set(genRandKey(), "value", 1L, null);
+	}
+
+	@Test(expectedExceptions = NullPointerException.class)
+	public void shouldNotBeAbleToGetTtlOfNullKey() {
+		keyspace.ttl(null);
+	}
+
+	private void assertExpiresWithin(final String key, final Duration limit) {
+		final Duration remaining = keyspace.ttl(key).get();
+		Assert.assertTrue(remaining.compareTo(limit) <= 0, remaining.toString());
+		Assert.assertTrue(remaining.compareTo(limit.minusSeconds(10L)) > 0, remaining.toString());
+	}
+
+	private String genRandKey() {
+		return UUID.randomUUID().toString();
+	}
+}
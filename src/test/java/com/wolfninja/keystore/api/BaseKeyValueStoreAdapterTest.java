@@ -19,6 +19,22 @@ public abstract class BaseKeyValueStoreAdapterTest {
 		Assert.assertNotNull(actual);
 	}
 
+	@Test
+	public void scanFeaturesShouldMatchKeyspace() {
+		final Keyspace keyspace = adapter.getKeyspace("myKeyspace");
+		if (adapter.getScanFeatures().contains(ScanFeature.SCAN)) {
+			Assert.assertTrue(keyspace.set("scanned", "value"));
+			Assert.assertEquals(keyspace.scan("scan").map(KeyValue::getKey).toArray(), new Object[] { "scanned" });
+		} else {
+			try {
+				keyspace.stream();
+				Assert.fail("Expected exception!");
+			} catch (final UnsupportedOperationException e) {
+				// Expected
+			}
+		}
+	}
+
 	@Test(expectedExceptions = NullPointerException.class)
 	public void getKeyspaceNonNullable() {
 		adapter.getKeyspace(null);
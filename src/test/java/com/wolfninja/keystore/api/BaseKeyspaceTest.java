@@ -1,7 +1,14 @@
 package com.wolfninja.keystore.api;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.testng.Assert;
 import org.testng.annotations.DataProvider;
@@ -79,6 +86,25 @@ public abstract class BaseKeyspaceTest {
 		Assert.assertFalse(keyspace.exists(key));
 	}
 
+	@Test
+	public void deleteAllShouldDeleteExistingKeys() {
+		final String first = genRandKey();
+		final String second = genRandKey();
+		final String missing = genRandKey();
+		Assert.assertTrue(keyspace.add(first, "one"));
+		Assert.assertTrue(keyspace.add(second, "two"));
+
+		Assert.assertEquals(keyspace.deleteAll(Arrays.asList(first, second, missing)), 2);
+		Assert.assertFalse(keyspace.exists(first));
+		Assert.assertFalse(keyspace.exists(second));
+		Assert.assertEquals(keyspace.deleteAll(Arrays.asList(first, second)), 0);
+	}
+
+	@Test
+	public void deleteAllWithNoKeysShouldDeleteNothing() {
+		Assert.assertEquals(keyspace.deleteAll(Collections.emptyList()), 0);
+	}
+
 	@Test
 	public void deletesNewKeyShouldReturnFalse() {
 		final String key = genRandKey();
@@ -130,6 +156,26 @@ public abstract class BaseKeyspaceTest {
 		return UUID.randomUUID().toString();
 	}
 
+	@Test
+	public void getAllShouldReturnOnlyPresentKeys() {
+		final String first = genRandKey();
+		final String second = genRandKey();
+		final String missing = genRandKey();
+		keyspace.add(first, "one");
+		keyspace.add(second, "two");
+
+		final Map<String, String> actual = keyspace.getAll(Arrays.asList(first, second, missing));
+		Assert.assertEquals(actual.size(), 2);
+		Assert.assertEquals(actual.get(first), "one");
+		Assert.assertEquals(actual.get(second), "two");
+		Assert.assertFalse(actual.containsKey(missing));
+	}
+
+	@Test
+	public void getAllWithNoKeysShouldReturnEmpty() {
+		Assert.assertTrue(keyspace.getAll(Collections.emptyList()).isEmpty());
+	}
+
 	@Test
 	public void getShouldReturnAbsentIfDeleted() {
 		final String key = genRandKey();
@@ -157,6 +203,53 @@ public abstract class BaseKeyspaceTest {
 		Assert.assertEquals(actual.get(), "my awesome value");
 	}
 
+	@Test
+	public void getsAllShouldReturnVersions() {
+		final String first = genRandKey();
+		final String second = genRandKey();
+		final String missing = genRandKey();
+		keyspace.add(first, "one");
+		keyspace.add(second, "two");
+
+		final Map<String, KeyValue> actual = keyspace.getsAll(Arrays.asList(first, second, missing));
+		Assert.assertEquals(actual.size(), 2);
+		Assert.assertEquals(actual.get(first), keyspace.gets(first).get());
+		Assert.assertEquals(actual.get(second), keyspace.gets(second).get());
+		Assert.assertFalse(actual.containsKey(missing));
+
+		// Versions from bulk get should be usable for check and set
+		Assert.assertTrue(keyspace.checkAndSet(first, "uno", actual.get(first).getVersion()));
+		Assert.assertEquals(keyspace.get(first).get(), "uno");
+	}
+
+	@Test
+	public void getsAllWithConsumerShouldMatchGetsAll() {
+		final String first = genRandKey();
+		final String second = genRandKey();
+		final String missing = genRandKey();
+		keyspace.add(first, "one");
+		keyspace.add(second, "two");
+
+		final Map<String, KeyValue> actual = new HashMap<>();
+		final int found = keyspace.getsAll(Arrays.asList(first, second, missing),
+				(key, value, version) -> actual.put(key, KeyValue.create(key, value, version)));
+		Assert.assertEquals(found, 2);
+		Assert.assertEquals(actual, keyspace.getsAll(Arrays.asList(first, second, missing)));
+	}
+
+	@Test
+	public void getsWithConsumerShouldMatchGets() {
+		final String key = genRandKey();
+		final KeyValueHolder holder = new KeyValueHolder();
+		Assert.assertFalse(keyspace.gets(key, holder));
+		Assert.assertFalse(holder.isPresent());
+
+		keyspace.add(key, "something awesome");
+		Assert.assertTrue(keyspace.gets(key, holder));
+		Assert.assertEquals(holder.toKeyValue(), keyspace.gets(key).get());
+		Assert.assertTrue(keyspace.checkAndSet(key, "something else", holder.getVersion()));
+	}
+
 	@Test
 	public void getsShouldReturnAbsentIfDeleted() {
 		final String key = genRandKey();
@@ -210,6 +303,19 @@ public abstract class BaseKeyspaceTest {
 		Assert.assertEquals(keyspace.get(key).get(), value);
 	}
 
+	@Test
+	public void setAllShouldStoreAllValues() {
+		final String existing = genRandKey();
+		final String fresh = genRandKey();
+		keyspace.add(existing, "old");
+
+		final Map<String, String> values = new HashMap<>();
+		values.put(existing, "new");
+		values.put(fresh, "fresh");
+		Assert.assertTrue(keyspace.setAll(values));
+		Assert.assertEquals(keyspace.getAll(values.keySet()), values);
+	}
+
 	@Test
 	public void setShouldAllowExistingKeys() {
 		final String key = genRandKey();
@@ -323,6 +429,12 @@ public abstract class BaseKeyspaceTest {
 		Assert.assertFalse(keyspace.exists(null));
 	}
 
+	@Test(expectedExceptions = NullPointerException.class)
+	public void shouldNotBeAbleToDeleteAllNullKeys() {
+		keyspace.deleteAll(null);
+		Assert.fail("Should have thrown exception!");
+	}
+
 	@Test(expectedExceptions = NullPointerException.class)
 	public void shouldNotBeAbleToDeleteNullKey() {
 		keyspace.delete(null);
@@ -335,12 +447,30 @@ public abstract class BaseKeyspaceTest {
 		Assert.fail("Should have thrown exception!");
 	}
 
+	@Test(expectedExceptions = NullPointerException.class)
+	public void shouldNotBeAbleToGetAllNullKeys() {
+		keyspace.getAll(null);
+		Assert.fail("Should have thrown exception!");
+	}
+
+	@Test(expectedExceptions = NullPointerException.class)
+	public void shouldNotBeAbleToGetAllWithNullKey() {
+		keyspace.getAll(Arrays.asList(genRandKey(), null));
+		Assert.fail("Should have thrown exception!");
+	}
+
 	@Test(expectedExceptions = NullPointerException.class)
 	public void shouldNotBeAbleToGetNullKey() {
 		keyspace.get(null);
 		Assert.fail("Should have thrown exception!");
 	}
 
+	@Test(expectedExceptions = NullPointerException.class)
+	public void shouldNotBeAbleToGetsAllNullKeys() {
+		keyspace.getsAll(null);
+		Assert.fail("Should have thrown exception!");
+	}
+
 	@Test(expectedExceptions = NullPointerException.class)
 	public void shouldNotBeAbleToGetsNullKey() {
 		keyspace.gets(null);
@@ -367,6 +497,91 @@ public abstract class BaseKeyspaceTest {
 		};
 	}
 
+	@Test
+	public void incrementShouldStartFromZero() {
+		final String key = genRandKey();
+		Assert.assertEquals(keyspace.increment(key), 1L);
+		Assert.assertEquals(keyspace.increment(key), 2L);
+		Assert.assertEquals(keyspace.decrement(key), 1L);
+		Assert.assertEquals(keyspace.get(key).get(), "1");
+	}
+
+	@Test
+	public void addAndGetShouldAddToStoredNumber() {
+		final String key = genRandKey();
+		Assert.assertTrue(keyspace.set(key, "-40"));
+		final long version = keyspace.gets(key).get().getVersion();
+		Assert.assertEquals(keyspace.addAndGet(key, 42L), 2L);
+		Assert.assertEquals(keyspace.addAndGet(key, -5L), -3L);
+
+		final KeyValue actual = keyspace.gets(key).get();
+		Assert.assertEquals(actual.getValue(), "-3");
+		Assert.assertNotEquals(actual.getVersion(), version);
+		Assert.assertTrue(keyspace.checkAndSet(key, "10", actual.getVersion()));
+		Assert.assertEquals(keyspace.increment(key), 11L);
+	}
+
+	@Test
+	public void concurrentIncrementsShouldNotBeLost() throws Exception {
+		final String key = genRandKey();
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			final Future<?>[] futures = new Future<?>[4];
+			for (int i = 0; i < futures.length; i++)
+				futures[i] = executor.submit(() -> {
+					for (int j = 0; j < 250; j++)
+						keyspace.increment(key);
+				});
+			for (final Future<?> future : futures)
+				future.get();
+		} finally {
+			executor.shutdown();
+		}
+		Assert.assertEquals(keyspace.get(key).get(), "1000");
+	}
+
+	@Test
+	public void versionShouldMatchGets() {
+		final String key = genRandKey();
+		Assert.assertFalse(keyspace.version(key).isPresent());
+		keyspace.add(key, "something awesome");
+		final long version = keyspace.version(key).getAsLong();
+		Assert.assertEquals(version, keyspace.gets(key).get().getVersion());
+		Assert.assertTrue(keyspace.checkAndSet(key, "something else", version));
+		Assert.assertNotEquals(keyspace.version(key).getAsLong(), version);
+	}
+
+	@Test(expectedExceptions = IllegalStateException.class)
+	public void shouldNotBeAbleToIncrementNonNumber() {
+		final String key = genRandKey();
+		Assert.assertTrue(keyspace.set(key, "12a"));
+		keyspace.increment(key);
+	}
+
+	@Test
+	public void overflowingIncrementShouldKeepValue() {
+		final String key = genRandKey();
+		Assert.assertTrue(keyspace.set(key, Long.toString(Long.MAX_VALUE)));
+		try {
+			keyspace.increment(key);
+			Assert.fail("Should have thrown exception!");
+		} catch (final ArithmeticException e) {
+			Assert.assertEquals(keyspace.get(key).get(), Long.toString(Long.MAX_VALUE));
+		}
+		Assert.assertEquals(keyspace.decrement(key), Long.MAX_VALUE - 1L);
+	}
+
+	@Test(expectedExceptions = NullPointerException.class)
+	public void shouldNotBeAbleToIncrementNullKey() {
+		keyspace.increment(null);
+	}
+
+	@Test(expectedExceptions = NullPointerException.class)
+	public void shouldNotBeAbleToSetAllNullValues() {
+		keyspace.setAll(null);
+		Assert.fail("Should have thrown exception!");
+	}
+
 	@Test(dataProvider = "shouldNotBeAbleToSetWithNullsData", expectedExceptions = NullPointerException.class)
 	public void shouldNotBeAbleToSetWithNulls(final String key, final String value) {
 		keyspace.set(key, value);
@@ -0,0 +1,132 @@
+package com.wolfninja.keystore.api;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+@Test
+public abstract class BaseScanKeyspaceTest extends BaseKeyspaceTest {
+
+	private Keyspace keyspace;
+
+	public BaseScanKeyspaceTest(final Keyspace keyspace) {
+		super(keyspace);
+		this.keyspace = keyspace;
+	}
+
+	@Test
+	public void scanShouldReturnOnlyPrefixedEntries() {
+		final String prefix = genRandPrefix();
+		Assert.assertTrue(keyspace.set(prefix + "a", "1"));
+		Assert.assertTrue(keyspace.set(prefix + "b", "2"));
+		Assert.assertTrue(keyspace.set(prefix + "c", "3"));
+		Assert.assertTrue(keyspace.delete(prefix + "c"));
+		Assert.assertTrue(keyspace.set(prefix.substring(1) + "d", "4"));
+
+		final Map<String, KeyValue> actual = keyspace.scan(prefix)
+				.collect(Collectors.toMap(KeyValue::getKey, keyValue -> keyValue));
+		Assert.assertEquals(actual.keySet(), new HashSet<>(Arrays.asList(prefix + "a", prefix + "b")));
+		Assert.assertEquals(actual.get(prefix + "a"), keyspace.gets(prefix + "a").get());
+		Assert.assertEquals(actual.get(prefix + "b"), keyspace.gets(prefix + "b").get());
+	}
+
+	@Test
+	public void scanShouldReturnNothingForUnknownPrefix() {
+		Assert.assertEquals(keyspace.scan(genRandPrefix()).count(), 0L);
+	}
+
+	@Test
+	public void streamShouldReturnAllEntries() {
+		final String prefix = genRandPrefix();
+		Assert.assertTrue(keyspace.set(prefix + "a", "1"));
+		Assert.assertTrue(keyspace.set(prefix + "b", "2"));
+		final Set<String> actual = keyspace.stream().map(KeyValue::getKey).collect(Collectors.toSet());
+		Assert.assertTrue(actual.contains(prefix + "a"));
+		Assert.assertTrue(actual.contains(prefix + "b"));
+	}
+
+	@Test
+	public void parallelScanShouldMatchSequentialScan() {
+		final String prefix = genRandPrefix();
+		final Map<String, String> values = new HashMap<>();
+		for (int i = 0; i < 2_000; i++)
+			values.put(prefix + i, "value" + i);
+		Assert.assertTrue(keyspace.setAll(values));
+
+		final List<KeyValue> sequential = keyspace.scan(prefix).collect(Collectors.toList());
+		final List<KeyValue> parallel = keyspace.scan(prefix).parallel().collect(Collectors.toList());
+		Assert.assertEquals(sequential.size(), values.size());
+		Assert.assertEquals(parallel.size(), values.size());
+		Assert.assertEquals(new HashSet<>(parallel), new HashSet<>(sequential));
+		Assert.assertEquals(
+				parallel.stream().collect(Collectors.toMap(KeyValue::getKey, KeyValue::getValue)), values);
+	}
+
+	@Test
+	public void scanShouldSeeStableEntriesUnderConcurrentWrites() throws Exception {
+		final String prefix = genRandPrefix();
+		final int stable = 500;
+		for (int i = 0; i < stable; i++)
+			Assert.assertTrue(keyspace.set(prefix + "stable" + i, "v"));
+		for (int i = 0; i < 200; i++)
+			Assert.assertTrue(keyspace.set(prefix + "gone" + i, "g"));
+		for (int i = 0; i < 200; i++)
+			Assert.assertTrue(keyspace.delete(prefix + "gone" + i));
+
+		final AtomicBoolean running = new AtomicBoolean(true);
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		final Future<?> writer = executor.submit(() -> {
+			for (int i = 0; running.get(); i++) {
+				final String churn = prefix + "churn" + i % 300;
+				if (i % 3 == 0)
+					keyspace.delete(churn);
+				else
+					keyspace.set(churn, "c" + i);
+				keyspace.set(prefix + "stable" + i % stable, "v" + i);
+			}
+			return null;
+		});
+		try {
+			for (int round = 0; round < 10; round++) {
+				final Stream<KeyValue> scan = keyspace.scan(prefix);
+				final List<KeyValue> actual = (round % 2 == 0 ? scan : scan.parallel()).collect(Collectors.toList());
+				final Set<String> keys = new HashSet<>();
+				for (final KeyValue keyValue : actual) {
+					keys.add(keyValue.getKey());
+					final boolean isStable = keyValue.getKey().startsWith(prefix + "stable");
+					Assert.assertTrue(isStable || keyValue.getKey().startsWith(prefix + "churn"), keyValue.getKey());
+					Assert.assertTrue(keyValue.getValue().startsWith(isStable ? "v" : "c"), keyValue.toString());
+				}
+				for (int i = 0; i < stable; i++)
+					Assert.assertTrue(keys.contains(prefix + "stable" + i), "Missing stable" + i);
+			}
+		} finally {
+			running.set(false);
+			executor.shutdown();
+		}
+		writer.get();
+	}
+
+	@Test(expectedExceptions = NullPointerException.class)
+	public void shouldNotBeAbleToScanNullPrefix() {
+		keyspace.scan(null);
+	}
+
+	private String genRandPrefix() {
+		return UUID.randomUUID().toString() + ":";
+	}
+}
@@ -0,0 +1,201 @@
+package com.wolfninja.keystore.api;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Checks that {@link Keyspace#watch(Watch)} publishes every successful write, in order, with backpressure
+ */
+@SuppressWarnings("javadoc")
+@Test
+public abstract class BaseWatchKeyspaceTest {
+
+	private static final int THREADS = 4;
+	private static final int WRITES = 250;
+	private static final long TIMEOUT_SECONDS = 60L;
+
+	private Keyspace keyspace;
+
+	public BaseWatchKeyspaceTest(final Keyspace keyspace) {
+		this.keyspace = keyspace;
+	}
+
+	@Test
+	public void cancelShouldStopDelivery() throws Exception {
+		final String key = genRandKey();
+		final RecordingChangeSubscriber subscriber = subscribe(Watch.key(key).build(), Long.MAX_VALUE);
+		Assert.assertTrue(keyspace.set(key, "one"));
+		Assert.assertEquals(subscriber.next().getValue().get(), "one");
+		subscriber.getSubscription().cancel();
+		Assert.assertTrue(keyspace.set(key, "two"));
+		subscriber.assertQuiet();
+	}
+
+	@Test
+	public void coalescingShouldKeepLatestChangeOfKey() throws Exception {
+		final String key = genRandKey();
+		final RecordingChangeSubscriber subscriber = subscribe(Watch.key(key).bufferSize(1).coalescing(true).build(),
+				0L);
+		for (int i = 0; i < 10; i++)
+			Assert.assertTrue(keyspace.set(key, "value" + i));
+		subscriber.getSubscription().request(Long.MAX_VALUE);
+		final ChangeEvent event = subscriber.next();
+		Assert.assertEquals(event.getValue().get(), "value9");
+		Assert.assertEquals(event.getVersion(), keyspace.gets(key).get().getVersion());
+		subscriber.assertQuiet();
+	}
+
+	@Test
+	public void concurrentWritesShouldBePublishedInVersionOrder() throws Exception {
+		final String key = genRandKey();
+		final RecordingChangeSubscriber subscriber = subscribe(Watch.key(key).bufferSize(THREADS * WRITES).build(),
+				Long.MAX_VALUE);
+		final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			final List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < THREADS; t++) {
+				final int thread = t;
+				futures.add(executor.submit(() -> {
+					for (int i = 0; i < WRITES; i++)
+						Assert.assertTrue(keyspace.set(key, thread + "-" + i));
+				}));
+			}
+			for (final Future<?> future : futures)
+				future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		} finally {
+			executor.shutdownNow();
+		}
+		ChangeEvent previous = null;
+		for (int i = 0; i < THREADS * WRITES; i++) {
+			final ChangeEvent event = subscriber.next();
+			if (previous != null)
+				Assert.assertTrue(event.getVersion() > previous.getVersion(), event.getVersion() + " after "
+						+ previous.getVersion());
+			previous = event;
+		}
+		Assert.assertEquals(previous.getKeyValue().get(), keyspace.gets(key).get());
+	}
+
+	@Test
+	public void counterShouldBePublished() throws Exception {
+		final String key = genRandKey();
+		final RecordingChangeSubscriber subscriber = subscribe(Watch.key(key).build(), Long.MAX_VALUE);
+		Assert.assertEquals(keyspace.addAndGet(key, 5L), 5L);
+		final ChangeEvent event = subscriber.next();
+		Assert.assertEquals(event.getType(), ChangeEvent.Type.COUNTER);
+		Assert.assertEquals(event.getValue().get(), "5");
+		Assert.assertEquals(event.getKeyValue().get(), keyspace.gets(key).get());
+	}
+
+	@Test
+	public void failedWritesShouldNotBePublished() throws Exception {
+		final String key = genRandKey();
+		Assert.assertTrue(keyspace.set(key, "value"));
+		final long version = keyspace.gets(key).get().getVersion();
+		final RecordingChangeSubscriber subscriber = subscribe(Watch.key(key).build(), Long.MAX_VALUE);
+		Assert.assertFalse(keyspace.add(key, "other"));
+		Assert.assertFalse(keyspace.checkAndSet(key, "other", version + 1L));
+		Assert.assertFalse(keyspace.deletes(key, version + 1L));
+		Assert.assertFalse(keyspace.delete(genRandKey()));
+		Assert.assertFalse(keyspace.replace(genRandKey(), "other"));
+		Assert.assertTrue(keyspace.set(key, "last"));
+		Assert.assertEquals(subscriber.next().getValue().get(), "last");
+		subscriber.assertQuiet();
+	}
+
+	@Test
+	public void keyWatchShouldPublishEveryWrite() throws Exception {
+		final String key = genRandKey();
+		final RecordingChangeSubscriber subscriber = subscribe(Watch.key(key).build(), Long.MAX_VALUE);
+
+		Assert.assertTrue(keyspace.add(key, "added"));
+		assertWritten(subscriber.next(), ChangeEvent.Type.ADD, key);
+		Assert.assertTrue(keyspace.set(key, "set"));
+		assertWritten(subscriber.next(), ChangeEvent.Type.SET, key);
+		Assert.assertTrue(keyspace.replace(key, "replaced"));
+		assertWritten(subscriber.next(), ChangeEvent.Type.REPLACE, key);
+		final long version = keyspace.gets(key).get().getVersion();
+		Assert.assertTrue(keyspace.checkAndSet(key, "checked", version));
+		assertWritten(subscriber.next(), ChangeEvent.Type.CHECK_AND_SET, key);
+
+		final long deleted = keyspace.gets(key).get().getVersion();
+		Assert.assertTrue(keyspace.delete(key));
+		final ChangeEvent event = subscriber.next();
+		Assert.assertEquals(event, ChangeEvent.create(ChangeEvent.Type.DELETE, key, null, deleted));
+		Assert.assertFalse(event.getKeyValue().isPresent());
+
+		Assert.assertTrue(keyspace.set(key, "again"));
+		assertWritten(subscriber.next(), ChangeEvent.Type.SET, key);
+		Assert.assertTrue(keyspace.deletes(key, keyspace.gets(key).get().getVersion()));
+		Assert.assertEquals(subscriber.next().getType(), ChangeEvent.Type.DELETE);
+	}
+
+	@Test
+	public void prefixWatchShouldIgnoreOtherKeys() throws Exception {
+		final String prefix = genRandKey() + ":";
+		final RecordingChangeSubscriber subscriber = subscribe(Watch.prefix(prefix).build(), Long.MAX_VALUE);
+		Assert.assertTrue(keyspace.set(genRandKey(), "other"));
+		Assert.assertTrue(keyspace.set(prefix + "a", "a"));
+		Assert.assertTrue(keyspace.set(prefix + "b", "b"));
+		// Changes of different keys may arrive in any order, such as from different shards
+		final Set<String> keys = new HashSet<>();
+		keys.add(subscriber.next().getKey());
+		keys.add(subscriber.next().getKey());
+		Assert.assertEquals(keys, new HashSet<>(Arrays.asList(prefix + "a", prefix + "b")));
+		subscriber.assertQuiet();
+	}
+
+	@Test
+	public void requestShouldLimitDelivery() throws Exception {
+		final String key = genRandKey();
+		final RecordingChangeSubscriber subscriber = subscribe(Watch.key(key).build(), 1L);
+		for (int i = 0; i < 3; i++)
+			Assert.assertTrue(keyspace.set(key, "value" + i));
+		Assert.assertEquals(subscriber.next().getValue().get(), "value0");
+		subscriber.assertQuiet();
+		subscriber.getSubscription().request(2L);
+		Assert.assertEquals(subscriber.next().getValue().get(), "value1");
+		Assert.assertEquals(subscriber.next().getValue().get(), "value2");
+	}
+
+	@Test
+	public void slowSubscriberShouldFail() throws Exception {
+		final String key = genRandKey();
+		final RecordingChangeSubscriber subscriber = subscribe(Watch.key(key).bufferSize(2).build(), 0L);
+		for (int i = 0; i < 3; i++)
+			Assert.assertTrue(keyspace.set(key, "value" + i));
+		Assert.assertTrue(subscriber.awaitError() instanceof IllegalStateException);
+		subscriber.assertQuiet();
+	}
+
+	@Test(expectedExceptions = NullPointerException.class)
+	public void watchNotNullableTest() {
+		keyspace.watch(null);
+	}
+
+	private void assertWritten(final ChangeEvent event, final ChangeEvent.Type type, final String key) {
+		Assert.assertEquals(event.getType(), type);
+		Assert.assertEquals(event.getKeyValue().get(), keyspace.gets(key).get());
+	}
+
+	private RecordingChangeSubscriber subscribe(final Watch watch, final long request) {
+		final RecordingChangeSubscriber subscriber = new RecordingChangeSubscriber(request);
+		keyspace.watch(watch).subscribe(subscriber);
+		return subscriber;
+	}
+
+	private static String genRandKey() {
+		return UUID.randomUUID().toString();
+	}
+}
@@ -0,0 +1,20 @@
+package com.wolfninja.keystore.api;
+
+import org.testng.annotations.Test;
+
+import com.wolfninja.keystore.memory.MemoryAdapter;
+
+/**
+ * Runs the keyspace contract against {@code BinaryBackedKeyspace}, layered over {@code StringBackedBinaryKeyspace}
+ */
+@Test
+public class BinaryBackedKeyspaceTest extends BaseKeyspaceTest {
+
+	/**
+	 * Run the contract against a UTF-8 String layer over a binary view of a new in-memory keyspace
+	 */
+	public BinaryBackedKeyspaceTest() {
+		super(BinaryBackedKeyspace
+				.create(StringBackedBinaryKeyspace.create(MemoryAdapter.create().getKeyspace("test"))));
+	}
+}
@@ -0,0 +1,73 @@
+package com.wolfninja.keystore.api;
+
+import java.nio.ByteBuffer;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for {@code BinaryKeyValue}
+ */
+@Test
+public class BinaryKeyValueTest {
+
+	/**
+	 * Test static create method
+	 */
+	@Test
+	public void createTest() {
+		final BinaryKeyValue actual = BinaryKeyValue.create("key", new byte[] { 1, 2, 3 }, 44L);
+
+		Assert.assertEquals(actual.getKey(), "key");
+		Assert.assertEquals(actual.getValueBytes(), new byte[] { 1, 2, 3 });
+		Assert.assertEquals(actual.getValueLength(), 3);
+		Assert.assertEquals(actual.getVersion(), 44L);
+	}
+
+	/**
+	 * Test that the value is a read-only view of the buffer's remaining bytes
+	 */
+	@Test
+	public void valueViewTest() {
+		final ByteBuffer buffer = ByteBuffer.wrap(new byte[] { 1, 2, 3, 4 });
+		buffer.position(1);
+		final BinaryKeyValue actual = BinaryKeyValue.create("key", buffer, 1L);
+
+		final ByteBuffer value = actual.getValue();
+		Assert.assertTrue(value.isReadOnly());
+		Assert.assertEquals(value, ByteBuffer.wrap(new byte[] { 2, 3, 4 }));
+		// Consuming one view does not affect the next
+		value.get();
+		Assert.assertEquals(actual.getValue().remaining(), 3);
+	}
+
+	/**
+	 * Test equality is by content
+	 */
+	@Test
+	public void equalityTest() {
+		final BinaryKeyValue first = BinaryKeyValue.create("key", new byte[] { 1, 2 }, 3L);
+		final BinaryKeyValue second = BinaryKeyValue.create("key", ByteBuffer.wrap(new byte[] { 0, 1, 2 }, 1, 2), 3L);
+		Assert.assertEquals(first, second);
+		Assert.assertEquals(first.hashCode(), second.hashCode());
+		Assert.assertNotEquals(first, BinaryKeyValue.create("key", new byte[] { 1, 2 }, 4L));
+		Assert.assertNotEquals(first, BinaryKeyValue.create("other", new byte[] { 1, 2 }, 3L));
+		Assert.assertNotEquals(first, BinaryKeyValue.create("key", new byte[] { 1 }, 3L));
+	}
+
+	/**
+	 * Test creating an instance with null key, expecting exception
+	 */
+	@Test(expectedExceptions = NullPointerException.class)
+	public void createNotNullableKeyTest() {
+		BinaryKeyValue.create(null, new byte[0], 1L);
+	}
+
+	/**
+	 * Test creating an instance with null value, expecting exception
+	 */
+	@Test(expectedExceptions = NullPointerException.class)
+	public void createNotNullableValueTest() {
+		BinaryKeyValue.create("key", (ByteBuffer) null, 1L);
+	}
+}
@@ -0,0 +1,175 @@
+package com.wolfninja.keystore.api;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for {@code ChangeBus}, {@code ChangePublisher.merge} and {@code Watch}
+ */
+@Test
+public class ChangeBusTest {
+
+	private ChangeBus bus;
+
+	/**
+	 * Create a new bus delivering on the common pool
+	 */
+	@BeforeMethod
+	protected void setUp() {
+		bus = ChangeBus.create();
+	}
+
+	/**
+	 * Verify that closing completes subscribers after the changes buffered for them, and completes later ones
+	 */
+	@Test
+	public void closeTest() throws InterruptedException {
+		final RecordingChangeSubscriber subscriber = subscribe(bus, Watch.all().build(), 0L);
+		bus.publish(ChangeEvent.Type.SET, "a", "value", 1L);
+		bus.close();
+		bus.publish(ChangeEvent.Type.SET, "a", "dropped", 2L);
+		subscriber.getSubscription().request(Long.MAX_VALUE);
+		Assert.assertEquals(subscriber.next().getVersion(), 1L);
+		subscriber.awaitComplete();
+		subscriber.assertQuiet();
+
+		subscribe(bus, Watch.all().build(), 0L).awaitComplete();
+	}
+
+	/**
+	 * Verify that subscribers are forgotten once cancelled, so unwatched keys are skipped
+	 */
+	@Test
+	public void isWatchedTest() {
+		Assert.assertFalse(bus.hasSubscribers());
+		Assert.assertFalse(bus.isWatched("a"));
+		final RecordingChangeSubscriber exact = subscribe(bus, Watch.key("a").build(), 0L);
+		final RecordingChangeSubscriber prefix = subscribe(bus, Watch.prefix("b").build(), 0L);
+		Assert.assertTrue(bus.hasSubscribers());
+		Assert.assertTrue(bus.isWatched("a"));
+		Assert.assertFalse(bus.isWatched("ab"));
+		Assert.assertTrue(bus.isWatched("bc"));
+		Assert.assertFalse(bus.isWatched("c"));
+
+		exact.getSubscription().cancel();
+		Assert.assertFalse(bus.isWatched("a"));
+		prefix.getSubscription().cancel();
+		prefix.getSubscription().cancel();
+		Assert.assertFalse(bus.isWatched("bc"));
+		Assert.assertFalse(bus.hasSubscribers());
+	}
+
+	/**
+	 * Verify that merged changes are delivered with backpressure and complete once every source has completed
+	 */
+	@Test
+	public void mergeTest() throws InterruptedException {
+		final ChangeBus other = ChangeBus.create();
+		final Watch watch = Watch.prefix("k").build();
+		final RecordingChangeSubscriber subscriber = new RecordingChangeSubscriber(1L);
+		ChangePublisher.merge(Arrays.asList(bus.publisher(watch), other.publisher(watch)), watch)
+				.subscribe(subscriber);
+		Assert.assertTrue(bus.hasSubscribers());
+		Assert.assertTrue(other.hasSubscribers());
+
+		bus.publish(ChangeEvent.Type.SET, "k1", "one", 1L);
+		Assert.assertEquals(subscriber.next().getKey(), "k1");
+		other.publish(ChangeEvent.Type.SET, "k2", "two", 1L);
+		other.publish(ChangeEvent.Type.SET, "x", "ignored", 2L);
+		subscriber.assertQuiet();
+		subscriber.getSubscription().request(1L);
+		Assert.assertEquals(subscriber.next().getKey(), "k2");
+
+		bus.close();
+		subscriber.assertQuiet();
+		other.close();
+		subscriber.awaitComplete();
+	}
+
+	/**
+	 * Verify that cancelling a merged subscription cancels its sources, and merging nothing completes right away
+	 */
+	@Test
+	public void mergeCancelTest() throws InterruptedException {
+		final Watch watch = Watch.all().build();
+		final RecordingChangeSubscriber subscriber = new RecordingChangeSubscriber(Long.MAX_VALUE);
+		ChangePublisher.merge(Collections.singletonList(bus.publisher(watch)), watch).subscribe(subscriber);
+		subscriber.getSubscription().cancel();
+		Assert.assertFalse(bus.hasSubscribers());
+
+		final RecordingChangeSubscriber empty = new RecordingChangeSubscriber(0L);
+		ChangePublisher.merge(Collections.emptyList(), watch).subscribe(empty);
+		empty.awaitComplete();
+	}
+
+	/**
+	 * Verify that a subscriber throwing from onNext is cancelled
+	 */
+	@Test
+	public void onNextFailureTest() throws InterruptedException {
+		final RecordingChangeSubscriber subscriber = new RecordingChangeSubscriber(Long.MAX_VALUE) {
+			@Override
+			public void onNext(final ChangeEvent event) {
+				super.onNext(event);
+				throw new IllegalStateException("Broken subscriber");
+			}
+		};
+		bus.publisher(Watch.all().build()).subscribe(subscriber);
+		bus.publish(ChangeEvent.Type.SET, "a", "one", 1L);
+		subscriber.next();
+		bus.publish(ChangeEvent.Type.SET, "a", "two", 2L);
+		subscriber.assertQuiet();
+		Assert.assertFalse(bus.hasSubscribers());
+	}
+
+	/**
+	 * Verify that requesting no changes fails the subscriber
+	 */
+	@Test
+	public void requestZeroTest() throws InterruptedException {
+		final RecordingChangeSubscriber subscriber = subscribe(bus, Watch.all().build(), 0L);
+		subscriber.getSubscription().request(0L);
+		Assert.assertTrue(subscriber.awaitError() instanceof IllegalArgumentException);
+		Assert.assertFalse(bus.hasSubscribers());
+	}
+
+	/**
+	 * Verify that only deletes come without a value
+	 */
+	@Test
+	public void eventValueTest() {
+		Assert.assertEquals(ChangeEvent.create(ChangeEvent.Type.SET, "a", "b", 3L).getKeyValue().get(),
+				KeyValue.create("a", "b", 3L));
+		Assert.assertFalse(ChangeEvent.create(ChangeEvent.Type.DELETE, "a", null, 3L).getValue().isPresent());
+		try {
+			ChangeEvent.create(ChangeEvent.Type.DELETE, "a", "b", 3L);
+			Assert.fail("Expected exception!");
+		} catch (final IllegalArgumentException e) {
+			// Expected
+		}
+		try {
+			ChangeEvent.create(ChangeEvent.Type.SET, "a", null, 3L);
+			Assert.fail("Expected exception!");
+		} catch (final IllegalArgumentException e) {
+			// Expected
+		}
+	}
+
+	/**
+	 * Verify that a buffer size below one is refused
+	 */
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void bufferSizeTest() {
+		Watch.all().bufferSize(0);
+	}
+
+	private static RecordingChangeSubscriber subscribe(final ChangeBus bus, final Watch watch, final long request) {
+		final RecordingChangeSubscriber subscriber = new RecordingChangeSubscriber(request);
+		bus.publisher(watch).subscribe(subscriber);
+		return subscriber;
+	}
+}
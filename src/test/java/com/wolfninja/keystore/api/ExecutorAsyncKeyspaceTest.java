@@ -0,0 +1,103 @@
+package com.wolfninja.keystore.api;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.easymock.EasyMock;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for {@code ExecutorAsyncKeyspace}
+ */
+@Test
+public class ExecutorAsyncKeyspaceTest {
+
+	/**
+	 * Verify that operations are delegated to the keyspace on the given executor
+	 */
+	@Test
+	public void delegatesOnExecutorTest() {
+		final Keyspace mockKeyspace = EasyMock.createStrictMock(Keyspace.class);
+		final KeyValue expected = KeyValue.create("a", "b", 3L);
+		EasyMock.expect(mockKeyspace.gets("a")).andReturn(Optional.of(expected));
+		EasyMock.expect(mockKeyspace.checkAndSet("a", "c", 3L)).andReturn(true);
+		EasyMock.replay(mockKeyspace);
+
+		final AtomicInteger executed = new AtomicInteger();
+		final Executor executor = command -> {
+			executed.incrementAndGet();
+			command.run();
+		};
+		final AsyncKeyspace keyspace = ExecutorAsyncKeyspace.create(mockKeyspace, executor);
+
+		Assert.assertEquals(keyspace.gets("a").join(), Optional.of(expected));
+		Assert.assertTrue(keyspace.checkAndSet("a", "c", 3L).join());
+		Assert.assertEquals(executed.get(), 2);
+
+		EasyMock.verify(mockKeyspace);
+	}
+
+	/**
+	 * Verify that backend exceptions complete the future exceptionally
+	 */
+	@Test
+	public void failureCompletesExceptionallyTest() {
+		final Keyspace mockKeyspace = EasyMock.createStrictMock(Keyspace.class);
+		final IllegalStateException expected = new IllegalStateException("backend down");
+		EasyMock.expect(mockKeyspace.exists("a")).andThrow(expected);
+		EasyMock.replay(mockKeyspace);
+
+		final CompletableFuture<Boolean> actual = ExecutorAsyncKeyspace.create(mockKeyspace, Runnable::run).exists("a");
+		Assert.assertTrue(actual.isCompletedExceptionally());
+		try {
+			actual.join();
+			Assert.fail("Expected exception!");
+		} catch (final CompletionException e) {
+			Assert.assertSame(e.getCause(), expected);
+		}
+
+		EasyMock.verify(mockKeyspace);
+	}
+
+	/**
+	 * Verify that passing in a null keyspace throws exception
+	 */
+	@Test(expectedExceptions = NullPointerException.class)
+	public void createNotNullableKeyspaceTest() {
+		ExecutorAsyncKeyspace.create(null, Runnable::run);
+		Assert.fail("Should have thrown exception!");
+	}
+
+	/**
+	 * Verify that passing in a null executor throws exception
+	 */
+	@Test(expectedExceptions = NullPointerException.class)
+	public void createNotNullableExecutorTest() {
+		ExecutorAsyncKeyspace.create(EasyMock.createStrictMock(Keyspace.class), null);
+		Assert.fail("Should have thrown exception!");
+	}
+
+	/**
+	 * Verify that the virtual thread executor, or its fallback, runs tasks
+	 */
+	@Test
+	public void virtualThreadPerTaskTest() {
+		final Keyspace mockKeyspace = EasyMock.createStrictMock(Keyspace.class);
+		EasyMock.expect(mockKeyspace.exists("a")).andReturn(true);
+		EasyMock.replay(mockKeyspace);
+
+		final ExecutorService executor = AsyncExecutors.virtualThreadPerTask();
+		try {
+			Assert.assertTrue(ExecutorAsyncKeyspace.create(mockKeyspace, executor).exists("a").join());
+		} finally {
+			executor.shutdown();
+		}
+
+		EasyMock.verify(mockKeyspace);
+	}
+}
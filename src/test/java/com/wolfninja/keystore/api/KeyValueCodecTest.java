@@ -0,0 +1,210 @@
+package com.wolfninja.keystore.api;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for {@code KeyValueCodec.compact()} and the serialized form of {@code KeyValue}
+ */
+@Test
+public class KeyValueCodecTest {
+
+	private final KeyValueCodec codec = KeyValueCodec.compact();
+
+	/**
+	 * Test data for {@link #roundTripTest(String, String, long)}
+	 *
+	 * @return Test data
+	 */
+	@DataProvider
+	protected Object[][] roundTripData() {
+		return new Object[][] { //
+				{ "key", "value", 1L }, //
+				{ "", "", 0L }, //
+				{ "negative", "version", -1L }, //
+				{ "min", "version", Long.MIN_VALUE }, //
+				{ "max", "version", Long.MAX_VALUE }, //
+				{ "caf\u00e9", "\u20ac \u00fc \ud83d\ude00", 300L }, //
+				{ "long", new String(new char[1_000]).replace('\0', 'x'), 1L << 40 } //
+		};
+	}
+
+	/**
+	 * Verify that entries decode to what was encoded, taking exactly the encoded length in heap and direct buffers
+	 *
+	 * @param key
+	 *            String key
+	 * @param value
+	 *            String value
+	 * @param version
+	 *            long version
+	 */
+	@Test(dataProvider = "roundTripData")
+	public void roundTripTest(final String key, final String value, final long version) {
+		final KeyValue expected = KeyValue.create(key, value, version);
+		final int length = codec.encodedLength(expected);
+		for (final ByteBuffer buffer : new ByteBuffer[] { ByteBuffer.allocate(length + 8),
+				ByteBuffer.allocateDirect(length + 8) }) {
+			buffer.position(3);
+			codec.encode(expected, buffer);
+			Assert.assertEquals(buffer.position(), 3 + length);
+			buffer.flip().position(3);
+			Assert.assertEquals(codec.decode(buffer), expected);
+			Assert.assertEquals(buffer.position(), 3 + length);
+		}
+	}
+
+	/**
+	 * Verify that strings are encoded as standard UTF-8, with unpaired surrogates as '?'
+	 */
+	@Test
+	public void utf8Test() {
+		final String value = "a\u00e9\u20ac\ud83d\ude00\ud800b";
+		final ByteBuffer buffer = ByteBuffer.allocate(64);
+		codec.encode(KeyValue.create("", value, 0L), buffer);
+		final byte[] expected = value.getBytes(StandardCharsets.UTF_8);
+		buffer.flip();
+		Assert.assertEquals(buffer.get(), (byte) 0);
+		Assert.assertEquals(buffer.get(), (byte) 0);
+		Assert.assertEquals(buffer.get(), (byte) expected.length);
+		final byte[] actual = new byte[buffer.remaining()];
+		buffer.get(actual);
+		Assert.assertEquals(actual, expected);
+	}
+
+	/**
+	 * Verify that a small entry takes a few bytes
+	 */
+	@Test
+	public void compactTest() {
+		Assert.assertEquals(codec.encodedLength(KeyValue.create("key", "value", 42L)), 1 + 1 + 3 + 1 + 5);
+	}
+
+	/**
+	 * Verify that a buffer too small throws exception without writing anything
+	 */
+	@Test
+	public void overflowTest() {
+		final KeyValue keyValue = KeyValue.create("key", "value", 42L);
+		final ByteBuffer buffer = ByteBuffer.allocate(codec.encodedLength(keyValue) - 1);
+		try {
+			codec.encode(keyValue, buffer);
+			Assert.fail("Expected exception!");
+		} catch (final BufferOverflowException e) {
+			Assert.assertEquals(buffer.position(), 0);
+		}
+	}
+
+	/**
+	 * Verify that a truncated entry throws exception, leaving the position where it was
+	 */
+	@Test
+	public void truncatedTest() {
+		final KeyValue keyValue = KeyValue.create("key", "value", 42L);
+		final ByteBuffer buffer = ByteBuffer.allocate(codec.encodedLength(keyValue));
+		codec.encode(keyValue, buffer);
+		buffer.flip().limit(buffer.limit() - 1);
+		try {
+			codec.decode(buffer);
+			Assert.fail("Expected exception!");
+		} catch (final IllegalArgumentException e) {
+			Assert.assertEquals(buffer.position(), 0);
+		}
+	}
+
+	/**
+	 * Verify that a negative length throws exception, leaving the position where it was, and fails deserialization
+	 *
+	 * @throws Exception
+	 *             on serialization failure
+	 */
+	@Test
+	public void negativeLengthTest() throws Exception {
+		// Version zero, then a key length of ten varint bytes setting the sign bit
+		final byte[] malformed = { 0, -1, -1, -1, -1, -1, -1, -1, -1, -1, 1 };
+		final ByteBuffer buffer = ByteBuffer.wrap(malformed);
+		try {
+			codec.decode(buffer);
+			Assert.fail("Expected exception!");
+		} catch (final IllegalArgumentException e) {
+			Assert.assertEquals(buffer.position(), 0);
+		}
+
+		// Same length as the encoded form of this entry, so the payload can be swapped in the stream
+		final KeyValue keyValue = KeyValue.create("key", "value", 42L);
+		final byte[] encoded = new byte[codec.encodedLength(keyValue)];
+		Assert.assertEquals(encoded.length, malformed.length);
+		codec.encode(keyValue, ByteBuffer.wrap(encoded));
+		final byte[] bytes = serialize(keyValue);
+		final int offset = indexOf(bytes, encoded);
+		System.arraycopy(malformed, 0, bytes, offset, malformed.length);
+		try {
+			deserialize(bytes);
+			Assert.fail("Expected exception!");
+		} catch (final InvalidObjectException e) {
+			// Expected
+		}
+	}
+
+	/**
+	 * Verify that serializing a {@code KeyValue}, or a subclass, yields an equal plain {@code KeyValue} in a small
+	 * stream
+	 *
+	 * @throws Exception
+	 *             on serialization failure
+	 */
+	@Test
+	public void serializationTest() throws Exception {
+		final KeyValue expected = KeyValue.create("key", "value", 42L);
+		final byte[] bytes = serialize(expected);
+		Assert.assertTrue(bytes.length < 100, "Serialized to " + bytes.length + " bytes");
+		Assert.assertEquals(deserialize(bytes), expected);
+
+		final Object subclass = deserialize(serialize(new KeyValue("key", "value", 42L) {
+			private static final long serialVersionUID = 1L;
+		}));
+		Assert.assertEquals(subclass.getClass(), KeyValue.class);
+		Assert.assertEquals(subclass, expected);
+	}
+
+	/**
+	 * Verify that null arguments throw exception
+	 */
+	@Test(expectedExceptions = NullPointerException.class)
+	public void encodeNotNullableTest() {
+		codec.encode(null, ByteBuffer.allocate(16));
+	}
+
+	private static Object deserialize(final byte[] bytes) throws IOException, ClassNotFoundException {
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+			return in.readObject();
+		}
+	}
+
+	private static int indexOf(final byte[] bytes, final byte[] part) {
+		for (int i = 0; i + part.length <= bytes.length; i++)
+			if (Arrays.equals(Arrays.copyOfRange(bytes, i, i + part.length), part))
+				return i;
+		throw new AssertionError("Not found");
+	}
+
+	private static byte[] serialize(final Object object) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(object);
+		}
+		return bytes.toByteArray();
+	}
+}
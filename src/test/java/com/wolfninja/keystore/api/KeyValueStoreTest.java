@@ -1,5 +1,10 @@
 package com.wolfninja.keystore.api;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Optional;
+
 import org.easymock.EasyMock;
 import org.testng.Assert;
 import org.testng.annotations.Test;
@@ -66,4 +71,260 @@ public class KeyValueStoreTest {
 
 		EasyMock.verify(mockAdapter, expected);
 	}
+
+	/**
+	 * Verify that get async keyspace uses the adapter's native async keyspace when available
+	 */
+	@Test
+	public void getAsyncKeyspaceNativeTest() {
+		final KeyValueStoreAdapter mockAdapter = EasyMock.createStrictMock(KeyValueStoreAdapter.class);
+		final AsyncKeyspace expected = EasyMock.createStrictMock(AsyncKeyspace.class);
+		EasyMock.expect(mockAdapter.getAsyncKeyspace("a.b.c")).andReturn(Optional.of(expected));
+
+		EasyMock.replay(mockAdapter, expected);
+
+		final KeyValueStore kvs = KeyValueStore.create(mockAdapter);
+		Assert.assertSame(kvs.getAsyncKeyspace("a.b.c"), expected);
+
+		EasyMock.verify(mockAdapter, expected);
+	}
+
+	/**
+	 * Verify that get async keyspace falls back to running the blocking keyspace on the executor
+	 */
+	@Test
+	public void getAsyncKeyspaceFallbackTest() {
+		final KeyValueStoreAdapter mockAdapter = EasyMock.createStrictMock(KeyValueStoreAdapter.class);
+		final Keyspace mockKeyspace = EasyMock.createStrictMock(Keyspace.class);
+		EasyMock.expect(mockAdapter.getAsyncKeyspace("a.b.c")).andReturn(Optional.empty());
+		EasyMock.expect(mockAdapter.getKeyspace("a.b.c")).andReturn(mockKeyspace);
+		EasyMock.expect(mockKeyspace.get("key")).andReturn(Optional.of("value"));
+
+		EasyMock.replay(mockAdapter, mockKeyspace);
+
+		final KeyValueStore kvs = KeyValueStore.create(mockAdapter, Runnable::run);
+		final AsyncKeyspace actual = kvs.getAsyncKeyspace("a.b.c");
+		Assert.assertEquals(actual.get("key").join(), Optional.of("value"));
+
+		EasyMock.verify(mockAdapter, mockKeyspace);
+	}
+
+	/**
+	 * Verify that passing in a null executor throws exception
+	 */
+	@Test(expectedExceptions = NullPointerException.class)
+	public void createNotNullableExecutorTest() {
+		KeyValueStore.create(EasyMock.createStrictMock(KeyValueStoreAdapter.class), null);
+		Assert.fail("Should have thrown exception!");
+	}
+
+	/**
+	 * Verify that get binary keyspace uses the adapter's native binary keyspace when available
+	 */
+	@Test
+	public void getBinaryKeyspaceNativeTest() {
+		final KeyValueStoreAdapter mockAdapter = EasyMock.createStrictMock(KeyValueStoreAdapter.class);
+		final BinaryKeyspace expected = EasyMock.createStrictMock(BinaryKeyspace.class);
+		EasyMock.expect(mockAdapter.getBinaryKeyspace("a.b.c")).andReturn(Optional.of(expected));
+
+		EasyMock.replay(mockAdapter, expected);
+
+		final KeyValueStore kvs = KeyValueStore.create(mockAdapter);
+		Assert.assertSame(kvs.getBinaryKeyspace("a.b.c"), expected);
+
+		EasyMock.verify(mockAdapter, expected);
+	}
+
+	/**
+	 * Verify that get binary keyspace falls back to storing values through the String keyspace
+	 */
+	@Test
+	public void getBinaryKeyspaceFallbackTest() {
+		final KeyValueStoreAdapter mockAdapter = EasyMock.createStrictMock(KeyValueStoreAdapter.class);
+		final Keyspace mockKeyspace = EasyMock.createStrictMock(Keyspace.class);
+		EasyMock.expect(mockAdapter.getBinaryKeyspace("a.b.c")).andReturn(Optional.empty());
+		EasyMock.expect(mockAdapter.getKeyspace("a.b.c")).andReturn(mockKeyspace);
+		EasyMock.expect(mockKeyspace.set("key", "\u0000\u00ff")).andReturn(true);
+
+		EasyMock.replay(mockAdapter, mockKeyspace);
+
+		final KeyValueStore kvs = KeyValueStore.create(mockAdapter);
+		Assert.assertTrue(kvs.getBinaryKeyspace("a.b.c").set("key", new byte[] { 0, (byte) 0xff }));
+
+		EasyMock.verify(mockAdapter, mockKeyspace);
+	}
+
+	/**
+	 * Verify that get typed keyspace encodes values into the binary keyspace of the same name
+	 */
+	@Test
+	public void getTypedKeyspaceTest() {
+		final KeyValueStoreAdapter mockAdapter = EasyMock.createStrictMock(KeyValueStoreAdapter.class);
+		final BinaryKeyspace mockKeyspace = EasyMock.createStrictMock(BinaryKeyspace.class);
+		EasyMock.expect(mockAdapter.getBinaryKeyspace("a.b.c")).andReturn(Optional.of(mockKeyspace));
+		EasyMock.expect(mockKeyspace.set("key", ByteBuffer.wrap(new byte[] { 'v', 'a', 'l', 'u', 'e' })))
+				.andReturn(true);
+		EasyMock.expect(mockKeyspace.gets("key"))
+				.andReturn(Optional.of(BinaryKeyValue.create("key", new byte[] { 'v', 'a', 'l', 'u', 'e' }, 7L)));
+
+		EasyMock.replay(mockAdapter, mockKeyspace);
+
+		final KeyValueStore kvs = KeyValueStore.create(mockAdapter);
+		Assert.assertTrue(kvs.getTypedKeyspace("a.b.c", ValueCodec.utf8()).set("key", "value"));
+		final TypedKeyValue<String> keyValue = kvs.getTypedKeyspace("a.b.c", ValueCodec.utf8()).gets("key").get();
+		Assert.assertEquals(keyValue.getValue(), "value");
+		Assert.assertEquals(keyValue.getVersion(), 7L);
+
+		EasyMock.verify(mockAdapter, mockKeyspace);
+	}
+
+	/**
+	 * Verify that get scan features delegates to adapter correctly
+	 */
+	@Test
+	public void getScanFeaturesTest() {
+		final KeyValueStoreAdapter mockAdapter = EasyMock.createStrictMock(KeyValueStoreAdapter.class);
+		EasyMock.expect(mockAdapter.getScanFeatures()).andReturn(EnumSet.of(ScanFeature.SCAN, ScanFeature.ORDERED));
+		EasyMock.replay(mockAdapter);
+
+		Assert.assertEquals(KeyValueStore.create(mockAdapter).getScanFeatures(),
+				EnumSet.of(ScanFeature.SCAN, ScanFeature.ORDERED));
+
+		EasyMock.verify(mockAdapter);
+	}
+
+	/**
+	 * Verify that keyspaces are created by the adapter once and then reused
+	 */
+	@Test
+	public void getKeyspaceOnceTest() {
+		final KeyValueStoreAdapter mockAdapter = EasyMock.createStrictMock(KeyValueStoreAdapter.class);
+		final Keyspace expected = EasyMock.createStrictMock(Keyspace.class);
+		EasyMock.expect(mockAdapter.getKeyspace("a.b.c")).andReturn(expected).once();
+		EasyMock.expect(mockAdapter.getBinaryKeyspace("a.b.c")).andReturn(Optional.empty()).once();
+
+		EasyMock.replay(mockAdapter, expected);
+
+		final KeyValueStore kvs = KeyValueStore.create(mockAdapter);
+		Assert.assertSame(kvs.getKeyspace("a.b.c"), expected);
+		Assert.assertSame(kvs.getKeyspace("a.b.c"), expected);
+		Assert.assertSame(kvs.getBinaryKeyspace("a.b.c"), kvs.getBinaryKeyspace("a.b.c"));
+
+		EasyMock.verify(mockAdapter, expected);
+	}
+
+	/**
+	 * Verify that warm up creates the listed keyspaces ahead of use
+	 */
+	@Test
+	public void warmUpTest() {
+		final KeyValueStoreAdapter mockAdapter = EasyMock.createStrictMock(KeyValueStoreAdapter.class);
+		final Keyspace first = EasyMock.createStrictMock(Keyspace.class);
+		final Keyspace second = EasyMock.createStrictMock(Keyspace.class);
+		EasyMock.expect(mockAdapter.getKeyspace("first")).andReturn(first);
+		EasyMock.expect(mockAdapter.getKeyspace("second")).andReturn(second);
+
+		EasyMock.replay(mockAdapter, first, second);
+
+		final KeyValueStore kvs = KeyValueStore.create(mockAdapter);
+		kvs.warmUp(Arrays.asList("first", "second", "first"));
+		Assert.assertSame(kvs.getKeyspace("second"), second);
+
+		EasyMock.verify(mockAdapter, first, second);
+	}
+
+	/**
+	 * Verify that flush and close reach the keyspaces and then the adapter, even when a keyspace fails
+	 */
+	@Test
+	public void flushAndCloseTest() {
+		final KeyValueStoreAdapter mockAdapter = EasyMock.createStrictMock(KeyValueStoreAdapter.class);
+		final Keyspace mockKeyspace = EasyMock.createStrictMock(Keyspace.class);
+		final IllegalStateException expected = new IllegalStateException("backend down");
+		EasyMock.expect(mockAdapter.getKeyspace("a.b.c")).andReturn(mockKeyspace);
+		mockKeyspace.flush();
+		mockAdapter.flush();
+		mockKeyspace.close();
+		EasyMock.expectLastCall().andThrow(expected);
+		mockAdapter.close();
+
+		EasyMock.replay(mockAdapter, mockKeyspace);
+
+		final KeyValueStore kvs = KeyValueStore.create(mockAdapter);
+		kvs.getKeyspace("a.b.c");
+		kvs.flush();
+		try {
+			kvs.close();
+			Assert.fail("Should have thrown exception!");
+		} catch (final IllegalStateException e) {
+			Assert.assertSame(e, expected);
+		}
+		kvs.close();
+		Assert.assertSame(kvs.getKeyspace("a.b.c"), mockKeyspace);
+
+		EasyMock.verify(mockAdapter, mockKeyspace);
+	}
+
+	/**
+	 * Verify that close reaches the asynchronous and binary keyspaces as well
+	 */
+	@Test
+	public void closeHandlesTest() {
+		final KeyValueStoreAdapter mockAdapter = EasyMock.createStrictMock(KeyValueStoreAdapter.class);
+		final AsyncKeyspace mockAsync = EasyMock.createStrictMock(AsyncKeyspace.class);
+		final BinaryKeyspace mockBinary = EasyMock.createStrictMock(BinaryKeyspace.class);
+		EasyMock.expect(mockAdapter.getAsyncKeyspace("a.b.c")).andReturn(Optional.of(mockAsync));
+		EasyMock.expect(mockAdapter.getBinaryKeyspace("a.b.c")).andReturn(Optional.of(mockBinary));
+		mockAsync.close();
+		mockBinary.close();
+		mockAdapter.close();
+
+		EasyMock.replay(mockAdapter, mockAsync, mockBinary);
+
+		final KeyValueStore kvs = KeyValueStore.create(mockAdapter);
+		kvs.getAsyncKeyspace("a.b.c");
+		kvs.getBinaryKeyspace("a.b.c");
+		kvs.close();
+
+		EasyMock.verify(mockAdapter, mockAsync, mockBinary);
+	}
+
+	/**
+	 * Verify that a keyspace being created while the store is closing is closed too
+	 */
+	@Test
+	public void closeDuringCreateTest() throws InterruptedException {
+		final KeyValueStoreAdapter mockAdapter = EasyMock.createStrictMock(KeyValueStoreAdapter.class);
+		final Keyspace mockKeyspace = EasyMock.createStrictMock(Keyspace.class);
+		final KeyValueStore kvs = KeyValueStore.create(mockAdapter);
+		final Thread closer = new Thread(kvs::close);
+		EasyMock.expect(mockAdapter.getKeyspace("a.b.c")).andAnswer(() -> {
+			closer.start();
+			closer.join(100);
+			return mockKeyspace;
+		});
+		mockKeyspace.close();
+		mockAdapter.close();
+
+		EasyMock.replay(mockAdapter, mockKeyspace);
+
+		Assert.assertSame(kvs.getKeyspace("a.b.c"), mockKeyspace);
+		closer.join();
+
+		EasyMock.verify(mockAdapter, mockKeyspace);
+	}
+
+	/**
+	 * Verify that no keyspace can be created after closing
+	 */
+	@Test(expectedExceptions = IllegalStateException.class)
+	public void getKeyspaceAfterCloseTest() {
+		final KeyValueStoreAdapter mockAdapter = EasyMock.createStrictMock(KeyValueStoreAdapter.class);
+		mockAdapter.close();
+		EasyMock.replay(mockAdapter);
+
+		final KeyValueStore kvs = KeyValueStore.create(mockAdapter);
+		kvs.close();
+		kvs.getKeyspace("a.b.c");
+	}
 }
@@ -1,5 +1,7 @@
 package com.wolfninja.keystore.api;
 
+import java.util.Objects;
+
 import org.testng.Assert;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
@@ -104,4 +106,13 @@ public class KeyValueTest {
 		final KeyValue actual = KeyValue.create(expectedKey, expectedValue, expectedVersion);
 		Assert.assertEquals(actual.getVersion(), expectedVersion);
 	}
+
+	/**
+	 * Test that the hash code stays the same as before it stopped boxing the version
+	 */
+	@Test
+	public void hashCodeTest() {
+		final KeyValue actual = KeyValue.create("key", "value", 1L << 40);
+		Assert.assertEquals(actual.hashCode(), Objects.hash("key", "value", 1L << 40));
+	}
 }
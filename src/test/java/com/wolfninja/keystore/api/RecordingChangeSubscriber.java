@@ -0,0 +1,106 @@
+package com.wolfninja.keystore.api;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+
+/**
+ * {@link ChangeSubscriber} recording what it receives, for tests to wait on
+ */
+public class RecordingChangeSubscriber implements ChangeSubscriber {
+
+	private static final long TIMEOUT_SECONDS = 10L;
+	private static final long QUIET_MILLIS = 100L;
+
+	private final long initialRequest;
+	private final BlockingQueue<ChangeEvent> events = new LinkedBlockingQueue<>();
+	private final CountDownLatch terminated = new CountDownLatch(1);
+	private volatile ChangeSubscription subscription;
+	private volatile Throwable failure;
+	private volatile boolean completed;
+
+	/**
+	 * Record changes, requesting as many as given when subscribed
+	 *
+	 * @param initialRequest
+	 *            long number of changes to request, zero for none
+	 */
+	public RecordingChangeSubscriber(final long initialRequest) {
+		this.initialRequest = initialRequest;
+	}
+
+	/**
+	 * Check that no change arrives for a short while
+	 */
+	public void assertQuiet() throws InterruptedException {
+		final ChangeEvent event = events.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS);
+		Assert.assertNull(event, "Unexpected change");
+	}
+
+	/**
+	 * Wait for the subscriber to complete
+	 */
+	public void awaitComplete() throws InterruptedException {
+		Assert.assertTrue(terminated.await(TIMEOUT_SECONDS, TimeUnit.SECONDS), "Not terminated");
+		Assert.assertNull(failure);
+		Assert.assertTrue(completed);
+	}
+
+	/**
+	 * Wait for the subscriber to fail
+	 *
+	 * @return {@link Throwable} failure
+	 */
+	public Throwable awaitError() throws InterruptedException {
+		Assert.assertTrue(terminated.await(TIMEOUT_SECONDS, TimeUnit.SECONDS), "Not terminated");
+		Assert.assertNotNull(failure);
+		return failure;
+	}
+
+	/**
+	 * Get the subscription
+	 *
+	 * @return {@link ChangeSubscription}
+	 */
+	public ChangeSubscription getSubscription() {
+		return subscription;
+	}
+
+	/**
+	 * Wait for the next change
+	 *
+	 * @return {@link ChangeEvent}
+	 */
+	public ChangeEvent next() throws InterruptedException {
+		final ChangeEvent event = events.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		Assert.assertNotNull(event, "No change arrived");
+		return event;
+	}
+
+	@Override
+	public void onComplete() {
+		completed = true;
+		terminated.countDown();
+	}
+
+	@Override
+	public void onError(final Throwable failure) {
+		this.failure = failure;
+		terminated.countDown();
+	}
+
+	@Override
+	public void onNext(final ChangeEvent event) {
+		events.add(event);
+	}
+
+	@Override
+	public void onSubscribe(final ChangeSubscription subscription) {
+		this.subscription = subscription;
+		if (initialRequest > 0L)
+			subscription.request(initialRequest);
+	}
+}
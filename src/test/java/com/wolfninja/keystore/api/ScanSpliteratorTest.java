@@ -0,0 +1,137 @@
+package com.wolfninja.keystore.api;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for {@code ScanSpliterator}
+ */
+@Test
+public class ScanSpliteratorTest {
+
+	/**
+	 * Source of partitions holding keys {@code p<partition>-<index>}, paging with the next index as cursor
+	 */
+	private static final class ListSource implements ScanSource {
+		private final int partitions;
+		private final int entries;
+		private final AtomicInteger pages = new AtomicInteger();
+
+		private ListSource(final int partitions, final int entries) {
+			this.partitions = partitions;
+			this.entries = entries;
+		}
+
+		@Override
+		public int partitions() {
+			return partitions;
+		}
+
+		@Override
+		public String scan(final int partition, final String cursor, final String prefix, final int limit,
+				final Consumer<? super KeyValue> action) {
+			pages.incrementAndGet();
+			int index = cursor == null ? 0 : Integer.parseInt(cursor);
+			for (final int end = Math.min(entries, index + limit); index < end; index++) {
+				final String key = "p" + partition + "-" + index;
+				if (key.startsWith(prefix))
+					action.accept(KeyValue.create(key, "v", index));
+			}
+			return index < entries ? String.valueOf(index) : null;
+		}
+	}
+
+	/**
+	 * Verify that all partitions are read page by page in order
+	 */
+	@Test
+	public void pagingTest() {
+		final ListSource source = new ListSource(3, 10);
+		final List<String> keys = StreamSupport.stream(ScanSpliterator.create(source, "", 4), false)
+				.map(KeyValue::getKey).collect(Collectors.toList());
+		Assert.assertEquals(keys.size(), 30);
+		Assert.assertEquals(keys.get(0), "p0-0");
+		Assert.assertEquals(keys.get(10), "p1-0");
+		Assert.assertEquals(keys.get(29), "p2-9");
+		Assert.assertEquals(source.pages.get(), 9);
+	}
+
+	/**
+	 * Verify that pages are only fetched as entries are consumed
+	 */
+	@Test
+	public void lazyTest() {
+		final ListSource source = new ListSource(4, 100);
+		final List<String> keys = StreamSupport.stream(ScanSpliterator.create(source, "", 8), false).limit(10)
+				.map(KeyValue::getKey).collect(Collectors.toList());
+		Assert.assertEquals(keys.size(), 10);
+		Assert.assertEquals(source.pages.get(), 2);
+	}
+
+	/**
+	 * Verify that the prefix is passed to the source
+	 */
+	@Test
+	public void prefixTest() {
+		Assert.assertEquals(ScanSpliterator.stream(new ListSource(3, 10), "p1-").count(), 10L);
+	}
+
+	/**
+	 * Verify that splitting hands off partitions, keeping a started partition, but never splits a partition
+	 */
+	@Test
+	public void splitTest() {
+		final ScanSpliterator spliterator = ScanSpliterator.create(new ListSource(4, 10), "", 4);
+		final List<String> keys = new ArrayList<>();
+		Assert.assertTrue(spliterator.tryAdvance(keyValue -> keys.add(keyValue.getKey())));
+
+		final Spliterator<KeyValue> upper = spliterator.trySplit();
+		Assert.assertNotNull(upper);
+		final Spliterator<KeyValue> middle = spliterator.trySplit();
+		Assert.assertNotNull(middle);
+		Assert.assertNull(spliterator.trySplit());
+
+		spliterator.forEachRemaining(keyValue -> keys.add(keyValue.getKey()));
+		Assert.assertEquals(keys.size(), 10);
+		Assert.assertTrue(keys.stream().allMatch(key -> key.startsWith("p0-")));
+		Assert.assertEquals(spliterator.estimateSize(), 0L);
+		Assert.assertEquals(StreamSupport.stream(middle, false).filter(kv -> kv.getKey().startsWith("p1-")).count(),
+				10L);
+		Assert.assertEquals(StreamSupport.stream(upper, false).count(), 20L);
+	}
+
+	/**
+	 * Verify that a parallel stream returns every entry once
+	 */
+	@Test
+	public void parallelTest() {
+		final List<String> keys = ScanSpliterator.stream(new ListSource(16, 1_000), "").parallel()
+				.map(KeyValue::getKey).collect(Collectors.toList());
+		Assert.assertEquals(keys.size(), 16_000);
+		Assert.assertEquals(keys.stream().distinct().count(), 16_000L);
+	}
+
+	/**
+	 * Verify that a page size below one throws exception
+	 */
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void pageSizeTest() {
+		ScanSpliterator.create(new ListSource(1, 1), "", 0);
+	}
+
+	/**
+	 * Verify that a null prefix throws exception
+	 */
+	@Test(expectedExceptions = NullPointerException.class)
+	public void prefixNotNullableTest() {
+		ScanSpliterator.stream(new ListSource(1, 1), null);
+	}
+}
@@ -0,0 +1,19 @@
+package com.wolfninja.keystore.api;
+
+import org.testng.annotations.Test;
+
+import com.wolfninja.keystore.memory.MemoryAdapter;
+
+/**
+ * Runs the binary keyspace contract against {@code StringBackedBinaryKeyspace} over an in-memory keyspace
+ */
+@Test
+public class StringBackedBinaryKeyspaceTest extends BaseBinaryKeyspaceTest {
+
+	/**
+	 * Run the contract against a new in-memory keyspace
+	 */
+	public StringBackedBinaryKeyspaceTest() {
+		super(StringBackedBinaryKeyspace.create(MemoryAdapter.create().getKeyspace("test")));
+	}
+}
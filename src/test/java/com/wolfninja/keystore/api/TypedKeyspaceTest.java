@@ -0,0 +1,194 @@
+package com.wolfninja.keystore.api;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.wolfninja.keystore.memory.MemoryAdapter;
+
+/**
+ * Tests for {@code TypedKeyspace}, {@code TypedKeyValue} and {@code ValueCodec.utf8()}
+ */
+@Test
+public class TypedKeyspaceTest {
+
+	/**
+	 * Point value encoded as two ints, counting decodes and keeping the buffers it encoded into
+	 */
+	private static final class PointCodec implements ValueCodec<int[]> {
+		private final AtomicInteger decodes = new AtomicInteger();
+		private final List<ByteBuffer> targets = new ArrayList<>();
+
+		@Override
+		public int[] decode(final ByteBuffer source) {
+			decodes.incrementAndGet();
+			if (source.remaining() != 8)
+				throw new IllegalArgumentException("Not a point");
+			return new int[] { source.getInt(), source.getInt() };
+		}
+
+		@Override
+		public void encode(final int[] value, final ByteBuffer target) {
+			targets.add(target);
+			target.putInt(value[0]).putInt(value[1]);
+		}
+	}
+
+	private PointCodec codec;
+	private BinaryKeyspace binary;
+	private TypedKeyspace<int[]> keyspace;
+
+	/**
+	 * Create a typed keyspace over a binary view of a new in-memory keyspace
+	 */
+	@BeforeMethod
+	protected void setUp() {
+		codec = new PointCodec();
+		binary = StringBackedBinaryKeyspace.create(MemoryAdapter.create().getKeyspace("test"));
+		keyspace = TypedKeyspace.create(binary, codec);
+	}
+
+	/**
+	 * Verify that values written through the view are read back decoded, with the binary keyspace's bytes
+	 */
+	@Test
+	public void roundTripTest() {
+		Assert.assertTrue(keyspace.add("key", new int[] { 1, 2 }));
+		Assert.assertFalse(keyspace.add("key", new int[] { 3, 4 }));
+		Assert.assertEquals(keyspace.get("key").get(), new int[] { 1, 2 });
+		Assert.assertTrue(keyspace.replace("key", new int[] { 5, 6 }));
+		Assert.assertFalse(keyspace.replace("missing", new int[] { 5, 6 }));
+		Assert.assertTrue(keyspace.set("other", new int[] { 7, 8 }));
+		Assert.assertEquals(binary.get("key").get(), ByteBuffer.allocate(8).putInt(5).putInt(6).flip());
+		Assert.assertEquals(keyspace.get("other").get(), new int[] { 7, 8 });
+		Assert.assertTrue(keyspace.exists("other"));
+		Assert.assertTrue(keyspace.delete("other"));
+		Assert.assertFalse(keyspace.exists("other"));
+		Assert.assertEquals(keyspace.get("other"), Optional.empty());
+		Assert.assertEquals(keyspace.gets("other"), Optional.empty());
+		Assert.assertEquals(keyspace.version("other"), OptionalLong.empty());
+		Assert.assertSame(keyspace.getBinaryKeyspace(), binary);
+	}
+
+	/**
+	 * Verify that an entry read with gets is only decoded once its value is used, and only once
+	 */
+	@Test
+	public void lazyDecodeTest() {
+		Assert.assertTrue(keyspace.set("key", new int[] { 1, 2 }));
+		final TypedKeyValue<int[]> keyValue = keyspace.gets("key").get();
+		Assert.assertEquals(keyValue.getKey(), "key");
+		Assert.assertEquals(keyValue.getEncodedValue().remaining(), 8);
+		Assert.assertEquals(keyspace.version("key").getAsLong(), keyValue.getVersion());
+		Assert.assertEquals(codec.decodes.get(), 0);
+
+		Assert.assertEquals(keyValue.getValue(), new int[] { 1, 2 });
+		Assert.assertSame(keyValue.getValue(), keyValue.getValue());
+		Assert.assertEquals(codec.decodes.get(), 1);
+	}
+
+	/**
+	 * Verify that versions read through the view succeed and fail conditional writes like those of the binary keyspace
+	 */
+	@Test
+	public void checkAndSetTest() {
+		Assert.assertTrue(keyspace.set("key", new int[] { 1, 2 }));
+		final TypedKeyValue<int[]> read = keyspace.gets("key").get();
+		Assert.assertEquals(read.getVersion(), binary.gets("key").get().getVersion());
+
+		Assert.assertTrue(keyspace.checkAndSet("key", new int[] { 3, 4 }, read.getVersion()));
+		Assert.assertFalse(keyspace.checkAndSet("key", new int[] { 5, 6 }, read.getVersion()));
+		Assert.assertEquals(keyspace.get("key").get(), new int[] { 3, 4 });
+		final TypedKeyValue<int[]> current = keyspace.gets("key").get();
+		Assert.assertNotEquals(current, read);
+		Assert.assertEquals(current, keyspace.gets("key").get());
+		Assert.assertEquals(current.hashCode(), keyspace.gets("key").get().hashCode());
+		Assert.assertFalse(keyspace.deletes("key", read.getVersion()));
+		Assert.assertTrue(keyspace.deletes("key", current.getVersion()));
+		Assert.assertFalse(keyspace.exists("key"));
+	}
+
+	/**
+	 * Verify that consecutive writes on a thread encode into the same buffer
+	 */
+	@Test
+	public void bufferReuseTest() {
+		for (int i = 0; i < 10; i++)
+			Assert.assertTrue(keyspace.set("key" + i, new int[] { i, i }));
+		Assert.assertEquals(codec.targets.size(), 10);
+		for (final ByteBuffer target : codec.targets)
+			Assert.assertSame(target, codec.targets.get(0));
+	}
+
+	/**
+	 * Verify that values larger than the buffer grow it, and that very large buffers are not kept
+	 */
+	@Test
+	public void largeValueTest() {
+		final TypedKeyspace<String> strings = TypedKeyspace.create(binary, ValueCodec.utf8());
+		for (final int length : new int[] { 1_000, TypedKeyspace.MAX_RETAINED_CAPACITY * 2 }) {
+			final String value = new String(new char[length]).replace('\0', '\u00e9');
+			Assert.assertTrue(strings.set("large", value));
+			Assert.assertEquals(strings.get("large").get(), value);
+			Assert.assertEquals(binary.gets("large").get().getValueLength(), length * 2);
+		}
+
+		Assert.assertTrue(keyspace.set("key", new int[] { 1, 2 }));
+		Assert.assertTrue(codec.targets.get(0).capacity() <= TypedKeyspace.MAX_RETAINED_CAPACITY);
+	}
+
+	/**
+	 * Verify that a codec failure leaves the buffer usable and nothing written
+	 */
+	@Test
+	public void encodeFailureTest() {
+		try {
+			keyspace.set("key", new int[] { 1 });
+			Assert.fail("Expected exception!");
+		} catch (final ArrayIndexOutOfBoundsException e) {
+			Assert.assertFalse(keyspace.exists("key"));
+		}
+		Assert.assertTrue(keyspace.set("key", new int[] { 1, 2 }));
+		Assert.assertEquals(keyspace.get("key").get(), new int[] { 1, 2 });
+	}
+
+	/**
+	 * Verify that the UTF-8 codec matches {@link String#getBytes(java.nio.charset.Charset)} and reads direct buffers
+	 */
+	@Test
+	public void utf8Test() {
+		final ValueCodec<String> utf8 = ValueCodec.utf8();
+		final String value = "a\u00e9\u20ac\ud83d\ude00";
+		final ByteBuffer direct = ByteBuffer.allocateDirect(16);
+		utf8.encode(value, direct);
+		direct.flip();
+		Assert.assertEquals(direct.remaining(), value.getBytes(StandardCharsets.UTF_8).length);
+		Assert.assertEquals(utf8.decode(direct.asReadOnlyBuffer()), value);
+		Assert.assertEquals(utf8.decode(direct), value);
+		Assert.assertEquals(direct.position(), 0);
+	}
+
+	/**
+	 * Verify that null values throw exception
+	 */
+	@Test(expectedExceptions = NullPointerException.class)
+	public void setNotNullableTest() {
+		keyspace.set("key", null);
+	}
+
+	/**
+	 * Verify that a null codec throws exception
+	 */
+	@Test(expectedExceptions = NullPointerException.class)
+	public void createNotNullableTest() {
+		TypedKeyspace.create(binary, null);
+	}
+}
@@ -0,0 +1,145 @@
+package com.wolfninja.keystore.bloom;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.easymock.EasyMock;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.wolfninja.keystore.api.BaseScanKeyspaceTest;
+import com.wolfninja.keystore.api.KeyValue;
+import com.wolfninja.keystore.api.Keyspace;
+import com.wolfninja.keystore.memory.MemoryAdapter;
+
+/**
+ * Tests for {@code BloomFilterKeyspace}
+ */
+@Test
+public class BloomFilterKeyspaceTest extends BaseScanKeyspaceTest {
+
+	/**
+	 * Run the keyspace contract against a {@link BloomFilterKeyspace} over a memory keyspace
+	 */
+	public BloomFilterKeyspaceTest() {
+		super(BloomFilterKeyspace.builder(MemoryAdapter.create().getKeyspace("test")).build());
+	}
+
+	/**
+	 * Verify that lookups of keys never written do not reach the decorated keyspace
+	 */
+	@Test
+	public void missingKeysTest() {
+		final Keyspace mockKeyspace = EasyMock.createStrictMock(Keyspace.class);
+		EasyMock.expect(mockKeyspace.stream()).andReturn(Stream.empty());
+		EasyMock.replay(mockKeyspace);
+
+		final BloomFilterKeyspace keyspace = BloomFilterKeyspace.builder(mockKeyspace).build();
+		Assert.assertFalse(keyspace.exists("a"));
+		Assert.assertEquals(keyspace.get("a"), Optional.empty());
+		Assert.assertEquals(keyspace.gets("a"), Optional.empty());
+		Assert.assertFalse(keyspace.version("a").isPresent());
+		Assert.assertFalse(keyspace.ttl("a").isPresent());
+		Assert.assertTrue(keyspace.getAll(Arrays.asList("a", "b")).isEmpty());
+		Assert.assertTrue(keyspace.getsAll(Collections.singletonList("a")).isEmpty());
+		Assert.assertEquals(keyspace.getFilteredCount(), 8L);
+		Assert.assertEquals(keyspace.getFalsePositiveRate(), 0.0);
+		Assert.assertTrue(keyspace.getMemoryBytes() > 0L);
+
+		EasyMock.verify(mockKeyspace);
+	}
+
+	/**
+	 * Verify that keys present when built, and keys written later, are looked up, and deleted keys are not
+	 */
+	@Test
+	public void writesTest() {
+		final Keyspace backend = MemoryAdapter.create().getKeyspace("test");
+		Assert.assertTrue(backend.set("old", "value"));
+		final BloomFilterKeyspace keyspace = BloomFilterKeyspace.builder(backend).expectedKeys(1_000L).build();
+		Assert.assertEquals(keyspace.get("old"), Optional.of("value"));
+
+		Assert.assertTrue(keyspace.add("added", "value"));
+		Assert.assertTrue(keyspace.set("set", "value", 1L, TimeUnit.HOURS));
+		Assert.assertTrue(keyspace.setAll(Collections.singletonMap("bulk", "value")));
+		Assert.assertEquals(keyspace.increment("counter"), 1L);
+		for (final String key : Arrays.asList("old", "added", "set", "bulk", "counter"))
+			Assert.assertTrue(keyspace.exists(key), key);
+		Assert.assertEquals(keyspace.getFilteredCount(), 0L);
+
+		Assert.assertTrue(keyspace.delete("added"));
+		final KeyValue set = keyspace.gets("set").get();
+		Assert.assertTrue(keyspace.deletes("set", set.getVersion()));
+		Assert.assertFalse(keyspace.exists("added"));
+		Assert.assertFalse(keyspace.exists("set"));
+		Assert.assertEquals(keyspace.getFilteredCount(), 2L);
+		Assert.assertEquals(keyspace.getFalsePositiveCount(), 0L);
+	}
+
+	/**
+	 * Verify that keys deleted around the filter are counted as false positives until a rebuild clears them
+	 */
+	@Test
+	public void rebuildTest() {
+		final Keyspace backend = MemoryAdapter.create().getKeyspace("test");
+		final BloomFilterKeyspace keyspace = BloomFilterKeyspace.builder(backend).expectedKeys(100L).build();
+		for (int i = 0; i < 1_000; i++)
+			Assert.assertTrue(keyspace.set("key" + i, "value"));
+		Assert.assertEquals(backend.deleteAll(Arrays.asList("key0", "key1")), 2);
+		Assert.assertFalse(keyspace.exists("key0"));
+		Assert.assertEquals(keyspace.getFalsePositiveCount(), 1L);
+		Assert.assertEquals(keyspace.getFalsePositiveRate(), 1.0);
+		final long before = keyspace.getMemoryBytes();
+
+		Assert.assertEquals(keyspace.rebuild(), 998L);
+		Assert.assertTrue(keyspace.getMemoryBytes() > before, "resized to " + keyspace.getMemoryBytes());
+		Assert.assertFalse(keyspace.exists("key1"));
+		Assert.assertEquals(keyspace.getFalsePositiveCount(), 1L);
+		Assert.assertEquals(keyspace.getFilteredCount(), 1L);
+		Assert.assertEquals(keyspace.getFalsePositiveRate(), 0.5);
+		Assert.assertTrue(keyspace.exists("key2"));
+	}
+
+	/**
+	 * Verify that keys are loaded from a supplied snapshot, and that a failed background rebuild is counted
+	 */
+	@Test
+	public void keysTest() throws InterruptedException {
+		final Keyspace backend = MemoryAdapter.create().getKeyspace("test");
+		Assert.assertTrue(backend.set("a", "value"));
+		final boolean[] fail = new boolean[1];
+		final BloomFilterKeyspace keyspace = BloomFilterKeyspace.builder(backend).keys(() -> {
+			if (fail[0])
+				throw new IllegalStateException("Snapshot unavailable");
+			return Stream.of("a");
+		}).rebuildInterval(10L, TimeUnit.MILLISECONDS).build();
+		Assert.assertTrue(keyspace.exists("a"));
+
+		fail[0] = true;
+		final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10L);
+		while (keyspace.getFailedRebuildCount() == 0L && System.nanoTime() < deadline)
+			Thread.sleep(1L);
+		Assert.assertTrue(keyspace.getFailedRebuildCount() > 0L);
+		Assert.assertTrue(keyspace.exists("a"));
+		keyspace.close();
+	}
+
+	/**
+	 * Verify that a false positive rate outside (0, 1) is refused
+	 */
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void falsePositiveRateTest() {
+		BloomFilterKeyspace.builder(MemoryAdapter.create().getKeyspace("test")).falsePositiveRate(1.0);
+	}
+
+	/**
+	 * Verify that a null keyspace throws exception
+	 */
+	@Test(expectedExceptions = NullPointerException.class)
+	public void keyspaceNotNullableTest() {
+		BloomFilterKeyspace.builder(null);
+	}
+}
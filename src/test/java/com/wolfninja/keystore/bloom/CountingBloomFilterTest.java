@@ -0,0 +1,76 @@
+package com.wolfninja.keystore.bloom;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.wolfninja.keystore.api.KeyHashes;
+
+/**
+ * Tests for {@code CountingBloomFilter}
+ */
+@Test
+public class CountingBloomFilterTest {
+
+	private static final int KEYS = 10_000;
+
+	/**
+	 * Verify that added keys are always found, and missing keys are falsely found at about the configured rate
+	 */
+	@Test
+	public void falsePositiveRateTest() {
+		final CountingBloomFilter filter = new CountingBloomFilter(KEYS, 0.01);
+		Assert.assertEquals(filter.getHashes(), 7);
+		for (int i = 0; i < KEYS; i++)
+			filter.add(KeyHashes.hash("key" + i));
+		for (int i = 0; i < KEYS; i++)
+			Assert.assertTrue(filter.mightContain(KeyHashes.hash("key" + i)));
+		int falsePositives = 0;
+		for (int i = 0; i < 100_000; i++)
+			if (filter.mightContain(KeyHashes.hash("missing" + i)))
+				falsePositives++;
+		Assert.assertTrue(falsePositives < 2_000, "false positives " + falsePositives);
+		// About 9.6 counters of 4 bits per key
+		Assert.assertTrue(filter.getMemoryBytes() < KEYS * 5L, "bytes " + filter.getMemoryBytes());
+	}
+
+	/**
+	 * Verify that removing keys clears them without losing the others
+	 */
+	@Test
+	public void removeTest() {
+		final CountingBloomFilter filter = new CountingBloomFilter(KEYS, 0.01);
+		for (int i = 0; i < KEYS; i++)
+			filter.add(KeyHashes.hash("key" + i));
+		int found = 0;
+		for (int i = 0; i < KEYS; i += 2) {
+			filter.remove(KeyHashes.hash("key" + i));
+			if (filter.mightContain(KeyHashes.hash("key" + i)))
+				found++;
+		}
+		Assert.assertTrue(found < KEYS / 20, "found " + found);
+		for (int i = 1; i < KEYS; i += 2)
+			Assert.assertTrue(filter.mightContain(KeyHashes.hash("key" + i)));
+	}
+
+	/**
+	 * Verify that a key added more often than a counter can count is never removed
+	 */
+	@Test
+	public void saturationTest() {
+		final CountingBloomFilter filter = new CountingBloomFilter(100L, 0.01);
+		final long hash = KeyHashes.hash("a");
+		for (int i = 0; i < 20; i++)
+			filter.add(hash);
+		for (int i = 0; i < 20; i++)
+			filter.remove(hash);
+		Assert.assertTrue(filter.mightContain(hash));
+
+		final long other = KeyHashes.hash("b");
+		filter.add(other);
+		filter.add(other);
+		filter.remove(other);
+		Assert.assertTrue(filter.mightContain(other));
+		filter.remove(other);
+		Assert.assertFalse(filter.mightContain(other));
+	}
+}
@@ -0,0 +1,20 @@
+package com.wolfninja.keystore.cache;
+
+import org.testng.annotations.Test;
+
+import com.wolfninja.keystore.api.BaseScanKeyspaceTest;
+import com.wolfninja.keystore.memory.MemoryAdapter;
+
+/**
+ * Runs the keyspace contract against {@code CachingKeyspace} decorating an in-memory keyspace
+ */
+@Test
+public class CachingKeyspaceContractTest extends BaseScanKeyspaceTest {
+
+	/**
+	 * Run the contract against a small cache so eviction is exercised too
+	 */
+	public CachingKeyspaceContractTest() {
+		super(CachingKeyspace.builder(MemoryAdapter.create().getKeyspace("test")).maximumSize(8L).build());
+	}
+}
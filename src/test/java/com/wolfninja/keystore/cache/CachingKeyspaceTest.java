@@ -0,0 +1,202 @@
+package com.wolfninja.keystore.cache;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.easymock.EasyMock;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.wolfninja.keystore.api.KeyValue;
+import com.wolfninja.keystore.api.Keyspace;
+
+/**
+ * Tests for {@code CachingKeyspace}
+ */
+@Test
+public class CachingKeyspaceTest {
+
+	/**
+	 * Verify that a second read is served from the cache
+	 */
+	@Test
+	public void getsShouldHitCacheTest() {
+		final Keyspace mockKeyspace = EasyMock.createStrictMock(Keyspace.class);
+		final KeyValue expected = KeyValue.create("a", "b", 3L);
+		EasyMock.expect(mockKeyspace.gets("a")).andReturn(Optional.of(expected)).once();
+		EasyMock.replay(mockKeyspace);
+
+		final CachingKeyspace keyspace = CachingKeyspace.builder(mockKeyspace).maximumSize(10L).build();
+		Assert.assertEquals(keyspace.gets("a"), Optional.of(expected));
+		Assert.assertEquals(keyspace.gets("a"), Optional.of(expected));
+		Assert.assertEquals(keyspace.get("a"), Optional.of("b"));
+		Assert.assertTrue(keyspace.exists("a"));
+		Assert.assertEquals(keyspace.stats(), CacheStats.create(3L, 1L, 0L));
+
+		EasyMock.verify(mockKeyspace);
+	}
+
+	/**
+	 * Verify that misses are not cached
+	 */
+	@Test
+	public void absentValuesShouldNotBeCachedTest() {
+		final Keyspace mockKeyspace = EasyMock.createStrictMock(Keyspace.class);
+		EasyMock.expect(mockKeyspace.gets("a")).andReturn(Optional.empty()).times(2);
+		EasyMock.replay(mockKeyspace);
+
+		final CachingKeyspace keyspace = CachingKeyspace.builder(mockKeyspace).build();
+		Assert.assertFalse(keyspace.get("a").isPresent());
+		Assert.assertFalse(keyspace.get("a").isPresent());
+		Assert.assertEquals(keyspace.estimatedSize(), 0L);
+
+		EasyMock.verify(mockKeyspace);
+	}
+
+	/**
+	 * Verify that writes invalidate the cached version
+	 */
+	@Test
+	public void writesShouldInvalidateTest() {
+		final Keyspace mockKeyspace = EasyMock.createStrictMock(Keyspace.class);
+		EasyMock.expect(mockKeyspace.gets("a")).andReturn(Optional.of(KeyValue.create("a", "b", 3L)));
+		EasyMock.expect(mockKeyspace.checkAndSet("a", "c", 3L)).andReturn(true);
+		EasyMock.expect(mockKeyspace.gets("a")).andReturn(Optional.of(KeyValue.create("a", "c", 4L)));
+		EasyMock.expect(mockKeyspace.deletes("a", 4L)).andReturn(true);
+		EasyMock.expect(mockKeyspace.gets("a")).andReturn(Optional.empty());
+		EasyMock.replay(mockKeyspace);
+
+		final CachingKeyspace keyspace = CachingKeyspace.builder(mockKeyspace).build();
+		Assert.assertTrue(keyspace.checkAndSet("a", "c", keyspace.gets("a").get().getVersion()));
+		final KeyValue updated = keyspace.gets("a").get();
+		Assert.assertEquals(updated.getVersion(), 4L);
+		Assert.assertTrue(keyspace.deletes("a", updated.getVersion()));
+		Assert.assertFalse(keyspace.gets("a").isPresent());
+
+		EasyMock.verify(mockKeyspace);
+	}
+
+	/**
+	 * Verify that a load racing with a write is not cached
+	 */
+	@Test
+	public void loadRacingWriteShouldNotBeCachedTest() {
+		final Keyspace mockKeyspace = EasyMock.createStrictMock(Keyspace.class);
+		final AtomicReference<CachingKeyspace> cache = new AtomicReference<>();
+		EasyMock.expect(mockKeyspace.gets("a")).andAnswer(() -> {
+			// The write lands and returns while the stale version is still on its way back
+			cache.get().set("a", "c");
+			return Optional.of(KeyValue.create("a", "b", 3L));
+		});
+		EasyMock.expect(mockKeyspace.set("a", "c")).andReturn(true);
+		EasyMock.expect(mockKeyspace.gets("a")).andReturn(Optional.of(KeyValue.create("a", "c", 4L)));
+		EasyMock.replay(mockKeyspace);
+
+		cache.set(CachingKeyspace.builder(mockKeyspace).build());
+		Assert.assertEquals(cache.get().get("a"), Optional.of("b"));
+		Assert.assertEquals(cache.get().estimatedSize(), 0L);
+		Assert.assertEquals(cache.get().get("a"), Optional.of("c"));
+
+		EasyMock.verify(mockKeyspace);
+	}
+
+	/**
+	 * Verify that bulk reads only fetch keys missing from the cache
+	 */
+	@Test
+	public void getsAllShouldOnlyLoadMissingTest() {
+		final Keyspace mockKeyspace = EasyMock.createStrictMock(Keyspace.class);
+		final KeyValue first = KeyValue.create("a", "1", 1L);
+		final KeyValue second = KeyValue.create("b", "2", 1L);
+		EasyMock.expect(mockKeyspace.gets("a")).andReturn(Optional.of(first));
+		EasyMock.expect(mockKeyspace.getsAll(Arrays.asList("b", "c")))
+				.andReturn(Collections.singletonMap("b", second));
+		EasyMock.replay(mockKeyspace);
+
+		final CachingKeyspace keyspace = CachingKeyspace.builder(mockKeyspace).build();
+		keyspace.gets("a");
+		Assert.assertEquals(keyspace.getsAll(Arrays.asList("a", "b", "c")).size(), 2);
+		Assert.assertEquals(keyspace.gets("b"), Optional.of(second));
+
+		EasyMock.verify(mockKeyspace);
+	}
+
+	/**
+	 * Verify that entries expire after write
+	 */
+	@Test
+	public void expireAfterWriteTest() {
+		final Keyspace mockKeyspace = EasyMock.createStrictMock(Keyspace.class);
+		EasyMock.expect(mockKeyspace.gets("a")).andReturn(Optional.of(KeyValue.create("a", "b", 3L))).times(2);
+		EasyMock.replay(mockKeyspace);
+
+		final AtomicLong time = new AtomicLong();
+		final CachingKeyspace keyspace = CachingKeyspace.builder(mockKeyspace).expireAfterWrite(1L, TimeUnit.SECONDS)
+				.ticker(time::get).build();
+		keyspace.gets("a");
+		time.addAndGet(TimeUnit.MILLISECONDS.toNanos(999L));
+		keyspace.gets("a");
+		time.addAndGet(TimeUnit.MILLISECONDS.toNanos(1L));
+		keyspace.gets("a");
+		Assert.assertEquals(keyspace.stats(), CacheStats.create(1L, 2L, 0L));
+
+		EasyMock.verify(mockKeyspace);
+	}
+
+	/**
+	 * Verify that the size bound holds and frequently used entries survive a scan of one-off keys
+	 */
+	@Test
+	public void evictionShouldKeepFrequentEntriesTest() {
+		final Keyspace mockKeyspace = EasyMock.createMock(Keyspace.class);
+		EasyMock.expect(mockKeyspace.gets(EasyMock.anyString())).andAnswer(
+				() -> Optional.of(KeyValue.create((String) EasyMock.getCurrentArguments()[0], "value", 1L)))
+				.anyTimes();
+		EasyMock.replay(mockKeyspace);
+
+		final CachingKeyspace keyspace = CachingKeyspace.builder(mockKeyspace).maximumSize(100L).build();
+		for (int round = 0; round < 5; round++)
+			for (int i = 0; i < 50; i++)
+				keyspace.gets("hot" + i);
+		for (int i = 0; i < 10_000; i++)
+			keyspace.gets("cold" + i);
+		Assert.assertTrue(keyspace.estimatedSize() <= 100L, "Size was " + keyspace.estimatedSize());
+
+		final long hitsBefore = keyspace.stats().getHitCount();
+		for (int i = 0; i < 50; i++)
+			keyspace.gets("hot" + i);
+		Assert.assertTrue(keyspace.stats().getHitCount() - hitsBefore >= 45L, "Hot entries should mostly survive");
+		Assert.assertTrue(keyspace.stats().getEvictionCount() > 0L);
+	}
+
+	/**
+	 * Verify that a weight bound is applied
+	 */
+	@Test
+	public void maximumWeightTest() {
+		final Keyspace mockKeyspace = EasyMock.createMock(Keyspace.class);
+		EasyMock.expect(mockKeyspace.gets(EasyMock.anyString())).andAnswer(
+				() -> Optional.of(KeyValue.create((String) EasyMock.getCurrentArguments()[0], "0123456789", 1L)))
+				.anyTimes();
+		EasyMock.replay(mockKeyspace);
+
+		final CachingKeyspace keyspace = CachingKeyspace.builder(mockKeyspace).maximumWeight(55L, Weigher.LENGTH)
+				.build();
+		for (int i = 0; i < 100; i++)
+			keyspace.gets("k" + i);
+		Assert.assertTrue(keyspace.estimatedSize() <= 5L, "Size was " + keyspace.estimatedSize());
+	}
+
+	/**
+	 * Verify that a null delegate throws exception
+	 */
+	@Test(expectedExceptions = NullPointerException.class)
+	public void builderNotNullableTest() {
+		CachingKeyspace.builder(null);
+		Assert.fail("Should have thrown exception!");
+	}
+}
@@ -0,0 +1,107 @@
+package com.wolfninja.keystore.coalesce;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.wolfninja.keystore.api.AsyncKeyspace;
+import com.wolfninja.keystore.api.BaseAsyncKeyspaceTest;
+import com.wolfninja.keystore.api.ExecutorAsyncKeyspace;
+import com.wolfninja.keystore.api.KeyValue;
+import com.wolfninja.keystore.api.Keyspace;
+import com.wolfninja.keystore.memory.MemoryAdapter;
+
+/**
+ * Tests for {@code CoalescingAsyncKeyspace}
+ */
+@Test
+public class CoalescingAsyncKeyspaceTest extends BaseAsyncKeyspaceTest {
+
+	/**
+	 * Run the async keyspace contract against a {@link CoalescingAsyncKeyspace} over a memory keyspace
+	 */
+	public CoalescingAsyncKeyspaceTest() {
+		super(CoalescingAsyncKeyspace.create(MemoryAdapter.create().getAsyncKeyspace("test").get()));
+	}
+
+	/**
+	 * Verify that reads of a key started while one is in flight share it, and that later reads start a new one
+	 */
+	@Test
+	public void stampedeTest() {
+		final Keyspace backend = MemoryAdapter.create().getKeyspace("test");
+		final Queue<Runnable> tasks = new ArrayDeque<>();
+		final CoalescingAsyncKeyspace keyspace = CoalescingAsyncKeyspace
+				.create(ExecutorAsyncKeyspace.create(backend, tasks::add));
+		Assert.assertTrue(backend.set("hot", "value"));
+
+		final List<CompletableFuture<Optional<KeyValue>>> reads = new ArrayList<>();
+		for (int i = 0; i < 10; i++)
+			reads.add(keyspace.gets("hot"));
+		Assert.assertEquals(tasks.size(), 1);
+		Assert.assertEquals(keyspace.getCoalescedCount(), 9L);
+
+		tasks.poll().run();
+		for (final CompletableFuture<Optional<KeyValue>> read : reads)
+			Assert.assertEquals(read.join().get(), backend.gets("hot").get());
+
+		keyspace.gets("hot");
+		Assert.assertEquals(tasks.size(), 1);
+	}
+
+	/**
+	 * Verify that cancelling the future of one caller does not affect the others
+	 */
+	@Test
+	public void cancelTest() {
+		final Queue<Runnable> tasks = new ArrayDeque<>();
+		final AsyncKeyspace delegate = ExecutorAsyncKeyspace.create(MemoryAdapter.create().getKeyspace("test"),
+				tasks::add);
+		final CoalescingAsyncKeyspace keyspace = CoalescingAsyncKeyspace.create(delegate);
+
+		final CompletableFuture<Optional<String>> first = keyspace.get("key");
+		final CompletableFuture<Optional<String>> second = keyspace.get("key");
+		final CompletableFuture<Optional<String>> third = keyspace.get("key");
+		Assert.assertTrue(first.cancel(false));
+		Assert.assertTrue(second.cancel(false));
+
+		tasks.poll().run();
+		Assert.assertFalse(third.join().isPresent());
+	}
+
+	/**
+	 * Verify that a write forgets the read in flight, so later reads see the written value
+	 */
+	@Test
+	public void writeForgetsReadInFlightTest() {
+		final Queue<Runnable> tasks = new ArrayDeque<>();
+		final CoalescingAsyncKeyspace keyspace = CoalescingAsyncKeyspace
+				.create(ExecutorAsyncKeyspace.create(MemoryAdapter.create().getKeyspace("test"), tasks::add));
+
+		final CompletableFuture<Optional<String>> stale = keyspace.get("key");
+		final CompletableFuture<Boolean> write = keyspace.set("key", "value");
+		tasks.poll();
+		tasks.poll().run();
+		Assert.assertTrue(write.join());
+
+		final CompletableFuture<Optional<String>> fresh = keyspace.get("key");
+		tasks.poll().run();
+		Assert.assertEquals(fresh.join().get(), "value");
+		Assert.assertFalse(stale.isDone());
+		Assert.assertEquals(keyspace.getCoalescedCount(), 0L);
+	}
+
+	/**
+	 * Verify that passing in a null keyspace throws exception
+	 */
+	@Test(expectedExceptions = NullPointerException.class)
+	public void createNotNullableTest() {
+		CoalescingAsyncKeyspace.create(null);
+	}
+}
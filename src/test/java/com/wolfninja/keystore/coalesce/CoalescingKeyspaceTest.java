@@ -0,0 +1,168 @@
+package com.wolfninja.keystore.coalesce;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.easymock.EasyMock;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.wolfninja.keystore.api.BaseScanKeyspaceTest;
+import com.wolfninja.keystore.api.Keyspace;
+import com.wolfninja.keystore.memory.MemoryAdapter;
+import com.wolfninja.keystore.metrics.MetricsKeyspace;
+import com.wolfninja.keystore.metrics.Operation;
+import com.wolfninja.keystore.metrics.Outcome;
+
+/**
+ * Tests for {@code CoalescingKeyspace}
+ */
+@Test
+public class CoalescingKeyspaceTest extends BaseScanKeyspaceTest {
+
+	private static final int READERS = 16;
+
+	/**
+	 * Run the keyspace contract against a {@link CoalescingKeyspace} over a memory keyspace
+	 */
+	public CoalescingKeyspaceTest() {
+		super(CoalescingKeyspace.create(MemoryAdapter.create().getKeyspace("test")));
+	}
+
+	/**
+	 * Verify that concurrent reads of a key share one backend read
+	 */
+	@Test
+	public void stampedeTest() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		final MetricsKeyspace backend = MetricsKeyspace.create(MemoryAdapter.create().getKeyspace("test"), "test",
+				(keyspace, operation, outcome, nanos) -> {
+					if (operation == Operation.GET || operation == Operation.GETS)
+						await(release);
+				});
+		final CoalescingKeyspace keyspace = CoalescingKeyspace.create(backend);
+		Assert.assertTrue(keyspace.set("hot", "value"));
+
+		final ExecutorService executor = Executors.newFixedThreadPool(READERS);
+		try {
+			final List<Future<Optional<String>>> reads = new ArrayList<>();
+			for (int i = 0; i < READERS; i++)
+				reads.add(executor.submit(() -> keyspace.get("hot")));
+			awaitCoalesced(keyspace, READERS - 1);
+			release.countDown();
+			for (final Future<Optional<String>> read : reads)
+				Assert.assertEquals(read.get(5L, TimeUnit.SECONDS).get(), "value");
+		} finally {
+			executor.shutdownNow();
+		}
+		Assert.assertEquals(backend.getMetrics(Operation.GET).getCalls(), 1L);
+		Assert.assertEquals(backend.getMetrics(Operation.GET).getHits(), 1L);
+
+		Assert.assertEquals(keyspace.get("hot").get(), "value");
+		Assert.assertEquals(backend.getMetrics(Operation.GET).getCalls(), 2L);
+	}
+
+	/**
+	 * Verify that callers waiting on a failed read get its exception
+	 */
+	@Test
+	public void failureSharedTest() throws Exception {
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final Keyspace backend = EasyMock.createMock(Keyspace.class);
+		EasyMock.expect(backend.gets("key")).andAnswer(() -> {
+			started.countDown();
+			await(release);
+			throw new IllegalStateException("backend down");
+		});
+		EasyMock.replay(backend);
+		final CoalescingKeyspace keyspace = CoalescingKeyspace.create(backend);
+
+		final ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			final Future<?> first = executor.submit(() -> keyspace.gets("key"));
+			Assert.assertTrue(started.await(5L, TimeUnit.SECONDS));
+			final Future<?> second = executor.submit(() -> keyspace.gets("key"));
+			awaitCoalesced(keyspace, 1L);
+			release.countDown();
+			for (final Future<?> read : new Future<?>[] { first, second })
+				try {
+					read.get(5L, TimeUnit.SECONDS);
+					Assert.fail("Should have thrown exception!");
+				} catch (final ExecutionException e) {
+					Assert.assertEquals(e.getCause().getMessage(), "backend down");
+				}
+		} finally {
+			executor.shutdownNow();
+		}
+		EasyMock.verify(backend);
+	}
+
+	/**
+	 * Verify that a write forgets the read in flight, so later reads see the written value
+	 */
+	@Test
+	public void writeForgetsReadInFlightTest() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		final MetricsKeyspace backend = MetricsKeyspace.create(MemoryAdapter.create().getKeyspace("test"), "test",
+				(keyspace, operation, outcome, nanos) -> {
+					if (operation == Operation.GET && outcome == Outcome.MISS)
+						await(release);
+				});
+		final CoalescingKeyspace keyspace = CoalescingKeyspace.create(backend);
+
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			final Future<Optional<String>> stale = executor.submit(() -> keyspace.get("key"));
+			awaitCalls(backend, Operation.GET, 1L);
+			Assert.assertTrue(keyspace.set("key", "value"));
+			Assert.assertEquals(keyspace.get("key").get(), "value");
+			Assert.assertEquals(keyspace.getCoalescedCount(), 0L);
+			release.countDown();
+			Assert.assertFalse(stale.get(5L, TimeUnit.SECONDS).isPresent());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Verify that passing in a null keyspace throws exception
+	 */
+	@Test(expectedExceptions = NullPointerException.class)
+	public void createNotNullableTest() {
+		CoalescingKeyspace.create((Keyspace) null);
+	}
+
+	private static void await(final CountDownLatch latch) {
+		try {
+			latch.await(5L, TimeUnit.SECONDS);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void awaitCalls(final MetricsKeyspace keyspace, final Operation operation, final long calls)
+			throws InterruptedException {
+		final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5L);
+		while (keyspace.getMetrics(operation).getCalls() < calls) {
+			Assert.assertTrue(System.nanoTime() < deadline, "Timed out");
+			Thread.sleep(1L);
+		}
+	}
+
+	private static void awaitCoalesced(final CoalescingKeyspace keyspace, final long coalesced)
+			throws InterruptedException {
+		final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5L);
+		while (keyspace.getCoalescedCount() < coalesced) {
+			Assert.assertTrue(System.nanoTime() < deadline, "Timed out");
+			Thread.sleep(1L);
+		}
+	}
+}
@@ -0,0 +1,220 @@
+package com.wolfninja.keystore.compression;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.wolfninja.keystore.api.BaseScanKeyspaceTest;
+import com.wolfninja.keystore.api.ChangeEvent;
+import com.wolfninja.keystore.api.KeyValue;
+import com.wolfninja.keystore.api.Keyspace;
+import com.wolfninja.keystore.api.RecordingChangeSubscriber;
+import com.wolfninja.keystore.api.Watch;
+import com.wolfninja.keystore.memory.MemoryAdapter;
+
+/**
+ * Tests for {@code CompressingKeyspace}
+ */
+@Test
+public class CompressingKeyspaceTest extends BaseScanKeyspaceTest {
+
+	private static final String JSON;
+
+	static {
+		final StringBuilder json = new StringBuilder("[");
+		for (int i = 0; i < 100; i++)
+			json.append("{\"id\":").append(i).append(",\"name\":\"user").append(i).append("\",\"active\":true},");
+		JSON = json.append("{}]").toString();
+	}
+
+	/**
+	 * Run the keyspace contract against a {@link CompressingKeyspace} compressing every value
+	 */
+	public CompressingKeyspaceTest() {
+		super(CompressingKeyspace.builder(MemoryAdapter.create().getKeyspace("test")).threshold(0).build());
+	}
+
+	/**
+	 * Verify that large values are stored compressed and read back unchanged with the backend version
+	 */
+	@Test
+	public void compressLargeValuesTest() {
+		final Keyspace backend = MemoryAdapter.create().getKeyspace("test");
+		final CompressingKeyspace keyspace = CompressingKeyspace.builder(backend).build();
+		Assert.assertTrue(keyspace.set("a", JSON));
+
+		final String stored = backend.get("a").get();
+		Assert.assertEquals(stored.charAt(0), CompressingKeyspace.MARKER);
+		Assert.assertEquals(stored.charAt(1), CompressingKeyspace.DEFLATE);
+		Assert.assertTrue(stored.length() < JSON.length() / 4, "stored " + stored.length());
+		Assert.assertTrue(stored.chars().allMatch(c -> c >= ' '), stored);
+
+		final KeyValue actual = keyspace.gets("a").get();
+		Assert.assertEquals(actual.getValue(), JSON);
+		Assert.assertEquals(actual.getVersion(), backend.gets("a").get().getVersion());
+		Assert.assertTrue(keyspace.checkAndSet("a", JSON + " ", actual.getVersion()));
+		Assert.assertEquals(keyspace.get("a").get(), JSON + " ");
+		Assert.assertEquals(keyspace.getsAll(Arrays.asList("a", "b")).get("a").getValue(), JSON + " ");
+	}
+
+	/**
+	 * Verify that small and incompressible values are stored raw
+	 */
+	@Test
+	public void rawValuesTest() {
+		final Keyspace backend = MemoryAdapter.create().getKeyspace("test");
+		final CompressingKeyspace keyspace = CompressingKeyspace.builder(backend).threshold(16).build();
+		Assert.assertTrue(keyspace.set("small", "tiny"));
+		Assert.assertEquals(backend.get("small").get(), "tiny");
+
+		final String random = "q8Zr\u00e9Lx0\u4e2dpW2mVn7Yk";
+		Assert.assertTrue(keyspace.set("random", random));
+		Assert.assertEquals(backend.get("random").get(), random);
+		Assert.assertEquals(keyspace.getAll(Arrays.asList("small", "random")).get("random"), random);
+
+		final String marked = CompressingKeyspace.MARKER + "1abc";
+		Assert.assertTrue(keyspace.set("marked", marked));
+		Assert.assertEquals(backend.get("marked").get(), String.valueOf(CompressingKeyspace.MARKER)
+				+ CompressingKeyspace.RAW + marked);
+		Assert.assertEquals(keyspace.get("marked").get(), marked);
+	}
+
+	/**
+	 * Verify that values are only stored compressed when that takes fewer UTF-8 bytes
+	 */
+	@Test
+	public void storedNeverLargerTest() {
+		final Keyspace backend = MemoryAdapter.create().getKeyspace("test");
+		final CompressingKeyspace keyspace = CompressingKeyspace.builder(backend).threshold(0).build();
+		final Random random = new Random(42L);
+		for (final int alphabet : new int[] { 2, 16, 64, 95, 2000 }) {
+			final StringBuilder value = new StringBuilder();
+			for (int i = 0; i < 2000; i++)
+				value.append((char) ((alphabet > 95 ? 0x4e00 : ' ') + random.nextInt(alphabet)));
+			Assert.assertTrue(keyspace.set("a", value.toString()));
+			Assert.assertEquals(keyspace.get("a").get(), value.toString());
+			Assert.assertTrue(backend.get("a").get().getBytes(StandardCharsets.UTF_8).length <= value.toString()
+					.getBytes(StandardCharsets.UTF_8).length, "alphabet " + alphabet);
+		}
+	}
+
+	/**
+	 * Verify that corrupt compressed values fail without trusting their length header
+	 */
+	@Test
+	public void corruptValuesTest() {
+		final Keyspace backend = MemoryAdapter.create().getKeyspace("test");
+		final CompressingKeyspace keyspace = CompressingKeyspace.builder(backend).build();
+		final String prefix = String.valueOf(CompressingKeyspace.MARKER) + CompressingKeyspace.DEFLATE;
+		Assert.assertTrue(backend.set("huge", prefix
+				+ Base64.getEncoder().encodeToString(new byte[] { 0x7f, (byte) 0xff, (byte) 0xff, (byte) 0xff, 1 })));
+		Assert.assertTrue(backend.set("negative", prefix
+				+ Base64.getEncoder().encodeToString(new byte[] { (byte) 0x80, 0, 0, 0, 1 })));
+		Assert.assertTrue(backend.set("short", prefix + Base64.getEncoder().encodeToString(new byte[] { 0, 0 })));
+		Assert.assertTrue(backend.set("invalid", prefix + "not base64!"));
+		for (final String key : Arrays.asList("huge", "negative", "short", "invalid"))
+			try {
+				keyspace.get(key);
+				Assert.fail("Expected exception!");
+			} catch (final IllegalStateException e) {
+				// Expected
+			}
+	}
+
+	/**
+	 * Verify that values written without the decorator are read unchanged
+	 */
+	@Test
+	public void legacyValuesTest() {
+		final Keyspace backend = MemoryAdapter.create().getKeyspace("test");
+		Assert.assertTrue(backend.set("a", "plain"));
+		Assert.assertTrue(backend.set("b", ""));
+		Assert.assertTrue(backend.set("c", CompressingKeyspace.MARKER + "x"));
+		final CompressingKeyspace keyspace = CompressingKeyspace.builder(backend).build();
+		Assert.assertEquals(keyspace.get("a").get(), "plain");
+		Assert.assertEquals(keyspace.get("b").get(), "");
+		Assert.assertEquals(keyspace.get("c").get(), CompressingKeyspace.MARKER + "x");
+	}
+
+	/**
+	 * Verify that a preset dictionary shrinks small values and is required to read them
+	 */
+	@Test
+	public void dictionaryTest() {
+		final String value = "{\"id\":7,\"name\":\"user7\",\"active\":true,\"roles\":[\"admin\"]}";
+		final String dictionary = "{\"id\":,\"name\":\"user\",\"active\":true,\"roles\":[\"admin\"]}";
+		final Keyspace backend = MemoryAdapter.create().getKeyspace("test");
+
+		final CompressingKeyspace plain = CompressingKeyspace.builder(backend).threshold(0).build();
+		Assert.assertTrue(plain.set("plain", value));
+		final CompressingKeyspace primed = CompressingKeyspace.builder(backend).threshold(0).dictionary(dictionary)
+				.build();
+		Assert.assertTrue(primed.set("primed", value));
+
+		final String stored = backend.get("primed").get();
+		Assert.assertEquals(stored.charAt(1), CompressingKeyspace.DEFLATE_DICTIONARY);
+		Assert.assertTrue(stored.length() < backend.get("plain").get().length());
+		Assert.assertEquals(primed.get("primed").get(), value);
+		Assert.assertEquals(primed.get("plain").get(), value);
+		try {
+			plain.get("primed");
+			Assert.fail("Expected exception!");
+		} catch (final IllegalStateException e) {
+			// Expected
+		}
+	}
+
+	/**
+	 * Verify that codecs reused by one thread at different levels produce readable values
+	 */
+	@Test
+	public void levelsTest() {
+		final Keyspace backend = MemoryAdapter.create().getKeyspace("test");
+		for (int level = -1; level <= 9; level++) {
+			final CompressingKeyspace keyspace = CompressingKeyspace.builder(backend).threshold(0).level(level)
+					.build();
+			for (int i = 0; i < 3; i++) {
+				Assert.assertTrue(keyspace.set("a" + level, JSON.substring(i * 10)));
+				Assert.assertEquals(keyspace.get("a" + level).get(), JSON.substring(i * 10));
+			}
+		}
+		Assert.assertTrue(
+				CompressingKeyspace.builder(backend).build().setAll(Collections.singletonMap("b", JSON)));
+		Assert.assertEquals(CompressingKeyspace.builder(backend).build().get("b").get(), JSON);
+	}
+
+	/**
+	 * Verify that an invalid level is refused
+	 */
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void levelRangeTest() {
+		CompressingKeyspace.builder(MemoryAdapter.create().getKeyspace("test")).level(10);
+	}
+
+	/**
+	 * Verify that watched changes carry decoded values, and that a value that cannot be decoded fails the subscriber
+	 */
+	@Test
+	public void watchTest() throws InterruptedException {
+		final Keyspace backend = MemoryAdapter.create().getKeyspace("test");
+		final CompressingKeyspace keyspace = CompressingKeyspace.builder(backend).build();
+		final RecordingChangeSubscriber subscriber = new RecordingChangeSubscriber(Long.MAX_VALUE);
+		keyspace.watch(Watch.prefix("a").build()).subscribe(subscriber);
+
+		Assert.assertTrue(keyspace.set("a", JSON));
+		final ChangeEvent event = subscriber.next();
+		Assert.assertEquals(event.getType(), ChangeEvent.Type.SET);
+		Assert.assertEquals(event.getKeyValue().get(), keyspace.gets("a").get());
+		Assert.assertTrue(keyspace.delete("a"));
+		Assert.assertEquals(subscriber.next().getType(), ChangeEvent.Type.DELETE);
+
+		Assert.assertTrue(CompressingKeyspace.builder(backend).dictionary("user").build().set("a", JSON));
+		Assert.assertTrue(subscriber.awaitError() instanceof IllegalStateException);
+		subscriber.assertQuiet();
+	}
+}
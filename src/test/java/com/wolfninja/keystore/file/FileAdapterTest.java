@@ -0,0 +1,259 @@
+package com.wolfninja.keystore.file;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.wolfninja.keystore.api.BaseKeyValueStoreAdapterTest;
+import com.wolfninja.keystore.api.KeyValue;
+import com.wolfninja.keystore.api.KeyValueStore;
+import com.wolfninja.keystore.api.Keyspace;
+
+/**
+ * Tests for {@code FileAdapter}
+ */
+@Test
+public class FileAdapterTest extends BaseKeyValueStoreAdapterTest {
+
+	/**
+	 * Run the adapter contract against a new {@link FileAdapter}
+	 */
+	public FileAdapterTest() {
+		super(FileAdapter.builder(FileKeyspaceTest.temporaryDirectory()).segmentSize(1 << 20).build());
+	}
+
+	/**
+	 * Verify that entries and versions survive closing and reopening the directory
+	 */
+	@Test
+	public void reopenTest() throws IOException {
+		final Path directory = FileKeyspaceTest.temporaryDirectory();
+		final KeyValue before;
+		try (final FileAdapter adapter = FileAdapter.builder(directory).segmentSize(4096).build()) {
+			final Keyspace keyspace = adapter.getKeyspace("test");
+			for (int i = 0; i < 500; i++)
+				Assert.assertTrue(keyspace.set("key" + i % 50, "value" + i));
+			Assert.assertTrue(keyspace.delete("key0"));
+			before = keyspace.gets("key7").get();
+			Assert.assertTrue(adapter.getKeyspace("other \u00e9/..").set("key", "value"));
+		}
+
+		try (final FileAdapter adapter = FileAdapter.builder(directory).segmentSize(4096).build()) {
+			final Keyspace keyspace = adapter.getKeyspace("test");
+			Assert.assertFalse(keyspace.exists("key0"));
+			Assert.assertEquals(keyspace.gets("key7").get(), before);
+			Assert.assertEquals(keyspace.get("key49").get(), "value499");
+			Assert.assertFalse(keyspace.checkAndSet("key7", "stale", before.getVersion() - 1));
+			Assert.assertTrue(keyspace.checkAndSet("key7", "new", before.getVersion()));
+			Assert.assertTrue(keyspace.gets("key7").get().getVersion() > before.getVersion());
+			Assert.assertEquals(adapter.getKeyspace("other \u00e9/..").get("key").get(), "value");
+		}
+	}
+
+	/**
+	 * Verify that entries stay expired after reopening, without older versions of the key reappearing
+	 */
+	@Test
+	public void expiryAcrossReopenTest() throws IOException {
+		final Path directory = FileKeyspaceTest.temporaryDirectory();
+		final AtomicLong clock = new AtomicLong(1_000_000L);
+		try (final FileAdapter adapter = FileAdapter.builder(directory).segmentSize(4096).clock(clock::get).build()) {
+			final Keyspace keyspace = adapter.getKeyspace("test");
+			Assert.assertTrue(keyspace.set("key", "old"));
+			for (int i = 0; i < 100; i++)
+				Assert.assertTrue(keyspace.set("filler" + i, "value" + i));
+			Assert.assertTrue(keyspace.set("key", "new", 10L, TimeUnit.SECONDS));
+			Assert.assertTrue(keyspace.set("long", "value", 1L, TimeUnit.HOURS));
+		}
+
+		clock.addAndGet(TimeUnit.SECONDS.toMillis(20L));
+		try (final FileAdapter adapter = FileAdapter.builder(directory).segmentSize(4096).clock(clock::get).build()) {
+			final Keyspace keyspace = adapter.getKeyspace("test");
+			Assert.assertFalse(keyspace.exists("key"));
+			Assert.assertEquals(keyspace.get("long").get(), "value");
+			Assert.assertTrue(keyspace.ttl("long").get().getSeconds() > 3_500L);
+			adapter.compact();
+			Assert.assertFalse(keyspace.exists("key"));
+		}
+
+		try (final FileAdapter adapter = FileAdapter.builder(directory).segmentSize(4096).clock(clock::get).build()) {
+			Assert.assertFalse(adapter.getKeyspace("test").exists("key"));
+		}
+	}
+
+	/**
+	 * Verify that versions of deleted and compacted entries are never reused after reopening
+	 */
+	@Test
+	public void versionsAfterCompactionTest() throws IOException {
+		final Path directory = FileKeyspaceTest.temporaryDirectory();
+		final long deletedVersion;
+		try (final FileAdapter adapter = FileAdapter.builder(directory).segmentSize(4096).build()) {
+			final Keyspace keyspace = adapter.getKeyspace("test");
+			Assert.assertTrue(keyspace.set("key", "value"));
+			deletedVersion = keyspace.gets("key").get().getVersion();
+			Assert.assertTrue(keyspace.delete("key"));
+			adapter.compact();
+		}
+
+		try (final FileAdapter adapter = FileAdapter.builder(directory).segmentSize(4096).build()) {
+			final Keyspace keyspace = adapter.getKeyspace("test");
+			Assert.assertFalse(keyspace.exists("key"));
+			Assert.assertTrue(keyspace.add("key", "value"));
+			Assert.assertTrue(keyspace.gets("key").get().getVersion() > deletedVersion);
+		}
+	}
+
+	/**
+	 * Verify that a compaction interrupted while deleting the segments it replaced can not bring back a deleted entry
+	 */
+	@Test
+	public void interruptedCompactionTest() throws IOException {
+		final Path directory = FileKeyspaceTest.temporaryDirectory();
+		final Path backup = FileKeyspaceTest.temporaryDirectory();
+		final Path keyspaceDirectory;
+		try (final FileAdapter adapter = FileAdapter.builder(directory).segmentSize(4096).build()) {
+			final Keyspace keyspace = adapter.getKeyspace("test");
+			Assert.assertTrue(keyspace.set("key", "value"));
+			for (int i = 0; i < 100; i++)
+				Assert.assertTrue(keyspace.set("filler" + i, "value" + i));
+			Assert.assertTrue(keyspace.delete("key"));
+			keyspace.flush();
+			keyspaceDirectory = segments(directory).get(0).getParent();
+			for (final Path segment : segments(directory))
+				Files.copy(segment, backup.resolve(segment.getFileName()));
+			adapter.compact();
+			Assert.assertTrue(keyspace.set("other", "value"));
+		}
+
+		// Restore only the oldest replaced segment, which holds the entry but not its delete, as if the crash came
+		// before the others were deleted
+		final StringBuilder compacted = new StringBuilder();
+		final List<Path> replaced = segments(backup);
+		for (final Path segment : replaced)
+			compacted.append(Long.parseLong(segment.getFileName().toString().substring(0, 16), 16)).append('\n');
+		final Path restored = keyspaceDirectory.resolve(replaced.get(0).getFileName());
+		Files.copy(replaced.get(0), restored);
+		Files.write(keyspaceDirectory.resolve("compacted"), compacted.toString().getBytes(StandardCharsets.US_ASCII));
+
+		try (final FileAdapter adapter = FileAdapter.builder(directory).segmentSize(4096).build()) {
+			final Keyspace keyspace = adapter.getKeyspace("test");
+			Assert.assertFalse(keyspace.exists("key"));
+			Assert.assertEquals(keyspace.get("filler99").get(), "value99");
+			Assert.assertEquals(keyspace.get("other").get(), "value");
+			Assert.assertFalse(Files.exists(restored));
+		}
+	}
+
+	/**
+	 * Verify that a record torn by a crash is ignored and later writes go after the last valid record
+	 */
+	@Test
+	public void tornWriteTest() throws IOException {
+		final Path directory = FileKeyspaceTest.temporaryDirectory();
+		try (final FileAdapter adapter = FileAdapter.builder(directory).segmentSize(4096).build()) {
+			final Keyspace keyspace = adapter.getKeyspace("test");
+			Assert.assertTrue(keyspace.set("first", "value"));
+			Assert.assertTrue(keyspace.set("second", "value"));
+		}
+		final Path segment;
+		try (final Stream<Path> files = Files.walk(directory)) {
+			segment = files.filter(file -> file.toString().endsWith(".log")).findFirst().get();
+		}
+		// Corrupt the last value byte of the second record and drop the hint file
+		Files.delete(segment.resolveSibling(segment.getFileName().toString().replace(".log", ".hint")));
+		try (final FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap(new byte[] { 'X' }), 2L * Segment.HEADER + 5 + 5 + 6 + 4);
+		}
+
+		try (final FileAdapter adapter = FileAdapter.builder(directory).segmentSize(4096).build()) {
+			final Keyspace keyspace = adapter.getKeyspace("test");
+			Assert.assertEquals(keyspace.get("first").get(), "value");
+			Assert.assertFalse(keyspace.exists("second"));
+			Assert.assertTrue(keyspace.set("third", "value"));
+		}
+		try (final FileAdapter adapter = FileAdapter.builder(directory).segmentSize(4096).build()) {
+			Assert.assertEquals(adapter.getKeyspace("test").get("third").get(), "value");
+		}
+	}
+
+	/**
+	 * Verify that a directory can only be opened by one adapter at a time
+	 */
+	@Test
+	public void directoryLockTest() throws IOException {
+		final Path directory = FileKeyspaceTest.temporaryDirectory();
+		try (final FileAdapter adapter = FileAdapter.open(directory)) {
+			Assert.assertEquals(adapter.getDirectory(), directory);
+			try {
+				FileAdapter.open(directory);
+				Assert.fail("Expected exception!");
+			} catch (final IllegalStateException e) {
+				// Expected
+			}
+		}
+		FileAdapter.open(directory).close();
+	}
+
+	/**
+	 * Verify that closing a store over the adapter flushes its keyspaces and releases the directory
+	 */
+	@Test
+	public void storeCloseTest() {
+		final Path directory = FileKeyspaceTest.temporaryDirectory();
+		try (final KeyValueStore store = KeyValueStore.create(FileAdapter.open(directory))) {
+			store.warmUp(Arrays.asList("first", "second"));
+			Assert.assertTrue(store.getKeyspace("first").set("key", "value"));
+			store.flush();
+		}
+		try (final FileAdapter adapter = FileAdapter.open(directory)) {
+			Assert.assertEquals(adapter.getKeyspace("first").get("key").get(), "value");
+		}
+	}
+
+	/**
+	 * Verify that writes are rejected after closing
+	 */
+	@Test(expectedExceptions = IllegalStateException.class)
+	public void writeAfterCloseTest() throws IOException {
+		final FileAdapter adapter = FileAdapter.open(FileKeyspaceTest.temporaryDirectory());
+		final Keyspace keyspace = adapter.getKeyspace("test");
+		adapter.close();
+		keyspace.set("key", "value");
+	}
+
+	/**
+	 * Verify that too small a segment size is refused
+	 */
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void segmentSizeTooSmallTest() {
+		FileAdapter.builder(FileKeyspaceTest.temporaryDirectory()).segmentSize(1024);
+	}
+
+	/**
+	 * Verify that a null directory throws exception
+	 */
+	@Test(expectedExceptions = NullPointerException.class)
+	public void directoryNotNullableTest() {
+		FileAdapter.builder(null);
+	}
+
+	private static List<Path> segments(final Path directory) throws IOException {
+		try (final Stream<Path> files = Files.walk(directory)) {
+			return files.filter(file -> file.toString().endsWith(".log")).sorted().collect(Collectors.toList());
+		}
+	}
+}
@@ -0,0 +1,50 @@
+package com.wolfninja.keystore.file;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.wolfninja.keystore.api.BaseBinaryKeyspaceTest;
+import com.wolfninja.keystore.api.BinaryKeyspace;
+import com.wolfninja.keystore.api.Keyspace;
+
+/**
+ * Tests for {@code FileBinaryKeyspace}
+ */
+@Test
+public class FileBinaryKeyspaceTest extends BaseBinaryKeyspaceTest {
+
+	/**
+	 * Run the binary keyspace contract against the native binary keyspace of a new {@link FileAdapter}
+	 */
+	public FileBinaryKeyspaceTest() {
+		super(FileAdapter.builder(FileKeyspaceTest.temporaryDirectory()).segmentSize(1 << 20).build()
+				.getBinaryKeyspace("test").get());
+	}
+
+	/**
+	 * Verify that the binary and String views share entries and versions, and that values view the mapped file
+	 */
+	@Test
+	public void viewsShouldShareEntriesTest() {
+		final FileAdapter adapter = FileAdapter.builder(FileKeyspaceTest.temporaryDirectory()).segmentSize(1 << 20)
+				.build();
+		final Keyspace strings = adapter.getKeyspace("test");
+		final BinaryKeyspace bytes = adapter.getBinaryKeyspace("test").get();
+
+		Assert.assertTrue(strings.set("key", "value"));
+		final ByteBuffer value = bytes.get("key").get();
+		Assert.assertTrue(value.isDirect());
+		Assert.assertTrue(value.isReadOnly());
+		Assert.assertEquals(bytes.gets("key").get().getValueBytes(), "value".getBytes(StandardCharsets.UTF_8));
+		Assert.assertEquals(bytes.gets("key").get().getVersion(), strings.gets("key").get().getVersion());
+
+		Assert.assertTrue(bytes.checkAndSet("key", "other".getBytes(StandardCharsets.UTF_8),
+				strings.gets("key").get().getVersion()));
+		Assert.assertEquals(strings.get("key").get(), "other");
+		// Views of earlier records stay valid
+		Assert.assertEquals(StandardCharsets.UTF_8.decode(value).toString(), "value");
+	}
+}
@@ -0,0 +1,20 @@
+package com.wolfninja.keystore.file;
+
+import org.testng.annotations.Test;
+
+import com.wolfninja.keystore.api.BaseConcurrentKeyspaceTest;
+
+/**
+ * Runs the concurrency contract against {@code FileKeyspace}
+ */
+@Test
+public class FileConcurrentKeyspaceTest extends BaseConcurrentKeyspaceTest {
+
+	/**
+	 * Run the contract against a keyspace of a new {@link FileAdapter}
+	 */
+	public FileConcurrentKeyspaceTest() {
+		super(FileAdapter.builder(FileKeyspaceTest.temporaryDirectory()).segmentSize(1 << 20).build()
+				.getKeyspace("test"));
+	}
+}
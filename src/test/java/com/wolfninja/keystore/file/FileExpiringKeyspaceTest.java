@@ -0,0 +1,20 @@
+package com.wolfninja.keystore.file;
+
+import org.testng.annotations.Test;
+
+import com.wolfninja.keystore.api.BaseExpiringKeyspaceTest;
+
+/**
+ * Runs the expiry contract against {@code FileKeyspace}
+ */
+@Test
+public class FileExpiringKeyspaceTest extends BaseExpiringKeyspaceTest {
+
+	/**
+	 * Run the contract against a keyspace of a new {@link FileAdapter}
+	 */
+	public FileExpiringKeyspaceTest() {
+		super(FileAdapter.builder(FileKeyspaceTest.temporaryDirectory()).segmentSize(1 << 20).build()
+				.getKeyspace("test"));
+	}
+}
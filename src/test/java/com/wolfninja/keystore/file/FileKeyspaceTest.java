@@ -0,0 +1,138 @@
+package com.wolfninja.keystore.file;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.wolfninja.keystore.api.BaseScanKeyspaceTest;
+import com.wolfninja.keystore.api.KeyValue;
+import com.wolfninja.keystore.api.Keyspace;
+
+/**
+ * Tests for {@code FileKeyspace}
+ */
+@Test
+public class FileKeyspaceTest extends BaseScanKeyspaceTest {
+
+	/**
+	 * Run the keyspace contract against a keyspace of a new {@link FileAdapter}
+	 */
+	public FileKeyspaceTest() {
+		super(FileAdapter.builder(temporaryDirectory()).segmentSize(1 << 20).build().getKeyspace("test"));
+	}
+
+	/**
+	 * Verify that writes spanning many segments keep their values and increasing versions
+	 */
+	@Test
+	public void rollSegmentsTest() {
+		final FileAdapter adapter = FileAdapter.builder(temporaryDirectory()).segmentSize(4096).build();
+		final FileKeyspace keyspace = (FileKeyspace) adapter.getKeyspace("test");
+		long version = Long.MIN_VALUE;
+		for (int i = 0; i < 1000; i++) {
+			Assert.assertTrue(keyspace.set("key" + i % 10, "value" + i));
+			final KeyValue actual = keyspace.gets("key" + i % 10).get();
+			Assert.assertEquals(actual.getValue(), "value" + i);
+			Assert.assertTrue(actual.getVersion() > version);
+			version = actual.getVersion();
+		}
+		Assert.assertTrue(keyspace.segmentCount() > 1);
+		for (int i = 990; i < 1000; i++)
+			Assert.assertEquals(keyspace.get("key" + i % 10).get(), "value" + i);
+	}
+
+	/**
+	 * Verify that compaction keeps live entries and versions and drops superseded segments
+	 */
+	@Test
+	public void compactTest() {
+		final FileAdapter adapter = FileAdapter.builder(temporaryDirectory()).segmentSize(4096).build();
+		final FileKeyspace keyspace = (FileKeyspace) adapter.getKeyspace("test");
+		for (int i = 0; i < 1000; i++)
+			Assert.assertTrue(keyspace.set("key" + i % 10, "value" + i));
+		Assert.assertTrue(keyspace.delete("key0"));
+		final KeyValue before = keyspace.gets("key5").get();
+
+		adapter.compact();
+		Assert.assertEquals(keyspace.segmentCount(), 2);
+		Assert.assertEquals(keyspace.garbageRatio(), 0.0);
+		Assert.assertEquals(keyspace.gets("key5").get(), before);
+		Assert.assertFalse(keyspace.exists("key0"));
+		Assert.assertEquals(keyspace.size(), 9L);
+	}
+
+	/**
+	 * Verify that deletes stay deleted when compaction moves the entry while the delete is being written, before and
+	 * after reopening
+	 */
+	@Test
+	public void deletesDuringCompactionTest() {
+		final Path directory = temporaryDirectory();
+		// Compacts on the writing thread whenever a segment fills up, between appending a delete and updating the index
+		FileKeyspace keyspace = FileKeyspace.open(directory, 4096, 0.0, false, Runnable::run,
+				System::currentTimeMillis);
+		for (int i = 0; i < 1000; i++)
+			Assert.assertTrue(keyspace.set("key" + i, "value" + i));
+		for (int i = 0; i < 1000; i += 2) {
+			Assert.assertTrue(keyspace.delete("key" + i));
+			Assert.assertFalse(keyspace.exists("key" + i), "key" + i);
+		}
+		keyspace.seal();
+
+		keyspace = FileKeyspace.open(directory, 4096, 0.0, false, Runnable::run, System::currentTimeMillis);
+		for (int i = 0; i < 1000; i++)
+			Assert.assertEquals(keyspace.get("key" + i), i % 2 == 1 ? Optional.of("value" + i) : Optional.empty(),
+					"key" + i);
+		keyspace.seal();
+	}
+
+	/**
+	 * Verify that expired entries are dropped by later writes and by compaction, without being read again
+	 */
+	@Test
+	public void expiredEntriesDroppedTest() {
+		final AtomicLong clock = new AtomicLong(1_000_000L);
+		final FileAdapter adapter = FileAdapter.builder(temporaryDirectory()).segmentSize(4096).clock(clock::get)
+				.build();
+		final FileKeyspace keyspace = (FileKeyspace) adapter.getKeyspace("test");
+		for (int i = 0; i < 100; i++)
+			Assert.assertTrue(keyspace.set("key" + i, "value" + i, 1L + i % 2, TimeUnit.SECONDS));
+		Assert.assertEquals(keyspace.size(), 100L);
+
+		clock.addAndGet(1_500L);
+		for (int i = 0; i < 20; i++)
+			Assert.assertTrue(keyspace.set("other" + i, "value"));
+		Assert.assertTrue(keyspace.size() < 120L);
+
+		adapter.compact();
+		Assert.assertEquals(keyspace.size(), 70L);
+		Assert.assertEquals(keyspace.scan("key").count(), 50L);
+		Assert.assertEquals(keyspace.get("key1").get(), "value1");
+		Assert.assertFalse(keyspace.exists("key0"));
+	}
+
+	/**
+	 * Verify that entries larger than a segment are refused
+	 */
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void oversizedValueTest() {
+		final Keyspace keyspace = FileAdapter.builder(temporaryDirectory()).segmentSize(4096).build()
+				.getKeyspace("test");
+		keyspace.set("key", new String(new char[4096]));
+	}
+
+	static Path temporaryDirectory() {
+		try {
+			return Files.createTempDirectory("keystore-file-test");
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
@@ -0,0 +1,20 @@
+package com.wolfninja.keystore.file;
+
+import org.testng.annotations.Test;
+
+import com.wolfninja.keystore.api.BaseWatchKeyspaceTest;
+
+/**
+ * Runs the watch contract against {@code FileKeyspace}
+ */
+@Test
+public class FileWatchKeyspaceTest extends BaseWatchKeyspaceTest {
+
+	/**
+	 * Run the contract against a keyspace of a new {@link FileAdapter}
+	 */
+	public FileWatchKeyspaceTest() {
+		super(FileAdapter.builder(FileKeyspaceTest.temporaryDirectory()).segmentSize(1 << 20).build()
+				.getKeyspace("test"));
+	}
+}
@@ -0,0 +1,91 @@
+package com.wolfninja.keystore.limit;
+
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.wolfninja.keystore.limit.LimitAdapter.Algorithm;
+
+/**
+ * Tests for {@code ConcurrencyLimiter}, feeding it latency samples directly
+ */
+@Test
+public class ConcurrencyLimiterTest {
+
+	private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1L);
+	private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(20L);
+
+	/**
+	 * Verify that AIMD grows by about one per round trip while fast and backs off once per round trip when slow
+	 */
+	@Test
+	public void aimdTest() {
+		final ConcurrencyLimiter limiter = new ConcurrencyLimiter(Algorithm.AIMD, 10, 2, 100,
+				TimeUnit.MILLISECONDS.toNanos(10L), 0L);
+		long now = System.nanoTime();
+		for (int i = 0; i < 10; i++, now += FAST)
+			limiter.sample(10, now, now + FAST);
+		Assert.assertEquals(limiter.getLimit(), 10);
+		for (int i = 0; i < 10; i++, now += FAST)
+			limiter.sample(10, now, now + FAST);
+		Assert.assertEquals(limiter.getLimit(), 11);
+
+		// Samples started before the backoff do not back off again
+		final long round = now;
+		now += SLOW;
+		limiter.sample(11, round, now);
+		final int backedOff = limiter.getLimit();
+		Assert.assertEquals(backedOff, (int) (11.9 * ConcurrencyLimiter.BACKOFF_RATIO));
+		limiter.sample(11, round, now + FAST);
+		Assert.assertEquals(limiter.getLimit(), backedOff);
+		for (int i = 0; i < 50; i++, now += SLOW)
+			limiter.sample(9, now + 1L, now + SLOW);
+		Assert.assertEquals(limiter.getLimit(), 2);
+	}
+
+	/**
+	 * Verify that AIMD does not grow while most of the limit is unused
+	 */
+	@Test
+	public void aimdIdleTest() {
+		final ConcurrencyLimiter limiter = new ConcurrencyLimiter(Algorithm.AIMD, 10, 1, 100, SLOW, 0L);
+		long now = System.nanoTime();
+		for (int i = 0; i < 100; i++, now += FAST)
+			limiter.sample(1, now, now + FAST);
+		Assert.assertEquals(limiter.getLimit(), 10);
+	}
+
+	/**
+	 * Verify that the gradient limit grows at a steady latency, shrinks when latency rises and recovers afterwards
+	 */
+	@Test
+	public void gradientTest() {
+		final ConcurrencyLimiter limiter = new ConcurrencyLimiter(Algorithm.GRADIENT, 10, 1, 50, 0L, 0L);
+		long now = System.nanoTime();
+		for (int i = 0; i < 100; i++, now += FAST)
+			limiter.sample(limiter.getLimit(), now, now + FAST);
+		Assert.assertEquals(limiter.getLimit(), 50);
+
+		for (int i = 0; i < 100; i++, now += SLOW)
+			limiter.sample(limiter.getLimit(), now, now + SLOW);
+		final int overloaded = limiter.getLimit();
+		Assert.assertTrue(overloaded < 10, "limit " + overloaded);
+
+		for (int i = 0; i < 200; i++, now += FAST)
+			limiter.sample(limiter.getLimit(), now, now + FAST);
+		Assert.assertTrue(limiter.getLimit() > overloaded * 2, "limit " + limiter.getLimit());
+	}
+
+	/**
+	 * Verify that the gradient limit does not grow while most of the limit is unused
+	 */
+	@Test
+	public void gradientIdleTest() {
+		final ConcurrencyLimiter limiter = new ConcurrencyLimiter(Algorithm.GRADIENT, 10, 1, 50, 0L, 0L);
+		long now = System.nanoTime();
+		for (int i = 0; i < 100; i++, now += FAST)
+			limiter.sample(1, now, now + FAST);
+		Assert.assertEquals(limiter.getLimit(), 10);
+	}
+}
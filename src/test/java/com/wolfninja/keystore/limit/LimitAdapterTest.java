@@ -0,0 +1,71 @@
+package com.wolfninja.keystore.limit;
+
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.wolfninja.keystore.api.BaseKeyValueStoreAdapterTest;
+import com.wolfninja.keystore.memory.MemoryAdapter;
+
+/**
+ * Tests for {@code LimitAdapter}
+ */
+@Test
+public class LimitAdapterTest extends BaseKeyValueStoreAdapterTest {
+
+	/**
+	 * Run the adapter contract against a {@link LimitAdapter} over a {@link MemoryAdapter}
+	 */
+	public LimitAdapterTest() {
+		super(LimitAdapter.builder(MemoryAdapter.create()).build());
+	}
+
+	/**
+	 * Verify that each keyspace gets its own limit, starting at the initial limit
+	 */
+	@Test
+	public void limitKeyspaceTest() {
+		final LimitAdapter adapter = LimitAdapter.builder(MemoryAdapter.create()).initialLimit(5).build();
+		final LimitKeyspace keyspace = adapter.getLimitKeyspace("test");
+		Assert.assertSame(adapter.getKeyspace("test"), keyspace);
+		Assert.assertNotSame(adapter.getLimitKeyspace("other"), keyspace);
+		Assert.assertEquals(keyspace.getLimit(), 5);
+		Assert.assertTrue(keyspace.set("a", "b"));
+		Assert.assertEquals(keyspace.getInFlight(), 0);
+		Assert.assertFalse(adapter.getAsyncKeyspace("test").isPresent());
+		Assert.assertFalse(adapter.getBinaryKeyspace("test").isPresent());
+	}
+
+	/**
+	 * Verify that an initial limit outside the bounds is refused
+	 */
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void initialLimitRangeTest() {
+		LimitAdapter.builder(MemoryAdapter.create()).minLimit(10).initialLimit(5).build();
+	}
+
+	/**
+	 * Verify that a minimum limit above the maximum is refused
+	 */
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void limitRangeTest() {
+		LimitAdapter.builder(MemoryAdapter.create()).minLimit(10).maxLimit(5).build();
+	}
+
+	/**
+	 * Verify that a negative queue time is refused
+	 */
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void maxQueueTimeTest() {
+		LimitAdapter.builder(MemoryAdapter.create()).maxQueueTime(-1L, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Verify that a null adapter throws exception
+	 */
+	@Test(expectedExceptions = NullPointerException.class)
+	public void adapterNotNullableTest() {
+		LimitAdapter.builder(null);
+	}
+}
@@ -0,0 +1,161 @@
+package com.wolfninja.keystore.limit;
+
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.easymock.EasyMock;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.wolfninja.keystore.api.BaseScanKeyspaceTest;
+import com.wolfninja.keystore.api.Keyspace;
+import com.wolfninja.keystore.memory.MemoryAdapter;
+
+/**
+ * Tests for {@code LimitKeyspace}
+ */
+@Test
+public class LimitKeyspaceTest extends BaseScanKeyspaceTest {
+
+	private static final long TIMEOUT_SECONDS = 10L;
+
+	private CountDownLatch unblock;
+	private Keyspace blocking;
+	private ExecutorService executor;
+
+	/**
+	 * Run the keyspace contract against a {@link LimitKeyspace} over a memory keyspace
+	 */
+	public LimitKeyspaceTest() {
+		super(LimitAdapter.builder(MemoryAdapter.create()).build().getKeyspace("test"));
+	}
+
+	/**
+	 * Create a keyspace whose reads block until released
+	 */
+	@BeforeMethod
+	protected void setUp() throws InterruptedException {
+		unblock = new CountDownLatch(1);
+		blocking = EasyMock.createNiceMock(Keyspace.class);
+		EasyMock.expect(blocking.get(EasyMock.anyString())).andAnswer(() -> {
+			Assert.assertTrue(unblock.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+			return Optional.of("value");
+		}).anyTimes();
+		EasyMock.replay(blocking);
+		executor = Executors.newCachedThreadPool();
+	}
+
+	/**
+	 * Release blocked reads
+	 */
+	@AfterMethod
+	protected void tearDown() {
+		unblock.countDown();
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Verify that calls over the limit are rejected at once without reaching the decorated keyspace
+	 */
+	@Test
+	public void rejectTest() throws Exception {
+		final LimitKeyspace keyspace = fixedLimit(2, 0L);
+		final Future<?> first = executor.submit(() -> keyspace.get("a"));
+		final Future<?> second = executor.submit(() -> keyspace.get("b"));
+		await(() -> keyspace.getInFlight() == 2);
+		try {
+			keyspace.get("c");
+			Assert.fail("Expected exception!");
+		} catch (final RejectedExecutionException e) {
+			// Expected
+		}
+		Assert.assertEquals(keyspace.getRejectedCount(), 1L);
+		Assert.assertEquals(keyspace.getQueuedCount(), 0L);
+
+		unblock.countDown();
+		first.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		second.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		Assert.assertEquals(keyspace.getInFlight(), 0);
+		Assert.assertEquals(keyspace.get("c"), Optional.of("value"));
+	}
+
+	/**
+	 * Verify that a call over the limit waits for a slot to be released
+	 */
+	@Test
+	public void queueTest() throws Exception {
+		final LimitKeyspace keyspace = fixedLimit(1, TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS));
+		final Future<?> first = executor.submit(() -> keyspace.get("a"));
+		await(() -> keyspace.getInFlight() == 1);
+		final Future<Optional<String>> queued = executor.submit(() -> keyspace.get("b"));
+		await(() -> keyspace.getQueuedCount() == 1L);
+		Assert.assertFalse(queued.isDone());
+
+		unblock.countDown();
+		first.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		Assert.assertEquals(queued.get(TIMEOUT_SECONDS, TimeUnit.SECONDS), Optional.of("value"));
+		Assert.assertEquals(keyspace.getQueueTime().getCount(), 1L);
+		Assert.assertEquals(keyspace.getRejectedCount(), 0L);
+	}
+
+	/**
+	 * Verify that a call waiting longer than the maximum queue time is rejected
+	 */
+	@Test
+	public void queueTimeoutTest() throws Exception {
+		final LimitKeyspace keyspace = fixedLimit(1, TimeUnit.MILLISECONDS.toNanos(20L));
+		executor.submit(() -> keyspace.get("a"));
+		await(() -> keyspace.getInFlight() == 1);
+		try {
+			keyspace.get("b");
+			Assert.fail("Expected exception!");
+		} catch (final RejectedExecutionException e) {
+			// Expected
+		}
+		Assert.assertEquals(keyspace.getQueuedCount(), 1L);
+		Assert.assertEquals(keyspace.getRejectedCount(), 1L);
+		Assert.assertTrue(keyspace.getQueueTime().getMax() >= TimeUnit.MILLISECONDS.toNanos(20L));
+	}
+
+	/**
+	 * Verify that a slot is released when the decorated keyspace fails
+	 */
+	@Test
+	public void releaseOnFailureTest() {
+		final Keyspace failing = EasyMock.createNiceMock(Keyspace.class);
+		EasyMock.expect(failing.set("a", "b")).andThrow(new IllegalStateException("Backend down")).times(2);
+		EasyMock.replay(failing);
+		final LimitKeyspace keyspace = new LimitKeyspace(failing,
+				new ConcurrencyLimiter(LimitAdapter.Algorithm.AIMD, 1, 1, 1, Long.MAX_VALUE, 0L));
+		for (int i = 0; i < 2; i++)
+			try {
+				keyspace.set("a", "b");
+				Assert.fail("Expected exception!");
+			} catch (final IllegalStateException e) {
+				// Expected
+			}
+		Assert.assertEquals(keyspace.getInFlight(), 0);
+		Assert.assertEquals(keyspace.getRejectedCount(), 0L);
+	}
+
+	private LimitKeyspace fixedLimit(final int limit, final long maxQueueNanos) {
+		return new LimitKeyspace(blocking, new ConcurrencyLimiter(LimitAdapter.Algorithm.GRADIENT, limit, limit,
+				limit, Long.MAX_VALUE, maxQueueNanos));
+	}
+
+	private static void await(final BooleanSupplier condition) throws InterruptedException {
+		final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+		while (!condition.getAsBoolean()) {
+			Assert.assertTrue(System.nanoTime() < deadline, "Condition not met in time");
+			Thread.sleep(1L);
+		}
+	}
+}
@@ -0,0 +1,45 @@
+package com.wolfninja.keystore.memory;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.wolfninja.keystore.api.BaseKeyValueStoreAdapterTest;
+import com.wolfninja.keystore.api.Keyspace;
+
+/**
+ * Tests for {@code MemoryAdapter}
+ */
+@Test
+public class MemoryAdapterTest extends BaseKeyValueStoreAdapterTest {
+
+	/**
+	 * Run the adapter contract against a new {@link MemoryAdapter}
+	 */
+	public MemoryAdapterTest() {
+		super(MemoryAdapter.create());
+	}
+
+	/**
+	 * Verify that the same keyspace name returns the same keyspace, and different names are independent
+	 */
+	@Test
+	public void keyspacesShouldBeIndependentTest() {
+		final MemoryAdapter adapter = MemoryAdapter.create();
+		final Keyspace first = adapter.getKeyspace("first");
+		Assert.assertSame(adapter.getKeyspace("first"), first);
+
+		Assert.assertTrue(first.add("key", "value"));
+		Assert.assertFalse(adapter.getKeyspace("second").exists("key"));
+		Assert.assertTrue(adapter.getKeyspace("first").exists("key"));
+	}
+
+	/**
+	 * Verify that the async keyspace sees the same data as the blocking one
+	 */
+	@Test
+	public void asyncKeyspaceShouldShareDataTest() {
+		final MemoryAdapter adapter = MemoryAdapter.create();
+		Assert.assertTrue(adapter.getKeyspace("ks").add("key", "value"));
+		Assert.assertEquals(adapter.getAsyncKeyspace("ks").get().get("key").join().get(), "value");
+	}
+}
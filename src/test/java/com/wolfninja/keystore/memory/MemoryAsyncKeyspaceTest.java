@@ -0,0 +1,19 @@
+package com.wolfninja.keystore.memory;
+
+import org.testng.annotations.Test;
+
+import com.wolfninja.keystore.api.BaseAsyncKeyspaceTest;
+
+/**
+ * Runs the async keyspace contract against {@code MemoryAdapter}
+ */
+@Test
+public class MemoryAsyncKeyspaceTest extends BaseAsyncKeyspaceTest {
+
+	/**
+	 * Run the contract against the native async keyspace of a new {@link MemoryAdapter}
+	 */
+	public MemoryAsyncKeyspaceTest() {
+		super(MemoryAdapter.create().getAsyncKeyspace("test").get());
+	}
+}
@@ -0,0 +1,19 @@
+package com.wolfninja.keystore.memory;
+
+import org.testng.annotations.Test;
+
+import com.wolfninja.keystore.api.BaseConcurrentKeyspaceTest;
+
+/**
+ * Runs the concurrency contract against {@code MemoryKeyspace}
+ */
+@Test
+public class MemoryConcurrentKeyspaceTest extends BaseConcurrentKeyspaceTest {
+
+	/**
+	 * Run the contract against a keyspace of a new {@link MemoryAdapter}
+	 */
+	public MemoryConcurrentKeyspaceTest() {
+		super(MemoryAdapter.create().getKeyspace("test"));
+	}
+}
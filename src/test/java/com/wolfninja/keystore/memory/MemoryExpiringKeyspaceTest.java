@@ -0,0 +1,19 @@
+package com.wolfninja.keystore.memory;
+
+import org.testng.annotations.Test;
+
+import com.wolfninja.keystore.api.BaseExpiringKeyspaceTest;
+
+/**
+ * Runs the expiry contract against {@code MemoryKeyspace}
+ */
+@Test
+public class MemoryExpiringKeyspaceTest extends BaseExpiringKeyspaceTest {
+
+	/**
+	 * Run the contract against a keyspace of a new {@link MemoryAdapter}
+	 */
+	public MemoryExpiringKeyspaceTest() {
+		super(MemoryAdapter.create().getKeyspace("test"));
+	}
+}
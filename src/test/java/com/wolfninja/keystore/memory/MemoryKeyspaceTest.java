@@ -0,0 +1,162 @@
+package com.wolfninja.keystore.memory;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.testng.Assert;
+import org.testng.SkipException;
+import org.testng.annotations.Test;
+
+import com.wolfninja.keystore.api.BaseScanKeyspaceTest;
+import com.wolfninja.keystore.api.KeyValue;
+import com.wolfninja.keystore.api.KeyValueHolder;
+import com.wolfninja.keystore.api.Keyspace;
+
+/**
+ * Tests for {@code MemoryKeyspace}
+ */
+@Test
+public class MemoryKeyspaceTest extends BaseScanKeyspaceTest {
+
+	private static final int THREADS = 8;
+
+	/**
+	 * Run the keyspace contract against a keyspace of a new {@link MemoryAdapter}
+	 */
+	public MemoryKeyspaceTest() {
+		super(MemoryAdapter.create().getKeyspace("test"));
+	}
+
+	/**
+	 * Verify that versions keep increasing across delete and re-add
+	 */
+	@Test
+	public void versionsShouldIncreaseAcrossDeleteTest() {
+		final Keyspace keyspace = MemoryAdapter.create().getKeyspace("test");
+		Assert.assertTrue(keyspace.add("key", "first"));
+		final long first = keyspace.gets("key").get().getVersion();
+		Assert.assertTrue(keyspace.delete("key"));
+		Assert.assertTrue(keyspace.add("key", "second"));
+		Assert.assertTrue(keyspace.gets("key").get().getVersion() > first);
+		Assert.assertFalse(keyspace.checkAndSet("key", "third", first));
+	}
+
+	/**
+	 * Verify that only one of many concurrent adds of the same key wins
+	 */
+	@Test
+	public void concurrentAddShouldHaveOneWinnerTest() throws Exception {
+		final Keyspace keyspace = MemoryAdapter.create().getKeyspace("test");
+		final AtomicInteger winners = new AtomicInteger();
+		runConcurrently(() -> {
+			if (keyspace.add("key", Thread.currentThread().getName()))
+				winners.incrementAndGet();
+			return null;
+		});
+		Assert.assertEquals(winners.get(), 1);
+	}
+
+	/**
+	 * Verify that concurrent check-and-set increments are never lost
+	 */
+	@Test
+	public void concurrentCheckAndSetShouldNotLoseUpdatesTest() throws Exception {
+		final Keyspace keyspace = MemoryAdapter.create().getKeyspace("test");
+		final int increments = 1_000;
+		Assert.assertTrue(keyspace.set("counter", "0"));
+		runConcurrently(() -> {
+			for (int i = 0; i < increments; i++) {
+				while (true) {
+					final KeyValue current = keyspace.gets("counter").get();
+					final String next = String.valueOf(Long.parseLong(current.getValue()) + 1L);
+					if (keyspace.checkAndSet("counter", next, current.getVersion()))
+						break;
+				}
+			}
+			return null;
+		});
+		Assert.assertEquals(keyspace.get("counter").get(), String.valueOf(THREADS * increments));
+	}
+
+	/**
+	 * Verify that entries expire exactly at their deadline and that the remaining time counts down
+	 */
+	@Test
+	public void expireAtDeadlineTest() {
+		final AtomicLong ticker = new AtomicLong();
+		final Keyspace keyspace = new MemoryKeyspace(ticker::get);
+		Assert.assertTrue(keyspace.set("key", "value", 10L, TimeUnit.SECONDS));
+		ticker.addAndGet(TimeUnit.SECONDS.toNanos(4L));
+		Assert.assertEquals(keyspace.ttl("key").get().getSeconds(), 6L);
+
+		ticker.addAndGet(TimeUnit.SECONDS.toNanos(6L) - 1L);
+		Assert.assertTrue(keyspace.exists("key"));
+		ticker.incrementAndGet();
+		Assert.assertFalse(keyspace.exists("key"));
+	}
+
+	/**
+	 * Verify that the longest time to live is clamped instead of overflowing the ticker
+	 */
+	@Test
+	public void longestTtlTest() {
+		final AtomicLong ticker = new AtomicLong(Long.MAX_VALUE - 10L);
+		final Keyspace keyspace = new MemoryKeyspace(ticker::get);
+		Assert.assertTrue(keyspace.set("key", "value", Long.MAX_VALUE, TimeUnit.DAYS));
+		ticker.addAndGet(TimeUnit.DAYS.toNanos(365L));
+		Assert.assertTrue(keyspace.exists("key"));
+	}
+
+	/**
+	 * Verify that reading into a holder allocates nothing, singly or in bulk
+	 */
+	@Test
+	public void allocationFreeReadTest() {
+		if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean))
+			throw new SkipException("Thread allocation counters not available");
+		final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		final long thread = Thread.currentThread().getId();
+		final Keyspace keyspace = MemoryAdapter.create().getKeyspace("test");
+		Assert.assertTrue(keyspace.set("a", "one"));
+		Assert.assertTrue(keyspace.set("b", "two"));
+		final List<String> keys = Arrays.asList("a", "b", "missing");
+		final KeyValueHolder holder = new KeyValueHolder();
+		long versions = 0L;
+		for (int round = 0; round < 2; round++) {
+			// The first round warms up, the second is measured
+			final long before = threads.getThreadAllocatedBytes(thread);
+			for (int i = 0; i < 100_000; i++) {
+				if (keyspace.gets("a", holder))
+					versions += holder.getVersion();
+				versions += keyspace.getsAll(keys, holder);
+			}
+			final long allocated = threads.getThreadAllocatedBytes(thread) - before;
+			if (round == 1)
+				Assert.assertTrue(allocated < 100_000L, "Allocated " + allocated + " bytes");
+		}
+		Assert.assertTrue(versions > 0L);
+	}
+
+	private static void runConcurrently(final Callable<Void> task) throws Exception {
+		final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			final List<Future<Void>> futures = new ArrayList<>();
+			for (int i = 0; i < THREADS; i++)
+				futures.add(executor.submit(task));
+			for (final Future<Void> future : futures)
+				future.get();
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,19 @@
+package com.wolfninja.keystore.memory;
+
+import org.testng.annotations.Test;
+
+import com.wolfninja.keystore.api.BaseWatchKeyspaceTest;
+
+/**
+ * Runs the watch contract against {@code MemoryKeyspace}
+ */
+@Test
+public class MemoryWatchKeyspaceTest extends BaseWatchKeyspaceTest {
+
+	/**
+	 * Run the contract against a keyspace of a new {@link MemoryAdapter}
+	 */
+	public MemoryWatchKeyspaceTest() {
+		super(MemoryAdapter.create().getKeyspace("test"));
+	}
+}
@@ -0,0 +1,79 @@
+package com.wolfninja.keystore.metrics;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for {@code LatencyHistogram}
+ */
+@Test
+public class LatencyHistogramTest {
+
+	/**
+	 * Verify that an empty histogram reports zeros
+	 */
+	@Test
+	public void emptyTest() {
+		final LatencyHistogram histogram = LatencyHistogram.create();
+		Assert.assertEquals(histogram.getCount(), 0L);
+		Assert.assertEquals(histogram.getValueAtPercentile(0.99), 0L);
+		Assert.assertEquals(histogram.getMax(), 0L);
+		Assert.assertEquals(histogram.getMean(), 0.0);
+	}
+
+	/**
+	 * Verify that percentiles of a uniform distribution are within the bucket precision
+	 */
+	@Test
+	public void percentilesTest() {
+		final LatencyHistogram histogram = LatencyHistogram.create();
+		for (long i = 1; i <= 100_000; i++)
+			histogram.record(i * 1000L);
+		Assert.assertEquals(histogram.getCount(), 100_000L);
+		Assert.assertEquals(histogram.getMax(), 100_000_000L);
+		assertWithin(histogram.getValueAtPercentile(0.5), 50_000_000L);
+		assertWithin(histogram.getValueAtPercentile(0.99), 99_000_000L);
+		assertWithin(histogram.getValueAtPercentile(0.999), 99_900_000L);
+		Assert.assertEquals(histogram.getValueAtPercentile(1.0), 100_000_000L);
+		Assert.assertEquals(histogram.getMean(), 50_000_500.0, 0.001);
+	}
+
+	/**
+	 * Verify that small values are exact and huge and negative values are clamped
+	 */
+	@Test
+	public void boundsTest() {
+		final LatencyHistogram histogram = LatencyHistogram.create();
+		histogram.record(7L);
+		Assert.assertEquals(histogram.getValueAtPercentile(1.0), 7L);
+		histogram.record(-5L);
+		Assert.assertEquals(histogram.getValueAtPercentile(0.0), 0L);
+		histogram.record(Long.MAX_VALUE);
+		Assert.assertEquals(histogram.getMax(), Long.MAX_VALUE);
+		Assert.assertTrue(histogram.getValueAtPercentile(1.0) >= 1L << 40);
+	}
+
+	/**
+	 * Verify that every value maps to a bucket whose highest value is at least the value and within precision
+	 */
+	@Test
+	public void bucketsTest() {
+		for (long value = 0; value < 1L << 41; value = value * 3 / 2 + 1) {
+			final long highest = LatencyHistogram.highestValue(LatencyHistogram.index(value));
+			Assert.assertTrue(highest >= value, "value " + value);
+			Assert.assertTrue(highest - value <= value / 32, "value " + value);
+		}
+	}
+
+	/**
+	 * Verify that a percentile outside 0 to 1 throws exception
+	 */
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void percentileRangeTest() {
+		LatencyHistogram.create().getValueAtPercentile(99.0);
+	}
+
+	private static void assertWithin(final long actual, final long expected) {
+		Assert.assertTrue(Math.abs(actual - expected) <= expected / 32, actual + " not within 3% of " + expected);
+	}
+}
@@ -0,0 +1,75 @@
+package com.wolfninja.keystore.metrics;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.wolfninja.keystore.api.BaseKeyValueStoreAdapterTest;
+import com.wolfninja.keystore.api.Keyspace;
+import com.wolfninja.keystore.memory.MemoryAdapter;
+
+/**
+ * Tests for {@code MetricsAdapter}
+ */
+@Test
+public class MetricsAdapterTest extends BaseKeyValueStoreAdapterTest {
+
+	/**
+	 * Run the adapter contract against a {@link MetricsAdapter} over a {@link MemoryAdapter}
+	 */
+	public MetricsAdapterTest() {
+		super(MetricsAdapter.builder(MemoryAdapter.create()).build());
+	}
+
+	/**
+	 * Verify that operation metrics are registered as MBeans and unregistered on close
+	 */
+	@Test
+	public void mBeansTest() throws Exception {
+		final MBeanServer server = MBeanServerFactory.newMBeanServer();
+		final MetricsAdapter adapter = MetricsAdapter.builder(MemoryAdapter.create()).name("main")
+				.mBeanServer(server).build();
+		final Keyspace keyspace = adapter.getKeyspace("users,1");
+		Assert.assertSame(adapter.getKeyspace("users,1"), keyspace);
+		Assert.assertTrue(keyspace.set("a", "b"));
+		Assert.assertTrue(keyspace.get("a").isPresent());
+		Assert.assertFalse(keyspace.get("c").isPresent());
+
+		final ObjectName get = adapter.objectName("users,1", Operation.GET);
+		Assert.assertEquals(get.getKeyProperty("type"), "Operation");
+		Assert.assertEquals(ObjectName.unquote(get.getKeyProperty("keyspace")), "users,1");
+		Assert.assertEquals(server.getAttribute(get, "Calls"), 2L);
+		Assert.assertEquals(server.getAttribute(get, "HitRatio"), 0.5);
+		Assert.assertTrue((Long) server.getAttribute(get, "LatencyP99Nanos") >= 0L);
+		Assert.assertEquals(server.queryNames(new ObjectName(MetricsAdapter.DOMAIN + ":*"), null).size(),
+				Operation.values().length);
+
+		adapter.close();
+		Assert.assertFalse(server.isRegistered(get));
+		Assert.assertTrue(keyspace.exists("a"));
+	}
+
+	/**
+	 * Verify that the metrics of a keyspace are reachable through the adapter
+	 */
+	@Test
+	public void metricsKeyspaceTest() {
+		final MetricsAdapter adapter = MetricsAdapter.builder(MemoryAdapter.create()).build();
+		Assert.assertTrue(adapter.getKeyspace("test").add("a", "b"));
+		Assert.assertEquals(adapter.getMetricsKeyspace("test").getMetrics(Operation.ADD).getSuccesses(), 1L);
+		Assert.assertEquals(adapter.getMetricsKeyspace("test").getName(), "test");
+		Assert.assertFalse(adapter.getAsyncKeyspace("test").isPresent());
+		Assert.assertFalse(adapter.getBinaryKeyspace("test").isPresent());
+	}
+
+	/**
+	 * Verify that a null adapter throws exception
+	 */
+	@Test(expectedExceptions = NullPointerException.class)
+	public void adapterNotNullableTest() {
+		MetricsAdapter.builder(null);
+	}
+}
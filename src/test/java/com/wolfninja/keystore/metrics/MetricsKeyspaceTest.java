@@ -0,0 +1,157 @@
+package com.wolfninja.keystore.metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.easymock.EasyMock;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.wolfninja.keystore.api.BaseScanKeyspaceTest;
+import com.wolfninja.keystore.api.Keyspace;
+import com.wolfninja.keystore.memory.MemoryAdapter;
+
+/**
+ * Tests for {@code MetricsKeyspace}
+ */
+@Test
+public class MetricsKeyspaceTest extends BaseScanKeyspaceTest {
+
+	/**
+	 * Run the keyspace contract against a {@link MetricsKeyspace} over a memory keyspace
+	 */
+	public MetricsKeyspaceTest() {
+		super(MetricsKeyspace.create(MemoryAdapter.create().getKeyspace("test"), "test", MetricsListener.NONE));
+	}
+
+	/**
+	 * Verify that hits, misses and latencies of reads are counted
+	 */
+	@Test
+	public void readMetricsTest() {
+		final MetricsKeyspace keyspace = MetricsKeyspace.create(MemoryAdapter.create().getKeyspace("test"), "test",
+				MetricsListener.NONE);
+		Assert.assertTrue(keyspace.set("a", "b"));
+		Assert.assertTrue(keyspace.get("a").isPresent());
+		Assert.assertTrue(keyspace.get("a").isPresent());
+		Assert.assertFalse(keyspace.get("c").isPresent());
+		Assert.assertFalse(keyspace.exists("c"));
+
+		final OperationMetrics get = keyspace.getMetrics(Operation.GET);
+		Assert.assertEquals(get.getCalls(), 3L);
+		Assert.assertEquals(get.getHits(), 2L);
+		Assert.assertEquals(get.getMisses(), 1L);
+		Assert.assertEquals(get.getHitRatio(), 2.0 / 3.0, 0.0001);
+		Assert.assertEquals(get.getLatency().getCount(), 3L);
+		Assert.assertTrue(get.getLatencyP999Nanos() >= get.getLatencyP50Nanos());
+		Assert.assertEquals(keyspace.getMetrics(Operation.EXISTS).getMisses(), 1L);
+		Assert.assertEquals(keyspace.getMetrics(Operation.SET).getSuccesses(), 1L);
+		Assert.assertEquals(keyspace.getMetrics(Operation.GETS).getCalls(), 0L);
+	}
+
+	/**
+	 * Verify that lost compare-and-set races are counted as failures
+	 */
+	@Test
+	public void checkAndSetMetricsTest() {
+		final MetricsKeyspace keyspace = MetricsKeyspace.create(MemoryAdapter.create().getKeyspace("test"), "test",
+				MetricsListener.NONE);
+		Assert.assertTrue(keyspace.set("a", "b"));
+		final long version = keyspace.gets("a").get().getVersion();
+		Assert.assertTrue(keyspace.checkAndSet("a", "c", version));
+		Assert.assertFalse(keyspace.checkAndSet("a", "d", version));
+
+		final OperationMetrics checkAndSet = keyspace.getMetrics(Operation.CHECK_AND_SET);
+		Assert.assertEquals(checkAndSet.getSuccesses(), 1L);
+		Assert.assertEquals(checkAndSet.getFailures(), 1L);
+		Assert.assertEquals(checkAndSet.getSuccessRatio(), 0.5);
+	}
+
+	/**
+	 * Verify that writes with a time to live count as their operation and remaining time reads as hit or miss
+	 */
+	@Test
+	public void ttlMetricsTest() {
+		final MetricsKeyspace keyspace = MetricsKeyspace.create(MemoryAdapter.create().getKeyspace("test"), "test",
+				MetricsListener.NONE);
+		Assert.assertTrue(keyspace.set("a", "b", 1L, TimeUnit.HOURS));
+		Assert.assertFalse(keyspace.add("a", "c", 1L, TimeUnit.HOURS));
+		Assert.assertTrue(keyspace.ttl("a").isPresent());
+		Assert.assertFalse(keyspace.ttl("c").isPresent());
+
+		Assert.assertEquals(keyspace.getMetrics(Operation.SET).getSuccesses(), 1L);
+		Assert.assertEquals(keyspace.getMetrics(Operation.ADD).getFailures(), 1L);
+		Assert.assertEquals(keyspace.getMetrics(Operation.TTL).getHits(), 1L);
+		Assert.assertEquals(keyspace.getMetrics(Operation.TTL).getMisses(), 1L);
+	}
+
+	/**
+	 * Verify that increments and decrements are counted once each, whichever way the delegate implements them
+	 */
+	@Test
+	public void counterMetricsTest() {
+		final MetricsKeyspace keyspace = MetricsKeyspace.create(MemoryAdapter.create().getKeyspace("test"), "test",
+				MetricsListener.NONE);
+		Assert.assertEquals(keyspace.increment("a"), 1L);
+		Assert.assertEquals(keyspace.decrement("a"), 0L);
+		Assert.assertEquals(keyspace.addAndGet("a", 5L), 5L);
+
+		Assert.assertEquals(keyspace.getMetrics(Operation.ADD_AND_GET).getSuccesses(), 3L);
+		Assert.assertEquals(keyspace.getMetrics(Operation.GETS).getCalls(), 0L);
+		Assert.assertEquals(keyspace.getMetrics(Operation.CHECK_AND_SET).getCalls(), 0L);
+	}
+
+	/**
+	 * Verify that exceptions are counted, passed to the listener and rethrown
+	 */
+	@Test
+	public void errorMetricsTest() {
+		final Keyspace mockKeyspace = EasyMock.createStrictMock(Keyspace.class);
+		final IllegalStateException failure = new IllegalStateException("down");
+		EasyMock.expect(mockKeyspace.get("a")).andThrow(failure);
+		EasyMock.replay(mockKeyspace);
+
+		final List<Outcome> outcomes = new ArrayList<>();
+		final MetricsKeyspace keyspace = MetricsKeyspace.create(mockKeyspace, "test",
+				(name, operation, outcome, nanos) -> outcomes.add(outcome));
+		try {
+			keyspace.get("a");
+			Assert.fail("Expected exception!");
+		} catch (final IllegalStateException e) {
+			Assert.assertSame(e, failure);
+		}
+		Assert.assertEquals(keyspace.getMetrics(Operation.GET).getErrors(), 1L);
+		Assert.assertEquals(keyspace.getMetrics(Operation.GET).getCalls(), 1L);
+		Assert.assertEquals(outcomes, Arrays.asList(Outcome.ERROR));
+
+		EasyMock.verify(mockKeyspace);
+	}
+
+	/**
+	 * Verify that the listener sees every operation and cannot break the keyspace
+	 */
+	@Test
+	public void listenerTest() {
+		final List<String> events = new ArrayList<>();
+		final MetricsKeyspace keyspace = MetricsKeyspace.create(MemoryAdapter.create().getKeyspace("test"), "test",
+				(name, operation, outcome, nanos) -> {
+					events.add(name + " " + operation + " " + outcome);
+					throw new IllegalStateException("broken listener");
+				});
+		Assert.assertTrue(keyspace.add("a", "b"));
+		Assert.assertFalse(keyspace.add("a", "b"));
+		Assert.assertEquals(keyspace.getAll(Arrays.asList("a", "x")).size(), 1);
+		Assert.assertEquals(events,
+				Arrays.asList("test ADD SUCCESS", "test ADD FAILURE", "test GET_ALL HIT"));
+	}
+
+	/**
+	 * Verify that a null listener throws exception
+	 */
+	@Test(expectedExceptions = NullPointerException.class)
+	public void listenerNotNullableTest() {
+		MetricsKeyspace.create(MemoryAdapter.create().getKeyspace("test"), "test", null);
+	}
+}
@@ -0,0 +1,164 @@
+package com.wolfninja.keystore.offheap;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.wolfninja.keystore.api.BaseKeyValueStoreAdapterTest;
+import com.wolfninja.keystore.api.Keyspace;
+
+/**
+ * Tests for {@code OffHeapAdapter}
+ */
+@Test
+public class OffHeapAdapterTest extends BaseKeyValueStoreAdapterTest {
+
+	private static final String VALUE = new String(new char[990]).replace('\0', 'v');
+
+	/**
+	 * Run the adapter contract against a new {@link OffHeapAdapter}
+	 */
+	public OffHeapAdapterTest() {
+		super(OffHeapAdapter.create(1L << 20, OffHeapAdapter.FullPolicy.EVICT));
+	}
+
+	/**
+	 * Verify that writes are rejected once capacity is used up
+	 */
+	@Test
+	public void rejectWhenFullTest() {
+		final OffHeapAdapter adapter = OffHeapAdapter.create(1L << 20, OffHeapAdapter.FullPolicy.REJECT);
+		final Keyspace keyspace = adapter.getKeyspace("test");
+		int stored = 0;
+		while (keyspace.add("key" + stored, VALUE))
+			stored++;
+		// 1 KiB chunks in a 1 MiB page
+		Assert.assertEquals(stored, 1024);
+		Assert.assertEquals(adapter.getAllocatedBytes(), 1L << 20);
+		Assert.assertTrue(keyspace.exists("key0"));
+		Assert.assertEquals(adapter.getEvictionCount(), 0L);
+	}
+
+	/**
+	 * Verify that unreferenced entries are evicted once capacity is used up
+	 */
+	@Test
+	public void evictWhenFullTest() {
+		final OffHeapAdapter adapter = OffHeapAdapter.create(1L << 20, OffHeapAdapter.FullPolicy.EVICT);
+		final Keyspace keyspace = adapter.getKeyspace("test");
+		for (int i = 0; i < 1024; i++)
+			Assert.assertTrue(keyspace.add("key" + i, VALUE));
+		// Reference the first entry, so the sweep passes it over
+		Assert.assertTrue(keyspace.get("key0").isPresent());
+
+		Assert.assertTrue(keyspace.add("key1024", VALUE));
+		Assert.assertEquals(adapter.getEvictionCount(), 1L);
+		Assert.assertTrue(keyspace.exists("key0"));
+		Assert.assertTrue(keyspace.exists("key1024"));
+		Assert.assertEquals(adapter.getAllocatedBytes(), 1L << 20);
+	}
+
+	/**
+	 * Verify that a page is reassigned when no entry of the needed size exists
+	 */
+	@Test
+	public void reassignPageWhenFullTest() {
+		final OffHeapAdapter adapter = OffHeapAdapter.create(1L << 20, OffHeapAdapter.FullPolicy.EVICT);
+		final Keyspace keyspace = adapter.getKeyspace("test");
+		for (int i = 0; i < 1024; i++)
+			Assert.assertTrue(keyspace.add("key" + i, VALUE));
+
+		Assert.assertTrue(keyspace.add("small", "x"));
+		Assert.assertEquals(keyspace.get("small").get(), "x");
+		Assert.assertEquals(adapter.getEvictionCount(), 1024L);
+		Assert.assertFalse(keyspace.exists("key0"));
+	}
+
+	/**
+	 * Verify that a keyspace created after another used up the capacity takes pages from it
+	 */
+	@Test
+	public void evictAcrossKeyspacesTest() {
+		final OffHeapAdapter adapter = OffHeapAdapter.create(2L << 20, OffHeapAdapter.FullPolicy.EVICT);
+		final Keyspace first = adapter.getKeyspace("first");
+		for (int i = 0; i < 4096; i++)
+			Assert.assertTrue(first.set("key" + i, VALUE));
+		Assert.assertEquals(adapter.getAllocatedBytes(), 2L << 20);
+
+		final Keyspace second = adapter.getKeyspace("second");
+		Assert.assertTrue(second.set("x", "y"));
+		Assert.assertEquals(second.get("x").get(), "y");
+		// One of the two pages moved to the second keyspace
+		Assert.assertEquals(first.scan("").count(), 1024L);
+		Assert.assertEquals(adapter.getAllocatedBytes(), 2L << 20);
+	}
+
+	/**
+	 * Verify that a segment holding no pages takes one from a segment of the same keyspace which used up the capacity
+	 */
+	@Test
+	public void evictAcrossSegmentsTest() {
+		final OffHeapAdapter adapter = OffHeapAdapter.create(64L << 20, OffHeapAdapter.FullPolicy.EVICT);
+		final Keyspace keyspace = adapter.getKeyspace("test");
+		// 128 KiB chunks, so eight per page
+		final String value = new String(new char[100_000]).replace('\0', 'v');
+		String other = null;
+		int stored = 0;
+		for (int i = 0; stored < 1024; i++) {
+			final String key = "key" + i;
+			final int segment = OffHeapKeyspace.hash(key) >>> 28;
+			if (segment == 0) {
+				Assert.assertTrue(keyspace.set(key, value));
+				stored++;
+			} else if (segment == 1 && other == null)
+				other = key;
+		}
+		Assert.assertEquals(adapter.getAllocatedBytes(), 64L << 20);
+		Assert.assertTrue(adapter.getEvictionCount() > 0L);
+
+		Assert.assertTrue(keyspace.set(other, "value"));
+		Assert.assertEquals(keyspace.get(other).get(), "value");
+	}
+
+	/**
+	 * Verify that closing returns the pages to the budget, so reopened keyspaces can use it again
+	 */
+	@Test
+	public void closeShouldReleasePagesTest() {
+		final OffHeapAdapter adapter = OffHeapAdapter.create(1L << 20, OffHeapAdapter.FullPolicy.REJECT);
+		final Keyspace keyspace = adapter.getKeyspace("test");
+		Assert.assertTrue(keyspace.add("key", VALUE));
+		Assert.assertEquals(adapter.getAllocatedBytes(), 1L << 20);
+
+		adapter.close();
+		Assert.assertEquals(adapter.getAllocatedBytes(), 0L);
+		Assert.assertFalse(keyspace.exists("key"));
+		Assert.assertEquals(keyspace.scan("").count(), 0L);
+		try {
+			keyspace.set("key", VALUE);
+			Assert.fail("Expected exception!");
+		} catch (final IllegalStateException e) {
+			// Expected
+		}
+
+		final Keyspace reopened = adapter.getKeyspace("test");
+		Assert.assertFalse(reopened.exists("key"));
+		Assert.assertTrue(reopened.add("key", VALUE));
+		Assert.assertEquals(adapter.getAllocatedBytes(), 1L << 20);
+	}
+
+	/**
+	 * Verify that too small a capacity is refused
+	 */
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void capacityTooSmallTest() {
+		OffHeapAdapter.create(1024L, OffHeapAdapter.FullPolicy.EVICT);
+	}
+
+	/**
+	 * Verify that a null policy throws exception
+	 */
+	@Test(expectedExceptions = NullPointerException.class)
+	public void policyNotNullableTest() {
+		OffHeapAdapter.create(1L << 20, null);
+	}
+}
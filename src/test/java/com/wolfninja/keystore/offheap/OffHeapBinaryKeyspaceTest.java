@@ -0,0 +1,42 @@
+package com.wolfninja.keystore.offheap;
+
+import java.nio.charset.StandardCharsets;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.wolfninja.keystore.api.BaseBinaryKeyspaceTest;
+import com.wolfninja.keystore.api.BinaryKeyspace;
+import com.wolfninja.keystore.api.Keyspace;
+
+/**
+ * Tests for {@code OffHeapBinaryKeyspace}
+ */
+@Test
+public class OffHeapBinaryKeyspaceTest extends BaseBinaryKeyspaceTest {
+
+	/**
+	 * Run the binary keyspace contract against the native binary keyspace of a new {@link OffHeapAdapter}
+	 */
+	public OffHeapBinaryKeyspaceTest() {
+		super(OffHeapAdapter.create(16L << 20, OffHeapAdapter.FullPolicy.REJECT).getBinaryKeyspace("test").get());
+	}
+
+	/**
+	 * Verify that the binary and String views share entries and versions
+	 */
+	@Test
+	public void viewsShouldShareEntriesTest() {
+		final OffHeapAdapter adapter = OffHeapAdapter.create(4L << 20, OffHeapAdapter.FullPolicy.REJECT);
+		final Keyspace strings = adapter.getKeyspace("test");
+		final BinaryKeyspace bytes = adapter.getBinaryKeyspace("test").get();
+
+		Assert.assertTrue(strings.set("key", "value"));
+		Assert.assertEquals(bytes.gets("key").get().getValueBytes(), "value".getBytes(StandardCharsets.UTF_8));
+		Assert.assertEquals(bytes.gets("key").get().getVersion(), strings.gets("key").get().getVersion());
+
+		Assert.assertTrue(bytes.checkAndSet("key", "other".getBytes(StandardCharsets.UTF_8),
+				strings.gets("key").get().getVersion()));
+		Assert.assertEquals(strings.get("key").get(), "other");
+	}
+}
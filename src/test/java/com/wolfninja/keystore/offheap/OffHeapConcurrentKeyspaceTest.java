@@ -0,0 +1,19 @@
+package com.wolfninja.keystore.offheap;
+
+import org.testng.annotations.Test;
+
+import com.wolfninja.keystore.api.BaseConcurrentKeyspaceTest;
+
+/**
+ * Runs the concurrency contract against {@code OffHeapKeyspace}
+ */
+@Test
+public class OffHeapConcurrentKeyspaceTest extends BaseConcurrentKeyspaceTest {
+
+	/**
+	 * Run the contract against a keyspace of a new {@link OffHeapAdapter}
+	 */
+	public OffHeapConcurrentKeyspaceTest() {
+		super(OffHeapAdapter.create(16L << 20, OffHeapAdapter.FullPolicy.REJECT).getKeyspace("test"));
+	}
+}
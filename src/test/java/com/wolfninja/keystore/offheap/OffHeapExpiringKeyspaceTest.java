@@ -0,0 +1,19 @@
+package com.wolfninja.keystore.offheap;
+
+import org.testng.annotations.Test;
+
+import com.wolfninja.keystore.api.BaseExpiringKeyspaceTest;
+
+/**
+ * Runs the expiry contract against {@code OffHeapKeyspace}
+ */
+@Test
+public class OffHeapExpiringKeyspaceTest extends BaseExpiringKeyspaceTest {
+
+	/**
+	 * Run the contract against a keyspace of a new {@link OffHeapAdapter}
+	 */
+	public OffHeapExpiringKeyspaceTest() {
+		super(OffHeapAdapter.create(16L << 20, OffHeapAdapter.FullPolicy.REJECT).getKeyspace("test"));
+	}
+}
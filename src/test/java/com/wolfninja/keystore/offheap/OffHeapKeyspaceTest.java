@@ -0,0 +1,141 @@
+package com.wolfninja.keystore.offheap;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.wolfninja.keystore.api.BaseScanKeyspaceTest;
+import com.wolfninja.keystore.api.KeyValue;
+import com.wolfninja.keystore.api.Keyspace;
+import com.wolfninja.keystore.api.ScanSpliterator;
+
+/**
+ * Tests for {@code OffHeapKeyspace}
+ */
+@Test
+public class OffHeapKeyspaceTest extends BaseScanKeyspaceTest {
+
+	/**
+	 * Run the keyspace contract against a keyspace of a new {@link OffHeapAdapter}
+	 */
+	public OffHeapKeyspaceTest() {
+		super(OffHeapAdapter.create(16L << 20, OffHeapAdapter.FullPolicy.REJECT).getKeyspace("test"));
+	}
+
+	/**
+	 * Verify that values moving between size classes keep their key, value and increasing version
+	 */
+	@Test
+	public void resizingValuesTest() {
+		final Keyspace keyspace = OffHeapAdapter.create(4L << 20, OffHeapAdapter.FullPolicy.REJECT)
+				.getKeyspace("test");
+		final StringBuilder value = new StringBuilder();
+		long version = Long.MIN_VALUE;
+		for (int i = 0; i < 200; i++) {
+			value.append("\u00e9x");
+			Assert.assertTrue(keyspace.set("key", value.toString()));
+			final KeyValue actual = keyspace.gets("key").get();
+			Assert.assertEquals(actual.getValue(), value.toString());
+			Assert.assertTrue(actual.getVersion() > version);
+			version = actual.getVersion();
+		}
+		Assert.assertTrue(keyspace.exists("key"));
+	}
+
+	/**
+	 * Verify that the index grows past its initial size and deleted slots are reused
+	 */
+	@Test
+	public void manyKeysTest() {
+		final Keyspace keyspace = OffHeapAdapter.create(64L << 20, OffHeapAdapter.FullPolicy.REJECT)
+				.getKeyspace("test");
+		for (int i = 0; i < 50_000; i++)
+			Assert.assertTrue(keyspace.add("key" + i, "value" + i));
+		for (int i = 0; i < 50_000; i += 2)
+			Assert.assertTrue(keyspace.delete("key" + i));
+		for (int i = 0; i < 50_000; i++)
+			Assert.assertEquals(keyspace.get("key" + i).orElse(null), i % 2 == 0 ? null : "value" + i);
+	}
+
+	/**
+	 * Verify that a scan resumed after the index was rehashed still returns every entry present throughout
+	 */
+	@Test
+	public void scanAcrossRehashTest() {
+		final OffHeapKeyspace keyspace = (OffHeapKeyspace) OffHeapAdapter
+				.create(64L << 20, OffHeapAdapter.FullPolicy.REJECT).getKeyspace("test");
+		for (int i = 0; i < 100; i++)
+			Assert.assertTrue(keyspace.add("key" + i, "value" + i));
+
+		final Set<String> keys = new HashSet<>();
+		final Spliterator<KeyValue> spliterator = ScanSpliterator.create(keyspace, "key", 4);
+		for (int i = 0; i < 10; i++)
+			Assert.assertTrue(spliterator.tryAdvance(keyValue -> keys.add(keyValue.getKey())));
+		for (int i = 0; i < 50_000; i++)
+			Assert.assertTrue(keyspace.add("other" + i, "value"));
+		spliterator.forEachRemaining(keyValue -> keys.add(keyValue.getKey()));
+
+		Assert.assertEquals(keys.size(), 100);
+		Assert.assertEquals(keyspace.scan("other").count(), 50_000L);
+	}
+
+	/**
+	 * Verify that entries larger than a page are refused
+	 */
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void oversizedValueTest() {
+		final Keyspace keyspace = OffHeapAdapter.create(4L << 20, OffHeapAdapter.FullPolicy.EVICT).getKeyspace("t");
+		keyspace.set("key", new String(new char[1 << 20]));
+	}
+
+	/**
+	 * Verify that a full keyspace reclaims expired entries before rejecting writes, without counting evictions
+	 */
+	@Test
+	public void reclaimExpiredWhenFullTest() {
+		final AtomicLong ticker = new AtomicLong();
+		final PageAllocator allocator = new PageAllocator(1L << 20);
+		final Keyspace keyspace = new OffHeapKeyspace(allocator, false, 1, ticker::get);
+		final String value = new String(new char[990]).replace('\0', 'v');
+		int stored = 0;
+		while (keyspace.set("key" + stored, value, 1L, TimeUnit.SECONDS))
+			stored++;
+		Assert.assertEquals(stored, 1024);
+		Assert.assertFalse(keyspace.exists("key" + stored));
+
+		ticker.addAndGet(TimeUnit.SECONDS.toNanos(1L));
+		for (int i = 0; i < stored; i++)
+			Assert.assertTrue(keyspace.add("other" + i, value));
+		Assert.assertEquals(allocator.evictions(), 0L);
+		Assert.assertFalse(keyspace.exists("key0"));
+		Assert.assertTrue(keyspace.exists("other0"));
+	}
+
+	/**
+	 * Verify that counters parse the stored bytes as ASCII decimals, including the extremes
+	 */
+	@Test
+	public void counterParsingTest() {
+		final Keyspace keyspace = OffHeapAdapter.create(4L << 20, OffHeapAdapter.FullPolicy.REJECT)
+				.getKeyspace("test");
+		Assert.assertTrue(keyspace.set("min", Long.toString(Long.MIN_VALUE + 1L)));
+		Assert.assertEquals(keyspace.decrement("min"), Long.MIN_VALUE);
+		Assert.assertEquals(keyspace.increment("min"), Long.MIN_VALUE + 1L);
+		Assert.assertTrue(keyspace.set("plus", "+41"));
+		Assert.assertEquals(keyspace.increment("plus"), 42L);
+		for (final String invalid : new String[] { "", "-", "+", "1-", "9223372036854775808", "\u0661" }) {
+			Assert.assertTrue(keyspace.set("invalid", invalid));
+			try {
+				keyspace.increment("invalid");
+				Assert.fail("Should have thrown exception for " + invalid);
+			} catch (final IllegalStateException e) {
+				Assert.assertEquals(keyspace.get("invalid").get(), invalid);
+			}
+		}
+	}
+}
@@ -0,0 +1,19 @@
+package com.wolfninja.keystore.offheap;
+
+import org.testng.annotations.Test;
+
+import com.wolfninja.keystore.api.BaseWatchKeyspaceTest;
+
+/**
+ * Runs the watch contract against {@code OffHeapKeyspace}
+ */
+@Test
+public class OffHeapWatchKeyspaceTest extends BaseWatchKeyspaceTest {
+
+	/**
+	 * Run the contract against a keyspace of a new {@link OffHeapAdapter}
+	 */
+	public OffHeapWatchKeyspaceTest() {
+		super(OffHeapAdapter.create(16L << 20, OffHeapAdapter.FullPolicy.REJECT).getKeyspace("test"));
+	}
+}
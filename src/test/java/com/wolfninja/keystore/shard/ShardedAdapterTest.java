@@ -0,0 +1,246 @@
+package com.wolfninja.keystore.shard;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.wolfninja.keystore.api.BaseKeyValueStoreAdapterTest;
+import com.wolfninja.keystore.api.KeyValue;
+import com.wolfninja.keystore.api.Keyspace;
+import com.wolfninja.keystore.memory.MemoryAdapter;
+
+/**
+ * Tests for {@code ShardedAdapter}
+ */
+@Test
+public class ShardedAdapterTest extends BaseKeyValueStoreAdapterTest {
+
+	private static final int KEYS = 4_000;
+
+	/**
+	 * Run the adapter contract against a {@link ShardedAdapter} over two memory adapters
+	 */
+	public ShardedAdapterTest() {
+		super(ShardedAdapter.builder().shard("a", MemoryAdapter.create()).shard("b", MemoryAdapter.create()).build());
+	}
+
+	/**
+	 * Verify that keys spread over the shards in proportion to their weights, the same way in every instance
+	 */
+	@Test
+	public void weightedDistributionTest() {
+		final ShardedAdapter adapter = ShardedAdapter.builder().shard("a", MemoryAdapter.create())
+				.shard("b", MemoryAdapter.create()).shard("c", MemoryAdapter.create(), 2).build();
+		final ShardedAdapter same = ShardedAdapter.builder().shard("c", MemoryAdapter.create(), 2)
+				.shard("a", MemoryAdapter.create()).shard("b", MemoryAdapter.create()).build();
+		final Map<String, Integer> counts = new HashMap<>();
+		for (int i = 0; i < KEYS; i++) {
+			final String shard = adapter.getShardName("key" + i);
+			Assert.assertEquals(same.getShardName("key" + i), shard);
+			counts.merge(shard, 1, Integer::sum);
+		}
+		assertShare(counts.get("a"), 0.25);
+		assertShare(counts.get("b"), 0.25);
+		assertShare(counts.get("c"), 0.5);
+	}
+
+	/**
+	 * Verify that adding a shard only moves keys to it, that they are readable before and after rebalancing, and
+	 * that rebalancing leaves every key on its owner only
+	 */
+	@Test
+	public void addShardTest() {
+		final Map<String, MemoryAdapter> shards = shards("a", "b", "c", "d");
+		final ShardedAdapter adapter = ShardedAdapter.builder().shard("a", shards.get("a")).shard("b", shards.get("b"))
+				.shard("c", shards.get("c")).build();
+		final Keyspace keyspace = adapter.getKeyspace("test");
+		final Map<String, String> owners = fill(adapter, keyspace);
+
+		adapter.addShard("d", shards.get("d"), 1);
+		int moved = 0;
+		for (int i = 0; i < KEYS; i++) {
+			final String owner = adapter.getShardName("key" + i);
+			if (!owner.equals(owners.get("key" + i))) {
+				Assert.assertEquals(owner, "d");
+				moved++;
+			}
+		}
+		assertShare(moved, 0.25);
+
+		// Moved on use
+		Assert.assertEquals(keyspace.get("key0").get(), "value0");
+		Assert.assertEquals(keyspace.getAll(owners.keySet()).size(), KEYS);
+		Assert.assertEquals(adapter.rebalance(), 0L);
+		assertPlacement(adapter, shards, keyspace);
+	}
+
+	/**
+	 * Verify that removing a shard hands its keys to the others, moved by scans and rebalancing
+	 */
+	@Test
+	public void removeShardTest() {
+		final Map<String, MemoryAdapter> shards = shards("a", "b", "c");
+		final ShardedAdapter adapter = ShardedAdapter.builder().shard("a", shards.get("a")).shard("b", shards.get("b"))
+				.shard("c", shards.get("c")).build();
+		final Keyspace keyspace = adapter.getKeyspace("test");
+		final Map<String, String> owners = fill(adapter, keyspace);
+		final long onB = owners.entrySet().stream()
+				.filter(owner -> owner.getValue().equals("b") && !owner.getKey().startsWith("key1")).count();
+
+		adapter.removeShard("b");
+		try {
+			adapter.addShard("d", MemoryAdapter.create(), 1);
+			Assert.fail("Should have thrown exception!");
+		} catch (final IllegalStateException e) {
+			// Rebalance first
+		}
+		Assert.assertEquals(adapter.getShardNames().toString(), "[a, c]");
+		// Scanning moves the matching keys, so rebalancing only moves the others
+		Assert.assertEquals(keyspace.scan("key1").count(), 1_111L);
+
+		Assert.assertEquals(adapter.rebalance(), onB);
+		Assert.assertEquals(shards.get("b").getKeyspace("test").stream().count(), 0L);
+		Assert.assertEquals(adapter.rebalance(), 0L);
+		shards.remove("b");
+		assertPlacement(adapter, shards, keyspace);
+	}
+
+	/**
+	 * Verify that writes to keys not moved yet are not undone by moving them
+	 */
+	@Test
+	public void writeBeforeMoveTest() {
+		final Map<String, MemoryAdapter> shards = shards("a", "b");
+		final ShardedAdapter adapter = ShardedAdapter.builder().shard("a", shards.get("a")).build();
+		final Keyspace keyspace = adapter.getKeyspace("test");
+		fill(adapter, keyspace);
+		adapter.addShard("b", shards.get("b"), 1);
+		final List<String> moving = new ArrayList<>();
+		for (int i = 0; i < KEYS && moving.size() < 3; i++)
+			if (adapter.getShardName("key" + i).equals("b"))
+				moving.add("key" + i);
+
+		Assert.assertTrue(keyspace.delete(moving.get(0)));
+		Assert.assertTrue(keyspace.set(moving.get(1), "new"));
+		final KeyValue before = keyspace.gets(moving.get(2)).get();
+		Assert.assertTrue(keyspace.checkAndSet(moving.get(2), "swapped", before.getVersion()));
+		adapter.rebalance();
+
+		Assert.assertFalse(keyspace.exists(moving.get(0)));
+		Assert.assertEquals(keyspace.get(moving.get(1)).get(), "new");
+		Assert.assertEquals(keyspace.get(moving.get(2)).get(), "swapped");
+		Assert.assertFalse(shards.get("a").getKeyspace("test").exists(moving.get(1)));
+	}
+
+	/**
+	 * Verify that a scan running while rebalancing returns every key exactly once
+	 */
+	@Test
+	public void scanDuringRebalanceTest() {
+		final Map<String, MemoryAdapter> shards = shards("a", "b", "c");
+		final ShardedAdapter adapter = ShardedAdapter.builder().shard("a", shards.get("a")).shard("b", shards.get("b"))
+				.shard("c", shards.get("c")).build();
+		final Keyspace keyspace = adapter.getKeyspace("test");
+		fill(adapter, keyspace);
+		adapter.removeShard("b");
+
+		final List<String> keys = new ArrayList<>();
+		try (final Stream<KeyValue> entries = keyspace.scan("key")) {
+			final Iterator<KeyValue> iterator = entries.iterator();
+			keys.add(iterator.next().getKey());
+			adapter.rebalance();
+			iterator.forEachRemaining(keyValue -> keys.add(keyValue.getKey()));
+		}
+		Assert.assertEquals(keys.size(), KEYS);
+		Assert.assertEquals(new HashSet<>(keys).size(), KEYS);
+	}
+
+	/**
+	 * Verify that bulk operations run one part per shard, all but one on the executor
+	 */
+	@Test
+	public void bulkFanOutTest() {
+		final AtomicInteger submitted = new AtomicInteger();
+		final Executor executor = command -> {
+			submitted.incrementAndGet();
+			command.run();
+		};
+		final ShardedAdapter adapter = ShardedAdapter.builder().shard("a", MemoryAdapter.create())
+				.shard("b", MemoryAdapter.create()).shard("c", MemoryAdapter.create()).executor(executor).build();
+		final Keyspace keyspace = adapter.getKeyspace("test");
+		final Map<String, String> values = new HashMap<>();
+		for (int i = 0; i < 100; i++)
+			values.put("key" + i, "value" + i);
+
+		Assert.assertTrue(keyspace.setAll(values));
+		Assert.assertEquals(submitted.getAndSet(0), 2);
+		Assert.assertEquals(keyspace.getAll(values.keySet()), values);
+		Assert.assertEquals(submitted.getAndSet(0), 2);
+		Assert.assertEquals(keyspace.deleteAll(values.keySet()), 100);
+		Assert.assertEquals(submitted.get(), 2);
+	}
+
+	/**
+	 * Verify that an adapter without shards is refused
+	 */
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void noShardTest() {
+		ShardedAdapter.builder().build();
+	}
+
+	/**
+	 * Verify that shard names must be unique
+	 */
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void duplicateShardTest() {
+		ShardedAdapter.builder().shard("a", MemoryAdapter.create()).shard("a", MemoryAdapter.create());
+	}
+
+	/**
+	 * Verify that a weight below one is refused
+	 */
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void weightTest() {
+		ShardedAdapter.builder().shard("a", MemoryAdapter.create(), 0);
+	}
+
+	private static void assertPlacement(final ShardedAdapter adapter, final Map<String, MemoryAdapter> shards,
+			final Keyspace keyspace) {
+		long total = 0L;
+		for (final Map.Entry<String, MemoryAdapter> shard : shards.entrySet())
+			total += shard.getValue().getKeyspace("test").stream().peek(keyValue -> Assert
+					.assertEquals(adapter.getShardName(keyValue.getKey()), shard.getKey(), keyValue.getKey())).count();
+		Assert.assertEquals(total, (long) KEYS);
+		for (int i = 0; i < KEYS; i++)
+			Assert.assertEquals(keyspace.get("key" + i).get(), "value" + i);
+	}
+
+	private static void assertShare(final int count, final double share) {
+		Assert.assertEquals((double) count / KEYS, share, 0.05, "Share of " + count);
+	}
+
+	private static Map<String, String> fill(final ShardedAdapter adapter, final Keyspace keyspace) {
+		final Map<String, String> owners = new HashMap<>();
+		for (int i = 0; i < KEYS; i++) {
+			Assert.assertTrue(keyspace.set("key" + i, "value" + i));
+			owners.put("key" + i, adapter.getShardName("key" + i));
+		}
+		return owners;
+	}
+
+	private static Map<String, MemoryAdapter> shards(final String... names) {
+		final Map<String, MemoryAdapter> shards = new HashMap<>();
+		for (final String name : names)
+			shards.put(name, MemoryAdapter.create());
+		return shards;
+	}
+}
@@ -0,0 +1,21 @@
+package com.wolfninja.keystore.shard;
+
+import org.testng.annotations.Test;
+
+import com.wolfninja.keystore.api.BaseScanKeyspaceTest;
+import com.wolfninja.keystore.memory.MemoryAdapter;
+
+/**
+ * Runs the keyspace contract against {@code ShardedKeyspace}
+ */
+@Test
+public class ShardedKeyspaceTest extends BaseScanKeyspaceTest {
+
+	/**
+	 * Run the contract against a keyspace spread over three memory adapters
+	 */
+	public ShardedKeyspaceTest() {
+		super(ShardedAdapter.builder().shard("a", MemoryAdapter.create()).shard("b", MemoryAdapter.create())
+				.shard("c", MemoryAdapter.create(), 2).build().getKeyspace("test"));
+	}
+}
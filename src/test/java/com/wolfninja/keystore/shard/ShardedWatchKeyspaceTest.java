@@ -0,0 +1,21 @@
+package com.wolfninja.keystore.shard;
+
+import org.testng.annotations.Test;
+
+import com.wolfninja.keystore.api.BaseWatchKeyspaceTest;
+import com.wolfninja.keystore.memory.MemoryAdapter;
+
+/**
+ * Runs the watch contract against {@code ShardedKeyspace}
+ */
+@Test
+public class ShardedWatchKeyspaceTest extends BaseWatchKeyspaceTest {
+
+	/**
+	 * Run the contract against a keyspace spread over three memory adapters
+	 */
+	public ShardedWatchKeyspaceTest() {
+		super(ShardedAdapter.builder().shard("a", MemoryAdapter.create()).shard("b", MemoryAdapter.create())
+				.shard("c", MemoryAdapter.create(), 2).build().getKeyspace("test"));
+	}
+}
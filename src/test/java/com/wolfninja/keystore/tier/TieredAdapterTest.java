@@ -0,0 +1,172 @@
+package com.wolfninja.keystore.tier;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.wolfninja.keystore.api.BaseKeyValueStoreAdapterTest;
+import com.wolfninja.keystore.api.KeyValue;
+import com.wolfninja.keystore.api.Keyspace;
+import com.wolfninja.keystore.memory.MemoryAdapter;
+import com.wolfninja.keystore.tier.TieredAdapter.WritePolicy;
+
+/**
+ * Tests for {@code TieredAdapter}
+ */
+@Test
+public class TieredAdapterTest extends BaseKeyValueStoreAdapterTest {
+
+	/**
+	 * Run the adapter contract against a {@link TieredAdapter} over two memory adapters
+	 */
+	public TieredAdapterTest() {
+		super(TieredAdapter.builder(MemoryAdapter.create(), MemoryAdapter.create()).build());
+	}
+
+	/**
+	 * Verify that a read of an entry only in the lower tier promotes it with the lower tier version
+	 */
+	@Test
+	public void promotionTest() {
+		final MemoryAdapter upper = MemoryAdapter.create();
+		final MemoryAdapter lower = MemoryAdapter.create();
+		final Keyspace keyspace = TieredAdapter.builder(upper, lower).build().getKeyspace("test");
+		Assert.assertTrue(lower.getKeyspace("test").set("key", "value"));
+		final KeyValue expected = lower.getKeyspace("test").gets("key").get();
+
+		Assert.assertEquals(keyspace.gets("key").get(), expected);
+		Assert.assertTrue(upper.getKeyspace("test").exists("key"));
+		Assert.assertEquals(keyspace.gets("key").get(), expected);
+		Assert.assertEquals(keyspace.getAll(Arrays.asList("key", "missing")).get("key"), "value");
+		Assert.assertFalse(upper.getKeyspace("test").exists("missing"));
+	}
+
+	/**
+	 * Verify that promoted entries and counters written through do not outlive their time to live in the lower tier
+	 */
+	@Test
+	public void promotionExpiryTest() {
+		final MemoryAdapter upper = MemoryAdapter.create();
+		final MemoryAdapter lower = MemoryAdapter.create();
+		final Keyspace keyspace = TieredAdapter.builder(upper, lower).writePolicy(WritePolicy.WRITE_THROUGH).build()
+				.getKeyspace("test");
+		Assert.assertTrue(lower.getKeyspace("test").set("key", "value", 1, TimeUnit.MINUTES));
+		Assert.assertTrue(lower.getKeyspace("test").set("counter", "1", 1, TimeUnit.MINUTES));
+		Assert.assertTrue(lower.getKeyspace("test").set("forever", "value"));
+
+		Assert.assertEquals(keyspace.get("key").get(), "value");
+		Assert.assertEquals(keyspace.addAndGet("counter", 1L), 2L);
+		Assert.assertEquals(keyspace.get("forever").get(), "value");
+		for (final String key : Arrays.asList("key", "counter")) {
+			final Duration ttl = upper.getKeyspace("test").ttl(key).get();
+			Assert.assertTrue(ttl.compareTo(Duration.ofMinutes(1L)) <= 0 && ttl.compareTo(Duration.ZERO) > 0, key);
+		}
+		Assert.assertEquals(upper.getKeyspace("test").ttl("forever").get(), Keyspace.NO_EXPIRY);
+	}
+
+	/**
+	 * Verify that writing around stores only in the lower tier and removes the key from the upper tier
+	 */
+	@Test
+	public void writeAroundTest() {
+		final MemoryAdapter upper = MemoryAdapter.create();
+		final MemoryAdapter lower = MemoryAdapter.create();
+		final Keyspace keyspace = TieredAdapter.builder(upper, lower).writePolicy(WritePolicy.WRITE_AROUND).build()
+				.getKeyspace("test");
+		Assert.assertTrue(keyspace.set("key", "one"));
+		Assert.assertFalse(upper.getKeyspace("test").exists("key"));
+		Assert.assertEquals(keyspace.get("key").get(), "one");
+		Assert.assertTrue(upper.getKeyspace("test").exists("key"));
+
+		Assert.assertTrue(keyspace.set("key", "two"));
+		Assert.assertFalse(upper.getKeyspace("test").exists("key"));
+		Assert.assertEquals(lower.getKeyspace("test").get("key").get(), "two");
+		Assert.assertEquals(keyspace.get("key").get(), "two");
+	}
+
+	/**
+	 * Verify that writing through serves reads from the upper tier, but versions from the lower tier
+	 */
+	@Test
+	public void writeThroughTest() {
+		final MemoryAdapter upper = MemoryAdapter.create();
+		final MemoryAdapter lower = MemoryAdapter.create();
+		final Keyspace keyspace = TieredAdapter.builder(upper, lower).writePolicy(WritePolicy.WRITE_THROUGH).build()
+				.getKeyspace("test");
+		Assert.assertTrue(keyspace.set("key", "one"));
+		Assert.assertTrue(upper.getKeyspace("test").exists("key"));
+		Assert.assertEquals(keyspace.addAndGet("counter", 2L), 2L);
+		Assert.assertEquals(keyspace.get("counter").get(), "2");
+
+		// Changed behind the adapter's back, so only seen where the lower tier is read
+		Assert.assertTrue(lower.getKeyspace("test").set("key", "other"));
+		Assert.assertEquals(keyspace.get("key").get(), "one");
+		Assert.assertEquals(keyspace.gets("key").get(), lower.getKeyspace("test").gets("key").get());
+
+		Assert.assertTrue(keyspace.delete("key"));
+		Assert.assertFalse(upper.getKeyspace("test").exists("key"));
+		Assert.assertFalse(keyspace.exists("key"));
+	}
+
+	/**
+	 * Verify that versions read from the upper tier succeed and fail conditional writes like those of the lower tier
+	 */
+	@Test
+	public void checkAndSetTest() {
+		final MemoryAdapter lower = MemoryAdapter.create();
+		final Keyspace keyspace = TieredAdapter.builder(MemoryAdapter.create(), lower)
+				.writePolicy(WritePolicy.WRITE_THROUGH).build().getKeyspace("test");
+		Assert.assertTrue(keyspace.set("key", "one"));
+		final KeyValue read = keyspace.gets("key").get();
+		Assert.assertEquals(keyspace.gets("key").get(), read);
+
+		Assert.assertTrue(keyspace.checkAndSet("key", "two", read.getVersion()));
+		Assert.assertFalse(keyspace.checkAndSet("key", "three", read.getVersion()));
+		Assert.assertEquals(keyspace.get("key").get(), "two");
+		final KeyValue current = keyspace.gets("key").get();
+		Assert.assertEquals(current, lower.getKeyspace("test").gets("key").get());
+		Assert.assertFalse(keyspace.deletes("key", read.getVersion()));
+		Assert.assertTrue(keyspace.deletes("key", current.getVersion()));
+	}
+
+	/**
+	 * Verify that the upper tier stays within its bound, demoting rarely read entries rather than often read ones
+	 */
+	@Test
+	public void demotionTest() {
+		final MemoryAdapter upper = MemoryAdapter.create();
+		final MemoryAdapter lower = MemoryAdapter.create();
+		final Keyspace keyspace = TieredAdapter.builder(upper, lower).maxEntries(10).build().getKeyspace("test");
+		for (int i = 0; i < 100; i++)
+			Assert.assertTrue(lower.getKeyspace("test").set("key" + i, "value" + i));
+		for (int round = 0; round < 50; round++)
+			for (int i = 0; i < 5; i++)
+				Assert.assertEquals(keyspace.get("key" + i).get(), "value" + i);
+
+		for (int i = 5; i < 100; i++)
+			Assert.assertEquals(keyspace.get("key" + i).get(), "value" + i);
+		Assert.assertTrue(upper.getKeyspace("test").stream().count() <= 10L);
+		for (int i = 0; i < 5; i++)
+			Assert.assertTrue(upper.getKeyspace("test").exists("key" + i), "Demoted key" + i);
+	}
+
+	/**
+	 * Verify that a max entries below one throws exception
+	 */
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void maxEntriesTest() {
+		TieredAdapter.builder(MemoryAdapter.create(), MemoryAdapter.create()).maxEntries(0);
+	}
+
+	/**
+	 * Verify that using the same adapter for both tiers throws exception
+	 */
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void sameAdapterTest() {
+		final MemoryAdapter adapter = MemoryAdapter.create();
+		TieredAdapter.builder(adapter, adapter);
+	}
+}
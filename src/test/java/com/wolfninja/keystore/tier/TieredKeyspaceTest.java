@@ -0,0 +1,22 @@
+package com.wolfninja.keystore.tier;
+
+import org.testng.annotations.Test;
+
+import com.wolfninja.keystore.api.BaseScanKeyspaceTest;
+import com.wolfninja.keystore.memory.MemoryAdapter;
+import com.wolfninja.keystore.tier.TieredAdapter.WritePolicy;
+
+/**
+ * Runs the keyspace contract against {@code TieredKeyspace}
+ */
+@Test
+public class TieredKeyspaceTest extends BaseScanKeyspaceTest {
+
+	/**
+	 * Run the contract writing through to a small upper tier, so entries are demoted along the way
+	 */
+	public TieredKeyspaceTest() {
+		super(TieredAdapter.builder(MemoryAdapter.create(), MemoryAdapter.create())
+				.writePolicy(WritePolicy.WRITE_THROUGH).maxEntries(100).build().getKeyspace("test"));
+	}
+}
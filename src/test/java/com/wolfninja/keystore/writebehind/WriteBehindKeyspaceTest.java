@@ -0,0 +1,281 @@
+package com.wolfninja.keystore.writebehind;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.wolfninja.keystore.api.BaseScanKeyspaceTest;
+import com.wolfninja.keystore.api.KeyValue;
+import com.wolfninja.keystore.api.Keyspace;
+import com.wolfninja.keystore.memory.MemoryAdapter;
+import com.wolfninja.keystore.metrics.MetricsKeyspace;
+import com.wolfninja.keystore.metrics.MetricsListener;
+import com.wolfninja.keystore.metrics.Operation;
+
+/**
+ * Tests for {@code WriteBehindKeyspace}
+ */
+@Test
+public class WriteBehindKeyspaceTest extends BaseScanKeyspaceTest {
+
+	/**
+	 * Memory keyspace whose bulk writes can be made to fail or be rejected
+	 */
+	private static final class FlakyKeyspace implements Keyspace {
+		private final Keyspace delegate = MemoryAdapter.create().getKeyspace("test");
+		private volatile boolean failing;
+		private volatile boolean rejecting;
+
+		@Override
+		public boolean add(final String key, final String value) {
+			return delegate.add(key, value);
+		}
+
+		@Override
+		public boolean checkAndSet(final String key, final String value, final long version) {
+			return delegate.checkAndSet(key, value, version);
+		}
+
+		@Override
+		public boolean delete(final String key) {
+			return delegate.delete(key);
+		}
+
+		@Override
+		public boolean deletes(final String key, final long version) {
+			return delegate.deletes(key, version);
+		}
+
+		@Override
+		public boolean exists(final String key) {
+			return delegate.exists(key);
+		}
+
+		@Override
+		public Optional<String> get(final String key) {
+			return delegate.get(key);
+		}
+
+		@Override
+		public Optional<KeyValue> gets(final String key) {
+			return delegate.gets(key);
+		}
+
+		@Override
+		public boolean replace(final String key, final String value) {
+			return delegate.replace(key, value);
+		}
+
+		@Override
+		public boolean set(final String key, final String value) {
+			return delegate.set(key, value);
+		}
+
+		@Override
+		public boolean setAll(final Map<String, String> values) {
+			if (failing)
+				throw new IllegalStateException("down");
+			return !rejecting && delegate.setAll(values);
+		}
+	}
+
+	/**
+	 * Run the keyspace contract against a {@link WriteBehindKeyspace} over a memory keyspace
+	 */
+	public WriteBehindKeyspaceTest() {
+		super(WriteBehindKeyspace.builder(MemoryAdapter.create().getKeyspace("test")).build());
+	}
+
+	/**
+	 * Verify that repeated writes to a key are coalesced into one bulk write, and read back before it
+	 */
+	@Test
+	public void coalesceTest() {
+		final MetricsKeyspace backend = MetricsKeyspace.create(MemoryAdapter.create().getKeyspace("test"), "test",
+				MetricsListener.NONE);
+		final WriteBehindKeyspace keyspace = WriteBehindKeyspace.builder(backend).flushInterval(1L, TimeUnit.HOURS)
+				.build();
+		for (int i = 0; i < 100; i++)
+			Assert.assertTrue(keyspace.set("a", "value" + i));
+		Assert.assertTrue(keyspace.set("b", "value"));
+		Assert.assertTrue(keyspace.delete("b"));
+
+		Assert.assertEquals(keyspace.getPendingCount(), 2);
+		Assert.assertEquals(keyspace.getCoalescedCount(), 100L);
+		Assert.assertEquals(keyspace.get("a").get(), "value99");
+		Assert.assertFalse(keyspace.exists("b"));
+		Assert.assertFalse(backend.exists("a"));
+
+		keyspace.flush();
+		Assert.assertEquals(keyspace.getPendingCount(), 0);
+		Assert.assertEquals(keyspace.getFlushedCount(), 2L);
+		Assert.assertEquals(keyspace.getFlushLatency().getCount(), 1L);
+		Assert.assertEquals(backend.get("a").get(), "value99");
+		Assert.assertEquals(backend.getMetrics(Operation.SET_ALL).getCalls(), 1L);
+		Assert.assertEquals(backend.getMetrics(Operation.SET).getCalls(), 0L);
+	}
+
+	/**
+	 * Verify that a full batch is flushed in the background without waiting for the interval
+	 */
+	@Test
+	public void batchSizeTriggerTest() throws InterruptedException {
+		final Keyspace backend = MemoryAdapter.create().getKeyspace("test");
+		final WriteBehindKeyspace keyspace = WriteBehindKeyspace.builder(backend).batchSize(10)
+				.flushInterval(1L, TimeUnit.HOURS).build();
+		for (int i = 0; i < 10; i++)
+			Assert.assertTrue(keyspace.set("key" + i, "value" + i));
+		awaitTrue(() -> keyspace.getPendingCount() == 0);
+		Assert.assertEquals(backend.get("key9").get(), "value9");
+	}
+
+	/**
+	 * Verify that pending writes are flushed once the interval passed
+	 */
+	@Test
+	public void flushIntervalTriggerTest() throws InterruptedException {
+		final Keyspace backend = MemoryAdapter.create().getKeyspace("test");
+		final WriteBehindKeyspace keyspace = WriteBehindKeyspace.builder(backend)
+				.flushInterval(20L, TimeUnit.MILLISECONDS).build();
+		Assert.assertTrue(keyspace.set("key", "value"));
+		awaitTrue(() -> backend.exists("key"));
+	}
+
+	/**
+	 * Verify that failed flushes keep the writes, and that a full buffer makes writers flush themselves
+	 */
+	@Test
+	public void backpressureTest() {
+		final FlakyKeyspace backend = new FlakyKeyspace();
+		backend.failing = true;
+		final WriteBehindKeyspace keyspace = WriteBehindKeyspace.builder(backend).maxPending(4).batchSize(4)
+				.flushInterval(1L, TimeUnit.HOURS).build();
+		for (int i = 0; i < 4; i++)
+			Assert.assertTrue(keyspace.set("key" + i, "value" + i));
+		try {
+			keyspace.set("key4", "value4");
+			Assert.fail("Should have thrown exception!");
+		} catch (final IllegalStateException e) {
+			Assert.assertEquals(e.getMessage(), "down");
+		}
+		Assert.assertEquals(keyspace.getPendingCount(), 4);
+		Assert.assertTrue(keyspace.getFailedFlushCount() >= 1L);
+		Assert.assertEquals(keyspace.get("key0").get(), "value0");
+		Assert.assertTrue(keyspace.set("key0", "coalesced"));
+
+		backend.failing = false;
+		Assert.assertTrue(keyspace.set("key4", "value4"));
+		Assert.assertTrue(keyspace.getBackpressureCount() >= 2L);
+		Assert.assertEquals(backend.get("key0").get(), "coalesced");
+		Assert.assertEquals(backend.get("key3").get(), "value3");
+		Assert.assertEquals(keyspace.get("key4").get(), "value4");
+	}
+
+	/**
+	 * Verify that a batch the backend rejects stays pending like a failed one
+	 */
+	@Test
+	public void rejectedBatchTest() {
+		final FlakyKeyspace backend = new FlakyKeyspace();
+		backend.rejecting = true;
+		final WriteBehindKeyspace keyspace = WriteBehindKeyspace.builder(backend).flushInterval(1L, TimeUnit.HOURS)
+				.build();
+		Assert.assertTrue(keyspace.set("key", "value"));
+		try {
+			keyspace.flush();
+			Assert.fail("Should have thrown exception!");
+		} catch (final IllegalStateException e) {
+			Assert.assertEquals(keyspace.getPendingCount(), 1);
+		}
+		Assert.assertEquals(keyspace.getFailedFlushCount(), 1L);
+		Assert.assertEquals(keyspace.getFlushedCount(), 0L);
+
+		backend.rejecting = false;
+		keyspace.flush();
+		Assert.assertEquals(keyspace.getPendingCount(), 0);
+		Assert.assertEquals(backend.get("key").get(), "value");
+	}
+
+	/**
+	 * Verify that bulk deletes check the keys without a pending write in one bulk read
+	 */
+	@Test
+	public void deleteAllTest() {
+		final MetricsKeyspace backend = MetricsKeyspace.create(MemoryAdapter.create().getKeyspace("test"), "test",
+				MetricsListener.NONE);
+		Assert.assertTrue(backend.set("stored", "value"));
+		Assert.assertTrue(backend.set("other", "value"));
+		final WriteBehindKeyspace keyspace = WriteBehindKeyspace.builder(backend).flushInterval(1L, TimeUnit.HOURS)
+				.build();
+		Assert.assertTrue(keyspace.set("pending", "value"));
+		Assert.assertFalse(keyspace.delete("deleted"));
+
+		Assert.assertEquals(keyspace.deleteAll(Arrays.asList("stored", "other", "missing", "pending", "deleted",
+				"stored")), 3);
+		Assert.assertEquals(backend.getMetrics(Operation.GET_ALL).getCalls(), 1L);
+		Assert.assertEquals(backend.getMetrics(Operation.EXISTS).getCalls(), 1L);
+		Assert.assertEquals(keyspace.getPendingCount(), 5);
+		keyspace.flush();
+		Assert.assertFalse(backend.exists("stored"));
+		Assert.assertFalse(backend.exists("pending"));
+	}
+
+	/**
+	 * Verify that operations needing the backend's version flush the key first
+	 */
+	@Test
+	public void conditionalWriteTest() {
+		final Keyspace backend = MemoryAdapter.create().getKeyspace("test");
+		final WriteBehindKeyspace keyspace = WriteBehindKeyspace.builder(backend).flushInterval(1L, TimeUnit.HOURS)
+				.build();
+		Assert.assertTrue(keyspace.set("key", "first"));
+		final KeyValue current = keyspace.gets("key").get();
+		Assert.assertEquals(current, backend.gets("key").get());
+		Assert.assertTrue(keyspace.set("key", "second"));
+		Assert.assertFalse(keyspace.checkAndSet("key", "third", current.getVersion()));
+		Assert.assertEquals(backend.get("key").get(), "second");
+		Assert.assertEquals(keyspace.increment("counter"), 1L);
+		Assert.assertEquals(keyspace.getPendingCount(), 0);
+	}
+
+	/**
+	 * Verify that closing flushes pending writes and rejects buffered writes afterwards
+	 */
+	@Test
+	public void closeTest() {
+		final Keyspace backend = MemoryAdapter.create().getKeyspace("test");
+		final WriteBehindKeyspace keyspace = WriteBehindKeyspace.builder(backend).flushInterval(1L, TimeUnit.HOURS)
+				.build();
+		Assert.assertTrue(keyspace.set("key", "value"));
+		keyspace.close();
+		Assert.assertEquals(backend.get("key").get(), "value");
+		Assert.assertEquals(keyspace.get("key").get(), "value");
+		try {
+			keyspace.set("other", "value");
+			Assert.fail("Should have thrown exception!");
+		} catch (final IllegalStateException e) {
+			Assert.assertFalse(backend.exists("other"));
+		}
+	}
+
+	/**
+	 * Verify that a buffer smaller than a batch is refused
+	 */
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void maxPendingBelowBatchSizeTest() {
+		WriteBehindKeyspace.builder(MemoryAdapter.create().getKeyspace("test")).maxPending(10).batchSize(20).build();
+	}
+
+	private static void awaitTrue(final BooleanSupplier condition) throws InterruptedException {
+		final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5L);
+		while (!condition.getAsBoolean()) {
+			Assert.assertTrue(System.nanoTime() < deadline, "Timed out");
+			Thread.sleep(5L);
+		}
+	}
+}